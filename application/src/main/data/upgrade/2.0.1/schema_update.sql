@@ -0,0 +1,36 @@
+--
+-- Copyright © 2016-2025 The Thingsboard Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+CREATE TABLE IF NOT EXISTS ts_kv_rollup (
+    entity_id varchar (255) NOT NULL,
+    key int NOT NULL,
+    rollup_interval bigint NOT NULL,
+    ts bigint NOT NULL,
+    min_v bigint NOT NULL,
+    max_v bigint NOT NULL,
+    sum_v bigint NOT NULL,
+    count_v bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_pkey PRIMARY KEY (entity_id, key, rollup_interval, ts)
+);
+
+-- Backfill the rollups from the time series data that is already stored
+INSERT INTO ts_kv_rollup (entity_id, key, rollup_interval, ts, min_v, max_v, sum_v, count_v)
+SELECT entity_id, key, r.rollup_interval, ts - ts % r.rollup_interval AS bucket_ts,
+       MIN(COALESCE(long_v, 9223372036854775807)), MAX(COALESCE(long_v, -9223372036854775807)),
+       CAST(SUM(COALESCE(long_v, 0)) AS bigint), COUNT(long_v)
+FROM ts_kv CROSS JOIN (VALUES (3600000::bigint), (86400000::bigint)) AS r (rollup_interval)
+GROUP BY entity_id, key, r.rollup_interval, bucket_ts
+ON CONFLICT (entity_id, key, rollup_interval, ts) DO NOTHING;
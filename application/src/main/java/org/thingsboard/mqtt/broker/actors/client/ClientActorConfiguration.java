@@ -25,6 +25,7 @@ import org.springframework.stereotype.Component;
 public class ClientActorConfiguration {
 
     private int dispatcherPoolSize;
+    private ClientActorDispatcherType dispatcherType = ClientActorDispatcherType.SHARED;
     private int waitBeforeGeneratedActorStopSeconds;
     private int waitBeforeNamedActorStopSeconds;
 
@@ -15,15 +15,20 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.handlers;
 
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttReasonCodes;
 import io.netty.handler.codec.mqtt.MqttSubAckMessage;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttSubscribeMsg;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.ClientSubscriptionService;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
+import org.thingsboard.mqtt.broker.actors.client.state.RetainedMsgStream;
 import org.thingsboard.mqtt.broker.common.data.ApplicationSharedSubscription;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
 import org.thingsboard.mqtt.broker.common.data.ClientType;
@@ -54,8 +59,10 @@ import org.thingsboard.mqtt.broker.util.MqttReasonCodeUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
@@ -76,6 +83,13 @@ public class MqttSubscribeHandler {
     private final ApplicationPersistenceProcessor applicationPersistenceProcessor;
     private final RateLimitService rateLimitService;
 
+    @Setter
+    @Value("${mqtt.retain-msg.delivery-chunk-size:100}")
+    private int retainedMsgDeliveryChunkSize;
+    @Setter
+    @Value("${mqtt.retain-msg.delivery-pause-ms:50}")
+    private long retainedMsgDeliveryPauseMs;
+
     public void process(ClientSessionCtx ctx, MqttSubscribeMsg msg) {
         Set<TopicSharedSubscription> currentSharedSubscriptions = clientSubscriptionService.getClientSharedSubscriptions(ctx.getClientId());
         List<TopicSubscription> topicSubscriptions = msg.getTopicSubscriptions();
@@ -187,9 +201,65 @@ public class MqttSubscribeHandler {
     private void processRetainedMessages(ClientSessionCtx ctx,
                                          List<TopicSubscription> newSubscriptions,
                                          Set<TopicSubscription> currentSubscriptions) {
-        List<RetainedMsg> retainedMsgList = getRetainedMessagesForTopicSubscriptions(newSubscriptions, currentSubscriptions);
-        retainedMsgList = applyRateLimits(retainedMsgList);
-        retainedMsgList.forEach(retainedMsg -> publishMsgDeliveryService.sendPublishRetainedMsgToClient(ctx, retainedMsg));
+        for (TopicSubscription topicSubscription : getSubscriptionsToSendRetainedMsgs(newSubscriptions, currentSubscriptions)) {
+            RetainedMsgStream stream = new RetainedMsgStream(topicSubscription,
+                    retainedMsgService.getRetainedMessagesIterator(topicSubscription.getTopicFilter()));
+            ctx.addRetainedMsgStream(stream);
+            ctx.getChannel().executor().execute(() -> deliverRetainedMsgs(ctx, stream));
+        }
+    }
+
+    /**
+     * Delivers the next chunk of retained messages on the channel event loop and schedules the following one,
+     * pausing while the channel is not writable or the client in-flight window is full.
+     */
+    void deliverRetainedMsgs(ClientSessionCtx ctx, RetainedMsgStream stream) {
+        if (stream.isCancelled()) {
+            return;
+        }
+        ChannelHandlerContext channelCtx = ctx.getChannel();
+        try {
+            if (!channelCtx.channel().isActive()) {
+                ctx.removeRetainedMsgStream(stream);
+                return;
+            }
+            if (!channelCtx.channel().isWritable() || isInFlightWindowFull(ctx)) {
+                if (log.isTraceEnabled()) {
+                    log.trace("[{}][{}] Pausing retained msg delivery", ctx.getClientId(), stream.getTopicFilter());
+                }
+                channelCtx.executor().schedule(() -> deliverRetainedMsgs(ctx, stream), retainedMsgDeliveryPauseMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            List<RetainedMsg> retainedMsgList = getNextRetainedMsgsChunk(stream);
+            List<RetainedMsg> allowedRetainedMsgList = applyRateLimits(retainedMsgList);
+            allowedRetainedMsgList.forEach(retainedMsg -> publishMsgDeliveryService.sendPublishRetainedMsgToClient(ctx, retainedMsg));
+            if (allowedRetainedMsgList.size() < retainedMsgList.size() || !stream.getIterator().hasNext()) {
+                ctx.removeRetainedMsgStream(stream);
+                return;
+            }
+            channelCtx.executor().execute(() -> deliverRetainedMsgs(ctx, stream));
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to deliver retained messages", ctx.getClientId(), stream.getTopicFilter(), e);
+            ctx.removeRetainedMsgStream(stream);
+        }
+    }
+
+    private boolean isInFlightWindowFull(ClientSessionCtx ctx) {
+        PublishedInFlightCtx publishedInFlightCtx = ctx.getPublishedInFlightCtx();
+        return publishedInFlightCtx != null && publishedInFlightCtx.isInFlightWindowFull();
+    }
+
+    List<RetainedMsg> getNextRetainedMsgsChunk(RetainedMsgStream stream) {
+        long currentTs = System.currentTimeMillis();
+        Iterator<RetainedMsg> iterator = stream.getIterator();
+        List<RetainedMsg> result = new ArrayList<>();
+        while (result.size() < retainedMsgDeliveryChunkSize && iterator.hasNext()) {
+            RetainedMsg retainedMsg = prepareRetainedMsg(stream.getTopicSubscription(), iterator.next(), currentTs);
+            if (retainedMsg != null) {
+                result.add(retainedMsg);
+            }
+        }
+        return result;
     }
 
     List<RetainedMsg> applyRateLimits(List<RetainedMsg> retainedMsgList) {
@@ -210,42 +280,30 @@ public class MqttSubscribeHandler {
         return retainedMsgList;
     }
 
-    List<RetainedMsg> getRetainedMessagesForTopicSubscriptions(List<TopicSubscription> newSubscriptions,
-                                                              Set<TopicSubscription> currentSubscriptions) {
+    List<TopicSubscription> getSubscriptionsToSendRetainedMsgs(List<TopicSubscription> newSubscriptions,
+                                                               Set<TopicSubscription> currentSubscriptions) {
         return newSubscriptions
                 .stream()
                 .filter(TopicSubscription::isCommonSubscription)
                 .filter(topicSubscription ->
                         topicSubscription.getOptions().needSendRetainedForTopicSubscription(
                                 ts -> !currentSubscriptions.contains(ts), topicSubscription))
-                .map(this::getRetainedMessagesForTopicSubscription)
-                .flatMap(List::stream)
                 .toList();
     }
 
-    List<RetainedMsg> getRetainedMessagesForTopicSubscription(TopicSubscription topicSubscription) {
-        long currentTs = System.currentTimeMillis();
-        List<RetainedMsg> retainedMessages = getRetainedMessages(topicSubscription);
-        List<RetainedMsg> result = new ArrayList<>(retainedMessages.size());
-        for (RetainedMsg retainedMsg : retainedMessages) {
-            MsgExpiryResult msgExpiryResult = MqttPropertiesUtil.getMsgExpiryResult(retainedMsg, currentTs);
-            if (msgExpiryResult.isExpired()) {
-                continue;
-            }
-            int qos = MqttQosUtil.downgradeQos(topicSubscription, retainedMsg);
-            RetainedMsg newRetainedMsg = newRetainedMsg(retainedMsg, qos);
-
-            if (msgExpiryResult.isMsgExpiryIntervalPresent()) {
-                MqttPropertiesUtil.addMsgExpiryIntervalToProps(newRetainedMsg.getProperties(), msgExpiryResult.getMsgExpiryInterval());
-            }
-            MqttPropertiesUtil.addSubscriptionIdToProps(newRetainedMsg.getProperties(), topicSubscription.getSubscriptionId());
-            result.add(newRetainedMsg);
+    RetainedMsg prepareRetainedMsg(TopicSubscription topicSubscription, RetainedMsg retainedMsg, long currentTs) {
+        MsgExpiryResult msgExpiryResult = MqttPropertiesUtil.getMsgExpiryResult(retainedMsg, currentTs);
+        if (msgExpiryResult.isExpired()) {
+            return null;
         }
-        return result;
-    }
+        int qos = MqttQosUtil.downgradeQos(topicSubscription, retainedMsg);
+        RetainedMsg newRetainedMsg = newRetainedMsg(retainedMsg, qos);
 
-    private List<RetainedMsg> getRetainedMessages(TopicSubscription topicSubscription) {
-        return retainedMsgService.getRetainedMessages(topicSubscription.getTopicFilter());
+        if (msgExpiryResult.isMsgExpiryIntervalPresent()) {
+            MqttPropertiesUtil.addMsgExpiryIntervalToProps(newRetainedMsg.getProperties(), msgExpiryResult.getMsgExpiryInterval());
+        }
+        MqttPropertiesUtil.addSubscriptionIdToProps(newRetainedMsg.getProperties(), topicSubscription.getSubscriptionId());
+        return newRetainedMsg;
     }
 
     private RetainedMsg newRetainedMsg(RetainedMsg retainedMsg, int qos) {
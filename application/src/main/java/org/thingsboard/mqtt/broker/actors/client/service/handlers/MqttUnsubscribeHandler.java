@@ -53,6 +53,8 @@ public class MqttUnsubscribeHandler {
             log.trace("[{}][{}] Processing unsubscribe, messageId - {}, topic filters - {}", clientId, sessionId, msg.getMessageId(), msg.getTopics());
         }
 
+        msg.getTopics().forEach(ctx::cancelRetainedMsgStream);
+
         List<MqttReasonCodes.UnsubAck> codes = msg.getTopics().stream().map(s -> MqttReasonCodeResolver.unsubAckSuccess(ctx)).collect(Collectors.toList());
         MqttMessage unSubAckMessage = mqttMessageGenerator.createUnSubAckMessage(msg.getMessageId(), codes);
         clientSubscriptionService.unsubscribeAndPersist(clientId, msg.getTopics(),
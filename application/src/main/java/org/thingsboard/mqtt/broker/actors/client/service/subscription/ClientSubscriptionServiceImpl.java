@@ -24,7 +24,6 @@ import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.subscription.SubscriptionPersistenceService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
-import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionProcessor;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 
 import java.util.Collection;
@@ -50,7 +49,6 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
 
     private final SubscriptionPersistenceService subscriptionPersistenceService;
     private final SubscriptionService subscriptionService;
-    private final SharedSubscriptionProcessor sharedSubscriptionProcessor;
     private final SharedSubscriptionCacheService sharedSubscriptionCacheService;
     private final StatsManager statsManager;
 
@@ -219,15 +217,10 @@ public class ClientSubscriptionServiceImpl implements ClientSubscriptionService
 
     private void processSharedUnsubscribe(String clientId, TopicSubscription topicSubscription) {
         if (topicSubscription.isSharedSubscription()) {
-            unsubscribeSharedSubscription(topicSubscription);
             sharedSubscriptionCacheService.remove(clientId, topicSubscription);
         }
     }
 
-    private void unsubscribeSharedSubscription(TopicSubscription topicSubscription) {
-        sharedSubscriptionProcessor.unsubscribe(topicSubscriptionToTopicSharedSubscription(topicSubscription));
-    }
-
     private TopicSharedSubscription topicSubscriptionToTopicSharedSubscription(TopicSubscription topicSubscription) {
         return TopicSharedSubscription.fromTopicSubscription(topicSubscription);
     }
@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.service.subscription;
+
+import org.thingsboard.mqtt.broker.service.subscription.EntitySubscription;
+import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cache of topic name to the subscriptions matched for it in the subscription trie.
+ * The returned lists must not be modified.
+ */
+public interface SubscriptionMatchCache {
+
+    List<ValueWithTopicFilter<EntitySubscription>> get(String topic,
+                                                       Function<String, List<ValueWithTopicFilter<EntitySubscription>>> matcher);
+
+    /**
+     * Must be called after the topic filter subscriptions are changed in the subscription trie.
+     */
+    void onSubscriptionsChanged(String topicFilter);
+
+}
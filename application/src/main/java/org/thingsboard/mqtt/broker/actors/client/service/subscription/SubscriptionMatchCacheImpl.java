@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.service.subscription;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.SubscriptionCacheStats;
+import org.thingsboard.mqtt.broker.service.subscription.EntitySubscription;
+import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Entries are invalidated by epochs instead of being removed on subscription changes.
+ * <p>
+ * A topic filter without wildcards bumps the epoch of its topic stripe, a filter with a literal first level bumps the
+ * epoch of that level stripe, and a filter starting with a wildcard bumps the global epoch. An entry remembers the
+ * three epochs read before the trie lookup and is valid only while all of them are unchanged, so a lookup racing
+ * with a subscription change can never be served afterward.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubscriptionMatchCacheImpl implements SubscriptionMatchCache {
+
+    private static final int TOPIC_STRIPES = 1 << 16;
+    private static final int FIRST_LEVEL_STRIPES = 1 << 10;
+
+    private final StatsManager statsManager;
+
+    private final AtomicLong globalEpoch = new AtomicLong();
+    private final AtomicLongArray firstLevelEpochs = new AtomicLongArray(FIRST_LEVEL_STRIPES);
+    private final AtomicLongArray topicEpochs = new AtomicLongArray(TOPIC_STRIPES);
+
+    @Setter
+    @Value("${mqtt.subscription-cache.enabled:false}")
+    private boolean enabled;
+    @Setter
+    @Value("${mqtt.subscription-cache.max-size:100000}")
+    private long maxSize;
+    @Setter
+    @Value("${mqtt.subscription-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    private SubscriptionCacheStats stats;
+    private Cache<String, CachedSubscriptions> cache;
+
+    @PostConstruct
+    public void init() {
+        this.stats = statsManager.getSubscriptionCacheStats();
+        if (enabled) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                    .<String, CachedSubscriptions>removalListener(notification -> {
+                        if (notification.wasEvicted()) {
+                            stats.logEviction();
+                        }
+                    })
+                    .build();
+        }
+    }
+
+    @Override
+    public List<ValueWithTopicFilter<EntitySubscription>> get(String topic,
+                                                              Function<String, List<ValueWithTopicFilter<EntitySubscription>>> matcher) {
+        if (cache == null) {
+            return matcher.apply(topic);
+        }
+        int topicStripe = topicStripe(topic);
+        int firstLevelStripe = firstLevelStripe(topic);
+        long global = globalEpoch.get();
+        long firstLevel = firstLevelEpochs.get(firstLevelStripe);
+        long topicEpoch = topicEpochs.get(topicStripe);
+
+        CachedSubscriptions cached = cache.getIfPresent(topic);
+        if (cached != null && cached.globalEpoch == global && cached.firstLevelEpoch == firstLevel && cached.topicEpoch == topicEpoch) {
+            stats.logHit();
+            return cached.subscriptions;
+        }
+        stats.logMiss();
+
+        List<ValueWithTopicFilter<EntitySubscription>> subscriptions = Collections.unmodifiableList(matcher.apply(topic));
+        cache.put(topic, new CachedSubscriptions(subscriptions, global, firstLevel, topicEpoch));
+        return subscriptions;
+    }
+
+    @Override
+    public void onSubscriptionsChanged(String topicFilter) {
+        if (cache == null) {
+            return;
+        }
+        int firstWildcardIndex = indexOfWildcard(topicFilter);
+        if (firstWildcardIndex == -1) {
+            topicEpochs.incrementAndGet(topicStripe(topicFilter));
+        } else if (firstWildcardIndex > firstLevelEndIndex(topicFilter)) {
+            firstLevelEpochs.incrementAndGet(firstLevelStripe(topicFilter));
+        } else {
+            globalEpoch.incrementAndGet();
+        }
+    }
+
+    private static int indexOfWildcard(String topicFilter) {
+        for (int i = 0; i < topicFilter.length(); i++) {
+            char c = topicFilter.charAt(i);
+            if (c == '+' || c == '#') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstLevelEndIndex(String topic) {
+        int delimiterIndex = topic.indexOf(BrokerConstants.TOPIC_DELIMITER);
+        return delimiterIndex == -1 ? topic.length() : delimiterIndex;
+    }
+
+    private static int topicStripe(String topic) {
+        return spread(topic.hashCode()) & (TOPIC_STRIPES - 1);
+    }
+
+    private static int firstLevelStripe(String topic) {
+        int h = 0;
+        int end = firstLevelEndIndex(topic);
+        for (int i = 0; i < end; i++) {
+            h = 31 * h + topic.charAt(i);
+        }
+        return spread(h) & (FIRST_LEVEL_STRIPES - 1);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    @AllArgsConstructor
+    private static class CachedSubscriptions {
+        private final List<ValueWithTopicFilter<EntitySubscription>> subscriptions;
+        private final long globalEpoch;
+        private final long firstLevelEpoch;
+        private final long topicEpoch;
+    }
+}
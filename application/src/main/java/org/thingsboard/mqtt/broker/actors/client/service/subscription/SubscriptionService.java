@@ -16,7 +16,6 @@
 package org.thingsboard.mqtt.broker.actors.client.service.subscription;
 
 import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.subscription.EntitySubscription;
 import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
 
@@ -34,6 +33,6 @@ public interface SubscriptionService {
 
     List<ValueWithTopicFilter<EntitySubscription>> getSubscriptions(String topic);
 
-    void clearEmptyTopicNodes() throws SubscriptionTrieClearException;
+    void clearEmptyTopicNodes();
 
 }
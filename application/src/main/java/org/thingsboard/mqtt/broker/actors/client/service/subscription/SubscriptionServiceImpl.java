@@ -19,7 +19,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.stats.timer.SubscriptionTimerStats;
 import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
@@ -36,10 +35,13 @@ import java.util.concurrent.TimeUnit;
 public class SubscriptionServiceImpl implements SubscriptionService {
 
     private final SubscriptionTrie<EntitySubscription> subscriptionTrie;
+    private final SubscriptionMatchCache subscriptionMatchCache;
     private final SubscriptionTimerStats subscriptionTimerStats;
 
-    public SubscriptionServiceImpl(SubscriptionTrie<EntitySubscription> subscriptionTrie, StatsManager statsManager) {
+    public SubscriptionServiceImpl(SubscriptionTrie<EntitySubscription> subscriptionTrie, SubscriptionMatchCache subscriptionMatchCache,
+                                   StatsManager statsManager) {
         this.subscriptionTrie = subscriptionTrie;
+        this.subscriptionMatchCache = subscriptionMatchCache;
         this.subscriptionTimerStats = statsManager.getSubscriptionTimerStats();
     }
 
@@ -58,6 +60,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
                             topicSubscription.getOptions(),
                             topicSubscription.getSubscriptionId())
             );
+            subscriptionMatchCache.onSubscriptionsChanged(topicSubscription.getTopicFilter());
         }
     }
 
@@ -68,7 +71,9 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         }
         for (String topicFilter : topicFilters) {
             boolean successfullyDeleted = subscriptionTrie.delete(topicFilter, val -> clientId.equals(val.getClientId()));
-            if (!successfullyDeleted) {
+            if (successfullyDeleted) {
+                subscriptionMatchCache.onSubscriptionsChanged(topicFilter);
+            } else {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Client wasn't subscribed to the topic filter {}", clientId, topicFilter);
                 }
@@ -79,13 +84,13 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Override
     public List<ValueWithTopicFilter<EntitySubscription>> getSubscriptions(String topic) {
         long startTime = System.nanoTime();
-        List<ValueWithTopicFilter<EntitySubscription>> subscriptions = subscriptionTrie.get(topic);
+        List<ValueWithTopicFilter<EntitySubscription>> subscriptions = subscriptionMatchCache.get(topic, subscriptionTrie::get);
         subscriptionTimerStats.logSubscriptionsLookup(startTime, TimeUnit.NANOSECONDS);
         return subscriptions;
     }
 
     @Override
-    public void clearEmptyTopicNodes() throws SubscriptionTrieClearException {
+    public void clearEmptyTopicNodes() {
         if (log.isTraceEnabled()) {
             log.trace("Executing clearEmptyTopicNodes");
         }
@@ -95,10 +100,6 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     @Scheduled(cron = "${mqtt.subscription-trie.clear-nodes-cron}", zone = "${mqtt.subscription-trie.clear-nodes-zone}")
     private void scheduleEmptyNodeClear() {
         log.info("Start clearing empty nodes in SubscriptionTrie");
-        try {
-            subscriptionTrie.clearEmptyNodes();
-        } catch (SubscriptionTrieClearException e) {
-            log.error("Failed to clear empty nodes.", e);
-        }
+        subscriptionTrie.clearEmptyNodes();
     }
 }
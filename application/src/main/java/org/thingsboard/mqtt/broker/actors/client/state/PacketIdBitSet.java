@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+
+import java.util.Arrays;
+
+/**
+ * Set of MQTT packet ids (1..65535) kept as a bitmap. The bitmap is split into pages of 4096 ids that are
+ * allocated on first use, so a session that never receives an out-of-order ack pays for the page index only.
+ * Not thread-safe: callers guard it with their own lock.
+ */
+public class PacketIdBitSet {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_SHIFT) >>> 6;
+    private static final int PAGES = (BrokerConstants.MAX_PACKET_ID + 1) >>> PAGE_SHIFT;
+
+    private final long[][] pages = new long[PAGES][];
+    private int size;
+
+    public boolean add(int packetId) {
+        int pageIdx = pageIdx(packetId);
+        long[] page = pages[pageIdx];
+        if (page == null) {
+            page = new long[WORDS_PER_PAGE];
+            pages[pageIdx] = page;
+        }
+        int wordIdx = (packetId & PAGE_MASK) >>> 6;
+        long bit = 1L << packetId;
+        if ((page[wordIdx] & bit) != 0) {
+            return false;
+        }
+        page[wordIdx] |= bit;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int packetId) {
+        long[] page = pages[pageIdx(packetId)];
+        if (page == null) {
+            return false;
+        }
+        int wordIdx = (packetId & PAGE_MASK) >>> 6;
+        long bit = 1L << packetId;
+        if ((page[wordIdx] & bit) == 0) {
+            return false;
+        }
+        page[wordIdx] &= ~bit;
+        size--;
+        return true;
+    }
+
+    public boolean contains(int packetId) {
+        long[] page = pages[pageIdx(packetId)];
+        return page != null && (page[(packetId & PAGE_MASK) >>> 6] & (1L << packetId)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        for (long[] page : pages) {
+            if (page != null) {
+                Arrays.fill(page, 0L);
+            }
+        }
+        size = 0;
+    }
+
+    private static int pageIdx(int packetId) {
+        return (packetId >>> PAGE_SHIFT) & (PAGES - 1);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import java.util.Arrays;
+
+/**
+ * FIFO of packet ids backed by a primitive int array, so in-flight tracking does not box every packet id.
+ * The array starts small and doubles when full, up to the number of messages the client allows in flight.
+ * Not thread-safe: callers guard it with their own lock.
+ */
+public class PacketIdRingBuffer {
+
+    static final int EMPTY = 0;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] elements;
+    private int head;
+    private int size;
+
+    public PacketIdRingBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PacketIdRingBuffer(int initialCapacity) {
+        this.elements = new int[Math.max(1, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1)];
+    }
+
+    public boolean add(int packetId) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = packetId;
+        size++;
+        return true;
+    }
+
+    public int peek() {
+        return size == 0 ? EMPTY : elements[head];
+    }
+
+    public int poll() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int packetId = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return packetId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] newElements = new int[elements.length << 1];
+        int firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, newElements, 0, firstPart);
+        System.arraycopy(elements, 0, newElements, firstPart, size - firstPart);
+        elements = newElements;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = elements[(head + i) & (elements.length - 1)];
+        }
+        return Arrays.toString(ids);
+    }
+}
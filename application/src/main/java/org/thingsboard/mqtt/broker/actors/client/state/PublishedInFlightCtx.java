@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.actors.client.state;
 
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import org.thingsboard.mqtt.broker.service.stats.FlowControlStats;
 
 public interface PublishedInFlightCtx {
 
@@ -23,5 +24,13 @@ public interface PublishedInFlightCtx {
 
     void ackInFlightMsg(int msgId);
 
-    boolean processMsg(long ttlMs);
+    int processDelayedMsgs(long ttlMs, FlowControlStats flowControlStats);
+
+    int getInFlightMsgCount();
+
+    int getDelayedMsgCount();
+
+    boolean isInFlightWindowFull();
+
+    void close();
 }
@@ -15,13 +15,16 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.state;
 
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.ReferenceCountUtil;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.common.data.mqtt.MqttPubMsgWithCreatedTime;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
 import org.thingsboard.mqtt.broker.service.mqtt.flow.control.FlowControlService;
+import org.thingsboard.mqtt.broker.service.stats.FlowControlStats;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 import java.util.Queue;
@@ -34,14 +37,15 @@ import java.util.concurrent.locks.ReentrantLock;
 @Data
 public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
 
-    private final Queue<Integer> publishedInFlightMsgQueue = new ConcurrentLinkedQueue<>();
-    private final Queue<Integer> receivedAckMsgInWrongOrderQueue = new ConcurrentLinkedQueue<>();
+    private final PacketIdRingBuffer publishedInFlightMsgQueue = new PacketIdRingBuffer();
+    private final PacketIdBitSet receivedAckMsgInWrongOrderSet = new PacketIdBitSet();
     private final Queue<MqttPubMsgWithCreatedTime> delayedMsgQueue = new ConcurrentLinkedQueue<>();
 
     private final AtomicInteger publishedInFlightMsgCounter = new AtomicInteger(0);
     private final AtomicInteger delayedMsgCounter = new AtomicInteger(0);
 
     private final Lock lock = new ReentrantLock();
+    private boolean closed;
 
     private final FlowControlService flowControlService;
     private final ClientSessionCtx clientSessionCtx;
@@ -68,6 +72,10 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
             if (atMostOnce(mqttPubMsg)) {
                 return true;
             }
+            if (closed) {
+                ReferenceCountUtil.release(mqttPubMsg);
+                return false;
+            }
             int delayedMsgQueueSize = delayedMsgQueueSize();
             if (delayedMsgQueueSize == 0) {
                 if (publishedInFlightMsgQueueSize() >= clientReceiveMax) {
@@ -83,6 +91,7 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
                 if (delayedMsgQueueSize >= delayedMsgQueueMaxSize) {
                     log.error("[{}] Message is skipped! Max in-flight messages reached [{}] and delay queue is full [{}]!",
                             clientId, clientReceiveMax, delayedMsgQueueMaxSize);
+                    ReferenceCountUtil.release(mqttPubMsg);
                 } else {
                     if (log.isDebugEnabled()) {
                         log.debug("[{}][{}] Max in-flight messages reached! Adding msg to delay queue [{}]", clientId, clientReceiveMax, delayedMsgQueueSize);
@@ -100,88 +109,142 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
     public void ackInFlightMsg(int msgId) {
         lock.lock();
         try {
-            Integer publishedInFlightHead = publishedInFlightMsgQueue.peek();
-            if (publishedInFlightHead != null) {
-                if (publishedInFlightHead == msgId) {
-                    removePublishedInFlightMsg();
-                    Integer wrongOrderHead = receivedAckMsgInWrongOrderQueue.peek();
-                    if (wrongOrderHead == null) {
-                        return;
-                    }
+            ackPublishedInFlightMsg(msgId);
+        } finally {
+            lock.unlock();
+        }
+        if (delayedMsgQueueSize() > 0 && allowedToSendMsg()) {
+            flowControlService.submitDelayedMsgsProcessing(clientId);
+        }
+    }
 
-                    while (true) {
-                        Integer publishedInFlightNextHead = publishedInFlightMsgQueue.peek();
-                        if (publishedInFlightNextHead == null) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("[{}] No more in-flight messages waiting for ack! Clearing received ack queue", clientId);
-                            }
-                            receivedAckMsgInWrongOrderQueue.clear();
-                            break;
+    private void ackPublishedInFlightMsg(int msgId) {
+        int publishedInFlightHead = publishedInFlightMsgQueue.peek();
+        if (publishedInFlightHead != PacketIdRingBuffer.EMPTY) {
+            if (publishedInFlightHead == msgId) {
+                removePublishedInFlightMsg();
+                if (receivedAckMsgInWrongOrderSet.isEmpty()) {
+                    return;
+                }
+
+                while (true) {
+                    int publishedInFlightNextHead = publishedInFlightMsgQueue.peek();
+                    if (publishedInFlightNextHead == PacketIdRingBuffer.EMPTY) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("[{}] No more in-flight messages waiting for ack! Clearing received ack set", clientId);
+                        }
+                        receivedAckMsgInWrongOrderSet.clear();
+                        break;
+                    } else {
+                        if (receivedAckMsgInWrongOrderSet.remove(publishedInFlightNextHead)) {
+                            removePublishedInFlightMsg();
                         } else {
-                            if (receivedAckMsgInWrongOrderQueue.contains(publishedInFlightNextHead)) {
-                                receivedAckMsgInWrongOrderQueue.remove(publishedInFlightNextHead);
-                                removePublishedInFlightMsg();
-                            } else {
-                                break;
-                            }
+                            break;
                         }
                     }
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("[{}] Received ack [{}] in the wrong order. Head - [{}]", clientId, msgId, publishedInFlightHead);
-                    }
-                    receivedAckMsgInWrongOrderQueue.add(msgId);
                 }
             } else {
                 if (log.isDebugEnabled()) {
-                    log.debug("[{}] In-flight msg queue is empty. Received ack [{}] for published msg that was sent outside of the current network connection", clientId, msgId);
+                    log.debug("[{}] Received ack [{}] in the wrong order. Head - [{}]", clientId, msgId, publishedInFlightHead);
                 }
+                receivedAckMsgInWrongOrderSet.add(msgId);
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] In-flight msg queue is empty. Received ack [{}] for published msg that was sent outside of the current network connection", clientId, msgId);
             }
-        } finally {
-            lock.unlock();
         }
     }
 
+    /**
+     * Sends as many delayed messages as the in-flight window allows, flushing the channel once.
+     * Expired messages are dropped from the head of the queue even when the window is still full.
+     */
     @Override
-    public boolean processMsg(long ttlMs) {
+    public int processDelayedMsgs(long ttlMs, FlowControlStats flowControlStats) {
         lock.lock();
         try {
-            if (!allowedToSendMsg()) {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}] Still reaching clientReceiveMax... Waiting for more ack messages", clientId);
-                }
-                return false;
-            }
-
+            long now = System.currentTimeMillis();
+            ChannelHandlerContext channel = null;
+            int sentMsgCount = 0;
             while (true) {
-                MqttPubMsgWithCreatedTime head = delayedMsgQueue.poll();
+                MqttPubMsgWithCreatedTime head = delayedMsgQueue.peek();
                 if (head == null) {
                     if (log.isDebugEnabled()) {
                         log.debug("[{}] Delayed queue is empty!", clientId);
                     }
                     flowControlService.removeFromMap(clientId);
-                    return false;
+                    break;
                 }
-                delayedMsgCounter.decrementAndGet();
-                if (head.getCreatedTime() + ttlMs < System.currentTimeMillis()) {
+                if (head.getCreatedTime() + ttlMs < now) {
+                    pollDelayedMsg();
+                    ReferenceCountUtil.release(head.getMqttPublishMessage());
+                    flowControlStats.onDelayedMsgExpired();
                     if (log.isDebugEnabled()) {
                         log.debug("[{}] Msg expired in delayed queue {}", clientId, head);
                     }
                     continue;
                 }
-
+                if (!allowedToSendMsg()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] Still reaching clientReceiveMax... Waiting for more ack messages", clientId);
+                    }
+                    break;
+                }
+                pollDelayedMsg();
+                flowControlStats.logDelayedMsgWaitTime(now - head.getCreatedTime());
                 addPublishedInFlightMsg(head.getMqttPublishMessage());
-                sendDelayedMsg(head.getMqttPublishMessage());
-                break;
+                if (channel == null) {
+                    channel = clientSessionCtx.getChannel();
+                }
+                channel.write(head.getMqttPublishMessage());
+                sentMsgCount++;
+            }
+            if (channel != null) {
+                channel.flush();
+            }
+            return sentMsgCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the delayed messages that were never sent, the messages added after that are released right away.
+     * The in-flight queue holds only the packet ids, the payloads of the sent messages are owned by the channel.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            MqttPubMsgWithCreatedTime delayedMsg;
+            while ((delayedMsg = delayedMsgQueue.peek()) != null) {
+                pollDelayedMsg();
+                ReferenceCountUtil.release(delayedMsg.getMqttPublishMessage());
             }
-            return true;
+            publishedInFlightMsgQueue.clear();
+            publishedInFlightMsgCounter.set(0);
+            receivedAckMsgInWrongOrderSet.clear();
         } finally {
             lock.unlock();
         }
+        flowControlService.removeFromMap(clientId);
+    }
+
+    @Override
+    public int getInFlightMsgCount() {
+        return publishedInFlightMsgQueueSize();
     }
 
-    public void sendDelayedMsg(MqttPublishMessage mqttPubMsg) {
-        clientSessionCtx.getChannel().writeAndFlush(mqttPubMsg);
+    @Override
+    public int getDelayedMsgCount() {
+        return delayedMsgQueueSize();
+    }
+
+    @Override
+    public boolean isInFlightWindowFull() {
+        return delayedMsgQueueSize() > 0 || !allowedToSendMsg();
     }
 
     private MqttPubMsgWithCreatedTime getDelayedMsg(MqttPublishMessage mqttPubMsg) {
@@ -209,6 +272,11 @@ public class PublishedInFlightCtxImpl implements PublishedInFlightCtx {
         delayedMsgQueue.add(getDelayedMsg(mqttPubMsg));
     }
 
+    private void pollDelayedMsg() {
+        delayedMsgQueue.poll();
+        delayedMsgCounter.decrementAndGet();
+    }
+
     private boolean addPublishedInFlightMsg(MqttPublishMessage mqttPubMsg) {
         publishedInFlightMsgCounter.incrementAndGet();
         return publishedInFlightMsgQueue.add(mqttPubMsg.variableHeader().packetId());
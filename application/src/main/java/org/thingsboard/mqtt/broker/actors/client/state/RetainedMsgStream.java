@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
+
+import java.util.Iterator;
+
+/**
+ * Retained messages of the single subscription that are still to be delivered to the client.
+ * Accessed only from the channel event loop, except for the cancellation.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RetainedMsgStream {
+
+    private final TopicSubscription topicSubscription;
+    private final Iterator<RetainedMsg> iterator;
+    private volatile boolean cancelled;
+
+    public String getTopicFilter() {
+        return topicSubscription.getTopicFilter();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+}
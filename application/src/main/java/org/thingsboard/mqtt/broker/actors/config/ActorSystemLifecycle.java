@@ -24,6 +24,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.actors.TbActorSystem;
 import org.thingsboard.mqtt.broker.actors.client.ClientActorConfiguration;
+import org.thingsboard.mqtt.broker.actors.client.ClientActorDispatcherType;
 import org.thingsboard.mqtt.broker.actors.device.DeviceActorConfiguration;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
@@ -33,7 +34,9 @@ import org.thingsboard.mqtt.broker.service.mqtt.client.event.ClientSessionEventS
 import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -59,7 +62,11 @@ public class ActorSystemLifecycle {
     @PostConstruct
     public void init() {
         actorSystem.createDispatcher(PERSISTED_DEVICE_DISPATCHER_NAME, initDispatcherExecutor(PERSISTED_DEVICE_DISPATCHER_NAME, deviceActorConfiguration.getDispatcherPoolSize()));
-        actorSystem.createDispatcher(CLIENT_DISPATCHER_NAME, initDispatcherExecutor(CLIENT_DISPATCHER_NAME, clientActorConfiguration.getDispatcherPoolSize()));
+        if (ClientActorDispatcherType.PINNED == clientActorConfiguration.getDispatcherType()) {
+            actorSystem.createPinnedDispatcher(CLIENT_DISPATCHER_NAME, initPinnedDispatcherExecutors(CLIENT_DISPATCHER_NAME, clientActorConfiguration.getDispatcherPoolSize()));
+        } else {
+            actorSystem.createDispatcher(CLIENT_DISPATCHER_NAME, initDispatcherExecutor(CLIENT_DISPATCHER_NAME, clientActorConfiguration.getDispatcherPoolSize()));
+        }
     }
 
     @PreDestroy
@@ -99,10 +106,7 @@ public class ActorSystemLifecycle {
     }
 
     private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
-        if (poolSize == 0) {
-            int cores = Runtime.getRuntime().availableProcessors();
-            poolSize = Math.max(1, cores / 2);
-        }
+        poolSize = getPoolSize(poolSize);
         if (poolSize == 1) {
             return Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherName));
         } else {
@@ -110,6 +114,23 @@ public class ActorSystemLifecycle {
         }
     }
 
+    private List<ExecutorService> initPinnedDispatcherExecutors(String dispatcherName, int poolSize) {
+        poolSize = getPoolSize(poolSize);
+        List<ExecutorService> executors = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            executors.add(Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherName + "-" + i)));
+        }
+        return executors;
+    }
+
+    private int getPoolSize(int poolSize) {
+        if (poolSize == 0) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return Math.max(1, cores / 2);
+        }
+        return poolSize;
+    }
+
     @AllArgsConstructor
     private static class DisconnectCallback implements TbQueueCallback {
 
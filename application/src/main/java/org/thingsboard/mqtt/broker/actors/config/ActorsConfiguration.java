@@ -32,10 +32,14 @@ public class ActorsConfiguration {
     private int maxActorInitAttempts;
     @Value("${actors.system.scheduler-pool-size:1}")
     private int schedulerPoolSize;
+    @Value("${actors.system.adaptive-throughput.enabled:false}")
+    private boolean adaptiveThroughput;
+    @Value("${actors.system.adaptive-throughput.max-throughput:256}")
+    private int maxActorThroughput;
 
     @Bean
     public TbActorSystemSettings actorSystemSettings() {
-        return new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
+        return new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts, adaptiveThroughput, maxActorThroughput);
     }
 
     @Bean(destroyMethod = "destroy")
@@ -26,5 +26,6 @@ public class DeviceActorConfiguration {
 
     private int dispatcherPoolSize;
     private int waitBeforeActorStopMinutes;
+    private int replayPageSize;
 
 }
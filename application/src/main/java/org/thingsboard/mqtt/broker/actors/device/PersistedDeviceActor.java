@@ -19,10 +19,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.device.messages.DeviceConnectedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.IncomingPublishMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.LoadPersistedMessagesPageCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedNoDeliveryEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMessagesPageLoadedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.StopDeviceActorCommandMsg;
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
@@ -51,7 +53,7 @@ public class PersistedDeviceActor extends ContextAwareActor {
         clientLogger.logEvent(clientId, this.getClass(), "Received msg - " + msg.getMsgType());
         switch (msg.getMsgType()) {
             case DEVICE_CONNECTED_EVENT_MSG:
-                processor.processDeviceConnect((DeviceConnectedEventMsg) msg);
+                processor.processDeviceConnect(ctx, (DeviceConnectedEventMsg) msg);
                 break;
             case DEVICE_DISCONNECTED_EVENT_MSG:
                 processor.processDeviceDisconnect(ctx);
@@ -74,6 +76,12 @@ public class PersistedDeviceActor extends ContextAwareActor {
             case PACKET_COMPLETED_EVENT_MSG:
                 processor.processPacketComplete((PacketCompletedEventMsg) msg);
                 break;
+            case PERSISTED_MESSAGES_PAGE_LOADED_EVENT_MSG:
+                processor.processPersistedMessagesPage((PersistedMessagesPageLoadedEventMsg) msg);
+                break;
+            case LOAD_PERSISTED_MESSAGES_PAGE_COMMAND_MSG:
+                processor.processLoadPersistedMessagesPage();
+                break;
             case STOP_DEVICE_ACTOR_COMMAND_MSG:
                 processor.processActorStop(ctx, (StopDeviceActorCommandMsg) msg);
                 break;
@@ -27,16 +27,19 @@ import org.thingsboard.mqtt.broker.actors.TbActorCtx;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.DeviceConnectedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.IncomingPublishMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.LoadPersistedMessagesPageCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedNoDeliveryEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMessagesPageLoadedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.StopDeviceActorCommandMsg;
 import org.thingsboard.mqtt.broker.actors.shared.AbstractContextAwareMsgProcessor;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.mqtt.MsgExpiryResult;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
+import org.thingsboard.mqtt.broker.dao.messages.DevicePublishMsgPage;
 import org.thingsboard.mqtt.broker.dto.PacketIdDto;
 import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
@@ -71,6 +74,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     private final Set<Integer> inFlightPacketIds = Sets.newConcurrentHashSet();
     private final ConcurrentMap<Integer, SharedSubscriptionPublishPacket> sentPacketIdsFromSharedSubscription = Maps.newConcurrentMap();
+    private final Set<Integer> replayInFlightPacketIds = Sets.newConcurrentHashSet();
 
     @Setter
     private volatile ClientSessionCtx sessionCtx;
@@ -78,6 +82,14 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
     private volatile long lastPersistedMsgSentPacketId = 0L;
     private volatile UUID stopActorCommandUUID;
 
+    // Paged replay state, accessed from the actor thread only except for the actor context
+    private volatile TbActorCtx replayActorCtx;
+    private UUID replaySessionId;
+    private long replayCursor;
+    private boolean replayHasNext;
+    private boolean replayPageLoading;
+    private boolean replayIncomingMsgSkipped;
+
     PersistedDeviceActorMessageProcessor(ActorSystemContext systemContext, String clientId) {
         super(systemContext);
         this.clientId = clientId;
@@ -89,12 +101,16 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         this.sharedSubscriptionCacheService = systemContext.getSharedSubscriptionCacheService();
     }
 
-    public void processDeviceConnect(DeviceConnectedEventMsg msg) {
+    public void processDeviceConnect(TbActorCtx actorCtx, DeviceConnectedEventMsg msg) {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Start processing persisted messages on Device connect", msg.getSessionCtx().getClientId());
         }
         this.sessionCtx = msg.getSessionCtx();
         this.stopActorCommandUUID = null;
+        if (deviceActorConfig.getReplayPageSize() > 0) {
+            startPagedReplay(actorCtx);
+            return;
+        }
         CompletionStage<List<DevicePublishMsg>> persistedMessagesFuture = deviceMsgService.findPersistedMessages(clientId);
         persistedMessagesFuture.whenComplete((persistedMessages, throwable) -> {
             if (throwable == null) {
@@ -106,6 +122,109 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         });
     }
 
+    private void startPagedReplay(TbActorCtx actorCtx) {
+        stopPagedReplay();
+        this.replayActorCtx = actorCtx;
+        this.replaySessionId = sessionCtx.getSessionId();
+        this.replayCursor = 0L;
+        this.replayHasNext = true;
+        loadNextPersistedMessagesPage();
+    }
+
+    private void loadNextPersistedMessagesPage() {
+        replayPageLoading = true;
+        UUID sessionId = replaySessionId;
+        TbActorCtx actorCtx = replayActorCtx;
+        deviceMsgService.findPersistedMessagesPage(clientId, replayCursor, deviceActorConfig.getReplayPageSize())
+                .whenComplete((page, throwable) -> {
+                    if (throwable == null) {
+                        actorCtx.tell(new PersistedMessagesPageLoadedEventMsg(sessionId, page));
+                        return;
+                    }
+                    ClientSessionCtx currentSessionCtx = sessionCtx;
+                    if (currentSessionCtx == null || !sessionId.equals(currentSessionCtx.getSessionId())) {
+                        return;
+                    }
+                    log.warn("[{}][{}] Failed to load persisted messages page.", clientId, sessionId, throwable);
+                    disconnect("Failed to process persisted messages");
+                });
+    }
+
+    public void processPersistedMessagesPage(PersistedMessagesPageLoadedEventMsg msg) {
+        if (!msg.getSessionId().equals(replaySessionId)) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Ignoring persisted messages page loaded for the previous session {}.", clientId, msg.getSessionId());
+            }
+            return;
+        }
+        DevicePublishMsgPage page = msg.getPage();
+        replayPageLoading = false;
+        replayCursor = page.nextCursor();
+        replayHasNext = page.hasNext();
+        try {
+            for (DevicePublishMsg persistedMessage : page.messages()) {
+                if (deliverPersistedMsg(persistedMessage)) {
+                    replayInFlightPacketIds.add(persistedMessage.getPacketId());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[{}][{}] Failed to process persisted messages.", clientId, replaySessionId, e);
+            stopPagedReplay();
+            disconnect("Failed to process persisted messages");
+            return;
+        }
+        if (!replayHasNext) {
+            if (!replayIncomingMsgSkipped) {
+                if (log.isTraceEnabled()) {
+                    log.trace("[{}] Finished replay of persisted messages.", clientId);
+                }
+                stopPagedReplay();
+                return;
+            }
+            // Messages that came in during the replay are persisted after the last loaded page, so load them as well
+            replayIncomingMsgSkipped = false;
+            replayHasNext = true;
+        }
+        loadNextPageIfInFlightWindowDrained();
+    }
+
+    private void onInFlightMsgRemoved(int packetId) {
+        if (!replayInFlightPacketIds.remove(packetId)) {
+            return;
+        }
+        TbActorCtx actorCtx = replayActorCtx;
+        if (actorCtx != null && replayInFlightPacketIds.size() <= deviceActorConfig.getReplayPageSize() / 2) {
+            actorCtx.tell(new LoadPersistedMessagesPageCommandMsg());
+        }
+    }
+
+    public void processLoadPersistedMessagesPage() {
+        loadNextPageIfInFlightWindowDrained();
+    }
+
+    private void loadNextPageIfInFlightWindowDrained() {
+        if (replaySessionId == null || !replayHasNext || replayPageLoading) {
+            return;
+        }
+        // Packet ids that were in-flight before the reconnect are not counted since they may never be acknowledged
+        if (replayInFlightPacketIds.size() <= deviceActorConfig.getReplayPageSize() / 2) {
+            loadNextPersistedMessagesPage();
+        }
+    }
+
+    private boolean isPagedReplayInProgress() {
+        return replaySessionId != null;
+    }
+
+    private void stopPagedReplay() {
+        this.replayActorCtx = null;
+        this.replaySessionId = null;
+        this.replayHasNext = false;
+        this.replayPageLoading = false;
+        this.replayIncomingMsgSkipped = false;
+        this.replayInFlightPacketIds.clear();
+    }
+
     // TODO: refactor to not use .toCompletableFuture().get(); for deviceMsgService APIs
     @SneakyThrows
     public void processingSharedSubscriptions(SharedSubscriptionEventMsg msg) {
@@ -162,12 +281,15 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
         return packetIdDto.getCurrentPacketId();
     }
 
-    void deliverPersistedMsg(DevicePublishMsg persistedMessage) {
+    /**
+     * @return true if the PUBLISH msg was sent to the client
+     */
+    boolean deliverPersistedMsg(DevicePublishMsg persistedMessage) {
         switch (persistedMessage.getPacketType()) {
             case PUBLISH:
                 MsgExpiryResult msgExpiryResult = MqttPropertiesUtil.getMsgExpiryResult(persistedMessage, System.currentTimeMillis());
                 if (msgExpiryResult.isExpired()) {
-                    return;
+                    return false;
                 }
                 // TODO: guaranty that DUP flag is correctly set even if Device Actor is dropped
                 boolean isDup = inFlightPacketIds.contains(persistedMessage.getPacketId());
@@ -179,17 +301,18 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                     MqttPropertiesUtil.addMsgExpiryIntervalToProps(persistedMessage.getProperties(), msgExpiryResult.getMsgExpiryInterval());
                 }
                 publishMsgDeliveryService.sendPublishMsgToClient(sessionCtx, persistedMessage, isDup);
-                break;
+                return true;
             case PUBREL:
                 publishMsgDeliveryService.sendPubRelMsgToClient(sessionCtx, persistedMessage.getPacketId());
-                break;
+                return false;
             default:
-                break;
+                return false;
         }
     }
 
     public void processDeviceDisconnect(TbActorCtx actorCtx) {
         this.sessionCtx = null;
+        stopPagedReplay();
         this.lastPersistedMsgSentPacketId = 0L;
         long delayMs = TimeUnit.MINUTES.toMillis(deviceActorConfig.getWaitBeforeActorStopMinutes());
         this.stopActorCommandUUID = UUID.randomUUID();
@@ -198,6 +321,11 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
 
     public void process(IncomingPublishMsg msg) {
         DevicePublishMsg publishMsg = msg.getPublishMsg();
+        if (isPagedReplayInProgress()) {
+            // The message is already persisted, it will be delivered in order with one of the next pages
+            replayIncomingMsgSkipped = true;
+            return;
+        }
         if (publishMsg.getPacketId() <= lastPersistedMsgSentPacketId) {
             if (log.isDebugEnabled()) {
                 log.debug("[{}] Message was already sent to client, ignoring message {}.", clientId, publishMsg.getPacketId());
@@ -240,6 +368,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                         return;
                     }
                     inFlightPacketIds.remove(msg.getPacketId());
+                    onInFlightMsgRemoved(msg.getPacketId());
                 });
     }
 
@@ -252,6 +381,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                 return;
             }
             inFlightPacketIds.remove(msg.getPacketId());
+            onInFlightMsgRemoved(msg.getPacketId());
             if (sessionCtx != null) {
                 publishMsgDeliveryService.sendPubRelMsgToClient(sessionCtx, msg.getPacketId());
             }
@@ -268,6 +398,7 @@ class PersistedDeviceActorMessageProcessor extends AbstractContextAwareMsgProces
                         return;
                     }
                     inFlightPacketIds.remove(msg.getPacketId());
+                    onInFlightMsgRemoved(msg.getPacketId());
                 });
     }
 
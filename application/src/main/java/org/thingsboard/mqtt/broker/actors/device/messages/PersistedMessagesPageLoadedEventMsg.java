@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.device.messages;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.thingsboard.mqtt.broker.actors.msg.MsgType;
+import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
+import org.thingsboard.mqtt.broker.dao.messages.DevicePublishMsgPage;
+
+import java.util.UUID;
+
+@Getter
+@RequiredArgsConstructor
+public class PersistedMessagesPageLoadedEventMsg implements TbActorMsg {
+
+    private final UUID sessionId;
+    private final DevicePublishMsgPage page;
+
+    @Override
+    public MsgType getMsgType() {
+        return MsgType.PERSISTED_MESSAGES_PAGE_LOADED_EVENT_MSG;
+    }
+}
@@ -82,6 +82,9 @@ public class ThingsboardMqttBrokerInstallService {
                         log.info("Upgrading TBMQ from version 2.0.0 to 2.0.1 ...");
                         databaseEntitiesUpgradeService.upgradeDatabase("2.0.0");
                         dataUpdateService.updateData("2.0.0");
+                    case "2.0.1":
+                        log.info("Upgrading TBMQ from version 2.0.1 to 2.1.0 ...");
+                        databaseEntitiesUpgradeService.upgradeDatabase("2.0.1");
                         break;
                     default:
                         throw new RuntimeException("Unable to upgrade TBMQ, unsupported fromVersion: " + upgradeFromVersion);
@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.init;
+
+import com.google.protobuf.GeneratedMessageV3;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+
+import java.util.Map;
+
+@FunctionalInterface
+public interface InitLoadMsgHandler<T extends GeneratedMessageV3, V> {
+
+    /**
+     * Puts the decoded value of the msg key into the changes, or null if the key was cleared.
+     * Ignored messages leave the changes untouched.
+     */
+    void handle(TbProtoQueueMsg<T> msg, Map<String, V> changes);
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.init;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+class InitLoadProgress {
+
+    private final String name;
+    private final long total;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder loaded = new LongAdder();
+
+    InitLoadProgress(String name, long total) {
+        this.name = name;
+        this.total = total;
+    }
+
+    void add(int count) {
+        loaded.add(count);
+    }
+
+    long getLoaded() {
+        return loaded.sum();
+    }
+
+    long getElapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    long getRate() {
+        long elapsedMs = getElapsedMs();
+        return elapsedMs == 0 ? 0 : getLoaded() * 1000 / elapsedMs;
+    }
+
+    /**
+     * @return estimated seconds left or -1 if nothing was loaded yet. The total is estimated from the offsets,
+     * so it also counts records already removed by the compaction and the estimation is an upper bound.
+     */
+    long getEtaSeconds() {
+        long rate = getRate();
+        if (rate == 0) {
+            return -1;
+        }
+        return Math.max(0, total - getLoaded()) / rate;
+    }
+
+    void report() {
+        log.info("[{}] Initial load progress: {}/{} records, {} records/s, ETA {}s",
+                name, getLoaded(), total, getRate(), getEtaSeconds());
+    }
+
+}
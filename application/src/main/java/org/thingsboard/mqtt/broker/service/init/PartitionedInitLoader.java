@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.init;
+
+import com.google.protobuf.GeneratedMessageV3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Loads the whole state of a compacted topic with one consumer per partition running in parallel.
+ * Every partition is read up to the end offset it had when the load started and builds its own map of changes,
+ * the maps are merged afterward without any conflicts since a key always belongs to a single partition.
+ */
+@Slf4j
+@Component
+public class PartitionedInitLoader {
+
+    @Value("${queue.init-load.max-threads:0}")
+    private int maxThreads;
+    @Value("${queue.init-load.progress-report-interval-ms:5000}")
+    private long progressReportIntervalMs;
+
+    /**
+     * @param consumer                 main consumer of the topic, positioned right after the loaded messages when the method returns
+     * @param partitionConsumerFactory creates a short-living consumer to load a single partition
+     * @param startOffsets             offsets to start reading partitions from, e.g. restored from a snapshot.
+     *                                 Partitions missing here are read from the beginning
+     * @param target                   map the loaded changes are applied to
+     * @return offsets the topic was loaded up to
+     */
+    public <T extends GeneratedMessageV3, V> Map<Integer, Long> load(String name, long pollDuration,
+                                                                     TbQueueControlledOffsetConsumer<TbProtoQueueMsg<T>> consumer,
+                                                                     IntFunction<TbQueueControlledOffsetConsumer<TbProtoQueueMsg<T>>> partitionConsumerFactory,
+                                                                     Map<Integer, Long> startOffsets,
+                                                                     InitLoadMsgHandler<T, V> handler,
+                                                                     Map<String, V> target) {
+        int partitions = getPartitionsCount(consumer);
+        Map<Integer, Long> endOffsets = new HashMap<>(partitions);
+        long total = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            long endOffset = consumer.getEndOffset(consumer.getTopic(), partition);
+            endOffsets.put(partition, endOffset);
+            total += Math.max(0, endOffset - startOffsets.getOrDefault(partition, 0L));
+        }
+        log.info("[{}] Starting initial load of {} partitions, up to {} records to read.", name, partitions, total);
+
+        InitLoadProgress progress = new InitLoadProgress(name, total);
+        ExecutorService executor = ThingsBoardExecutors.initExecutorService(getThreadsCount(partitions), name + "-init-load");
+        ScheduledExecutorService progressReporter = ThingsBoardExecutors.initScheduledExecutorService(1, name + "-init-load-progress");
+        if (progressReportIntervalMs > 0) {
+            progressReporter.scheduleAtFixedRate(progress::report, progressReportIntervalMs, progressReportIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        try {
+            List<Future<Map<String, V>>> futures = new ArrayList<>(partitions);
+            for (int partition = 0; partition < partitions; partition++) {
+                int p = partition;
+                futures.add(executor.submit(() -> loadPartition(p, startOffsets.get(p), endOffsets.get(p), pollDuration,
+                        partitionConsumerFactory, handler, progress)));
+            }
+            for (Future<Map<String, V>> future : futures) {
+                merge(future.get(), target);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Initial load of " + name + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed initial load of " + name, e.getCause());
+        } finally {
+            progressReporter.shutdownNow();
+            executor.shutdownNow();
+        }
+        log.info("[{}] Finished initial load of {} records within {} ms, {} records/s.",
+                name, progress.getLoaded(), progress.getElapsedMs(), progress.getRate());
+
+        consumer.assignAllPartitions();
+        endOffsets.forEach(consumer::seek);
+        return endOffsets;
+    }
+
+    <T extends GeneratedMessageV3, V> Map<String, V> loadPartition(int partition, Long startOffset, long endOffset, long pollDuration,
+                                                                   IntFunction<TbQueueControlledOffsetConsumer<TbProtoQueueMsg<T>>> partitionConsumerFactory,
+                                                                   InitLoadMsgHandler<T, V> handler, InitLoadProgress progress) {
+        Map<String, V> changes = new HashMap<>();
+        long position = startOffset != null ? startOffset : 0;
+        if (position >= endOffset) {
+            return changes;
+        }
+        TbQueueControlledOffsetConsumer<TbProtoQueueMsg<T>> partitionConsumer = partitionConsumerFactory.apply(partition);
+        try {
+            partitionConsumer.assignPartition(partition);
+            if (startOffset != null) {
+                partitionConsumer.seek(partition, startOffset);
+            }
+            while (position < endOffset && !Thread.currentThread().isInterrupted()) {
+                List<TbProtoQueueMsg<T>> messages = partitionConsumer.poll(pollDuration);
+                int loaded = 0;
+                for (TbProtoQueueMsg<T> msg : messages) {
+                    if (msg.getOffset() >= endOffset) {
+                        // newer messages are read by the main consumer afterward
+                        position = endOffset;
+                        break;
+                    }
+                    handler.handle(msg, changes);
+                    position = msg.getOffset() + 1;
+                    loaded++;
+                }
+                progress.add(loaded);
+            }
+        } finally {
+            partitionConsumer.unsubscribeAndClose();
+        }
+        return changes;
+    }
+
+    private <V> void merge(Map<String, V> changes, Map<String, V> target) {
+        changes.forEach((key, value) -> {
+            if (value == null) {
+                target.remove(key);
+            } else {
+                target.put(key, value);
+            }
+        });
+    }
+
+    private int getPartitionsCount(TbQueueControlledOffsetConsumer<?> consumer) {
+        String configuredPartitions = consumer.getTopicConfigs().get(QueueConstants.PARTITIONS);
+        return configuredPartitions != null ? Integer.parseInt(configuredPartitions) : 1;
+    }
+
+    private int getThreadsCount(int partitions) {
+        int threads = maxThreads > 0 ? maxThreads : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(partitions, threads));
+    }
+
+}
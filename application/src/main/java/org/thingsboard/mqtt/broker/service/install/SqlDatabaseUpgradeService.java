@@ -201,6 +201,9 @@ public class SqlDatabaseUpgradeService implements DatabaseEntitiesUpgradeService
 
                 });
                 break;
+            case "2.0.1":
+                updateSchema("2.0.1", 2000001, "2.1.0", 2001000);
+                break;
             default:
                 throw new RuntimeException("Unable to upgrade SQL database, unsupported fromVersion: " + fromVersion);
         }
@@ -217,19 +217,37 @@ public class DefaultMqttMessageCreator implements MqttMessageGenerator {
         return getMqttPublishMessage(false, qos, retain, topicName, packetId, msg.getPayload().toByteArray(), properties);
     }
 
+    @Override
+    public MqttPublishMessage createPubMsg(ByteBuf payload, int qos, boolean retain, String topicName, int packetId, MqttProperties properties) {
+        return getMqttPublishMessage(false, qos, retain, topicName, packetId, payload, properties);
+    }
+
     @Override
     public MqttPublishMessage createPubRetainMsg(int msgId, RetainedMsg retainedMsg) {
+        if (retainedMsg.isOffHeap()) {
+            ByteBuf payload = retainedMsg.getRetainedPayloadSlice();
+            if (payload == null) {
+                return null;
+            }
+            return getMqttPublishMessage(false, retainedMsg.getQos(), true,
+                    retainedMsg.getTopic(), msgId, payload, retainedMsg.getProperties());
+        }
         return getMqttPublishMessage(false, retainedMsg.getQos(), true,
                 retainedMsg.getTopic(), msgId, retainedMsg.getPayload(), retainedMsg.getProperties());
     }
 
     private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
                                                      String topic, int packetId, byte[] payloadBytes, MqttProperties properties) {
+        ByteBuf payload = ALLOCATOR.buffer();
+        payload.writeBytes(payloadBytes);
+        return getMqttPublishMessage(isDup, qos, isRetain, topic, packetId, payload, properties);
+    }
+
+    private MqttPublishMessage getMqttPublishMessage(boolean isDup, int qos, boolean isRetain,
+                                                     String topic, int packetId, ByteBuf payload, MqttProperties properties) {
         MqttFixedHeader mqttFixedHeader =
                 new MqttFixedHeader(MqttMessageType.PUBLISH, isDup, MqttQoS.valueOf(qos), isRetain, 0);
         MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, packetId, properties);
-        ByteBuf payload = ALLOCATOR.buffer();
-        payload.writeBytes(payloadBytes);
         return new MqttPublishMessage(mqttFixedHeader, header, payload);
     }
 
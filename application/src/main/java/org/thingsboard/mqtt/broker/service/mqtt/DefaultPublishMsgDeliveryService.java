@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
@@ -84,6 +85,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg, isDup);
+        deliveryTimerStats.logPayloadAllocation(pubMsg.getPayload().length);
         tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
         tbMessageStatsReportClient.reportClientReceiveStats(sessionCtx.getClientId(), pubMsg.getQos());
         sendPublishMsgToClient(sessionCtx, mqttPubMsg, persistentWriteAndFlush, persistentBufferedMsgCount);
@@ -91,18 +93,18 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
 
     @Override
     public void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg) {
-        sendPublishMsgProtoToClient(sessionCtx, msg, msg.getQos(), msg.getRetain(), null);
+        sendPublishMsgProtoToClient(sessionCtx, msg, msg.getQos(), msg.getRetain(), null, null);
     }
 
     @Override
-    public void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg, Subscription subscription) {
+    public void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg, Subscription subscription, ByteBuf sharedPayload) {
         int qos = MqttQosUtil.downgradeQos(subscription, msg);
         boolean retain = subscription.getOptions().isRetain(msg.getRetain());
-        sendPublishMsgProtoToClient(sessionCtx, msg, qos, retain, subscription.getSubscriptionIds());
+        sendPublishMsgProtoToClient(sessionCtx, msg, qos, retain, subscription.getSubscriptionIds(), sharedPayload);
     }
 
     private void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto msg, int qos, boolean retain,
-                                             List<Integer> subscriptionIds) {
+                                             List<Integer> subscriptionIds, ByteBuf sharedPayload) {
         if (isTraceEnabled) {
             log.trace("[{}] Executing sendPublishMsgProtoToClient [{}][{}][{}]", sessionCtx.getClientId(), msg, qos, retain);
         }
@@ -120,7 +122,14 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
 
         String topicName = topicAliasResult == null ? msg.getTopicName() : topicAliasResult.getTopicName();
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
-        MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(msg, qos, retain, topicName, packetId, properties);
+        MqttPublishMessage mqttPubMsg;
+        if (sharedPayload != null) {
+            mqttPubMsg = mqttMessageGenerator.createPubMsg(sharedPayload.retainedDuplicate(), qos, retain, topicName, packetId, properties);
+            deliveryTimerStats.logSharedPayloadDuplicate();
+        } else {
+            mqttPubMsg = mqttMessageGenerator.createPubMsg(msg, qos, retain, topicName, packetId, properties);
+            deliveryTimerStats.logPayloadAllocation(msg.getPayload().size());
+        }
 
         tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
         tbMessageStatsReportClient.reportClientReceiveStats(sessionCtx.getClientId(), qos);
@@ -134,6 +143,7 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         pubMsg = sessionCtx.getTopicAliasCtx().createPublishMsgUsingTopicAlias(pubMsg, minTopicNameLengthForAliasReplacement);
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubMsg(pubMsg);
+        deliveryTimerStats.logPayloadAllocation(pubMsg.getPayload().length);
         tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
         tbMessageStatsReportClient.reportClientReceiveStats(sessionCtx.getClientId(), pubMsg.getQos());
         sendPublishMsgWithoutFlushToClient(sessionCtx, mqttPubMsg);
@@ -146,6 +156,13 @@ public class DefaultPublishMsgDeliveryService implements PublishMsgDeliveryServi
         }
         int packetId = sessionCtx.getMsgIdSeq().nextMsgId();
         MqttPublishMessage mqttPubMsg = mqttMessageGenerator.createPubRetainMsg(packetId, retainedMsg);
+        if (mqttPubMsg == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Retained msg for topic {} was replaced before delivery, skipping it", sessionCtx.getClientId(), retainedMsg.getTopic());
+            }
+            return;
+        }
+        deliveryTimerStats.logPayloadAllocation(retainedMsg.getPayloadSize());
         tbMessageStatsReportClient.reportStats(OUTGOING_MSGS);
         tbMessageStatsReportClient.reportClientReceiveStats(sessionCtx.getClientId(), retainedMsg.getQos());
         sendPublishMsgToClient(sessionCtx, mqttPubMsg);
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttConnAckMessage;
 import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
 import io.netty.handler.codec.mqtt.MqttMessage;
@@ -55,6 +56,11 @@ public interface MqttMessageGenerator {
 
     MqttPublishMessage createPubMsg(PublishMsgProto publishMsgProto, int qos, boolean retain, String topicName, int packetId, MqttProperties properties);
 
+    MqttPublishMessage createPubMsg(ByteBuf payload, int qos, boolean retain, String topicName, int packetId, MqttProperties properties);
+
+    /**
+     * @return null if the msg is kept off-heap and its payload was already freed since the msg was replaced or cleared
+     */
     MqttPublishMessage createPubRetainMsg(int msgId, RetainedMsg retainedMsg);
 
     MqttMessage createPingRespMsg();
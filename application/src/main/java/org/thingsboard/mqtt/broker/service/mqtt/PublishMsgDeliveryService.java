@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt;
 
+import io.netty.buffer.ByteBuf;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
@@ -27,7 +28,11 @@ public interface PublishMsgDeliveryService {
 
     void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto publishMsgProto);
 
-    void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto publishMsgProto, Subscription subscription);
+    /**
+     * @param sharedPayload payload of the msg shared by all local subscribers. The PUBLISH msg gets a retained duplicate of it.
+     *                      If null, the payload is copied from the msg
+     */
+    void sendPublishMsgProtoToClient(ClientSessionCtx sessionCtx, PublishMsgProto publishMsgProto, Subscription subscription, ByteBuf sharedPayload);
 
     void sendPublishMsgToClientWithoutFlush(ClientSessionCtx sessionCtx, PublishMsg publishMsg);
 
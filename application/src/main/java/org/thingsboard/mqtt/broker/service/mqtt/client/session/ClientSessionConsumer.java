@@ -26,4 +26,9 @@ public interface ClientSessionConsumer {
 
     void listen(ClientSessionChangesCallback callback);
 
+    /**
+     * Next offsets to read per partition, i.e. the topic position this consumer is up-to-date with.
+     */
+    Map<Integer, Long> getProcessedOffsets();
+
 }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.client.session;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
@@ -34,12 +35,19 @@ import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.provider.ClientSessionQueueFactory;
+import org.thingsboard.mqtt.broker.service.init.PartitionedInitLoader;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotEntry;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotStorage;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotType;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,11 +60,14 @@ import static org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory.getClien
 public class ClientSessionConsumerImpl implements ClientSessionConsumer {
 
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("client-session-listener"));
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
 
     private final ClientSessionQueueFactory clientSessionQueueFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final ClientSessionPersistenceService persistenceService;
     private final TbQueueAdmin queueAdmin;
+    private final BrokerSnapshotStorage snapshotStorage;
+    private final PartitionedInitLoader initLoader;
 
     @Value("${queue.client-session.poll-interval}")
     private long pollDuration;
@@ -65,64 +76,37 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
     private volatile boolean stopped = false;
 
     private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<ClientSessionInfoProto>> clientSessionConsumer;
+    private String consumerGroupId;
 
     @PostConstruct
     public void init() {
         long currentCgSuffix = System.currentTimeMillis();
-        String uniqueConsumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
-        this.clientSessionConsumer = clientSessionQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), uniqueConsumerGroupId);
+        this.consumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
+        this.clientSessionConsumer = clientSessionQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), consumerGroupId);
         queueAdmin.deleteOldConsumerGroups(BrokerConstants.CLIENT_SESSION_CG_PREFIX, serviceInfoProvider.getServiceId(), currentCgSuffix);
     }
 
     @Override
     public Map<String, ClientSessionInfo> initLoad() throws QueuePersistenceException {
         log.debug("Starting client sessions initLoad");
-        long startTime = System.nanoTime();
-        long totalMessageCount = 0L;
-
+        // the topic gets created on the first write, so it surely exists when its end offsets are requested
         String dummySessionClientId = persistDummySession();
-        clientSessionConsumer.assignOrSubscribe();
 
-        List<TbProtoQueueMsg<ClientSessionInfoProto>> messages;
-        boolean encounteredDummySession = false;
         Map<String, ClientSessionInfo> allClientSessions = new HashMap<>();
-        do {
-            try {
-                messages = clientSessionConsumer.poll(pollDuration);
-                int packSize = messages.size();
-                log.debug("Read {} client session messages from single poll", packSize);
-                totalMessageCount += packSize;
-                for (TbProtoQueueMsg<ClientSessionInfoProto> msg : messages) {
-                    String clientId = msg.getKey();
-                    if (isClientSessionInfoProtoEmpty(msg.getValue())) {
-                        // this means Kafka log compaction service haven't cleared empty message yet
-                        log.trace("[{}] Encountered empty ClientSessionInfo.", clientId);
-                        allClientSessions.remove(clientId);
-                    } else {
-                        ClientSessionInfo clientSession = ProtoConverter.convertToClientSessionInfo(msg.getValue());
-                        if (dummySessionClientId.equals(clientId)) {
-                            encounteredDummySession = true;
-                        } else {
-                            allClientSessions.put(clientId, clientSession);
-                        }
-                    }
-                }
-                clientSessionConsumer.commitSync();
-            } catch (Exception e) {
-                log.error("Failed to load client sessions.", e);
-                throw e;
-            }
-        } while (!stopped && !encounteredDummySession);
+        Map<Integer, Long> startOffsets = restoreFromSnapshot(allClientSessions);
+        try {
+            Map<Integer, Long> loadedOffsets = initLoader.load("client-sessions", pollDuration, clientSessionConsumer, this::createPartitionConsumer,
+                    startOffsets, (msg, changes) -> handleInitLoadMsg(dummySessionClientId, msg, changes), allClientSessions);
+            processedOffsets.putAll(loadedOffsets);
+        } catch (Exception e) {
+            log.error("Failed to load client sessions.", e);
+            throw e;
+        }
 
         clearDummySession(dummySessionClientId);
 
         initializing = false;
 
-        if (log.isDebugEnabled()) {
-            long endTime = System.nanoTime();
-            log.debug("Finished client session messages initLoad for {} messages within time: {} nanos", totalMessageCount, endTime - startTime);
-        }
-
         return allClientSessions;
     }
 
@@ -148,6 +132,7 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
                             callback.accept(clientId, serviceId, clientSession);
                         }
                     }
+                    updateProcessedOffsets(messages);
                     clientSessionConsumer.commitSync();
                 } catch (Exception e) {
                     if (!stopped) {
@@ -166,6 +151,54 @@ public class ClientSessionConsumerImpl implements ClientSessionConsumer {
 
     }
 
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
+    private Map<Integer, Long> restoreFromSnapshot(Map<String, ClientSessionInfo> allClientSessions) {
+        Optional<BrokerSnapshot> snapshot = snapshotStorage.read(BrokerSnapshotType.CLIENT_SESSIONS);
+        if (snapshot.isEmpty() || !snapshotStorage.validateOffsets(snapshot.get(), clientSessionConsumer)) {
+            return Collections.emptyMap();
+        }
+        try {
+            for (BrokerSnapshotEntry entry : snapshot.get().getEntries()) {
+                ClientSessionInfoProto clientSessionInfoProto = ClientSessionInfoProto.parseFrom(entry.getValue());
+                allClientSessions.put(entry.getKey(), ProtoConverter.convertToClientSessionInfo(clientSessionInfoProto));
+            }
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Failed to decode client sessions snapshot.", e);
+            allClientSessions.clear();
+            return Collections.emptyMap();
+        }
+        log.info("Restored {} client sessions from snapshot.", allClientSessions.size());
+        return snapshot.get().getOffsets();
+    }
+
+    private void handleInitLoadMsg(String dummySessionClientId, TbProtoQueueMsg<ClientSessionInfoProto> msg, Map<String, ClientSessionInfo> changes) {
+        String clientId = msg.getKey();
+        if (dummySessionClientId.equals(clientId)) {
+            return;
+        }
+        if (isClientSessionInfoProtoEmpty(msg.getValue())) {
+            // this means Kafka log compaction service haven't cleared empty message yet
+            log.trace("[{}] Encountered empty ClientSessionInfo.", clientId);
+            changes.put(clientId, null);
+        } else {
+            changes.put(clientId, ProtoConverter.convertToClientSessionInfo(msg.getValue()));
+        }
+    }
+
+    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<ClientSessionInfoProto>> createPartitionConsumer(int partition) {
+        return clientSessionQueueFactory.createConsumer(serviceInfoProvider.getServiceId() + "-init-load-" + partition, consumerGroupId);
+    }
+
+    private void updateProcessedOffsets(List<TbProtoQueueMsg<ClientSessionInfoProto>> messages) {
+        for (TbProtoQueueMsg<ClientSessionInfoProto> msg : messages) {
+            processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
+        }
+    }
+
     private String persistDummySession() throws QueuePersistenceException {
         String dummyClientId = UUID.randomUUID().toString();
         ClientSessionInfo dummyClientSessionInfo = getClientSessionInfo(dummyClientId, serviceInfoProvider.getServiceId(), false);
@@ -23,4 +23,6 @@ public interface FlowControlService {
 
     void removeFromMap(String clientId);
 
+    void submitDelayedMsgsProcessing(String clientId);
+
 }
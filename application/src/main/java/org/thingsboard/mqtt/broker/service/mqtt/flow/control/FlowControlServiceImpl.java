@@ -18,24 +18,34 @@ package org.thingsboard.mqtt.broker.service.mqtt.flow.control;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.service.stats.FlowControlStats;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Delivers delayed messages on demand: an ack that frees a slot in the client's in-flight window submits
+ * the draining of its delayed queue. The periodic task only expires messages by TTL and re-submits clients
+ * in case a notification was missed.
+ */
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class FlowControlServiceImpl implements FlowControlService {
 
-    private static final int PARALLELISM = 1;
+    private final StatsManager statsManager;
 
     @Setter
     @Value("${mqtt.flow-control.enabled:true}")
@@ -45,14 +55,20 @@ public class FlowControlServiceImpl implements FlowControlService {
     private int timeout;
     @Value("${mqtt.flow-control.ttl:600}")
     private int ttlSecs;
+    @Value("${mqtt.flow-control.threads:1}")
+    private int threads;
 
     @Getter
     @Setter
     private ConcurrentMap<String, PublishedInFlightCtx> clientsWithDelayedMsgMap;
+    private final Set<String> submittedClients = ConcurrentHashMap.newKeySet();
     @Setter
     private ExecutorService service;
+    @Setter
+    private ScheduledExecutorService scheduler;
+    @Setter
+    private FlowControlStats flowControlStats;
     private long ttlMs;
-    private volatile boolean stopped = false;
 
     @PostConstruct
     public void init() {
@@ -61,45 +77,10 @@ public class FlowControlServiceImpl implements FlowControlService {
         }
         clientsWithDelayedMsgMap = new ConcurrentHashMap<>();
         ttlMs = TimeUnit.SECONDS.toMillis(ttlSecs);
-        service = ThingsBoardExecutors.initExecutorService(PARALLELISM, "flow-control-executor");
-        launchProcessing();
-    }
-
-    void launchProcessing() {
-        service.submit(() -> {
-            while (!stopped) {
-                try {
-                    if (clientsWithDelayedMsgMap.isEmpty()) {
-                        sleep();
-                        continue;
-                    }
-                    boolean atLeastOneMsgProcessed = false;
-                    for (Map.Entry<String, PublishedInFlightCtx> entry : clientsWithDelayedMsgMap.entrySet()) {
-                        boolean isMessageProcessed = entry.getValue().processMsg(ttlMs);
-                        if (isMessageProcessed) {
-                            atLeastOneMsgProcessed = true;
-                        }
-                    }
-                    if (!atLeastOneMsgProcessed) {
-                        sleep();
-                    }
-                } catch (Exception e) {
-                    if (e instanceof InterruptedException) {
-                        log.info("Flow control processing was interrupted");
-                        break;
-                    }
-                    if (!stopped) {
-                        log.error("Failed to process msg", e);
-                        try {
-                            sleep();
-                        } catch (InterruptedException e2) {
-                            log.info("Thread was interrupted!");
-                            break;
-                        }
-                    }
-                }
-            }
-        });
+        flowControlStats = statsManager.createFlowControlStats(clientsWithDelayedMsgMap);
+        service = ThingsBoardExecutors.initExecutorService(threads, "flow-control-executor");
+        scheduler = ThingsBoardExecutors.initScheduledExecutorService(1, "flow-control-scheduler");
+        scheduler.scheduleWithFixedDelay(this::submitAllDelayedMsgsProcessing, timeout, timeout, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -116,13 +97,52 @@ public class FlowControlServiceImpl implements FlowControlService {
         }
     }
 
-    void sleep() throws InterruptedException {
-        Thread.sleep(timeout);
+    @Override
+    public void submitDelayedMsgsProcessing(String clientId) {
+        if (!flowControlEnabled || clientId == null || !clientsWithDelayedMsgMap.containsKey(clientId)) {
+            return;
+        }
+        // one pending task per client is enough, it drains everything the window allows at the moment it runs
+        if (submittedClients.add(clientId)) {
+            try {
+                service.execute(() -> processDelayedMsgs(clientId));
+            } catch (Exception e) {
+                submittedClients.remove(clientId);
+                log.warn("[{}] Failed to submit delayed messages processing", clientId, e);
+            }
+        }
+    }
+
+    void submitAllDelayedMsgsProcessing() {
+        try {
+            clientsWithDelayedMsgMap.keySet().forEach(this::submitDelayedMsgsProcessing);
+        } catch (Exception e) {
+            log.error("Failed to submit delayed messages processing", e);
+        }
+    }
+
+    void processDelayedMsgs(String clientId) {
+        // cleared before processing, so an ack arriving meanwhile submits one more pass instead of being lost
+        submittedClients.remove(clientId);
+        PublishedInFlightCtx ctx = clientsWithDelayedMsgMap.get(clientId);
+        if (ctx == null) {
+            return;
+        }
+        try {
+            int sentMsgCount = ctx.processDelayedMsgs(ttlMs, flowControlStats);
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] Sent {} delayed messages", clientId, sentMsgCount);
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to process delayed messages", clientId, e);
+        }
     }
 
     @PreDestroy
     public void destroy() {
-        stopped = true;
+        if (scheduler != null) {
+            ThingsBoardExecutors.shutdownAndAwaitTermination(scheduler, "Flow control scheduler");
+        }
         if (service != null) {
             ThingsBoardExecutors.shutdownAndAwaitTermination(service, "Flow control");
         }
@@ -18,7 +18,9 @@ package org.thingsboard.mqtt.broker.service.mqtt.keepalive;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttDisconnectMsg;
@@ -27,50 +29,125 @@ import org.thingsboard.mqtt.broker.session.ClientMqttActorManager;
 import org.thingsboard.mqtt.broker.session.DisconnectReason;
 import org.thingsboard.mqtt.broker.session.DisconnectReasonType;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Tracks keep-alive deadlines on a hashed timing wheel with one bucket per monitoring tick, so every run examines
+ * only the sessions whose deadline falls into the elapsed ticks instead of scanning all connected sessions.
+ * <p>
+ * Control packets only refresh the last packet time; the session is moved to its new bucket lazily, when its old
+ * bucket expires. Deadlines further away than one wheel rotation are re-checked and re-bucketed the same way.
+ * The wheel is touched only by the monitoring thread, new sessions are handed over to it through a queue.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class KeepAliveServiceImpl implements KeepAliveService {
 
     private static final int CLEARED_KEEP_ALIVE_VALUE = -1;
+    // must be a power of two, covers the default max keep-alive (600s * 1.5) with the default tick of 1 second
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
 
     private final Map<UUID, KeepAliveInfo> keepAliveInfoMap = new ConcurrentHashMap<>();
+    private final Queue<KeepAliveInfo> newSessions = new ConcurrentLinkedQueue<>();
+    private final List<Queue<KeepAliveInfo>> wheel = newWheel();
+    private long processedTick = -1;
 
     private final ClientMqttActorManager clientMqttActorManager;
 
+    @Setter
+    @Value("${mqtt.keep-alive.monitoring-delay-ms:1000}")
+    private long tickMs = 1000;
+
     @Scheduled(fixedRateString = "${mqtt.keep-alive.monitoring-delay-ms}")
     void processKeepAlive() {
-        for (Map.Entry<UUID, KeepAliveInfo> entry : keepAliveInfoMap.entrySet()) {
-            UUID sessionId = entry.getKey();
-            KeepAliveInfo keepAliveInfo = entry.getValue();
-            long lastPacketTime = keepAliveInfo.getLastPacketTime().get();
-            if (isInactive(keepAliveInfo.getKeepAliveSeconds(), lastPacketTime)
-                    && keepAliveInfo.getLastPacketTime().compareAndSet(lastPacketTime, CLEARED_KEEP_ALIVE_VALUE)) {
-                keepAliveInfoMap.remove(sessionId);
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}][{}] Closing session for inactivity, last active time - {}, keep alive seconds - {}",
-                            keepAliveInfo.getClientId(), sessionId, lastPacketTime, keepAliveInfo.getKeepAliveSeconds());
-                }
-                clientMqttActorManager.disconnect(keepAliveInfo.getClientId(), new MqttDisconnectMsg(sessionId,
-                        new DisconnectReason(DisconnectReasonType.ON_KEEP_ALIVE, "Client was inactive too long")));
+        processKeepAlive(System.currentTimeMillis());
+    }
+
+    void processKeepAlive(long now) {
+        long nowTick = now / tickMs;
+        if (processedTick < 0) {
+            processedTick = nowTick - 1;
+        }
+        KeepAliveInfo newSession;
+        while ((newSession = newSessions.poll()) != null) {
+            schedule(newSession, processedTick + 1);
+        }
+        // after a pause longer than one rotation every bucket is due, so one pass over the wheel is enough
+        long fromTick = Math.max(processedTick + 1, nowTick - WHEEL_MASK);
+        for (long tick = fromTick; tick <= nowTick; tick++) {
+            int bucketIdx = (int) (tick & WHEEL_MASK);
+            Queue<KeepAliveInfo> bucket = wheel.get(bucketIdx);
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            wheel.set(bucketIdx, new ArrayDeque<>());
+            for (KeepAliveInfo keepAliveInfo : bucket) {
+                processExpiredEntry(keepAliveInfo, now, nowTick);
+            }
+        }
+        processedTick = nowTick;
+    }
+
+    private void processExpiredEntry(KeepAliveInfo keepAliveInfo, long now, long nowTick) {
+        long lastPacketTime = keepAliveInfo.getLastPacketTime().get();
+        if (lastPacketTime == CLEARED_KEEP_ALIVE_VALUE) {
+            // session is unregistered or replaced, drop it from the wheel
+            return;
+        }
+        if (!isInactive(keepAliveInfo.getKeepAliveSeconds(), lastPacketTime, now)) {
+            schedule(keepAliveInfo, nowTick + 1);
+            return;
+        }
+        if (keepAliveInfo.getLastPacketTime().compareAndSet(lastPacketTime, CLEARED_KEEP_ALIVE_VALUE)) {
+            UUID sessionId = keepAliveInfo.getSessionId();
+            keepAliveInfoMap.remove(sessionId, keepAliveInfo);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] Closing session for inactivity, last active time - {}, keep alive seconds - {}",
+                        keepAliveInfo.getClientId(), sessionId, lastPacketTime, keepAliveInfo.getKeepAliveSeconds());
             }
+            clientMqttActorManager.disconnect(keepAliveInfo.getClientId(), new MqttDisconnectMsg(sessionId,
+                    new DisconnectReason(DisconnectReasonType.ON_KEEP_ALIVE, "Client was inactive too long")));
+        } else {
+            // control packet arrived in the meantime
+            schedule(keepAliveInfo, nowTick + 1);
         }
     }
 
+    private void schedule(KeepAliveInfo keepAliveInfo, long minTick) {
+        long lastPacketTime = keepAliveInfo.getLastPacketTime().get();
+        if (lastPacketTime == CLEARED_KEEP_ALIVE_VALUE) {
+            return;
+        }
+        long deadline = lastPacketTime + getActualKeepAliveMs(keepAliveInfo.getKeepAliveSeconds());
+        long deadlineTick = Math.max(Math.floorDiv(deadline + tickMs - 1, tickMs), minTick);
+        wheel.get((int) (deadlineTick & WHEEL_MASK)).add(keepAliveInfo);
+    }
+
     boolean isInactive(int keepAliveSeconds, long lastPacketTime) {
+        return isInactive(keepAliveSeconds, lastPacketTime, System.currentTimeMillis());
+    }
+
+    private boolean isInactive(int keepAliveSeconds, long lastPacketTime, long now) {
         // A Keep Alive value of 0 has the effect of turning off the Keep Alive mechanism
         if (keepAliveSeconds == 0) {
             return false;
         }
-        long now = System.currentTimeMillis();
-        long actualKeepAliveMs = (long) (TimeUnit.SECONDS.toMillis(keepAliveSeconds) * 1.5);
-        return lastPacketTime + actualKeepAliveMs < now;
+        return lastPacketTime + getActualKeepAliveMs(keepAliveSeconds) < now;
+    }
+
+    private long getActualKeepAliveMs(int keepAliveSeconds) {
+        return (long) (TimeUnit.SECONDS.toMillis(keepAliveSeconds) * 1.5);
     }
 
     @Override
@@ -78,8 +155,12 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Registering keep-alive session for {} seconds", sessionId, keepAliveSeconds);
         }
-        keepAliveInfoMap.put(sessionId, new KeepAliveInfo(clientId, keepAliveSeconds,
-                new AtomicLong(System.currentTimeMillis())));
+        KeepAliveInfo keepAliveInfo = new KeepAliveInfo(clientId, sessionId, keepAliveSeconds,
+                new AtomicLong(System.currentTimeMillis()));
+        clear(keepAliveInfoMap.put(sessionId, keepAliveInfo));
+        if (keepAliveSeconds > 0) {
+            newSessions.add(keepAliveInfo);
+        }
     }
 
     @Override
@@ -87,7 +168,13 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         if (log.isTraceEnabled()) {
             log.trace("[{}] Unregistering keep-alive session", sessionId);
         }
-        keepAliveInfoMap.remove(sessionId);
+        clear(keepAliveInfoMap.remove(sessionId));
+    }
+
+    private void clear(KeepAliveInfo keepAliveInfo) {
+        if (keepAliveInfo != null) {
+            keepAliveInfo.getLastPacketTime().set(CLEARED_KEEP_ALIVE_VALUE);
+        }
     }
 
     @Override
@@ -109,10 +196,19 @@ public class KeepAliveServiceImpl implements KeepAliveService {
         return keepAliveInfoMap.size();
     }
 
+    private static List<Queue<KeepAliveInfo>> newWheel() {
+        List<Queue<KeepAliveInfo>> wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        return wheel;
+    }
+
     @AllArgsConstructor
     @Getter
     private static class KeepAliveInfo {
         private final String clientId;
+        private final UUID sessionId;
         private final int keepAliveSeconds;
         private final AtomicLong lastPacketTime;
     }
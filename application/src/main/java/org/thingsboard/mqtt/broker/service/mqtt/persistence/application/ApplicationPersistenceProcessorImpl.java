@@ -34,12 +34,14 @@ import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
 import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.ApplicationPersistenceMsgQueueFactory;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationMultiplexedClientCtx;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionCtx;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationAckStrategy;
@@ -70,6 +72,7 @@ import org.thingsboard.mqtt.broker.util.MqttQosUtil;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -78,7 +81,10 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Service
@@ -94,6 +100,9 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     private final ConcurrentMap<String, ApplicationPersistedMsgCtx> persistedMsgCtxMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, ConcurrentMap<TopicSharedSubscription, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>>>>
             sharedSubscriptionConsumers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ApplicationMultiplexedClientCtx> multiplexedClientCtxMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ApplicationMultiplexedClientCtx> multiplexedTopicClientCtxMap = new ConcurrentHashMap<>();
+    private final List<TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>>> multiplexedConsumers = new ArrayList<>();
 
     private final ApplicationMsgAcknowledgeStrategyFactory acknowledgeStrategyFactory;
     private final ApplicationSubmitStrategyFactory submitStrategyFactory;
@@ -116,17 +125,50 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     private long packProcessingTimeout;
     @Value("${queue.application-persisted-msg.shared-topic-validation:true}")
     private boolean validateSharedTopicFilter;
+    @Value("${queue.application-persisted-msg.virtual-threads-enabled:false}")
+    private boolean virtualThreadsEnabled;
+    @Value("${queue.application-persisted-msg.multiplexing.enabled:false}")
+    private boolean multiplexingEnabled;
+    @Value("${queue.application-persisted-msg.multiplexing.consumers-count:4}")
+    private int multiplexedConsumersCount;
+    @Value("${queue.application-persisted-msg.multiplexing.threads-count:8}")
+    private int multiplexedThreadsCount;
 
     private volatile boolean stopped = false;
     private ExecutorService persistedMsgsConsumerExecutor;
     private ExecutorService sharedSubsMsgsConsumerExecutor;
+    private ExecutorService multiplexedConsumersExecutor;
+    private ExecutorService multiplexedPackProcessingExecutor;
+    private ScheduledExecutorService multiplexedPackTimeoutScheduler;
 
     @PostConstruct
     public void init() {
         statsManager.registerActiveApplicationProcessorsStats(processingFutures);
         statsManager.registerActiveSharedApplicationProcessorsStats(sharedSubscriptionsProcessingJobs);
-        persistedMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-persisted-msg-consumers");
-        sharedSubsMsgsConsumerExecutor = ThingsBoardExecutors.initCachedExecutorService("application-shared-subs-msg-consumers");
+        statsManager.registerApplicationProcessorsThreadsStats(virtualThreadsEnabled);
+        persistedMsgsConsumerExecutor = initConsumersExecutor("application-persisted-msg-consumers");
+        sharedSubsMsgsConsumerExecutor = initConsumersExecutor("application-shared-subs-msg-consumers");
+        if (multiplexingEnabled) {
+            initMultiplexedConsumers();
+        }
+    }
+
+    private ExecutorService initConsumersExecutor(String serviceName) {
+        return virtualThreadsEnabled ?
+                ThingsBoardExecutors.initVirtualThreadPerTaskExecutor(serviceName) :
+                ThingsBoardExecutors.initCachedExecutorService(serviceName);
+    }
+
+    private void initMultiplexedConsumers() {
+        multiplexedConsumersExecutor = ThingsBoardExecutors.initExecutorService(multiplexedConsumersCount, "application-multiplexed-msg-consumers");
+        multiplexedPackProcessingExecutor = ThingsBoardExecutors.initExecutorService(multiplexedThreadsCount, "application-multiplexed-pack-processing");
+        multiplexedPackTimeoutScheduler = ThingsBoardExecutors.initScheduledExecutorService(1, "application-multiplexed-pack-timeout");
+        for (int i = 0; i < Math.max(1, multiplexedConsumersCount); i++) {
+            TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer =
+                    applicationPersistenceMsgQueueFactory.createMultiplexedConsumer(serviceInfoProvider.getServiceId() + "-" + i);
+            multiplexedConsumers.add(consumer);
+            multiplexedConsumersExecutor.submit(() -> pollMultiplexedConsumer(consumer));
+        }
     }
 
     @Override
@@ -331,7 +373,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                                     ctx.await(packProcessingTimeout, TimeUnit.MILLISECONDS);
                                 }
 
-                                if (analyzeIfProcessingDone(clientId, consumer, stats, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs))
+                                if (analyzeIfProcessingDone(clientId, consumer::commitSync, stats, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs))
                                     break;
                             }
                             if (isTraceEnabled) {
@@ -383,7 +425,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
     }
 
     private boolean analyzeIfProcessingDone(String clientId,
-                                            TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
+                                            Runnable commitAction,
                                             ApplicationProcessorStats stats,
                                             ApplicationSubmitStrategy submitStrategy,
                                             ApplicationPackProcessingCtx ctx,
@@ -398,7 +440,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
 
         if (decision.isCommit()) {
             ctx.clear();
-            consumer.commitSync();
+            commitAction.run();
             return true;
         } else {
             submitStrategy.update(decision.getReprocessMap());
@@ -465,6 +507,10 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         if (log.isDebugEnabled()) {
             log.debug("[{}] Starting persisted messages processing.", clientId);
         }
+        if (multiplexingEnabled) {
+            startMultiplexedProcessing(clientState, clientTopic);
+            return;
+        }
         TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = initConsumer(clientId, clientTopic);
         Future<?> future = persistedMsgsConsumerExecutor.submit(() -> {
             try {
@@ -498,6 +544,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         }
         clientLogger.logEvent(clientId, this.getClass(), "Stopping processing persisted messages");
         cancelMainProcessing(clientId);
+        stopMultiplexedProcessing(clientId);
         cancelSharedSubscriptionProcessing(clientId);
         stopSharedSubscriptionConsumers(clientId);
 
@@ -506,6 +553,15 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         persistedMsgCtxMap.remove(clientId);
     }
 
+    private void stopMultiplexedProcessing(String clientId) {
+        ApplicationMultiplexedClientCtx clientCtx = multiplexedClientCtxMap.remove(clientId);
+        if (clientCtx != null) {
+            multiplexedTopicClientCtxMap.remove(clientCtx.getClientTopic(), clientCtx);
+            clientCtx.getFuture().cancel(false);
+            clientCtx.getConsumer().unassign(clientCtx.getClientTopic(), 0);
+        }
+    }
+
     private void stopSharedSubscriptionConsumers(String clientId) {
         ConcurrentMap<TopicSharedSubscription, TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>>> map =
                 sharedSubscriptionConsumers.remove(clientId);
@@ -718,7 +774,7 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                         ctx.await(packProcessingTimeout, TimeUnit.MILLISECONDS);
                     }
 
-                    if (analyzeIfProcessingDone(clientId, consumer, stats, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs))
+                    if (analyzeIfProcessingDone(clientId, consumer::commitSync, stats, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs))
                         break;
                 }
                 if (isTraceEnabled) {
@@ -743,6 +799,154 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         }
     }
 
+    private void startMultiplexedProcessing(ClientActorStateInfo clientState, String clientTopic) {
+        ClientSessionCtx clientSessionCtx = clientState.getCurrentSessionCtx();
+        String clientId = clientSessionCtx.getClientId();
+        try {
+            ApplicationProcessorStats stats = statsManager.createApplicationProcessorStats(clientId);
+
+            ApplicationPersistedMsgCtx persistedMsgCtx = unacknowledgedPersistedMsgCtxService.loadPersistedMsgCtx(clientId);
+            persistedMsgCtxMap.put(clientId, persistedMsgCtx);
+
+            clientSessionCtx.getMsgIdSeq().updateMsgIdSequence(persistedMsgCtx.getLastPacketId());
+
+            TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer =
+                    multiplexedConsumers.get(Math.abs(clientId.hashCode() % multiplexedConsumers.size()));
+            ApplicationMultiplexedClientCtx clientCtx = new ApplicationMultiplexedClientCtx(clientState, clientSessionCtx, clientTopic,
+                    appClientHelperService.getAppConsumerGroup(clientId), consumer, persistedMsgCtx, stats);
+            clientCtx.setPubRelMsgCtx(persistedMsgCtxToPubRelMsgCtx(persistedMsgCtx));
+
+            multiplexedClientCtxMap.put(clientId, clientCtx);
+            multiplexedTopicClientCtxMap.put(clientTopic, clientCtx);
+            processingFutures.put(clientId, clientCtx.getFuture());
+
+            consumer.assign(clientTopic, 0, clientCtx.getConsumerGroup());
+            if (!clientCtx.getPubRelMsgCtx().nothingToDeliver()) {
+                consumer.pause(clientTopic, 0);
+                multiplexedPackProcessingExecutor.execute(() -> processMultiplexedPack(clientCtx, Collections.emptyList()));
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to start processing persisted messages.", clientId, e);
+            disconnectClient(clientId, clientState);
+        }
+    }
+
+    private void pollMultiplexedConsumer(TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer) {
+        while (isProcessorActive()) {
+            try {
+                Map<String, List<TbProtoQueueMsg<PublishMsgProto>>> publishProtoMessages = consumer.poll(pollDuration);
+                publishProtoMessages.forEach((topic, messages) -> {
+                    ApplicationMultiplexedClientCtx clientCtx = multiplexedTopicClientCtxMap.get(topic);
+                    if (clientCtx == null || !isClientActive(clientCtx)) {
+                        return;
+                    }
+                    // the partition stays paused until the pack is committed, so each client still has at most one pack in flight
+                    consumer.pause(topic, 0);
+                    multiplexedPackProcessingExecutor.execute(() -> processMultiplexedPack(clientCtx, messages));
+                });
+            } catch (Exception e) {
+                if (isProcessorActive()) {
+                    log.warn("Failed to poll messages by multiplexed application consumer.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        if (isTraceEnabled) {
+                            log.trace("Failed to wait until the server has capacity to handle new requests", e2);
+                        }
+                    }
+                }
+            }
+        }
+        consumer.unsubscribeAndClose();
+        if (log.isDebugEnabled()) {
+            log.debug("Multiplexed application persisted messages consumer stopped.");
+        }
+    }
+
+    private void processMultiplexedPack(ApplicationMultiplexedClientCtx clientCtx, List<TbProtoQueueMsg<PublishMsgProto>> publishProtoMessages) {
+        try {
+            ApplicationSubmitStrategy submitStrategy = submitStrategyFactory.newInstance(clientCtx.getClientId());
+
+            List<PersistedMsg> messagesToDeliver = getMessagesToDeliver(
+                    clientCtx.getPubRelMsgCtx(),
+                    clientCtx.getClientSessionCtx(),
+                    clientCtx.getPersistedMsgCtx(),
+                    publishProtoMessages,
+                    null);
+            submitStrategy.init(messagesToDeliver);
+
+            clientCtx.setPubRelMsgCtx(new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet()));
+            long nextOffset = publishProtoMessages.isEmpty() ? -1 : publishProtoMessages.get(publishProtoMessages.size() - 1).getOffset() + 1;
+            submitMultiplexedPack(clientCtx, submitStrategy, nextOffset);
+        } catch (Exception e) {
+            onMultiplexedPackFailure(clientCtx, e);
+        }
+    }
+
+    private void submitMultiplexedPack(ApplicationMultiplexedClientCtx clientCtx, ApplicationSubmitStrategy submitStrategy, long nextOffset) {
+        if (!isClientActive(clientCtx)) {
+            return;
+        }
+        String clientId = clientCtx.getClientId();
+        ApplicationPackProcessingCtx ctx = newPackProcessingCtx(submitStrategy, clientCtx.getPubRelMsgCtx(), clientCtx.getStats());
+        int totalPublishMsgs = ctx.getPublishPendingMsgMap().size();
+        int totalPubRelMsgs = ctx.getPubRelPendingMsgMap().size();
+        packProcessingCtxMap.put(clientId, ctx);
+
+        process(submitStrategy, clientCtx.getClientSessionCtx(), clientId);
+
+        AtomicBoolean completed = new AtomicBoolean(false);
+        Runnable onPackCompleted = () -> {
+            if (completed.compareAndSet(false, true)) {
+                multiplexedPackProcessingExecutor.execute(() ->
+                        completeMultiplexedPack(clientCtx, submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs, nextOffset));
+            }
+        };
+        ScheduledFuture<?> timeoutFuture = multiplexedPackTimeoutScheduler.schedule(onPackCompleted, packProcessingTimeout, TimeUnit.MILLISECONDS);
+        ctx.onProcessed(() -> {
+            timeoutFuture.cancel(false);
+            onPackCompleted.run();
+        });
+    }
+
+    private void completeMultiplexedPack(ApplicationMultiplexedClientCtx clientCtx,
+                                         ApplicationSubmitStrategy submitStrategy,
+                                         ApplicationPackProcessingCtx ctx,
+                                         int totalPublishMsgs,
+                                         int totalPubRelMsgs,
+                                         long nextOffset) {
+        if (!isClientActive(clientCtx)) {
+            return;
+        }
+        try {
+            boolean done = analyzeIfProcessingDone(clientCtx.getClientId(), () -> commitMultiplexedPack(clientCtx, nextOffset),
+                    clientCtx.getStats(), submitStrategy, ctx, totalPublishMsgs, totalPubRelMsgs);
+            if (!done) {
+                submitMultiplexedPack(clientCtx, submitStrategy, nextOffset);
+            } else if (clientCtx.getPubRelMsgCtx().nothingToDeliver()) {
+                clientCtx.getConsumer().resume(clientCtx.getClientTopic(), 0);
+            } else {
+                processMultiplexedPack(clientCtx, Collections.emptyList());
+            }
+        } catch (Exception e) {
+            onMultiplexedPackFailure(clientCtx, e);
+        }
+    }
+
+    private void commitMultiplexedPack(ApplicationMultiplexedClientCtx clientCtx, long nextOffset) {
+        if (nextOffset >= 0) {
+            clientCtx.getConsumer().commit(clientCtx.getConsumerGroup(), clientCtx.getClientTopic(), 0, nextOffset);
+        }
+    }
+
+    private void onMultiplexedPackFailure(ApplicationMultiplexedClientCtx clientCtx, Exception e) {
+        if (isClientActive(clientCtx)) {
+            log.warn("[{}] Failed to process messages from queue.", clientCtx.getClientId(), e);
+            multiplexedPackTimeoutScheduler.schedule(() -> clientCtx.getConsumer().resume(clientCtx.getClientTopic(), 0),
+                    pollDuration, TimeUnit.MILLISECONDS);
+        }
+    }
+
     private void process(ApplicationSubmitStrategy submitStrategy, ClientSessionCtx clientSessionCtx, String clientId) {
         if (isDebugEnabled) {
             log.debug("[{}] Start sending the pack of messages from processing ctx: {}", clientId, submitStrategy.getOrderedMessages());
@@ -819,6 +1023,11 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
                 && clientState.getCurrentSessionState() == SessionState.CONNECTED;
     }
 
+    private boolean isClientActive(ApplicationMultiplexedClientCtx clientCtx) {
+        return !clientCtx.getFuture().isDone()
+                && isClientConnected(clientCtx.getClientSessionCtx().getSessionId(), clientCtx.getClientState());
+    }
+
     private boolean isJobActive(ApplicationSharedSubscriptionJob job) {
         return isProcessorActive() && !job.interrupted();
     }
@@ -843,5 +1052,8 @@ public class ApplicationPersistenceProcessorImpl implements ApplicationPersisten
         });
         ThingsBoardExecutors.shutdownAndAwaitTermination(persistedMsgsConsumerExecutor, "Application consumers'");
         ThingsBoardExecutors.shutdownAndAwaitTermination(sharedSubsMsgsConsumerExecutor, "Application shared subs consumers'");
+        ThingsBoardExecutors.shutdownAndAwaitTermination(multiplexedConsumersExecutor, "Application multiplexed consumers'");
+        ThingsBoardExecutors.shutdownAndAwaitTermination(multiplexedPackProcessingExecutor, "Application multiplexed pack processing");
+        ThingsBoardExecutors.shutdownAndAwaitTermination(multiplexedPackTimeoutScheduler, "Application multiplexed pack timeout");
     }
 }
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.thingsboard.mqtt.broker.actors.client.state.ClientActorStateInfo;
+import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPersistedMsgCtx;
+import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing.ApplicationPubRelMsgCtx;
+import org.thingsboard.mqtt.broker.service.stats.ApplicationProcessorStats;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+@RequiredArgsConstructor
+public class ApplicationMultiplexedClientCtx {
+
+    private final ClientActorStateInfo clientState;
+    private final ClientSessionCtx clientSessionCtx;
+    private final String clientTopic;
+    private final String consumerGroup;
+    private final TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer;
+    private final ApplicationPersistedMsgCtx persistedMsgCtx;
+    private final ApplicationProcessorStats stats;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    @Setter
+    private volatile ApplicationPubRelMsgCtx pubRelMsgCtx;
+
+    public String getClientId() {
+        return clientSessionCtx.getClientId();
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 public class ApplicationPackProcessingCtx {
@@ -37,6 +38,7 @@ public class ApplicationPackProcessingCtx {
     private final ApplicationProcessorStats stats;
     private final long processingStartTimeNanos;
     private final CountDownLatch processingTimeoutLatch;
+    private final AtomicReference<Runnable> onProcessedCallback = new AtomicReference<>();
     @Getter
     private final ApplicationPubRelMsgCtx pubRelMsgCtx;
     private final boolean isDebugEnabled = log.isDebugEnabled();
@@ -80,6 +82,31 @@ public class ApplicationPackProcessingCtx {
         return processingTimeoutLatch.await(packProcessingTimeout, timeUnit);
     }
 
+    /**
+     * Non-blocking alternative to {@link #await(long, TimeUnit)}: the callback is executed once, by the thread that processes
+     * the last pending acknowledgement, or immediately if nothing is pending.
+     */
+    public void onProcessed(Runnable callback) {
+        onProcessedCallback.set(callback);
+        if (processingTimeoutLatch.getCount() == 0) {
+            notifyProcessed();
+        }
+    }
+
+    private void countDown() {
+        processingTimeoutLatch.countDown();
+        if (processingTimeoutLatch.getCount() == 0) {
+            notifyProcessed();
+        }
+    }
+
+    private void notifyProcessed() {
+        Runnable callback = onProcessedCallback.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
     // TODO: save only messages with higher offset (InFlightMessagesCtx)
 
     public boolean onPubAck(Integer packetId) {
@@ -89,7 +116,7 @@ public class ApplicationPackProcessingCtx {
                 log.debug("Found PUBLISH packet {} to process PubAck msg.", packetId);
             }
             stats.logPubAckLatency(processingStartTimeNanos, TimeUnit.NANOSECONDS);
-            processingTimeoutLatch.countDown();
+            countDown();
             return true;
         } else {
             if (isDebugEnabled) {
@@ -124,7 +151,7 @@ public class ApplicationPackProcessingCtx {
     private void onPublishMsgSuccess(Integer packetId) {
         PersistedPublishMsg msg = publishPendingMsgMap.remove(packetId);
         if (msg != null) {
-            processingTimeoutLatch.countDown();
+            countDown();
         } else {
             if (isDebugEnabled) {
                 log.debug("[{}] Couldn't find PUBLISH packet {} to process PubRec msg successfully from {}.", clientId, packetId, publishPendingMsgMap.keySet());
@@ -139,7 +166,7 @@ public class ApplicationPackProcessingCtx {
                 log.debug("Found PubRel packet {} to process PubComp msg.", packetId);
             }
             stats.logPubCompLatency(processingStartTimeNanos, TimeUnit.NANOSECONDS);
-            processingTimeoutLatch.countDown();
+            countDown();
             return true;
         } else {
             if (isDebugEnabled) {
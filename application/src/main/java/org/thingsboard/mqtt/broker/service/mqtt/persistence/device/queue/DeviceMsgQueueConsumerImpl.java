@@ -72,6 +72,8 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
     private int threadsCount;
     @Value("${queue.device-persisted-msg.pack-processing-timeout}")
     private long packProcessingTimeout;
+    @Value("${queue.device-persisted-msg.batch-persistence-enabled:false}")
+    private boolean batchPersistenceEnabled;
 
     private volatile boolean stopped = false;
     private ExecutorService consumersExecutor;
@@ -119,25 +121,17 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
                                     .mapToInt(pack -> pack.messages().size())
                                     .sum();
                         }
-                        submitStrategy.process(clientIdMessagesPack -> {
-                            long clientIdPackProcessingStart = System.nanoTime();
-                            String clientId = clientIdMessagesPack.clientId();
-                            clientLogger.logEvent(clientId, this.getClass(), "Start persisting DEVICE msgs");
-                            CompletionStage<Integer> future = deviceMsgProcessor.persistClientDeviceMessages(clientIdMessagesPack);
-                            future.whenComplete((prevPacketId, throwable) -> {
-                                if (throwable == null) {
-                                    clientLogger.logEvent(clientId, this.getClass(), "Finished persisting DEVICE messages");
-                                    ctx.onSuccess(clientId, prevPacketId);
-                                } else {
-                                    clientLogger.logEvent(clientId, this.getClass(), "Finished persisting DEVICE messages exceptionally: " + throwable.getMessage());
-                                    if (log.isTraceEnabled()) {
-                                        log.trace("[{}] Failed to persist device publish messages due to: ", clientId, throwable);
-                                    }
-                                    ctx.onFailure(clientId);
-                                }
-                                stats.logClientIdPackProcessingTime(System.nanoTime() - clientIdPackProcessingStart, TimeUnit.NANOSECONDS);
+                        if (batchPersistenceEnabled) {
+                            persistBatched(submitStrategy, ctx, stats);
+                        } else {
+                            submitStrategy.process(clientIdMessagesPack -> {
+                                long clientIdPackProcessingStart = System.nanoTime();
+                                String clientId = clientIdMessagesPack.clientId();
+                                clientLogger.logEvent(clientId, this.getClass(), "Start persisting DEVICE msgs");
+                                CompletionStage<Integer> future = deviceMsgProcessor.persistClientDeviceMessages(clientIdMessagesPack);
+                                onPersisted(future, clientId, ctx, stats, clientIdPackProcessingStart);
                             });
-                        });
+                        }
 
                         if (!stopped) {
                             ctx.await(packProcessingTimeout, TimeUnit.MILLISECONDS);
@@ -175,6 +169,41 @@ public class DeviceMsgQueueConsumerImpl implements DeviceMsgQueueConsumer {
         });
     }
 
+    private void persistBatched(DeviceSubmitStrategy submitStrategy, DevicePackProcessingContext ctx, DeviceProcessorStats stats) {
+        long packsProcessingStart = System.nanoTime();
+        List<ClientIdMessagesPack> packs = new ArrayList<>(ctx.getPendingMap().size());
+        submitStrategy.process(clientIdMessagesPack -> {
+            clientLogger.logEvent(clientIdMessagesPack.clientId(), this.getClass(), "Start persisting DEVICE msgs");
+            packs.add(clientIdMessagesPack);
+        });
+        Map<String, CompletionStage<Integer>> futures;
+        try {
+            futures = deviceMsgProcessor.persistClientsDeviceMessages(packs);
+        } catch (Exception e) {
+            log.warn("Failed to submit batch of {} device publish messages packs", packs.size(), e);
+            packs.forEach(pack -> ctx.onFailure(pack.clientId()));
+            return;
+        }
+        futures.forEach((clientId, future) -> onPersisted(future, clientId, ctx, stats, packsProcessingStart));
+    }
+
+    private void onPersisted(CompletionStage<Integer> future, String clientId, DevicePackProcessingContext ctx,
+                             DeviceProcessorStats stats, long clientIdPackProcessingStart) {
+        future.whenComplete((prevPacketId, throwable) -> {
+            if (throwable == null) {
+                clientLogger.logEvent(clientId, this.getClass(), "Finished persisting DEVICE messages");
+                ctx.onSuccess(clientId, prevPacketId);
+            } else {
+                clientLogger.logEvent(clientId, this.getClass(), "Finished persisting DEVICE messages exceptionally: " + throwable.getMessage());
+                if (log.isTraceEnabled()) {
+                    log.trace("[{}] Failed to persist device publish messages due to: ", clientId, throwable);
+                }
+                ctx.onFailure(clientId);
+            }
+            stats.logClientIdPackProcessingTime(System.nanoTime() - clientIdPackProcessingStart, TimeUnit.NANOSECONDS);
+        });
+    }
+
     @PreDestroy
     public void destroy() {
         stopped = true;
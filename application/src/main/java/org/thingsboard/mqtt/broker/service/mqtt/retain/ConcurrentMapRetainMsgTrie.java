@@ -17,27 +17,29 @@ package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Empty nodes are retired with CAS and unlinked from the parent without blocking writers,
+ * see {@link org.thingsboard.mqtt.broker.service.subscription.ConcurrentMapSubscriptionTrie}.
+ */
 @Slf4j
 @Service
 public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
@@ -45,22 +47,23 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
     private final AtomicInteger size;
     private final AtomicLong nodesCount;
     private final Node<T> root = new Node<>();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    @Setter
-    @Value("${mqtt.retain-msg-trie.wait-for-clear-lock-ms}")
-    private int waitForClearLockMs;
 
     public ConcurrentMapRetainMsgTrie(StatsManager statsManager) {
         this.size = statsManager.createRetainMsgSizeCounter();
         this.nodesCount = statsManager.createRetainMsgTrieNodesCounter();
     }
 
-    @EqualsAndHashCode
+    @EqualsAndHashCode(exclude = "state")
     private static class Node<T> {
+        private static final int RETIRED = -1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> STATE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+
         private final AtomicReference<T> value = new AtomicReference<>();
         private final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
         private String key;
+        // number of writers currently modifying the node or RETIRED if the node was unlinked from the trie
+        private volatile int state;
 
         public Node() {
         }
@@ -68,57 +71,133 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
         public Node(String key) {
             this.key = key;
         }
+
+        private boolean pin() {
+            while (true) {
+                int current = state;
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (STATE.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void unpin() {
+            STATE.decrementAndGet(this);
+        }
+
+        private boolean isEmpty() {
+            return value.get() == null && children.isEmpty();
+        }
+
+        private boolean tryRetire() {
+            if (!isEmpty() || !STATE.compareAndSet(this, 0, RETIRED)) {
+                return false;
+            }
+            if (isEmpty()) {
+                return true;
+            }
+            state = 0;
+            return false;
+        }
     }
 
     @Override
     public List<T> get(String topicFilter) {
+        List<T> result = new ArrayList<>();
+        iterator(topicFilter).forEachRemaining(result::add);
+        return result;
+    }
+
+    @Override
+    public Iterator<T> iterator(String topicFilter) {
         if (topicFilter == null) {
             throw new IllegalArgumentException("Topic filter cannot be null");
         }
-        List<T> result = new ArrayList<>();
-        Stack<TopicPosition<T>> topicPositions = new Stack<>();
-        topicPositions.add(new TopicPosition<>(0, root, false));
-
-        while (!topicPositions.isEmpty()) {
-            TopicPosition<T> topicPosition = topicPositions.pop();
-            ConcurrentMap<String, Node<T>> childNodes = topicPosition.node.children;
-            T value = topicPosition.node.value.get();
-            if (topicPosition.isMultiLevelWildcard) {
-                if (value != null) {
-                    result.add(value);
-                }
-                for (Node<T> childNode : childNodes.values()) {
-                    topicPositions.add(new TopicPosition<>(0, childNode, true));
-                }
-                continue;
+        return new MatchingValuesIterator(topicFilter);
+    }
+
+    /**
+     * Walks the trie lazily, so only the pending branches are kept in memory instead of all the matching values.
+     * Values put or deleted concurrently may or may not be returned, the same as for {@link #get(String)}.
+     */
+    private class MatchingValuesIterator implements Iterator<T> {
+
+        private final String topicFilter;
+        private final Deque<TopicPosition<T>> topicPositions = new ArrayDeque<>();
+        private T next;
+
+        private MatchingValuesIterator(String topicFilter) {
+            this.topicFilter = topicFilter;
+            this.topicPositions.push(new TopicPosition<>(0, root, false));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = findNext();
             }
-            if (topicPosition.segmentStartIndex > topicFilter.length()) {
-                if (value != null) {
-                    result.add(value);
-                }
-                continue;
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-            String segment = getSegment(topicFilter, topicPosition.segmentStartIndex);
-            int nextSegmentStartIndex = getNextSegmentStartIndex(topicPosition.segmentStartIndex, segment);
-            if (segment.equals(BrokerConstants.MULTI_LEVEL_WILDCARD)) {
-                childNodes.values().stream()
-                        .filter(childNode -> notStartingWith$(topicPosition, childNode))
-                        .forEach(childNode -> topicPositions.add(new TopicPosition<>(0, childNode, true)));
-                if (value != null) {
-                    result.add(value);
+            T value = next;
+            next = null;
+            return value;
+        }
+
+        private T findNext() {
+            while (!topicPositions.isEmpty()) {
+                TopicPosition<T> topicPosition = topicPositions.pop();
+                ConcurrentMap<String, Node<T>> childNodes = topicPosition.node.children;
+                T value = topicPosition.node.value.get();
+                if (topicPosition.isMultiLevelWildcard) {
+                    for (Node<T> childNode : childNodes.values()) {
+                        topicPositions.push(new TopicPosition<>(0, childNode, true));
+                    }
+                    if (value != null) {
+                        return value;
+                    }
+                    continue;
+                }
+                if (topicPosition.segmentStartIndex > topicFilter.length()) {
+                    if (value != null) {
+                        return value;
+                    }
+                    continue;
                 }
-            } else if (segment.equals(BrokerConstants.SINGLE_LEVEL_WILDCARD)) {
-                childNodes.values().stream()
-                        .filter(childNode -> notStartingWith$(topicPosition, childNode))
-                        .forEach(childNode -> topicPositions.add(new TopicPosition<>(nextSegmentStartIndex, childNode, false)));
-            } else {
-                Node<T> segmentNode = childNodes.get(segment);
-                if (segmentNode != null) {
-                    topicPositions.add(new TopicPosition<>(nextSegmentStartIndex, segmentNode, false));
+                String segment = getSegment(topicFilter, topicPosition.segmentStartIndex);
+                int nextSegmentStartIndex = getNextSegmentStartIndex(topicPosition.segmentStartIndex, segment);
+                if (segment.equals(BrokerConstants.MULTI_LEVEL_WILDCARD)) {
+                    for (Node<T> childNode : childNodes.values()) {
+                        if (notStartingWith$(topicPosition, childNode)) {
+                            topicPositions.push(new TopicPosition<>(0, childNode, true));
+                        }
+                    }
+                    if (value != null) {
+                        return value;
+                    }
+                } else if (segment.equals(BrokerConstants.SINGLE_LEVEL_WILDCARD)) {
+                    for (Node<T> childNode : childNodes.values()) {
+                        if (notStartingWith$(topicPosition, childNode)) {
+                            topicPositions.push(new TopicPosition<>(nextSegmentStartIndex, childNode, false));
+                        }
+                    }
+                } else {
+                    Node<T> segmentNode = childNodes.get(segment);
+                    if (segmentNode != null) {
+                        topicPositions.push(new TopicPosition<>(nextSegmentStartIndex, segmentNode, false));
+                    }
                 }
             }
+            return null;
         }
-        return result;
     }
 
     private boolean notStartingWith$(TopicPosition<T> topicPosition, Node<T> childNode) {
@@ -138,27 +217,52 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
         if (topic == null || val == null) {
             throw new IllegalArgumentException("Topic or value cannot be null");
         }
-        lock.readLock().lock();
-        try {
-            put(root, topic, val, 0);
-        } finally {
-            lock.readLock().unlock();
+        while (!tryPut(topic, val)) {
+            log.trace("[{}] Node was retired during put, retrying", topic);
         }
     }
 
-    private void put(Node<T> x, String topic, T val, int segmentStartIndex) {
-        if (segmentStartIndex > topic.length()) {
+    private boolean tryPut(String topic, T val) {
+        Node<T> x = root;
+        int segmentStartIndex = 0;
+        while (segmentStartIndex <= topic.length()) {
+            String segment = getSegment(topic, segmentStartIndex);
+            Node<T> nextNode;
+            if (!pin(x)) {
+                return false;
+            }
+            try {
+                nextNode = x.children.computeIfAbsent(segment, s -> {
+                    nodesCount.incrementAndGet();
+                    return new Node<>(segment);
+                });
+            } finally {
+                unpin(x);
+            }
+            x = nextNode;
+            segmentStartIndex = getNextSegmentStartIndex(segmentStartIndex, segment);
+        }
+        if (!pin(x)) {
+            return false;
+        }
+        try {
             T prevValue = x.value.getAndSet(val);
             if (prevValue == null) {
                 size.getAndIncrement();
             }
-        } else {
-            String segment = getSegment(topic, segmentStartIndex);
-            Node<T> nextNode = x.children.computeIfAbsent(segment, s -> {
-                nodesCount.incrementAndGet();
-                return new Node<>(segment);
-            });
-            put(nextNode, topic, val, getNextSegmentStartIndex(segmentStartIndex, segment));
+        } finally {
+            unpin(x);
+        }
+        return true;
+    }
+
+    private boolean pin(Node<T> x) {
+        return x == root || x.pin();
+    }
+
+    private void unpin(Node<T> x) {
+        if (x != root) {
+            x.unpin();
         }
     }
 
@@ -198,9 +302,8 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
     }
 
     @Override
-    public void clearEmptyNodes() throws RetainMsgTrieClearException {
+    public void clearEmptyNodes() {
         log.trace("Executing clearEmptyNodes");
-        acquireClearTrieLock();
         long nodesBefore = nodesCount.get();
         long clearStartTime = System.currentTimeMillis();
         try {
@@ -215,38 +318,17 @@ public class ConcurrentMapRetainMsgTrie<T> implements RetainMsgTrie<T> {
             long nodesAfter = nodesCount.get();
             log.error("Failed on clearing empty nodes. Managed to clear {} nodes.",
                     nodesBefore - nodesAfter, e);
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
     private boolean clearEmptyChildren(ConcurrentMapRetainMsgTrie.Node<T> node) {
-        boolean isNodeEmpty = node.value.get() == null;
         for (Map.Entry<String, ConcurrentMapRetainMsgTrie.Node<T>> entry : node.children.entrySet()) {
-            ConcurrentMapRetainMsgTrie.Node<T> value = entry.getValue();
-            boolean isChildEmpty = clearEmptyChildren(value);
-            if (isChildEmpty) {
-                node.children.remove(entry.getKey());
+            ConcurrentMapRetainMsgTrie.Node<T> child = entry.getValue();
+            if (clearEmptyChildren(child) && child.tryRetire() && node.children.remove(entry.getKey(), child)) {
                 nodesCount.decrementAndGet();
-            } else {
-                isNodeEmpty = false;
             }
         }
-
-        return isNodeEmpty;
-    }
-
-    private void acquireClearTrieLock() throws RetainMsgTrieClearException {
-        boolean successfullyAcquiredLock = false;
-        try {
-            successfullyAcquiredLock = lock.writeLock().tryLock(waitForClearLockMs, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            log.warn("Acquiring lock was interrupted.");
-        }
-        if (!successfullyAcquiredLock) {
-            throw new RetainMsgTrieClearException("Couldn't acquire lock for clearing trie. " +
-                    "There are a lot of clients sending retained messages right now.");
-        }
+        return node.isEmpty();
     }
 
     private String getSegment(String key, int segmentStartIndex) {
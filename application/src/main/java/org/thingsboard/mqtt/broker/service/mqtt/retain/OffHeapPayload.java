@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Reference counted owner of the off-heap payload of a retained msg. The store holds one reference until the msg
+ * is replaced or cleared, readers take their own reference only for the time of copying or slicing the payload,
+ * and the last holder frees the buffer.
+ * <p>
+ * The pooled buffer itself can not be retained safely by a reader that got the msg right before it was replaced,
+ * since a freed pooled buffer is recycled for the next allocation. This holder is never recycled,
+ * so retaining the payload of the replaced msg just fails.
+ */
+final class OffHeapPayload {
+
+    private final ByteBuf buf;
+    private final int size;
+    private final IntConsumer onFreed;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    OffHeapPayload(ByteBuf buf, IntConsumer onFreed) {
+        this.buf = buf;
+        this.size = buf.readableBytes();
+        this.onFreed = onFreed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int refCnt() {
+        return refCnt.get();
+    }
+
+    boolean tryRetain() {
+        while (true) {
+            int cnt = refCnt.get();
+            if (cnt == 0) {
+                return false;
+            }
+            if (refCnt.compareAndSet(cnt, cnt + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        int cnt = refCnt.decrementAndGet();
+        if (cnt == 0) {
+            buf.release();
+            onFreed.accept(size);
+        } else if (cnt < 0) {
+            throw new IllegalStateException("Off-heap payload is already released");
+        }
+    }
+
+    /**
+     * @return the copy of the payload or null if the payload is already freed
+     */
+    byte[] copy() {
+        if (!tryRetain()) {
+            return null;
+        }
+        try {
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return the slice holding its own reference to the buffer, so it stays valid after the payload is released,
+     * or null if the payload is already freed
+     */
+    ByteBuf retainedSlice() {
+        if (!tryRetain()) {
+            return null;
+        }
+        try {
+            return buf.retainedSlice();
+        } finally {
+            release();
+        }
+    }
+}
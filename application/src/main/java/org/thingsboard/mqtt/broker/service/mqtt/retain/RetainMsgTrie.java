@@ -15,19 +15,21 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 
+import java.util.Iterator;
 import java.util.List;
 
 public interface RetainMsgTrie<T> {
 
     List<T> get(String topicFilter);
 
+    Iterator<T> iterator(String topicFilter);
+
     void put(String topic, T val);
 
     void delete(String topic);
 
     int size();
 
-    void clearEmptyNodes() throws RetainMsgTrieClearException;
+    void clearEmptyNodes();
 }
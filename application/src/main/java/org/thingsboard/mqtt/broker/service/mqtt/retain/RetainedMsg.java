@@ -15,19 +15,32 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttProperties;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@AllArgsConstructor
 @Data
 public class RetainedMsg {
 
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
     private final String topic;
+    // excluded, since the generated methods would go through the getter that copies the off-heap payload
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private final byte[] payload;
     private final int qos;
     private final MqttProperties properties;
     private final long createdTime;
+    // set instead of the payload when the msg is kept in the off-heap store
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.PACKAGE)
+    private final OffHeapPayload offHeapPayload;
 
     public RetainedMsg(String topic, byte[] payload) {
         this(topic, payload, 0);
@@ -41,7 +54,53 @@ public class RetainedMsg {
         this(topic, payload, qos, properties, System.currentTimeMillis());
     }
 
+    public RetainedMsg(String topic, byte[] payload, int qos, MqttProperties properties, long createdTime) {
+        this(topic, payload, qos, properties, createdTime, null);
+    }
+
+    private RetainedMsg(String topic, byte[] payload, int qos, MqttProperties properties, long createdTime, OffHeapPayload offHeapPayload) {
+        this.topic = topic;
+        this.payload = payload;
+        this.qos = qos;
+        this.properties = properties;
+        this.createdTime = createdTime;
+        this.offHeapPayload = offHeapPayload;
+    }
+
     public RetainedMsg withQosAndProps(int qos, MqttProperties properties) {
-        return new RetainedMsg(this.topic, this.payload, qos, properties, this.createdTime);
+        return new RetainedMsg(this.topic, this.payload, qos, properties, this.createdTime, this.offHeapPayload);
+    }
+
+    RetainedMsg withOffHeapPayload(OffHeapPayload offHeapPayload) {
+        return new RetainedMsg(this.topic, null, this.qos, this.properties, this.createdTime, offHeapPayload);
+    }
+
+    public boolean isOffHeap() {
+        return offHeapPayload != null;
+    }
+
+    /**
+     * Returns the copy of the payload for the msg kept off-heap, use {@link #getRetainedPayloadSlice()} on delivery.
+     * The payload of the off-heap msg that was already replaced or cleared is returned empty.
+     */
+    public byte[] getPayload() {
+        if (offHeapPayload == null) {
+            return payload;
+        }
+        byte[] copy = offHeapPayload.copy();
+        return copy != null ? copy : EMPTY_PAYLOAD;
+    }
+
+    public int getPayloadSize() {
+        return offHeapPayload == null ? payload.length : offHeapPayload.size();
+    }
+
+    /**
+     * Shares the off-heap payload without copying it, the caller is responsible for releasing the returned buffer.
+     *
+     * @return null if the msg was already replaced or cleared and its payload is freed
+     */
+    public ByteBuf getRetainedPayloadSlice() {
+        return offHeapPayload.retainedSlice();
     }
 }
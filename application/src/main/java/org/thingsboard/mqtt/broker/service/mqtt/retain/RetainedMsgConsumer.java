@@ -24,4 +24,9 @@ public interface RetainedMsgConsumer {
     Map<String, RetainedMsg> initLoad() throws QueuePersistenceException;
 
     void listen(RetainedMsgChangesCallback callback);
+
+    /**
+     * Next offsets to read per partition, i.e. the topic position this consumer is up-to-date with.
+     */
+    Map<Integer, Long> getProcessedOffsets();
 }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -31,9 +32,15 @@ import org.thingsboard.mqtt.broker.gen.queue.RetainedMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
 import org.thingsboard.mqtt.broker.queue.provider.RetainedMsgQueueFactory;
+import org.thingsboard.mqtt.broker.service.init.PartitionedInitLoader;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotEntry;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotStorage;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotType;
 import org.thingsboard.mqtt.broker.service.stats.RetainedMsgConsumerStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
@@ -42,6 +49,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,20 +61,26 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
     private static final String DUMMY_TOPIC_PREFIX = "dummy/topic/";
 
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("retained-msg-listener"));
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
 
     private final RetainedMsgQueueFactory retainedMsgQueueFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final RetainedMsgPersistenceService persistenceService;
     private final TbQueueAdmin queueAdmin;
     private final RetainedMsgConsumerStats stats;
+    private final BrokerSnapshotStorage snapshotStorage;
+    private final PartitionedInitLoader initLoader;
 
     public RetainedMsgConsumerImpl(RetainedMsgQueueFactory retainedMsgQueueFactory, ServiceInfoProvider serviceInfoProvider,
-                                   RetainedMsgPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager) {
+                                   RetainedMsgPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager,
+                                   BrokerSnapshotStorage snapshotStorage, PartitionedInitLoader initLoader) {
         this.retainedMsgQueueFactory = retainedMsgQueueFactory;
         this.serviceInfoProvider = serviceInfoProvider;
         this.persistenceService = persistenceService;
         this.queueAdmin = queueAdmin;
         this.stats = statsManager.getRetainedMsgConsumerStats();
+        this.snapshotStorage = snapshotStorage;
+        this.initLoader = initLoader;
     }
 
     @Value("${queue.retained-msg.poll-interval}")
@@ -75,67 +90,37 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
     private volatile boolean stopped = false;
 
     private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<RetainedMsgProto>> retainedMsgConsumer;
+    private String consumerGroupId;
 
     @PostConstruct
     public void init() {
         long currentCgSuffix = System.currentTimeMillis();
-        String uniqueConsumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
-        this.retainedMsgConsumer = retainedMsgQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), uniqueConsumerGroupId);
+        this.consumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
+        this.retainedMsgConsumer = retainedMsgQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), consumerGroupId);
         queueAdmin.deleteOldConsumerGroups(BrokerConstants.RETAINED_MSG_CG_PREFIX, serviceInfoProvider.getServiceId(), currentCgSuffix);
     }
 
     @Override
     public Map<String, RetainedMsg> initLoad() throws QueuePersistenceException {
         log.debug("Starting retained messages initLoad");
-        long startTime = System.nanoTime();
-        long totalMessageCount = 0L;
-
+        // the topic gets created on the first write, so it surely exists when its end offsets are requested
         String dummyTopic = persistDummyRetainedMsg();
-        retainedMsgConsumer.assignOrSubscribe();
 
-        List<TbProtoQueueMsg<RetainedMsgProto>> messages;
-        boolean encounteredDummyTopic = false;
         Map<String, RetainedMsg> allRetainedMsgs = new HashMap<>();
-        do {
-            try {
-                messages = retainedMsgConsumer.poll(pollDuration);
-                int packSize = messages.size();
-                log.debug("Read {} retained messages from single poll", packSize);
-                totalMessageCount += packSize;
-                for (TbProtoQueueMsg<RetainedMsgProto> msg : messages) {
-                    String topic = msg.getKey();
-                    if (topic.startsWith(BrokerConstants.SYSTEMS_TOPIC_PREFIX)) {
-                        continue;
-                    }
-                    if (isRetainedMsgProtoEmpty(msg.getValue())) {
-                        // this means Kafka log compaction service haven't cleared empty message yet
-                        log.trace("[{}] Encountered empty RetainedMsg.", topic);
-                        allRetainedMsgs.remove(topic);
-                    } else {
-                        RetainedMsg retainedMsg = convertToRetainedMsg(msg);
-                        if (dummyTopic.equals(topic)) {
-                            encounteredDummyTopic = true;
-                        } else {
-                            allRetainedMsgs.put(topic, retainedMsg);
-                        }
-                    }
-                }
-                retainedMsgConsumer.commitSync();
-            } catch (Exception e) {
-                log.error("Failed to load retained messages.", e);
-                throw e;
-            }
-        } while (!stopped && !encounteredDummyTopic);
+        Map<Integer, Long> startOffsets = restoreFromSnapshot(allRetainedMsgs);
+        try {
+            Map<Integer, Long> loadedOffsets = initLoader.load("retained-msgs", pollDuration, retainedMsgConsumer, this::createPartitionConsumer,
+                    startOffsets, (msg, changes) -> handleInitLoadMsg(dummyTopic, msg, changes), allRetainedMsgs);
+            processedOffsets.putAll(loadedOffsets);
+        } catch (Exception e) {
+            log.error("Failed to load retained messages.", e);
+            throw e;
+        }
 
         clearDummyRetainedMsg(dummyTopic);
 
         initializing = false;
 
-        if (log.isDebugEnabled()) {
-            long endTime = System.nanoTime();
-            log.debug("Finished retained messages initLoad for {} messages within time: {} nanos", totalMessageCount, endTime - startTime);
-        }
-
         return allRetainedMsgs;
     }
 
@@ -168,6 +153,7 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
                         }
                     }
                     stats.log(newRetainedMsgCount, clearedRetainedMsgCount);
+                    updateProcessedOffsets(messages);
                     retainedMsgConsumer.commitSync();
                 } catch (Exception e) {
                     if (!stopped) {
@@ -183,6 +169,55 @@ public class RetainedMsgConsumerImpl implements RetainedMsgConsumer {
         });
     }
 
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
+    private Map<Integer, Long> restoreFromSnapshot(Map<String, RetainedMsg> allRetainedMsgs) {
+        Optional<BrokerSnapshot> snapshot = snapshotStorage.read(BrokerSnapshotType.RETAINED_MSGS);
+        if (snapshot.isEmpty() || !snapshotStorage.validateOffsets(snapshot.get(), retainedMsgConsumer)) {
+            return Collections.emptyMap();
+        }
+        try {
+            for (BrokerSnapshotEntry entry : snapshot.get().getEntries()) {
+                RetainedMsgProto retainedMsgProto = RetainedMsgProto.parseFrom(entry.getValue());
+                DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders(new HashMap<>(entry.getHeaders()));
+                allRetainedMsgs.put(entry.getKey(), convertToRetainedMsg(new TbProtoQueueMsg<>(entry.getKey(), retainedMsgProto, headers)));
+            }
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Failed to decode retained messages snapshot.", e);
+            allRetainedMsgs.clear();
+            return Collections.emptyMap();
+        }
+        log.info("Restored {} retained messages from snapshot.", allRetainedMsgs.size());
+        return snapshot.get().getOffsets();
+    }
+
+    private void handleInitLoadMsg(String dummyTopic, TbProtoQueueMsg<RetainedMsgProto> msg, Map<String, RetainedMsg> changes) {
+        String topic = msg.getKey();
+        if (topic.startsWith(BrokerConstants.SYSTEMS_TOPIC_PREFIX) || dummyTopic.equals(topic)) {
+            return;
+        }
+        if (isRetainedMsgProtoEmpty(msg.getValue())) {
+            // this means Kafka log compaction service haven't cleared empty message yet
+            log.trace("[{}] Encountered empty RetainedMsg.", topic);
+            changes.put(topic, null);
+        } else {
+            changes.put(topic, convertToRetainedMsg(msg));
+        }
+    }
+
+    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<RetainedMsgProto>> createPartitionConsumer(int partition) {
+        return retainedMsgQueueFactory.createConsumer(serviceInfoProvider.getServiceId() + "-init-load-" + partition, consumerGroupId);
+    }
+
+    private void updateProcessedOffsets(List<TbProtoQueueMsg<RetainedMsgProto>> messages) {
+        for (TbProtoQueueMsg<RetainedMsgProto> msg : messages) {
+            processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
+        }
+    }
+
     private static RetainedMsg convertToRetainedMsg(TbProtoQueueMsg<RetainedMsgProto> msg) {
         RetainedMsg retainedMsg = ProtoConverter.convertProtoToRetainedMsg(msg.getValue());
         MqttPropertiesUtil.addMsgExpiryIntervalToProps(retainedMsg.getProperties(), msg.getHeaders());
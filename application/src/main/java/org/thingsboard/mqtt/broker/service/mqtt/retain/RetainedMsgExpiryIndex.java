@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Expiry times of the retained messages with the message expiry interval, ordered by the expiry time.
+ * Only the topic and the creation time are kept, so the index does not retain the payloads.
+ * Entries are not removed when the retained msg is replaced or cleared, an expired entry is skipped
+ * if the current msg of the topic was created at a different time. Expired entries are polled by the single thread.
+ */
+class RetainedMsgExpiryIndex {
+
+    private static final long NO_EXPIRY = -1L;
+
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>();
+
+    void add(String topic, RetainedMsg retainedMsg) {
+        long expiryTs = getExpiryTs(retainedMsg);
+        if (expiryTs != NO_EXPIRY) {
+            queue.add(new Entry(expiryTs, topic, retainedMsg.getCreatedTime()));
+        }
+    }
+
+    /**
+     * Polls the expired entries and passes the topics whose current msg is the indexed one to the consumer.
+     */
+    void pollExpired(long currentTs, Map<String, RetainedMsg> retainedMessagesMap, Consumer<String> expiredTopicConsumer) {
+        Entry entry;
+        while ((entry = queue.peek()) != null && entry.expiryTs() < currentTs) {
+            // the head can only be replaced by an entry with the same or earlier expiry time, so the polled one is expired too
+            entry = queue.poll();
+            if (isCurrent(entry, retainedMessagesMap.get(entry.topic()))) {
+                expiredTopicConsumer.accept(entry.topic());
+            }
+        }
+    }
+
+    /**
+     * Drops the entries of the replaced and cleared messages by re-indexing the current ones.
+     */
+    void rebuild(Map<String, RetainedMsg> retainedMessagesMap) {
+        queue.clear();
+        retainedMessagesMap.forEach(this::add);
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    private static boolean isCurrent(Entry entry, RetainedMsg retainedMsg) {
+        // a msg replaced within the same millisecond has the same creation time, but may have another expiry interval
+        return retainedMsg != null && retainedMsg.getCreatedTime() == entry.createdTime()
+                && getExpiryTs(retainedMsg) == entry.expiryTs();
+    }
+
+    private static long getExpiryTs(RetainedMsg retainedMsg) {
+        MqttProperties.IntegerProperty property = MqttPropertiesUtil.getPubExpiryIntervalProperty(retainedMsg);
+        if (property == null || property.value() <= 0) {
+            return NO_EXPIRY;
+        }
+        return retainedMsg.getCreatedTime() + TimeUnit.SECONDS.toMillis(property.value());
+    }
+
+    private record Entry(long expiryTs, String topic, long createdTime) implements Comparable<Entry> {
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(expiryTs, other.expiryTs);
+        }
+    }
+}
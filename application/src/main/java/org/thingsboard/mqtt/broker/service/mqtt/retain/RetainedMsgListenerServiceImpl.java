@@ -43,17 +43,22 @@ import static org.thingsboard.mqtt.broker.common.data.util.CallbackUtil.createCa
 @RequiredArgsConstructor
 public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerService {
 
+    private static final int MIN_EXPIRY_INDEX_SIZE_TO_REBUILD = 1000;
+
     private final RetainedMsgService retainedMsgService;
     private final RetainedMsgPersistenceService retainedMsgPersistenceService;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
     private final RetainedMsgSystemRequestProcessor retainedMsgSystemRequestProcessor;
+    private final RetainedMsgOffHeapStore retainedMsgOffHeapStore;
+
+    private final RetainedMsgExpiryIndex retainedMsgExpiryIndex = new RetainedMsgExpiryIndex();
 
     private ConcurrentMap<String, RetainedMsg> retainedMessagesMap;
 
     @Override
     public void init(Map<String, RetainedMsg> retainedMsgMap) {
-        this.retainedMessagesMap = new ConcurrentHashMap<>(retainedMsgMap);
+        this.retainedMessagesMap = new ConcurrentHashMap<>(retainedMsgMap.size());
         statsManager.registerRetainedMsgStats(retainedMessagesMap);
 
         log.info("Restoring stored retained messages for {} topics.", retainedMsgMap.size());
@@ -61,7 +66,10 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             if (log.isTraceEnabled()) {
                 log.trace("[{}] Restoring retained msg - {}.", topic, retainedMsg);
             }
-            retainedMsgService.saveRetainedMsg(topic, retainedMsg);
+            RetainedMsg storedRetainedMsg = retainedMsgOffHeapStore.offload(retainedMsg);
+            retainedMessagesMap.put(topic, storedRetainedMsg);
+            retainedMsgExpiryIndex.add(topic, storedRetainedMsg);
+            retainedMsgService.saveRetainedMsg(topic, storedRetainedMsg);
         });
     }
 
@@ -109,8 +117,10 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
         if (log.isTraceEnabled()) {
             log.trace("[{}] Executing cacheRetainedMsg {}.", topic, retainedMsg);
         }
-        retainedMsgService.saveRetainedMsg(topic, retainedMsg);
-        retainedMessagesMap.put(topic, retainedMsg);
+        RetainedMsg storedRetainedMsg = retainedMsgOffHeapStore.offload(retainedMsg);
+        retainedMsgService.saveRetainedMsg(topic, storedRetainedMsg);
+        retainedMsgOffHeapStore.release(retainedMessagesMap.put(topic, storedRetainedMsg));
+        retainedMsgExpiryIndex.add(topic, storedRetainedMsg);
     }
 
     @Override
@@ -141,7 +151,7 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             log.trace("[{}] Executing clearRetainedMsg", topic);
         }
         retainedMsgService.clearRetainedMsg(topic);
-        retainedMessagesMap.remove(topic);
+        retainedMsgOffHeapStore.release(retainedMessagesMap.remove(topic));
     }
 
     @Override
@@ -216,15 +226,14 @@ public class RetainedMsgListenerServiceImpl implements RetainedMsgListenerServic
             }
             return;
         }
-        long currentTs = System.currentTimeMillis();
-        retainedMessagesMap.forEach((topic, retainedMsg) -> {
-            boolean retainedMsgExpired = MqttPropertiesUtil.isRetainedMsgExpired(retainedMsg, currentTs);
-            if (retainedMsgExpired) {
-                if (log.isDebugEnabled()) {
-                    log.debug("[{}] Clearing retained message by scheduled expiry interval!", retainedMsg.getTopic());
-                }
-                clearRetainedMsgAndPersist(retainedMsg.getTopic());
+        retainedMsgExpiryIndex.pollExpired(System.currentTimeMillis(), retainedMessagesMap, topic -> {
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Clearing retained message by scheduled expiry interval!", topic);
             }
+            clearRetainedMsgAndPersist(topic);
         });
+        if (retainedMsgExpiryIndex.size() > Math.max(2 * retainedMessagesMap.size(), MIN_EXPIRY_INDEX_SIZE_TO_REBUILD)) {
+            retainedMsgExpiryIndex.rebuild(retainedMessagesMap);
+        }
     }
 }
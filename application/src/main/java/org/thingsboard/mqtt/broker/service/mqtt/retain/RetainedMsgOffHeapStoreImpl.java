@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the payloads of the retained messages in pooled direct memory, so the trie and the retained messages map
+ * hold only the small on-heap part of the msg. Payloads are delivered as slices of the stored buffer without copying.
+ * <p>
+ * The store owns a reference to every stored payload and drops it when the msg is replaced or cleared.
+ * The payload is freed by its last holder: the store, a reader copying it, or a PUBLISH holding its slice.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetainedMsgOffHeapStoreImpl implements RetainedMsgOffHeapStore {
+
+    private final StatsManager statsManager;
+
+    private final AtomicLong payloadBytes = new AtomicLong();
+
+    @Setter
+    @Value("${mqtt.retain-msg.off-heap.enabled:false}")
+    private boolean enabled;
+    @Setter
+    @Value("${mqtt.retain-msg.off-heap.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    private PooledByteBufAllocator allocator;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        allocator = new PooledByteBufAllocator(true);
+        statsManager.registerRetainedMsgOffHeapStats(this);
+        log.info("Retained messages payloads are stored off-heap, max size {} MB", maxSizeMb);
+    }
+
+    @Override
+    public RetainedMsg offload(RetainedMsg retainedMsg) {
+        if (!enabled || retainedMsg.isOffHeap() || retainedMsg.getPayload() == null) {
+            return retainedMsg;
+        }
+        int payloadSize = retainedMsg.getPayloadSize();
+        // the pinned memory also counts the freed payloads that are still being sent to subscribers
+        if (payloadBytes.addAndGet(payloadSize) > getCapacityBytes() || getPinnedBytes() + payloadSize > getCapacityBytes()) {
+            payloadBytes.addAndGet(-payloadSize);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Off-heap store is full, keeping retained msg payload on heap", retainedMsg.getTopic());
+            }
+            return retainedMsg;
+        }
+        ByteBuf payloadBuf = allocator.directBuffer(payloadSize, payloadSize);
+        payloadBuf.writeBytes(retainedMsg.getPayload());
+        return retainedMsg.withOffHeapPayload(new OffHeapPayload(payloadBuf, size -> payloadBytes.addAndGet(-size)));
+    }
+
+    @Override
+    public void release(RetainedMsg retainedMsg) {
+        if (retainedMsg != null && retainedMsg.isOffHeap()) {
+            retainedMsg.getOffHeapPayload().release();
+        }
+    }
+
+    @Override
+    public long getPayloadBytes() {
+        return payloadBytes.get();
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocator == null ? 0 : allocator.metric().usedDirectMemory();
+    }
+
+    @Override
+    public long getCapacityBytes() {
+        return maxSizeMb * 1024 * 1024;
+    }
+
+    long getPinnedBytes() {
+        return allocator == null ? 0 : allocator.pinnedDirectMemory();
+    }
+}
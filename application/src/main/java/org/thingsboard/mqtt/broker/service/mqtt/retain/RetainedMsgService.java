@@ -15,8 +15,8 @@
  */
 package org.thingsboard.mqtt.broker.service.mqtt.retain;
 
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 
+import java.util.Iterator;
 import java.util.List;
 
 public interface RetainedMsgService {
@@ -27,5 +27,7 @@ public interface RetainedMsgService {
 
     List<RetainedMsg> getRetainedMessages(String topicFilter);
 
-    void clearEmptyTopicNodes() throws RetainMsgTrieClearException;
+    Iterator<RetainedMsg> getRetainedMessagesIterator(String topicFilter);
+
+    void clearEmptyTopicNodes();
 }
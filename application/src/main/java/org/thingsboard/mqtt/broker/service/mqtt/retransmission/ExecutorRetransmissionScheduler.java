@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ExecutorRetransmissionScheduler implements RetransmissionScheduler {
+
+    private final ScheduledExecutorService scheduler;
+
+    public ExecutorRetransmissionScheduler(int corePoolSize) {
+        this.scheduler = Executors.newScheduledThreadPool(corePoolSize, ThingsBoardThreadFactory.forName("retransmission-scheduler"));
+    }
+
+    @Override
+    public RetransmissionTimer schedule(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> future = scheduler.schedule(task, delay, unit);
+        return () -> future.cancel(true);
+    }
+
+    @Override
+    public void shutdown() {
+        ThingsBoardExecutors.shutdownAndAwaitTermination(scheduler, "Retransmission scheduler");
+    }
+}
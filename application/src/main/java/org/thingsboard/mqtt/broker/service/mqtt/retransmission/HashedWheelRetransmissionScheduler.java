@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules retransmissions on a single Netty {@link HashedWheelTimer} thread. Scheduling and cancelling are O(1),
+ * unlike the delay queue heap of a scheduled executor, at the cost of firing with the precision of one tick.
+ * Expired tasks must stay cheap since they all run on the timer thread.
+ */
+@Slf4j
+public class HashedWheelRetransmissionScheduler implements RetransmissionScheduler {
+
+    private final HashedWheelTimer timer;
+
+    public HashedWheelRetransmissionScheduler(long tickDurationMs, int ticksPerWheel) {
+        this.timer = new HashedWheelTimer(ThingsBoardThreadFactory.forName("retransmission-wheel-timer"),
+                tickDurationMs, TimeUnit.MILLISECONDS, ticksPerWheel, false);
+        this.timer.start();
+    }
+
+    @Override
+    public RetransmissionTimer schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = timer.newTimeout(t -> task.run(), delay, unit);
+        return timeout::cancel;
+    }
+
+    @Override
+    public void shutdown() {
+        Set<Timeout> unprocessed = timer.stop();
+        if (log.isDebugEnabled()) {
+            log.debug("Retransmission wheel timer stopped, {} pending retransmissions dropped", unprocessed.size());
+        }
+    }
+}
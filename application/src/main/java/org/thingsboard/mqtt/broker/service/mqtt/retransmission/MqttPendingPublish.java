@@ -24,7 +24,6 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.BiConsumer;
 
 @Getter
@@ -60,7 +59,7 @@ public class MqttPendingPublish {
         this.pubRelRetransmissionHandler = new RetransmissionHandler<>(operation, retransmissionInitDelay, retransmissionPeriod);
     }
 
-    public void startPublishRetransmissionTimer(ScheduledExecutorService scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
+    public void startPublishRetransmissionTimer(RetransmissionScheduler scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
         this.publishRetransmissionHandler.setHandler(((fixedHeader, originalMessage) ->
                 sendPacket.accept(sessionCtx, new MqttPublishMessage(fixedHeader, originalMessage.variableHeader(), this.payload.retain()))));
         this.publishRetransmissionHandler.start(scheduler);
@@ -74,7 +73,7 @@ public class MqttPendingPublish {
         this.pubRelRetransmissionHandler.setOriginalMessage(pubRelMessage);
     }
 
-    public void startPubRelRetransmissionTimer(ScheduledExecutorService scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
+    public void startPubRelRetransmissionTimer(RetransmissionScheduler scheduler, BiConsumer<ClientSessionCtx, MqttMessage> sendPacket) {
         this.pubRelRetransmissionHandler.setHandler((fixedHeader, originalMessage) ->
                 sendPacket.accept(sessionCtx, new MqttMessage(fixedHeader, originalMessage.variableHeader())));
         this.pubRelRetransmissionHandler.start(scheduler);
@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.util.ReferenceCountUtil;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Pending publishes of a session indexed directly by packet id (1..65535), replacing a map keyed by boxed packet ids.
+ * Slots are grouped into pages of 256 that are allocated on first use, so a session with a small
+ * in-flight window does not reserve all 65535 slots up front.
+ * <p>
+ * Also collects the retransmitted packets of the session, so that the packets that are due at the same time
+ * are written to the channel by one event loop task and flushed once.
+ */
+public class PendingPublishes {
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int PAGES = (BrokerConstants.MAX_PACKET_ID + 1) >>> PAGE_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<MqttPendingPublish>> pages = new AtomicReferenceArray<>(PAGES);
+    private final Queue<MqttMessage> resendQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean resendScheduled = new AtomicBoolean(false);
+
+    public MqttPendingPublish get(int packetId) {
+        AtomicReferenceArray<MqttPendingPublish> page = pages.get(pageIdx(packetId));
+        return page == null ? null : page.get(packetId & PAGE_MASK);
+    }
+
+    public boolean containsKey(int packetId) {
+        return get(packetId) != null;
+    }
+
+    public void put(MqttPendingPublish pendingPublish) {
+        int packetId = pendingPublish.getPacketId();
+        getOrCreatePage(pageIdx(packetId)).set(packetId & PAGE_MASK, pendingPublish);
+    }
+
+    public MqttPendingPublish remove(int packetId) {
+        AtomicReferenceArray<MqttPendingPublish> page = pages.get(pageIdx(packetId));
+        return page == null ? null : page.getAndSet(packetId & PAGE_MASK, null);
+    }
+
+    public void forEach(Consumer<MqttPendingPublish> action) {
+        for (int i = 0; i < PAGES; i++) {
+            AtomicReferenceArray<MqttPendingPublish> page = pages.get(i);
+            if (page == null) {
+                continue;
+            }
+            for (int j = 0; j < PAGE_SIZE; j++) {
+                MqttPendingPublish pendingPublish = page.get(j);
+                if (pendingPublish != null) {
+                    action.accept(pendingPublish);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < PAGES; i++) {
+            pages.set(i, null);
+        }
+    }
+
+    /**
+     * @return true if the caller has to schedule {@link #drainResends(Consumer)}, false if a drain is already scheduled
+     */
+    public boolean addResend(MqttMessage mqttMsg) {
+        resendQueue.add(mqttMsg);
+        return resendScheduled.compareAndSet(false, true);
+    }
+
+    public void drainResends(Consumer<MqttMessage> action) {
+        resendScheduled.set(false);
+        MqttMessage mqttMsg;
+        while ((mqttMsg = resendQueue.poll()) != null) {
+            action.accept(mqttMsg);
+        }
+    }
+
+    /**
+     * Releases the retransmitted packets that will not be written, since the channel is closed or its event loop is shut down.
+     */
+    public void releaseResends() {
+        resendScheduled.set(false);
+        MqttMessage mqttMsg;
+        while ((mqttMsg = resendQueue.poll()) != null) {
+            ReferenceCountUtil.release(mqttMsg);
+        }
+    }
+
+    private AtomicReferenceArray<MqttPendingPublish> getOrCreatePage(int pageIdx) {
+        AtomicReferenceArray<MqttPendingPublish> page = pages.get(pageIdx);
+        if (page != null) {
+            return page;
+        }
+        AtomicReferenceArray<MqttPendingPublish> newPage = new AtomicReferenceArray<>(PAGE_SIZE);
+        return pages.compareAndSet(pageIdx, null, newPage) ? newPage : pages.get(pageIdx);
+    }
+
+    private static int pageIdx(int packetId) {
+        return (packetId >>> PAGE_SHIFT) & (PAGES - 1);
+    }
+}
@@ -23,8 +23,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
@@ -37,14 +35,14 @@ public class RetransmissionHandler<T extends MqttMessage> {
     private final int retransmissionPeriod;
 
     private volatile boolean stopped;
-    private ScheduledFuture<?> timer;
+    private volatile RetransmissionTimer timer;
     private int timeout;
     @Setter
     private BiConsumer<MqttFixedHeader, T> handler;
     @Setter
     private T originalMessage;
 
-    void start(ScheduledExecutorService scheduler) {
+    void start(RetransmissionScheduler scheduler) {
         if (scheduler == null) {
             throw new NullPointerException("Retransmission scheduler is null");
         }
@@ -55,7 +53,7 @@ public class RetransmissionHandler<T extends MqttMessage> {
         this.startTimer(scheduler);
     }
 
-    private void startTimer(ScheduledExecutorService scheduler) {
+    private void startTimer(RetransmissionScheduler scheduler) {
         if (stopped || pendingOperation.isCanceled()) {
             return;
         }
@@ -88,7 +86,7 @@ public class RetransmissionHandler<T extends MqttMessage> {
     void stop() {
         stopped = true;
         if (this.timer != null) {
-            this.timer.cancel(true);
+            this.timer.cancel();
         }
     }
 }
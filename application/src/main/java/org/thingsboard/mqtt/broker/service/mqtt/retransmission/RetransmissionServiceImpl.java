@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
 
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
@@ -26,13 +27,9 @@ import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
-import org.thingsboard.mqtt.broker.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Slf4j
@@ -40,22 +37,35 @@ public class RetransmissionServiceImpl implements RetransmissionService {
 
     @Value("${mqtt.retransmission.enabled:true}")
     private boolean retransmissionEnabled;
+    @Value("${mqtt.retransmission.scheduler-type:EXECUTOR}")
+    private RetransmissionSchedulerType schedulerType;
     @Value("${mqtt.retransmission.scheduler-pool-size:0}")
     private int schedulerPoolSize;
+    @Value("${mqtt.retransmission.wheel-tick-duration-ms:100}")
+    private long wheelTickDurationMs;
+    @Value("${mqtt.retransmission.wheel-ticks-per-wheel:512}")
+    private int wheelTicksPerWheel;
     @Value("${mqtt.retransmission.initial-delay:10}")
     private int retransmissionInitDelay;
     @Value("${mqtt.retransmission.period:5}")
     private int retransmissionPeriod;
 
-    private ScheduledExecutorService scheduler;
+    private RetransmissionScheduler scheduler;
 
     @PostConstruct
     public void init() {
         if (retransmissionEnabled) {
-            this.scheduler = Executors.newScheduledThreadPool(getCorePoolSize(), ThingsBoardThreadFactory.forName("retransmission-scheduler"));
+            this.scheduler = newScheduler();
         }
     }
 
+    private RetransmissionScheduler newScheduler() {
+        if (schedulerType == RetransmissionSchedulerType.HASHED_WHEEL) {
+            return new HashedWheelRetransmissionScheduler(wheelTickDurationMs, wheelTicksPerWheel);
+        }
+        return new ExecutorRetransmissionScheduler(getCorePoolSize());
+    }
+
     private int getCorePoolSize() {
         if (schedulerPoolSize == 0) {
             return Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
@@ -66,7 +76,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
     @PreDestroy
     public void destroy() {
         if (this.scheduler != null) {
-            ThingsBoardExecutors.shutdownAndAwaitTermination(scheduler, "Retransmission scheduler");
+            scheduler.shutdown();
         }
     }
 
@@ -91,10 +101,10 @@ public class RetransmissionServiceImpl implements RetransmissionService {
         if (log.isTraceEnabled()) {
             log.trace("[{}][{}] Executing startPublishRetransmission", sessionCtx.getClientId(), mqttPubMsg);
         }
-        ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes = sessionCtx.getPendingPublishes();
+        PendingPublishes pendingPublishes = sessionCtx.getPendingPublishes();
 
         MqttPendingPublish pendingPublish = newMqttPendingPublish(sessionCtx, mqttPubMsg);
-        pendingPublishes.put(pendingPublish.getPacketId(), pendingPublish);
+        pendingPublishes.put(pendingPublish);
 
         ChannelFuture channelFuture = sessionCtx.getChannel().writeAndFlush(mqttPubMsg);
         channelFuture.addListener(result -> {
@@ -105,7 +115,7 @@ public class RetransmissionServiceImpl implements RetransmissionService {
                 if (pendingPublish.isSent() && pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
                     pendingPublishes.remove(pendingPublish.getPacketId());
                 } else if (pendingPublish.isSent()) {
-                    pendingPublish.startPublishRetransmissionTimer(this.scheduler, this::sendAndFlush);
+                    pendingPublish.startPublishRetransmissionTimer(this.scheduler, this::resend);
                 } else {
                     pendingPublishes.remove(pendingPublish.getPacketId());
                 }
@@ -113,8 +123,22 @@ public class RetransmissionServiceImpl implements RetransmissionService {
         });
     }
 
-    private void sendAndFlush(ClientSessionCtx sessionCtx, MqttMessage mqttMsg) {
-        sessionCtx.getChannel().writeAndFlush(mqttMsg);
+    private void resend(ClientSessionCtx sessionCtx, MqttMessage mqttMsg) {
+        PendingPublishes pendingPublishes = sessionCtx.getPendingPublishes();
+        if (pendingPublishes.addResend(mqttMsg)) {
+            ChannelHandlerContext channel = sessionCtx.getChannel();
+            try {
+                channel.executor().execute(() -> {
+                    pendingPublishes.drainResends(channel::write);
+                    channel.flush();
+                });
+            } catch (RejectedExecutionException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("[{}] Channel event loop rejected the retransmission, dropping pending resends", sessionCtx.getClientId());
+                }
+                pendingPublishes.releaseResends();
+            }
+        }
     }
 
     private MqttPendingPublish newMqttPendingPublish(ClientSessionCtx sessionCtx,
@@ -189,14 +213,14 @@ public class RetransmissionServiceImpl implements RetransmissionService {
                 log.debug("[{}] Sending persisted PUBREL packet {}", ctx.getClientId(), pubRelMsg);
             }
             pendingPublish = newMqttPendingPublish(ctx, pubRelMsg);
-            ctx.getPendingPublishes().put(pendingPublish.getPacketId(), pendingPublish);
+            ctx.getPendingPublishes().put(pendingPublish);
         } else {
             pendingPublish.onPubAckReceived();
         }
         ctx.getChannel().writeAndFlush(pubRelMsg);
 
         pendingPublish.setPubRelMessage(pubRelMsg);
-        pendingPublish.startPubRelRetransmissionTimer(this.scheduler, this::sendAndFlush);
+        pendingPublish.startPubRelRetransmissionTimer(this.scheduler, this::resend);
     }
 
     @Override
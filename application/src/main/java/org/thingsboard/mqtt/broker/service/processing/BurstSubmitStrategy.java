@@ -35,6 +35,7 @@ public class BurstSubmitStrategy implements SubmitStrategy {
 
     private final String consumerId;
     private final boolean processInParallel;
+    private final PublishMsgDispatchExecutor dispatchExecutor;
 
     private Map<UUID, PublishMsgWithId> publishMsgMap;
 
@@ -53,7 +54,14 @@ public class BurstSubmitStrategy implements SubmitStrategy {
         if (log.isDebugEnabled()) {
             log.debug("Consumer [{}] processing [{}] messages.", consumerId, publishMsgMap.size());
         }
-        if (processInParallel) {
+        if (dispatchExecutor.isEnabled()) {
+            try {
+                dispatchExecutor.dispatch(publishMsgMap.values(), msgConsumer);
+            } catch (InterruptedException e) {
+                log.info("[{}] Dispatching of messages was interrupted", consumerId);
+                Thread.currentThread().interrupt();
+            }
+        } else if (processInParallel) {
             Map<String, List<PublishMsgWithId>> msgsByClientMap = collectToMapByClientId();
             msgsByClientMap
                     .values()
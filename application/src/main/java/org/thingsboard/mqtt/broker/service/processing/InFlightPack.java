@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@RequiredArgsConstructor
+class InFlightPack {
+
+    private final PackProcessingContext ctx;
+    // offset of the next message to consume per partition, i.e. what gets committed once the pack is completed
+    private final Map<Integer, Long> nextOffsets;
+    private final int msgCount;
+    private final long startNanos;
+    private final long deadlineNanos;
+
+    boolean isCompleted(long nowNanos) {
+        return ctx.isProcessed() || nowNanos - deadlineNanos >= 0;
+    }
+
+    void await() throws InterruptedException {
+        ctx.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Packs dispatched by one msg-all consumer and not committed yet, in poll order. A pack may complete before
+ * the packs polled earlier, so offsets are released for commit only from the completed head of the queue and
+ * the committed position of a partition never moves past a message that is still being processed.
+ */
+class InFlightPackQueue {
+
+    private final Deque<InFlightPack> packs = new ArrayDeque<>();
+    private final int maxSize;
+
+    InFlightPackQueue(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    void add(InFlightPack pack) {
+        packs.add(pack);
+    }
+
+    InFlightPack peek() {
+        return packs.peek();
+    }
+
+    boolean isFull() {
+        return packs.size() >= maxSize;
+    }
+
+    int size() {
+        return packs.size();
+    }
+
+    /**
+     * Removes the completed or timed-out packs from the head of the queue.
+     *
+     * @return offsets to commit per partition, empty if the head pack is still in progress
+     */
+    Map<Integer, Long> pollCompleted(long nowNanos, Consumer<InFlightPack> completedPackConsumer) {
+        Map<Integer, Long> offsets = new HashMap<>();
+        InFlightPack head;
+        while ((head = packs.peek()) != null && head.isCompleted(nowNanos)) {
+            packs.poll();
+            completedPackConsumer.accept(head);
+            head.getNextOffsets().forEach((partition, offset) -> offsets.merge(partition, offset, Math::max));
+        }
+        return offsets;
+    }
+}
@@ -16,6 +16,8 @@
 package org.thingsboard.mqtt.broker.service.processing;
 
 import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -142,11 +144,17 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         final PersistentMsgSubscriptions persistentSubscriptions = PersistentMsgSubscriptions.newInstance(msgSubscriptions, processSubscriptionsInParallel);
         long startTime = System.nanoTime();
 
-        if (!CollectionUtils.isEmpty(msgSubscriptions.getCommonSubscriptions())) {
-            persistentSubscriptions.processSubscriptions(msgSubscriptions.getCommonSubscriptions(), publishMsgProto, subscription -> deliver(publishMsgProto, subscription));
-        }
-        if (!CollectionUtils.isEmpty(msgSubscriptions.getTargetDeviceSharedSubscriptions())) {
-            persistentSubscriptions.processSubscriptions(msgSubscriptions.getTargetDeviceSharedSubscriptions(), publishMsgProto, subscription -> deliver(publishMsgProto, subscription));
+        // wraps the proto payload without copying, every local subscriber gets a retained duplicate of it
+        ByteBuf sharedPayload = Unpooled.wrappedBuffer(publishMsgProto.getPayload().asReadOnlyByteBuffer());
+        try {
+            if (!CollectionUtils.isEmpty(msgSubscriptions.getCommonSubscriptions())) {
+                persistentSubscriptions.processSubscriptions(msgSubscriptions.getCommonSubscriptions(), publishMsgProto, subscription -> deliver(publishMsgProto, subscription, sharedPayload));
+            }
+            if (!CollectionUtils.isEmpty(msgSubscriptions.getTargetDeviceSharedSubscriptions())) {
+                persistentSubscriptions.processSubscriptions(msgSubscriptions.getTargetDeviceSharedSubscriptions(), publishMsgProto, subscription -> deliver(publishMsgProto, subscription, sharedPayload));
+            }
+        } finally {
+            sharedPayload.release();
         }
 
         if (publishMsgProcessingTimerStats != null) {
@@ -175,7 +183,7 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
                 return new MsgSubscriptions(
                         collectCommonSubscriptions(clientSubscriptions, senderClientId),
                         sharedSubscriptions.getApplicationSubscriptions(),
-                        deviceSharedSubscriptionProcessor.getTargetSubscriptions(sharedSubscriptions.getDeviceSubscriptions(), publishMsgProto.getQos())
+                        deviceSharedSubscriptionProcessor.getTargetSubscriptions(sharedSubscriptions.getDeviceSubscriptions(), publishMsgProto.getQos(), senderClientId)
                 );
             }
         }
@@ -269,8 +277,8 @@ public class MsgDispatcherServiceImpl implements MsgDispatcherService {
         return first.compareAndGetHigherQosAndAllSubscriptionIds(second);
     }
 
-    private void deliver(PublishMsgProto publishMsgProto, Subscription subscription) {
-        downLinkProxy.sendBasicMsg(subscription, publishMsgProto);
+    private void deliver(PublishMsgProto publishMsgProto, Subscription subscription, ByteBuf sharedPayload) {
+        downLinkProxy.sendBasicMsg(subscription, publishMsgProto, sharedPayload);
     }
 
     private DefaultTbQueueMsgHeaders createHeaders(PublishMsg publishMsg) {
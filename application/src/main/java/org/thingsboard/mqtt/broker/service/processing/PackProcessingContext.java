@@ -43,6 +43,10 @@ public class PackProcessingContext {
         return processingTimeoutLatch.await(packProcessingTimeout, timeUnit);
     }
 
+    public boolean isProcessed() {
+        return processingTimeoutLatch.getCount() == 0;
+    }
+
     public void onSuccess(UUID id) {
         PublishMsgWithId msg = pendingMap.remove(id);
         if (msg != null) {
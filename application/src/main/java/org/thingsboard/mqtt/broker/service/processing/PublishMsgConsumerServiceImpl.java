@@ -33,6 +33,8 @@ import org.thingsboard.mqtt.broker.service.stats.PublishMsgConsumerStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -52,6 +54,7 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
     private final MsgDispatcherService msgDispatcherService;
     private final PublishMsgQueueFactory publishMsgQueueFactory;
     private final AckStrategyFactory ackStrategyFactory;
+    private final AckStrategyConfiguration ackStrategyConfiguration;
     private final SubmitStrategyFactory submitStrategyFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final StatsManager statsManager;
@@ -68,10 +71,20 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
     private long pollDuration;
     @Value("${queue.msg-all.pack-processing-timeout}")
     private long packProcessingTimeout;
+    @Value("${queue.msg-all.max-packs-in-flight:1}")
+    private int maxPacksInFlight;
+
+    private boolean pipelined;
 
     @PostConstruct
     public void init() {
         consumersExecutor = ThingsBoardExecutors.initExecutorService(threadsCount, "msg-all-consumer");
+        pipelined = maxPacksInFlight > 1;
+        if (pipelined && ackStrategyConfiguration.getType() != AckStrategyType.SKIP_ALL) {
+            // re-submitting a pack while the next ones are already dispatched would reorder messages of the same publisher
+            log.warn("Pipelined processing of 'tbmq.msg.all' is supported only with {} ack strategy, processing packs one by one", AckStrategyType.SKIP_ALL);
+            pipelined = false;
+        }
     }
 
     @Override
@@ -82,7 +95,11 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
             TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer = publishMsgQueueFactory.createConsumer(consumerId);
             publishMsgConsumers.add(consumer);
             consumer.subscribe();
-            launchConsumer(consumerId, consumer);
+            if (pipelined) {
+                launchPipelinedConsumer(consumerId, consumer);
+            } else {
+                launchConsumer(consumerId, consumer);
+            }
         }
     }
 
@@ -97,17 +114,15 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
                         continue;
                     }
 
-                    List<TbProtoQueueMsg<PublishMsgProto>> msgsAfterRateLimits = applyRateLimits(consumer, msgs);
-                    if (msgsAfterRateLimits == null) {
+                    List<TbProtoQueueMsg<PublishMsgProto>> msgsAfterRateLimits = applyRateLimits(msgs);
+                    if (msgsAfterRateLimits.isEmpty()) {
+                        consumer.commitSync();
                         continue;
                     }
 
                     AckStrategy ackStrategy = ackStrategyFactory.newInstance(consumerId);
                     SubmitStrategy submitStrategy = submitStrategyFactory.newInstance(consumerId);
-                    long packId = counter.incrementAndGet();
-                    if (packId == MAX_VALUE) {
-                        counter.set(0);
-                    }
+                    long packId = nextPackId(counter);
                     var pendingMsgMap = toPendingPubMsgWithIdMap(msgsAfterRateLimits, packId);
                     submitStrategy.init(pendingMsgMap);
 
@@ -115,11 +130,7 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
                     while (!stopped) {
                         PackProcessingContext ctx = new PackProcessingContext(submitStrategy.getPendingMap());
                         int totalMsgCount = ctx.getPendingMap().size();
-                        submitStrategy.process(msg -> {
-                            long msgProcessingStart = System.nanoTime();
-                            msgDispatcherService.processPublishMsg(msg, new BasePublishMsgCallback(msg.getId(), ctx));
-                            stats.logMsgProcessingTime(System.nanoTime() - msgProcessingStart, TimeUnit.NANOSECONDS);
-                        });
+                        submitStrategy.process(msg -> processPublishMsg(msg, ctx, stats));
 
                         if (!stopped) {
                             ctx.await(packProcessingTimeout, TimeUnit.MILLISECONDS);
@@ -155,14 +166,102 @@ public class PublishMsgConsumerServiceImpl implements PublishMsgConsumerService
         });
     }
 
-    private List<TbProtoQueueMsg<PublishMsgProto>> applyRateLimits(TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer,
-                                                                   List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
+    /**
+     * Keeps up to {@code maxPacksInFlight} packs dispatched at once instead of waiting for each pack to be acknowledged.
+     * Packs are still submitted one after another from the single polling thread, so messages of the same publisher
+     * are dispatched in order, and offsets of the completed packs are committed asynchronously in poll order.
+     */
+    private void launchPipelinedConsumer(String consumerId, TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer) {
+        PublishMsgConsumerStats stats = statsManager.createPublishMsgConsumerStats(consumerId);
+        AckStrategy ackStrategy = ackStrategyFactory.newInstance(consumerId);
+        long packProcessingTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(packProcessingTimeout);
+        final AtomicLong counter = new AtomicLong(0);
+        consumersExecutor.submit(() -> {
+            InFlightPackQueue inFlightPacks = new InFlightPackQueue(maxPacksInFlight);
+            while (!stopped) {
+                try {
+                    commitCompletedPacks(consumer, inFlightPacks, ackStrategy, stats);
+                    if (inFlightPacks.isFull()) {
+                        inFlightPacks.peek().await();
+                        continue;
+                    }
+
+                    List<TbProtoQueueMsg<PublishMsgProto>> msgs = consumer.poll(pollDuration);
+                    if (msgs.isEmpty()) {
+                        continue;
+                    }
+                    // rate-limited messages are skipped, but their offsets are committed together with the pack
+                    Map<Integer, Long> nextOffsets = getNextOffsets(msgs);
+                    List<TbProtoQueueMsg<PublishMsgProto>> msgsAfterRateLimits = applyRateLimits(msgs);
+
+                    SubmitStrategy submitStrategy = submitStrategyFactory.newInstance(consumerId);
+                    submitStrategy.init(toPendingPubMsgWithIdMap(msgsAfterRateLimits, nextPackId(counter)));
+                    PackProcessingContext ctx = new PackProcessingContext(submitStrategy.getPendingMap());
+                    long packProcessingStart = System.nanoTime();
+                    submitStrategy.process(msg -> processPublishMsg(msg, ctx, stats));
+                    inFlightPacks.add(new InFlightPack(ctx, nextOffsets, msgsAfterRateLimits.size(),
+                            packProcessingStart, packProcessingStart + packProcessingTimeoutNanos));
+                } catch (Exception e) {
+                    if (!stopped) {
+                        log.error("[{}] Failed to process messages from queue.", consumerId, e);
+                        try {
+                            Thread.sleep(pollDuration);
+                        } catch (InterruptedException e2) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("[{}] Failed to wait until the server has capacity to handle new requests", consumerId, e2);
+                            }
+                        }
+                    }
+                }
+            }
+            log.info("[{}] Publish Msg Consumer stopped.", consumerId);
+        });
+    }
+
+    private void commitCompletedPacks(TbQueueConsumer<TbProtoQueueMsg<PublishMsgProto>> consumer, InFlightPackQueue inFlightPacks,
+                                      AckStrategy ackStrategy, PublishMsgConsumerStats stats) {
+        Map<Integer, Long> offsets = inFlightPacks.pollCompleted(System.nanoTime(), pack -> {
+            if (pack.getMsgCount() == 0) {
+                return;
+            }
+            PackProcessingResult result = new PackProcessingResult(pack.getCtx());
+            pack.getCtx().cleanup();
+            // only SKIP_ALL is allowed in pipelined mode, so the decision is always to commit
+            ackStrategy.analyze(result);
+            stats.log(pack.getMsgCount(), result, true);
+            stats.logPackProcessingTime(pack.getMsgCount(), System.nanoTime() - pack.getStartNanos(), TimeUnit.NANOSECONDS);
+        });
+        consumer.commit(offsets);
+    }
+
+    private void processPublishMsg(PublishMsgWithId msg, PackProcessingContext ctx, PublishMsgConsumerStats stats) {
+        long msgProcessingStart = System.nanoTime();
+        msgDispatcherService.processPublishMsg(msg, new BasePublishMsgCallback(msg.getId(), ctx));
+        stats.logMsgProcessingTime(System.nanoTime() - msgProcessingStart, TimeUnit.NANOSECONDS);
+    }
+
+    private long nextPackId(AtomicLong counter) {
+        long packId = counter.incrementAndGet();
+        if (packId == MAX_VALUE) {
+            counter.set(0);
+        }
+        return packId;
+    }
+
+    private Map<Integer, Long> getNextOffsets(List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
+        Map<Integer, Long> nextOffsets = new HashMap<>();
+        for (var msg : msgs) {
+            nextOffsets.merge(msg.getPartition(), msg.getOffset() + 1, Math::max);
+        }
+        return nextOffsets;
+    }
+
+    private List<TbProtoQueueMsg<PublishMsgProto>> applyRateLimits(List<TbProtoQueueMsg<PublishMsgProto>> msgs) {
         if (rateLimitService.isTotalMsgsLimitEnabled()) {
             int availableTokens = (int) rateLimitService.tryConsumeAsMuchAsPossibleTotalMsgs(msgs.size());
             if (availableTokens == 0) {
                 log.debug("No available tokens left for total msgs bucket during consumer polling. Skipping {} messages", msgs.size());
-                consumer.commitSync();
-                return null;
+                return Collections.emptyList();
             }
             if (log.isDebugEnabled() && availableTokens < msgs.size()) {
                 log.debug("Hitting total messages rate limits on consumer polling. Skipping {} messages", msgs.size() - availableTokens);
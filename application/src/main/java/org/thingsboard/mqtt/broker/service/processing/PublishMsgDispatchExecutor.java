@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches messages of a pack on a fixed set of single-threaded shards, the shard is chosen by the publishing client id.
+ * Messages of one publisher always land on the same shard in their original order, while the subscription lookup and
+ * delivery of different publishers run in parallel. Shards are shared by all msg-all consumers.
+ */
+@Slf4j
+@Component
+public class PublishMsgDispatchExecutor {
+
+    @Setter
+    @Value("${queue.msg-all.dispatch-threads:0}")
+    private int dispatchThreads;
+
+    private ExecutorService[] shards;
+
+    @PostConstruct
+    public void init() {
+        if (dispatchThreads <= 0) {
+            return;
+        }
+        shards = new ExecutorService[dispatchThreads];
+        for (int i = 0; i < dispatchThreads; i++) {
+            shards[i] = ThingsBoardExecutors.initExecutorService(1, "msg-dispatch-" + i);
+        }
+    }
+
+    public boolean isEnabled() {
+        return shards != null;
+    }
+
+    /**
+     * Hands over every shard its part of the messages as a single task and waits until all of them are dispatched,
+     * so the pack is submitted as a whole, the same way as when it is processed on the consumer thread.
+     * Msgs of a shard that rejects the task are not dispatched and are left to the pack processing timeout.
+     */
+    public void dispatch(Collection<PublishMsgWithId> msgs, Consumer<PublishMsgWithId> msgConsumer) throws InterruptedException {
+        List<List<PublishMsgWithId>> msgsByShard = splitByShard(msgs);
+        int nonEmptyShards = 0;
+        for (List<PublishMsgWithId> shardMsgs : msgsByShard) {
+            if (shardMsgs != null) {
+                nonEmptyShards++;
+            }
+        }
+        CountDownLatch latch = new CountDownLatch(nonEmptyShards);
+        for (int i = 0; i < shards.length; i++) {
+            List<PublishMsgWithId> shardMsgs = msgsByShard.get(i);
+            if (shardMsgs != null) {
+                try {
+                    shards[i].execute(() -> {
+                        try {
+                            dispatchShardMsgs(shardMsgs, msgConsumer);
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // shard is shut down, its msgs stay pending and are handled by the ack strategy of the pack
+                    log.warn("Msg dispatch shard {} rejected [{}] msgs", i, shardMsgs.size());
+                    latch.countDown();
+                }
+            }
+        }
+        latch.await();
+    }
+
+    private void dispatchShardMsgs(List<PublishMsgWithId> shardMsgs, Consumer<PublishMsgWithId> msgConsumer) {
+        for (PublishMsgWithId msg : shardMsgs) {
+            try {
+                msgConsumer.accept(msg);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to dispatch msg {}", msg.getPublishMsgProto().getClientId(), msg.getId(), e);
+            }
+        }
+    }
+
+    private List<List<PublishMsgWithId>> splitByShard(Collection<PublishMsgWithId> msgs) {
+        List<List<PublishMsgWithId>> msgsByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            msgsByShard.add(null);
+        }
+        for (PublishMsgWithId msg : msgs) {
+            int shard = Math.floorMod(msg.getPublishMsgProto().getClientId().hashCode(), shards.length);
+            List<PublishMsgWithId> shardMsgs = msgsByShard.get(shard);
+            if (shardMsgs == null) {
+                shardMsgs = new ArrayList<>();
+                msgsByShard.set(shard, shardMsgs);
+            }
+            shardMsgs.add(msg);
+        }
+        return msgsByShard;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (shards != null) {
+            for (ExecutorService shard : shards) {
+                ThingsBoardExecutors.shutdownAndAwaitTermination(shard, "Msg dispatch");
+            }
+        }
+    }
+}
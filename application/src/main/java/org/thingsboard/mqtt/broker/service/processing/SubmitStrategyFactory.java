@@ -15,18 +15,22 @@
  */
 package org.thingsboard.mqtt.broker.service.processing;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class SubmitStrategyFactory {
 
+    private final PublishMsgDispatchExecutor dispatchExecutor;
+
     @Value("${queue.msg-all.msg-parallel-processing:false}")
     private boolean processInParallel;
 
     public SubmitStrategy newInstance(String consumerId) {
-        return new BurstSubmitStrategy(consumerId, processInParallel);
+        return new BurstSubmitStrategy(consumerId, processInParallel, dispatchExecutor);
     }
 }
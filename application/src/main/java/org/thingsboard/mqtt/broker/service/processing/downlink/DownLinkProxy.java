@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.processing.downlink;
 
+import io.netty.buffer.ByteBuf;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
@@ -23,7 +24,10 @@ public interface DownLinkProxy {
 
     void sendBasicMsg(String targetServiceId, String clientId, PublishMsgProto msg);
 
-    void sendBasicMsg(Subscription subscription, PublishMsgProto msg);
+    /**
+     * @param sharedPayload payload of the msg shared by all local subscribers, or null to copy the payload for this subscriber
+     */
+    void sendBasicMsg(Subscription subscription, PublishMsgProto msg, ByteBuf sharedPayload);
 
     void sendPersistentMsg(String targetServiceId, String clientId, DevicePublishMsg devicePublishMsg);
 
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.processing.downlink;
 
+import io.netty.buffer.ByteBuf;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -51,9 +52,9 @@ public class DownLinkProxyImpl implements DownLinkProxy {
     }
 
     @Override
-    public void sendBasicMsg(Subscription subscription, PublishMsgProto msg) {
+    public void sendBasicMsg(Subscription subscription, PublishMsgProto msg, ByteBuf sharedPayload) {
         if (belongsToThisNode(subscription.getServiceId())) {
-            basicDownLinkProcessor.process(subscription, msg);
+            basicDownLinkProcessor.process(subscription, msg, sharedPayload);
         } else {
             queuePublisher.publishBasicMsg(subscription.getServiceId(), subscription.getClientId(), updatePublishMsg(subscription, msg));
         }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.processing.downlink.basic;
 
+import io.netty.buffer.ByteBuf;
 import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
@@ -22,6 +23,6 @@ public interface BasicDownLinkProcessor {
 
     void process(String clientId, PublishMsgProto msg);
 
-    void process(Subscription subscription, PublishMsgProto msg);
+    void process(Subscription subscription, PublishMsgProto msg, ByteBuf sharedPayload);
 
 }
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.processing.downlink.basic;
 
+import io.netty.buffer.ByteBuf;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -61,7 +62,7 @@ public class BasicDownLinkProcessorImpl implements BasicDownLinkProcessor {
     }
 
     @Override
-    public void process(Subscription subscription, PublishMsgProto msg) {
+    public void process(Subscription subscription, PublishMsgProto msg, ByteBuf sharedPayload) {
         ClientSessionCtx clientSessionCtx = clientSessionCtxService.getClientSessionCtx(subscription.getClientId());
         if (clientSessionCtx == null) {
             if (log.isTraceEnabled()) {
@@ -70,7 +71,7 @@ public class BasicDownLinkProcessorImpl implements BasicDownLinkProcessor {
             return;
         }
         if (rateLimitService.checkOutgoingLimits(subscription.getClientId(), msg)) {
-            publishMsgDeliveryService.sendPublishMsgProtoToClient(clientSessionCtx, msg, subscription);
+            publishMsgDeliveryService.sendPublishMsgProtoToClient(clientSessionCtx, msg, subscription, sharedPayload);
         } else {
             disconnectOnRateLimits(subscription.getClientId(), clientSessionCtx.getSessionId());
         }
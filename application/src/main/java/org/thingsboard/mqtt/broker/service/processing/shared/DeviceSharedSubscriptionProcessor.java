@@ -30,8 +30,9 @@ public interface DeviceSharedSubscriptionProcessor {
      *
      * @param deviceSubscriptions A set of device subscriptions for shared topics. May be empty or null.
      * @param qos The quality of service level of published message to apply for the identified subscriptions.
+     * @param publisherClientId The client id of the publisher, used by publisher-sticky processing strategies. May be null.
      * @return A list of target subscriptions, one per shared subscription group. Returns null if input subscriptions are empty or null.
      */
-    List<Subscription> getTargetSubscriptions(Set<Subscription> deviceSubscriptions, int qos);
+    List<Subscription> getTargetSubscriptions(Set<Subscription> deviceSubscriptions, int qos, String publisherClientId);
 
 }
@@ -31,9 +31,10 @@ import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscr
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -44,51 +45,58 @@ public class DeviceSharedSubscriptionProcessorImpl implements DeviceSharedSubscr
     private final SharedSubscriptionProcessingStrategyFactory sharedSubscriptionProcessingStrategyFactory;
 
     @Override
-    public List<Subscription> getTargetSubscriptions(Set<Subscription> deviceSubscriptions, int qos) {
+    public List<Subscription> getTargetSubscriptions(Set<Subscription> deviceSubscriptions, int qos, String publisherClientId) {
         if (CollectionUtils.isEmpty(deviceSubscriptions)) {
             return null;
         }
         List<SharedSubscription> sharedSubscriptionList = toSharedSubscriptionList(deviceSubscriptions);
-        return collectOneSubscriptionFromEveryDeviceSharedSubscription(sharedSubscriptionList, qos);
+        return collectOneSubscriptionFromEveryDeviceSharedSubscription(sharedSubscriptionList, qos, publisherClientId);
     }
 
     List<SharedSubscription> toSharedSubscriptionList(Set<Subscription> sharedSubscriptions) {
-        return sharedSubscriptions.stream()
-                .collect(Collectors.groupingBy(subscription ->
-                        new TopicSharedSubscription(subscription.getTopicFilter(), subscription.getShareName(), subscription.getQos())))
-                .entrySet().stream()
-                .map(entry -> new SharedSubscription(entry.getKey(), entry.getValue()))
-                .collect(Collectors.toList());
+        Map<TopicSharedSubscription, List<Subscription>> groups = new HashMap<>();
+        for (Subscription subscription : sharedSubscriptions) {
+            TopicSharedSubscription key = new TopicSharedSubscription(subscription.getTopicFilter(), subscription.getShareName(), subscription.getQos());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(subscription);
+        }
+        List<SharedSubscription> result = new ArrayList<>(groups.size());
+        for (Map.Entry<TopicSharedSubscription, List<Subscription>> entry : groups.entrySet()) {
+            result.add(new SharedSubscription(entry.getKey(), entry.getValue()));
+        }
+        return result;
     }
 
-    private List<Subscription> collectOneSubscriptionFromEveryDeviceSharedSubscription(List<SharedSubscription> sharedSubscriptions, int qos) {
+    private List<Subscription> collectOneSubscriptionFromEveryDeviceSharedSubscription(List<SharedSubscription> sharedSubscriptions,
+                                                                                       int qos, String publisherClientId) {
+        SharedSubscriptionProcessingStrategy strategy = sharedSubscriptionProcessingStrategyFactory.newInstance();
         List<Subscription> result = new ArrayList<>(sharedSubscriptions.size());
         for (SharedSubscription sharedSubscription : sharedSubscriptions) {
-            result.add(getSubscription(sharedSubscription, qos));
+            result.add(getSubscription(strategy, sharedSubscription, qos, publisherClientId));
         }
         return result;
     }
 
-    private Subscription getSubscription(SharedSubscription sharedSubscription, int qos) {
-        Subscription anyActive = findAnyConnectedSubscription(sharedSubscription.getSubscriptions());
-        if (anyActive == null) {
+    private Subscription getSubscription(SharedSubscriptionProcessingStrategy strategy, SharedSubscription sharedSubscription,
+                                         int qos, String publisherClientId) {
+        Subscription target = findAnyConnectedSubscription(sharedSubscription.getSubscriptions()) == null ?
+                null : strategy.analyze(sharedSubscription, publisherClientId);
+        if (target == null) {
             log.info("[{}] No active subscription found for shared subscription - all are persisted and disconnected", sharedSubscription.getTopicSharedSubscription());
             return createDummySubscription(sharedSubscription, qos);
-        } else {
-            SharedSubscriptionProcessingStrategy strategy = sharedSubscriptionProcessingStrategyFactory.newInstance();
-            return strategy.analyze(sharedSubscription);
         }
+        return target;
     }
 
     Subscription findAnyConnectedSubscription(List<Subscription> subscriptions) {
         if (CollectionUtils.isEmpty(subscriptions)) {
             return null;
         }
-        return subscriptions
-                .stream()
-                .filter(subscription -> subscription.getClientSessionInfo().isConnected())
-                .findAny()
-                .orElse(null);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getClientSessionInfo().isConnected()) {
+                return subscription;
+            }
+        }
+        return null;
     }
 
     private Subscription createDummySubscription(SharedSubscription sharedSubscription, int qos) {
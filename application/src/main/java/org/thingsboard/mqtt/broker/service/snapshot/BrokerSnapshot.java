@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of one compacted topic as seen by this node together with the per-partition offsets
+ * the topic has to be re-read from for the state to become up-to-date again.
+ */
+@Data
+public class BrokerSnapshot {
+
+    private final long createdTime;
+    private final Map<Integer, Long> offsets;
+    private final List<BrokerSnapshotEntry> entries;
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary layout (big-endian):
+ * <pre>
+ * int magic | int version | long createdTime
+ * int partitionsCount | (int partition | long offset) * partitionsCount
+ * int entriesCount | (key | int headersCount | (key | bytes) * headersCount | bytes) * entriesCount
+ * long crc32c of everything above
+ * </pre>
+ * where keys are length-prefixed UTF-8 strings and bytes are length-prefixed byte arrays.
+ * The file is written to a temporary file first and atomically moved in place, so a crash never leaves a half-written snapshot behind.
+ */
+public final class BrokerSnapshotFile {
+
+    static final int MAGIC = 0x54424D53;
+    static final int VERSION = 1;
+
+    private static final int MIN_FILE_SIZE = Integer.BYTES * 4 + Long.BYTES * 2;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private BrokerSnapshotFile() {
+    }
+
+    public static void write(Path path, BrokerSnapshot snapshot) throws IOException {
+        Path tmpPath = path.resolveSibling(path.getFileName() + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getCreatedTime());
+            out.writeInt(snapshot.getOffsets().size());
+            for (Map.Entry<Integer, Long> offset : snapshot.getOffsets().entrySet()) {
+                out.writeInt(offset.getKey());
+                out.writeLong(offset.getValue());
+            }
+            out.writeInt(snapshot.getEntries().size());
+            for (BrokerSnapshotEntry entry : snapshot.getEntries()) {
+                writeString(out, entry.getKey());
+                Map<String, byte[]> headers = entry.getHeaders();
+                out.writeInt(headers.size());
+                for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+                    writeString(out, header.getKey());
+                    writeBytes(out, header.getValue());
+                }
+                writeBytes(out, entry.getValue());
+            }
+            out.flush();
+            // the checksum itself is not a part of the checked content
+            new DataOutputStream(Channels.newOutputStream(channel)).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Streams the file through a buffer and decodes it, verifying the checksum of the content read, so the file is never
+     * held in memory as a whole on top of the decoded entries and there is no limit on its size.
+     *
+     * @throws IOException when the file can not be read, has an unknown format or does not match its checksum
+     */
+    public static BrokerSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MIN_FILE_SIZE) {
+                throw new IOException("Unexpected snapshot file size " + size);
+            }
+            long crcPosition = size - Long.BYTES;
+            long expectedCrc = readCrc(channel, crcPosition);
+
+            CRC32C crc = new CRC32C();
+            CheckedInputStream checkedIn = new CheckedInputStream(
+                    ByteStreams.limit(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE), crcPosition), crc);
+            DataInputStream in = new DataInputStream(checkedIn);
+            BrokerSnapshot snapshot;
+            try {
+                snapshot = decode(in, crcPosition);
+            } catch (EOFException | IllegalArgumentException e) {
+                throw new IOException("Malformed snapshot file", e);
+            }
+            if (ByteStreams.exhaust(checkedIn) != 0 || crc.getValue() != expectedCrc) {
+                throw new IOException("Snapshot file checksum mismatch");
+            }
+            return snapshot;
+        }
+    }
+
+    private static long readCrc(FileChannel channel, long crcPosition) throws IOException {
+        ByteBuffer crcBuffer = ByteBuffer.allocate(Long.BYTES);
+        while (crcBuffer.hasRemaining()) {
+            if (channel.read(crcBuffer, crcPosition + crcBuffer.position()) < 0) {
+                throw new EOFException("Snapshot file is truncated");
+            }
+        }
+        return crcBuffer.getLong(0);
+    }
+
+    private static BrokerSnapshot decode(DataInputStream in, long contentSize) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot file version " + version);
+        }
+        long createdTime = in.readLong();
+
+        int partitionsCount = in.readInt();
+        Map<Integer, Long> offsets = new HashMap<>(partitionsCount);
+        for (int i = 0; i < partitionsCount; i++) {
+            offsets.put(in.readInt(), in.readLong());
+        }
+
+        int entriesCount = in.readInt();
+        List<BrokerSnapshotEntry> entries = new ArrayList<>(entriesCount);
+        for (int i = 0; i < entriesCount; i++) {
+            String key = readString(in, contentSize);
+            int headersCount = in.readInt();
+            Map<String, byte[]> headers = headersCount == 0 ? Map.of() : new HashMap<>(headersCount);
+            for (int j = 0; j < headersCount; j++) {
+                headers.put(readString(in, contentSize), readBytes(in, contentSize));
+            }
+            entries.add(new BrokerSnapshotEntry(key, headers, readBytes(in, contentSize)));
+        }
+        return new BrokerSnapshot(createdTime, offsets, entries);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static String readString(DataInputStream in, long contentSize) throws IOException {
+        return new String(readBytes(in, contentSize), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in, long contentSize) throws IOException {
+        int length = in.readInt();
+        // a corrupted length must not allocate more than the file can hold
+        if (length < 0 || length > contentSize) {
+            throw new IOException("Malformed snapshot file, unexpected length " + length);
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.adaptor.ProtoConverter;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
+import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCache;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsg;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgConsumer;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgListenerService;
+import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionCache;
+import org.thingsboard.mqtt.broker.service.subscription.ClientSubscriptionConsumer;
+import org.thingsboard.mqtt.broker.util.MqttPropertiesUtil;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BrokerSnapshotServiceImpl implements BrokerSnapshotService {
+
+    private final BrokerSnapshotStorage snapshotStorage;
+    private final ClientSessionConsumer clientSessionConsumer;
+    private final ClientSubscriptionConsumer clientSubscriptionConsumer;
+    private final RetainedMsgConsumer retainedMsgConsumer;
+    private final ClientSessionCache clientSessionCache;
+    private final ClientSubscriptionCache clientSubscriptionCache;
+    private final RetainedMsgListenerService retainedMsgListenerService;
+
+    private final Map<BrokerSnapshotType, Map<Integer, Long>> previousOffsets = new EnumMap<>(BrokerSnapshotType.class);
+
+    /**
+     * Listeners apply some changes asynchronously (e.g. subscriptions are updated by client actors),
+     * so the offsets consumed right now may be not yet reflected by the caches.
+     * Each snapshot is therefore stored with the offsets taken one interval earlier.
+     * Re-reading a bit more is harmless since every message holds the whole latest value for its key.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${snapshot.interval-ms:300000}", initialDelayString = "${snapshot.interval-ms:300000}")
+    public void takeSnapshots() {
+        if (!snapshotStorage.isEnabled() || !retainedMsgListenerService.isInitialized()) {
+            return;
+        }
+        takeSnapshot(BrokerSnapshotType.CLIENT_SESSIONS, clientSessionConsumer.getProcessedOffsets(), this::getClientSessionEntries);
+        takeSnapshot(BrokerSnapshotType.CLIENT_SUBSCRIPTIONS, clientSubscriptionConsumer.getProcessedOffsets(), this::getClientSubscriptionEntries);
+        takeSnapshot(BrokerSnapshotType.RETAINED_MSGS, retainedMsgConsumer.getProcessedOffsets(), this::getRetainedMsgEntries);
+    }
+
+    private void takeSnapshot(BrokerSnapshotType type, Map<Integer, Long> currentOffsets, Supplier<List<BrokerSnapshotEntry>> entriesSupplier) {
+        Map<Integer, Long> offsets = previousOffsets.put(type, currentOffsets);
+        if (offsets == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            List<BrokerSnapshotEntry> entries = entriesSupplier.get();
+            snapshotStorage.write(type, new BrokerSnapshot(System.currentTimeMillis(), offsets, entries));
+            if (log.isDebugEnabled()) {
+                log.debug("[{}] Saved snapshot with {} entries within {} nanos", type, entries.size(), System.nanoTime() - startTime);
+            }
+        } catch (Exception e) {
+            log.warn("[{}] Failed to save snapshot", type, e);
+        }
+    }
+
+    private List<BrokerSnapshotEntry> getClientSessionEntries() {
+        Map<String, ClientSessionInfo> clientSessions = clientSessionCache.getAllClientSessions();
+        List<BrokerSnapshotEntry> entries = new ArrayList<>(clientSessions.size());
+        clientSessions.forEach((clientId, clientSessionInfo) -> entries.add(new BrokerSnapshotEntry(clientId, Map.of(),
+                ProtoConverter.convertToClientSessionInfoProto(clientSessionInfo).toByteArray())));
+        return entries;
+    }
+
+    private List<BrokerSnapshotEntry> getClientSubscriptionEntries() {
+        Map<String, Set<TopicSubscription>> clientSubscriptions = clientSubscriptionCache.getAllClientSubscriptions();
+        List<BrokerSnapshotEntry> entries = new ArrayList<>(clientSubscriptions.size());
+        clientSubscriptions.forEach((clientId, topicSubscriptions) -> {
+            if (!topicSubscriptions.isEmpty()) {
+                entries.add(new BrokerSnapshotEntry(clientId, Map.of(),
+                        ProtoConverter.convertToClientSubscriptionsProto(topicSubscriptions).toByteArray()));
+            }
+        });
+        return entries;
+    }
+
+    private List<BrokerSnapshotEntry> getRetainedMsgEntries() {
+        List<RetainedMsg> retainedMessages = retainedMsgListenerService.getRetainedMessages();
+        List<BrokerSnapshotEntry> entries = new ArrayList<>(retainedMessages.size());
+        for (RetainedMsg retainedMsg : retainedMessages) {
+            entries.add(new BrokerSnapshotEntry(retainedMsg.getTopic(),
+                    MqttPropertiesUtil.createHeaders(retainedMsg.getProperties()).getData(),
+                    ProtoConverter.convertToRetainedMsgProto(retainedMsg).toByteArray()));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+
+@Slf4j
+@Component
+public class BrokerSnapshotStorage {
+
+    @Getter
+    @Value("${snapshot.enabled:false}")
+    private boolean enabled;
+    @Value("${snapshot.dir:}")
+    private String dir;
+
+    public Optional<BrokerSnapshot> read(BrokerSnapshotType type) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Path path = getPath(type);
+        if (!Files.exists(path)) {
+            log.info("[{}] Snapshot is not found, the state is going to be loaded from the topic start.", path);
+            return Optional.empty();
+        }
+        try {
+            BrokerSnapshot snapshot = BrokerSnapshotFile.read(path);
+            log.info("[{}] Read snapshot with {} entries created at {}.", path, snapshot.getEntries().size(), snapshot.getCreatedTime());
+            return Optional.of(snapshot);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to read snapshot, the state is going to be loaded from the topic start.", path, e);
+            return Optional.empty();
+        }
+    }
+
+    public void write(BrokerSnapshotType type, BrokerSnapshot snapshot) throws IOException {
+        Path path = getPath(type);
+        Files.createDirectories(path.getParent());
+        BrokerSnapshotFile.write(path, snapshot);
+    }
+
+    /**
+     * @return false if the snapshot offsets do not belong to the current topic (e.g. it was re-created)
+     */
+    public boolean validateOffsets(BrokerSnapshot snapshot, TbQueueControlledOffsetConsumer<?> consumer) {
+        String topic = consumer.getTopic();
+        try {
+            for (Map.Entry<Integer, Long> offset : snapshot.getOffsets().entrySet()) {
+                long endOffset = consumer.getEndOffset(topic, offset.getKey());
+                if (offset.getValue() > endOffset) {
+                    log.warn("[{}][{}] Snapshot offset {} is ahead of the topic end offset {}, ignoring snapshot.",
+                            topic, offset.getKey(), offset.getValue(), endOffset);
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("[{}] Failed to validate snapshot offsets, ignoring snapshot.", topic, e);
+            return false;
+        }
+    }
+
+    private Path getPath(BrokerSnapshotType type) {
+        return Paths.get(dir, type.getFileName()).toAbsolutePath();
+    }
+
+}
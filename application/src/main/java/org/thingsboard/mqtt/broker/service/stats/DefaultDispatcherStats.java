@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.actors.DispatcherStats;
+import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
+import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
+import org.thingsboard.mqtt.broker.common.stats.StatsType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DefaultDispatcherStats implements DispatcherStats {
+
+    private static final String DISPATCHER_TAG = "dispatcher";
+
+    @Getter
+    private final String dispatcherId;
+    private final LongAdder queueDepth;
+    @Getter
+    private final ResettableTimer schedulingLatencyTimer;
+
+    public DefaultDispatcherStats(String dispatcherId, StatsFactory statsFactory) {
+        String statsKey = StatsType.ACTOR_DISPATCHER.getPrintName();
+        this.dispatcherId = dispatcherId;
+        this.queueDepth = statsFactory.createGauge(statsKey + ".queueDepth", new LongAdder(), LongAdder::sum, DISPATCHER_TAG, dispatcherId);
+        this.schedulingLatencyTimer = new ResettableTimer(statsFactory.createTimer(statsKey + ".schedulingLatency", DISPATCHER_TAG, dispatcherId), true);
+    }
+
+    @Override
+    public void onMsgEnqueued() {
+        queueDepth.increment();
+    }
+
+    @Override
+    public void onMsgDequeued() {
+        queueDepth.decrement();
+    }
+
+    @Override
+    public void logSchedulingLatency(long nanos) {
+        schedulingLatencyTimer.logTime(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getQueueDepth() {
+        return queueDepth.sum();
+    }
+
+    public void reset() {
+        schedulingLatencyTimer.reset();
+    }
+}
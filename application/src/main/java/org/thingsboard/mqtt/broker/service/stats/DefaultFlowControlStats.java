@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.stats;
+
+import lombok.Getter;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
+import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
+import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
+import org.thingsboard.mqtt.broker.common.stats.StatsType;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DefaultFlowControlStats implements FlowControlStats {
+
+    private final Map<String, PublishedInFlightCtx> clientsWithDelayedMsgMap;
+    @Getter
+    private final ResettableTimer delayedMsgWaitTimer;
+    private final LongAdder expiredDelayedMsgs = new LongAdder();
+
+    public DefaultFlowControlStats(StatsFactory statsFactory, Map<String, PublishedInFlightCtx> clientsWithDelayedMsgMap) {
+        String statsKey = StatsType.FLOW_CONTROL.getPrintName();
+        this.clientsWithDelayedMsgMap = clientsWithDelayedMsgMap;
+        statsFactory.createGauge(statsKey + ".delayedClients", clientsWithDelayedMsgMap, Map::size);
+        statsFactory.createGauge(statsKey + ".delayedMsgs", this, DefaultFlowControlStats::getDelayedMsgCount);
+        this.delayedMsgWaitTimer = new ResettableTimer(statsFactory.createTimer(statsKey + ".delayedMsgWaitTime"), true);
+    }
+
+    @Override
+    public void logDelayedMsgWaitTime(long waitTimeMs) {
+        delayedMsgWaitTimer.logTime(waitTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onDelayedMsgExpired() {
+        expiredDelayedMsgs.increment();
+    }
+
+    public int getDelayedClientCount() {
+        return clientsWithDelayedMsgMap.size();
+    }
+
+    public long getDelayedMsgCount() {
+        long count = 0;
+        for (PublishedInFlightCtx ctx : clientsWithDelayedMsgMap.values()) {
+            count += ctx.getDelayedMsgCount();
+        }
+        return count;
+    }
+
+    public long getExpiredDelayedMsgCount() {
+        return expiredDelayedMsgs.sum();
+    }
+
+    public void reset() {
+        delayedMsgWaitTimer.reset();
+        expiredDelayedMsgs.reset();
+    }
+}
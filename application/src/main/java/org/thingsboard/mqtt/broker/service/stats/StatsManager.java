@@ -15,9 +15,11 @@
  */
 package org.thingsboard.mqtt.broker.service.stats;
 
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgOffHeapStore;
 import org.thingsboard.mqtt.broker.service.stats.timer.DeliveryTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.PublishMsgProcessingTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.RetainedMsgTimerStats;
@@ -49,6 +51,8 @@ public interface StatsManager {
 
     RetainedMsgConsumerStats getRetainedMsgConsumerStats();
 
+    SubscriptionCacheStats getSubscriptionCacheStats();
+
     void clearApplicationProcessorStats(String clientId);
 
     void clearSharedApplicationProcessorStats(String clientId);
@@ -75,10 +79,14 @@ public interface StatsManager {
 
     void registerRetainedMsgStats(Map<?, ?> retainedMessagesMap);
 
+    void registerRetainedMsgOffHeapStats(RetainedMsgOffHeapStore offHeapStore);
+
     void registerActiveApplicationProcessorsStats(Map<?, ?> processingFuturesMap);
 
     void registerActiveSharedApplicationProcessorsStats(Map<String, List<ApplicationSharedSubscriptionJob>> processingFuturesMap);
 
+    void registerApplicationProcessorsThreadsStats(boolean virtualThreadsEnabled);
+
     SubscriptionTimerStats getSubscriptionTimerStats();
 
     RetainedMsgTimerStats getRetainedMsgTimerStats();
@@ -89,5 +97,7 @@ public interface StatsManager {
 
     ClientActorStats getClientActorStats();
 
+    FlowControlStats createFlowControlStats(Map<String, PublishedInFlightCtx> clientsWithDelayedMsgMap);
+
     boolean isEnabled();
 }
@@ -28,9 +28,12 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.thingsboard.mqtt.broker.actors.ActorStatsManager;
+import org.thingsboard.mqtt.broker.actors.DispatcherStats;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
 import org.thingsboard.mqtt.broker.common.stats.StatsConstantNames;
+import org.thingsboard.mqtt.broker.common.stats.StatsCounter;
 import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
 import org.thingsboard.mqtt.broker.common.stats.StatsType;
 import org.thingsboard.mqtt.broker.dao.sql.SqlQueueStatsManager;
@@ -40,6 +43,7 @@ import org.thingsboard.mqtt.broker.queue.stats.ConsumerStatsManager;
 import org.thingsboard.mqtt.broker.queue.stats.ProducerStatsManager;
 import org.thingsboard.mqtt.broker.queue.stats.Timer;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgOffHeapStore;
 import org.thingsboard.mqtt.broker.service.stats.timer.DeliveryTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.PublishMsgProcessingTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.RetainedMsgTimerStats;
@@ -47,6 +51,10 @@ import org.thingsboard.mqtt.broker.service.stats.timer.SubscriptionTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.TimerStats;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +72,8 @@ import java.util.stream.Collectors;
 @ConditionalOnProperty(prefix = "stats", value = "enabled", havingValue = "true")
 public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQueueStatsManager, ProducerStatsManager, ConsumerStatsManager {
 
+    private static final Path PROC_SELF_STATUS = Path.of("/proc/self/status");
+
     private final List<MessagesStats> managedStats = new CopyOnWriteArrayList<>();
     private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
 
@@ -74,11 +84,14 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
     private final Map<String, List<String>> sharedSubscriptionCompoundClientIds = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueProducers = new ConcurrentHashMap<>();
     private final Map<String, ResettableTimer> managedQueueConsumers = new ConcurrentHashMap<>();
+    private final Map<String, DefaultDispatcherStats> managedDispatcherStats = new ConcurrentHashMap<>();
     private final StatsFactory statsFactory;
 
     private ClientSubscriptionConsumerStats managedClientSubscriptionConsumerStats;
     private RetainedMsgConsumerStats retainedMsgConsumerStats;
+    private SubscriptionCacheStats subscriptionCacheStats;
     private ClientActorStats clientActorStats;
+    private DefaultFlowControlStats flowControlStats;
 
     @Value("${stats.application-processor.enabled}")
     private boolean applicationProcessorStatsEnabled;
@@ -90,6 +103,7 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         this.timerStats = new TimerStats(statsFactory);
         this.managedClientSubscriptionConsumerStats = new DefaultClientSubscriptionConsumerStats(statsFactory);
         this.retainedMsgConsumerStats = new DefaultRetainedMsgConsumerStats(statsFactory);
+        this.subscriptionCacheStats = new DefaultSubscriptionCacheStats(statsFactory);
         this.clientActorStats = new DefaultClientActorStats(statsFactory);
     }
 
@@ -192,6 +206,11 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return retainedMsgConsumerStats;
     }
 
+    @Override
+    public SubscriptionCacheStats getSubscriptionCacheStats() {
+        return subscriptionCacheStats;
+    }
+
     @Override
     public void clearApplicationProcessorStats(String clientId) {
         if (log.isTraceEnabled()) {
@@ -315,6 +334,28 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         gauges.add(new Gauge(StatsType.RETAINED_MESSAGES.getPrintName(), retainedMessagesMap::size));
     }
 
+    @Override
+    public void registerRetainedMsgOffHeapStats(RetainedMsgOffHeapStore offHeapStore) {
+        if (log.isTraceEnabled()) {
+            log.trace("Registering RetainedMsgOffHeapStats.");
+        }
+        String statsName = StatsType.RETAINED_MSG_OFF_HEAP.getPrintName();
+        statsFactory.createGauge(statsName + ".payloadBytes", offHeapStore, RetainedMsgOffHeapStore::getPayloadBytes);
+        gauges.add(new Gauge(statsName + ".payloadBytes", offHeapStore::getPayloadBytes));
+        statsFactory.createGauge(statsName + ".allocatedBytes", offHeapStore, RetainedMsgOffHeapStore::getAllocatedBytes);
+        gauges.add(new Gauge(statsName + ".allocatedBytes", offHeapStore::getAllocatedBytes));
+        statsFactory.createGauge(statsName + ".capacityBytes", offHeapStore, RetainedMsgOffHeapStore::getCapacityBytes);
+        gauges.add(new Gauge(statsName + ".capacityBytes", offHeapStore::getCapacityBytes));
+        // share of the allocated direct memory not taken by the payloads, i.e. lost to the allocator size classes and free chunk space
+        statsFactory.createGauge(statsName + ".fragmentation", offHeapStore, StatsManagerImpl::getOffHeapFragmentation);
+        gauges.add(new Gauge(statsName + ".fragmentation", () -> getOffHeapFragmentation(offHeapStore)));
+    }
+
+    private static double getOffHeapFragmentation(RetainedMsgOffHeapStore offHeapStore) {
+        long allocatedBytes = offHeapStore.getAllocatedBytes();
+        return allocatedBytes == 0 ? 0 : 1 - (double) offHeapStore.getPayloadBytes() / allocatedBytes;
+    }
+
     @Override
     public void registerActiveApplicationProcessorsStats(Map<?, ?> processingFuturesMap) {
         if (log.isTraceEnabled()) {
@@ -333,6 +374,42 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         gauges.add(new Gauge(StatsType.ACTIVE_SHARED_APP_PROCESSORS.getPrintName(), () -> getSum(processingFuturesMap)));
     }
 
+    @Override
+    public void registerApplicationProcessorsThreadsStats(boolean virtualThreadsEnabled) {
+        if (log.isTraceEnabled()) {
+            log.trace("Registering ApplicationProcessorsThreadsStats.");
+        }
+        String threadsMode = virtualThreadsEnabled ? "virtual" : "platform";
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        // virtual threads are not reported by ThreadMXBean, so this is the number of platform (including carrier) threads
+        statsFactory.createGauge(StatsType.PLATFORM_THREADS.getPrintName(), threadMXBean, ThreadMXBean::getThreadCount, "threadsMode", threadsMode);
+        gauges.add(new Gauge(StatsType.PLATFORM_THREADS.getPrintName(), threadMXBean::getThreadCount));
+        statsFactory.createGauge(StatsType.PROCESS_RSS.getPrintName(), PROC_SELF_STATUS, path -> getProcessRssBytes(), "threadsMode", threadsMode);
+        gauges.add(new Gauge(StatsType.PROCESS_RSS.getPrintName(), StatsManagerImpl::getProcessRssBytes));
+    }
+
+    private static long getProcessRssBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_SELF_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (Exception e) {
+            if (log.isTraceEnabled()) {
+                log.trace("Failed to read process RSS", e);
+            }
+        }
+        return -1;
+    }
+
+    private static String formatGaugeValue(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format("%.3f", value.doubleValue());
+        }
+        return String.valueOf(value.longValue());
+    }
+
     private int getSum(Map<String, List<ApplicationSharedSubscriptionJob>> processingFuturesMap) {
         return processingFuturesMap.values().stream().mapToInt(List::size).sum();
     }
@@ -346,6 +423,16 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         gauges.add(new Gauge(StatsType.RUNNING_ACTORS.getPrintName(), actorsMap::size));
     }
 
+    @Override
+    public DispatcherStats createDispatcherStats(String dispatcherId) {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating DispatcherStats for {}.", dispatcherId);
+        }
+        DefaultDispatcherStats stats = new DefaultDispatcherStats(dispatcherId, statsFactory);
+        managedDispatcherStats.put(dispatcherId, stats);
+        return stats;
+    }
+
     @Override
     public AtomicLong createSubscriptionTrieNodesCounter() {
         if (log.isTraceEnabled()) {
@@ -418,6 +505,15 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         return clientActorStats;
     }
 
+    @Override
+    public FlowControlStats createFlowControlStats(Map<String, PublishedInFlightCtx> clientsWithDelayedMsgMap) {
+        if (log.isTraceEnabled()) {
+            log.trace("Creating FlowControlStats.");
+        }
+        flowControlStats = new DefaultFlowControlStats(statsFactory, clientsWithDelayedMsgMap);
+        return flowControlStats;
+    }
+
     @Override
     public boolean isEnabled() {
         return true;
@@ -491,9 +587,15 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         log.info("[{}] Stats: {}", StatsType.RETAINED_MSG_CONSUMER.getPrintName(), retainedMsgStatsStr);
         retainedMsgConsumerStats.reset();
 
+        String subscriptionCacheStatsStr = subscriptionCacheStats.getStatsCounters().stream()
+                .map(statsCounter -> statsCounter.getName() + " = [" + statsCounter.get() + "]")
+                .collect(Collectors.joining(" "));
+        log.info("[{}] Stats: {}", StatsType.SUBSCRIPTION_CACHE.getPrintName(), subscriptionCacheStatsStr);
+        subscriptionCacheStats.reset();
+
         StringBuilder gaugeLogBuilder = new StringBuilder();
         for (Gauge gauge : gauges) {
-            gaugeLogBuilder.append(gauge.getName()).append(" = [").append(gauge.getValueSupplier().get().intValue()).append("] ");
+            gaugeLogBuilder.append(gauge.getName()).append(" = [").append(formatGaugeValue(gauge.getValueSupplier().get())).append("] ");
         }
         log.info("Gauges Stats: {}", gaugeLogBuilder.toString());
 
@@ -509,6 +611,21 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         clientActorStats.reset();
         log.info("Client Actor Average Stats: {}", clientActorLogBuilder.toString());
 
+        for (DefaultDispatcherStats stats : managedDispatcherStats.values()) {
+            ResettableTimer schedulingLatencyTimer = stats.getSchedulingLatencyTimer();
+            log.info("[{}][{}] Stats: queueDepth = [{}] schedulingLatency = [{} | {} | {}]", StatsType.ACTOR_DISPATCHER.getPrintName(), stats.getDispatcherId(),
+                    stats.getQueueDepth(), schedulingLatencyTimer.getCount(), schedulingLatencyTimer.getAvg(), schedulingLatencyTimer.getMax());
+            stats.reset();
+        }
+
+        if (flowControlStats != null) {
+            ResettableTimer delayedMsgWaitTimer = flowControlStats.getDelayedMsgWaitTimer();
+            log.info("[{}] Stats: delayedClients = [{}] delayedMsgs = [{}] expiredDelayedMsgs = [{}] delayedMsgWaitTime = [{} | {} | {}]",
+                    StatsType.FLOW_CONTROL.getPrintName(), flowControlStats.getDelayedClientCount(), flowControlStats.getDelayedMsgCount(),
+                    flowControlStats.getExpiredDelayedMsgCount(), delayedMsgWaitTimer.getCount(), delayedMsgWaitTimer.getAvg(), delayedMsgWaitTimer.getMax());
+            flowControlStats.reset();
+        }
+
         StringBuilder timerLogBuilder = new StringBuilder();
         for (ResettableTimer resettableTimer : timerStats.getTimers()) {
             timerLogBuilder.append(resettableTimer.getTimer().getId().getName()).append(" = [").append(resettableTimer.getCount()).append(" | ")
@@ -517,6 +634,12 @@ public class StatsManagerImpl implements StatsManager, ActorStatsManager, SqlQue
         }
         log.info("Timer Average Stats: {}", timerLogBuilder.toString());
 
+        String deliveryStatsStr = timerStats.getDeliveryCounters().stream()
+                .map(statsCounter -> statsCounter.getName() + " = [" + statsCounter.get() + "]")
+                .collect(Collectors.joining(" "));
+        log.info("[{}] Stats: {}", StatsType.DELIVERY.getPrintName(), deliveryStatsStr);
+        timerStats.getDeliveryCounters().forEach(StatsCounter::clear);
+
         StringBuilder queueProducerLogBuilder = new StringBuilder();
         managedQueueProducers.forEach((producerId, timer) -> {
             queueProducerLogBuilder.append(producerId).append(" = [").append(timer.getCount()).append(" | ")
@@ -19,6 +19,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.actors.ActorStatsManager;
+import org.thingsboard.mqtt.broker.actors.DispatcherStats;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.stats.MessagesStats;
 import org.thingsboard.mqtt.broker.common.stats.StubMessagesStats;
 import org.thingsboard.mqtt.broker.queue.TbQueueCallback;
@@ -26,6 +28,7 @@ import org.thingsboard.mqtt.broker.queue.stats.ConsumerStatsManager;
 import org.thingsboard.mqtt.broker.queue.stats.ProducerStatsManager;
 import org.thingsboard.mqtt.broker.queue.stats.Timer;
 import org.thingsboard.mqtt.broker.service.mqtt.persistence.application.data.ApplicationSharedSubscriptionJob;
+import org.thingsboard.mqtt.broker.service.mqtt.retain.RetainedMsgOffHeapStore;
 import org.thingsboard.mqtt.broker.service.stats.timer.DeliveryTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.PublishMsgProcessingTimerStats;
 import org.thingsboard.mqtt.broker.service.stats.timer.RetainedMsgTimerStats;
@@ -90,6 +93,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
         return StubRetainedMsgConsumerStats.STUB_RETAINED_MSG_CONSUMER_STATS;
     }
 
+    @Override
+    public SubscriptionCacheStats getSubscriptionCacheStats() {
+        return StubSubscriptionCacheStats.STUB_SUBSCRIPTION_CACHE_STATS;
+    }
+
     @Override
     public void clearApplicationProcessorStats(String clientId) {
     }
@@ -136,6 +144,10 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
 
     }
 
+    @Override
+    public void registerRetainedMsgOffHeapStats(RetainedMsgOffHeapStore offHeapStore) {
+    }
+
     @Override
     public void registerClientSubscriptionsStats(Map<?, ?> clientSubscriptionsMap) {
     }
@@ -149,6 +161,10 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
 
     }
 
+    @Override
+    public void registerApplicationProcessorsThreadsStats(boolean virtualThreadsEnabled) {
+    }
+
     @Override
     public SubscriptionTimerStats getSubscriptionTimerStats() {
         return timerStats;
@@ -174,6 +190,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
         return StubClientActorStats.STUB_CLIENT_ACTOR_STATS;
     }
 
+    @Override
+    public FlowControlStats createFlowControlStats(Map<String, PublishedInFlightCtx> clientsWithDelayedMsgMap) {
+        return StubFlowControlStats.STUB_FLOW_CONTROL_STATS;
+    }
+
     @Override
     public boolean isEnabled() {
         return false;
@@ -183,6 +204,11 @@ public class StatsManagerStub implements StatsManager, ActorStatsManager, Produc
     public void registerActorsStats(Map<?, ?> actorsMap) {
     }
 
+    @Override
+    public DispatcherStats createDispatcherStats(String dispatcherId) {
+        return StubDispatcherStats.STUB_DISPATCHER_STATS;
+    }
+
     @Override
     public AtomicLong createSubscriptionTrieNodesCounter() {
         return new AtomicLong(0);
@@ -19,4 +19,8 @@ import java.util.concurrent.TimeUnit;
 
 public interface DeliveryTimerStats {
     void logDelivery(long startTime, TimeUnit unit);
+
+    void logPayloadAllocation(int payloadSize);
+
+    void logSharedPayloadDuplicate();
 }
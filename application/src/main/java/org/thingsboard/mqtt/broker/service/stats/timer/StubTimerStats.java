@@ -40,6 +40,14 @@ public class StubTimerStats implements SubscriptionTimerStats, PublishMsgProcess
 
     }
 
+    @Override
+    public void logPayloadAllocation(int payloadSize) {
+    }
+
+    @Override
+    public void logSharedPayloadDuplicate() {
+    }
+
     @Override
     public void logRetainedMsgLookup(long startTime, TimeUnit unit) {
 
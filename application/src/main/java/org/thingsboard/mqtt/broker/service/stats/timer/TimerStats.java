@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.service.stats.timer;
 
 import org.thingsboard.mqtt.broker.common.stats.ResettableTimer;
+import org.thingsboard.mqtt.broker.common.stats.StatsCounter;
 import org.thingsboard.mqtt.broker.common.stats.StatsFactory;
 import org.thingsboard.mqtt.broker.common.stats.StatsType;
 
@@ -24,6 +25,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static org.thingsboard.mqtt.broker.common.stats.StatsConstantNames.PAYLOAD_ALLOCATIONS;
+import static org.thingsboard.mqtt.broker.common.stats.StatsConstantNames.PAYLOAD_COPIED_BYTES;
+import static org.thingsboard.mqtt.broker.common.stats.StatsConstantNames.SHARED_PAYLOAD_DUPLICATES;
+
 public class TimerStats implements SubscriptionTimerStats, PublishMsgProcessingTimerStats, DeliveryTimerStats, RetainedMsgTimerStats {
     private final List<ResettableTimer> timers;
 
@@ -34,6 +39,11 @@ public class TimerStats implements SubscriptionTimerStats, PublishMsgProcessingT
     private final ResettableTimer persistentMessagesProcessingTimer;
     private final ResettableTimer deliveryTimer;
 
+    private final List<StatsCounter> deliveryCounters;
+    private final StatsCounter payloadAllocationsCounter;
+    private final StatsCounter payloadCopiedBytesCounter;
+    private final StatsCounter sharedPayloadDuplicatesCounter;
+
     public TimerStats(StatsFactory statsFactory) {
         this.subscriptionLookupTimer = new ResettableTimer(statsFactory.createTimer(StatsType.SUBSCRIPTION_LOOKUP.getPrintName()));
         this.retainedMsgLookupTimer = new ResettableTimer(statsFactory.createTimer(StatsType.RETAINED_MSG_LOOKUP.getPrintName()));
@@ -46,12 +56,23 @@ public class TimerStats implements SubscriptionTimerStats, PublishMsgProcessingT
                 subscriptionLookupTimer, retainedMsgLookupTimer, clientSessionsLookupTimer,
                 notPersistentMessagesProcessingTimer, persistentMessagesProcessingTimer, deliveryTimer
         );
+
+        String deliveryStatsKey = StatsType.DELIVERY.getPrintName();
+        this.payloadAllocationsCounter = statsFactory.createStatsCounter(deliveryStatsKey, PAYLOAD_ALLOCATIONS);
+        this.payloadCopiedBytesCounter = statsFactory.createStatsCounter(deliveryStatsKey, PAYLOAD_COPIED_BYTES);
+        this.sharedPayloadDuplicatesCounter = statsFactory.createStatsCounter(deliveryStatsKey, SHARED_PAYLOAD_DUPLICATES);
+
+        this.deliveryCounters = List.of(payloadAllocationsCounter, payloadCopiedBytesCounter, sharedPayloadDuplicatesCounter);
     }
 
     public Collection<ResettableTimer> getTimers() {
         return timers;
     }
 
+    public List<StatsCounter> getDeliveryCounters() {
+        return deliveryCounters;
+    }
+
     @Override
     public void logSubscriptionsLookup(long startTime, TimeUnit unit) {
         long amount = getAmount(startTime);
@@ -82,6 +103,17 @@ public class TimerStats implements SubscriptionTimerStats, PublishMsgProcessingT
         deliveryTimer.logTime(amount, unit);
     }
 
+    @Override
+    public void logPayloadAllocation(int payloadSize) {
+        payloadAllocationsCounter.increment();
+        payloadCopiedBytesCounter.add(payloadSize);
+    }
+
+    @Override
+    public void logSharedPayloadDuplicate() {
+        sharedPayloadDuplicatesCounter.increment();
+    }
+
     @Override
     public void logRetainedMsgLookup(long startTime, TimeUnit unit) {
         long amount = getAmount(startTime);
@@ -27,4 +27,9 @@ public interface ClientSubscriptionConsumer {
 
     void listen(ClientSubscriptionChangesCallback callback);
 
+    /**
+     * Next offsets to read per partition, i.e. the topic position this consumer is up-to-date with.
+     */
+    Map<Integer, Long> getProcessedOffsets();
+
 }
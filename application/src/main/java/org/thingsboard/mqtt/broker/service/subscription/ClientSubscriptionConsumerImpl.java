@@ -15,6 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +34,11 @@ import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
 import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.provider.ClientSubscriptionsQueueFactory;
+import org.thingsboard.mqtt.broker.service.init.PartitionedInitLoader;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshot;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotEntry;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotStorage;
+import org.thingsboard.mqtt.broker.service.snapshot.BrokerSnapshotType;
 import org.thingsboard.mqtt.broker.service.stats.ClientSubscriptionConsumerStats;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
@@ -40,8 +46,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,20 +60,26 @@ import static org.thingsboard.mqtt.broker.common.data.util.BytesUtil.bytesToStri
 public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsumer {
 
     private final ExecutorService consumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("client-subscriptions-listener"));
+    private final Map<Integer, Long> processedOffsets = new ConcurrentHashMap<>();
 
     private final ClientSubscriptionsQueueFactory clientSubscriptionsQueueFactory;
     private final ServiceInfoProvider serviceInfoProvider;
     private final SubscriptionPersistenceService persistenceService;
     private final TbQueueAdmin queueAdmin;
     private final ClientSubscriptionConsumerStats stats;
+    private final BrokerSnapshotStorage snapshotStorage;
+    private final PartitionedInitLoader initLoader;
 
     public ClientSubscriptionConsumerImpl(ClientSubscriptionsQueueFactory clientSubscriptionsQueueFactory, ServiceInfoProvider serviceInfoProvider,
-                                          SubscriptionPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager) {
+                                          SubscriptionPersistenceService persistenceService, TbQueueAdmin queueAdmin, StatsManager statsManager,
+                                          BrokerSnapshotStorage snapshotStorage, PartitionedInitLoader initLoader) {
         this.clientSubscriptionsQueueFactory = clientSubscriptionsQueueFactory;
         this.serviceInfoProvider = serviceInfoProvider;
         this.persistenceService = persistenceService;
         this.queueAdmin = queueAdmin;
         this.stats = statsManager.getClientSubscriptionConsumerStats();
+        this.snapshotStorage = snapshotStorage;
+        this.initLoader = initLoader;
     }
 
     @Value("${queue.client-subscriptions.poll-interval}")
@@ -75,62 +89,37 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
     private volatile boolean stopped = false;
 
     private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<ClientSubscriptionsProto>> clientSubscriptionsConsumer;
+    private String consumerGroupId;
 
     @PostConstruct
     public void init() {
         long currentCgSuffix = System.currentTimeMillis();
-        String uniqueConsumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
-        this.clientSubscriptionsConsumer = clientSubscriptionsQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), uniqueConsumerGroupId);
+        this.consumerGroupId = serviceInfoProvider.getServiceId() + "-" + currentCgSuffix;
+        this.clientSubscriptionsConsumer = clientSubscriptionsQueueFactory.createConsumer(serviceInfoProvider.getServiceId(), consumerGroupId);
         queueAdmin.deleteOldConsumerGroups(BrokerConstants.CLIENT_SUBSCRIPTIONS_CG_PREFIX, serviceInfoProvider.getServiceId(), currentCgSuffix);
     }
 
     @Override
     public Map<String, Set<TopicSubscription>> initLoad() throws QueuePersistenceException {
         log.debug("Starting subscriptions initLoad");
-        long startTime = System.nanoTime();
-        long totalMessageCount = 0L;
-
+        // the topic gets created on the first write, so it surely exists when its end offsets are requested
         String dummyClientId = persistDummyClientSubscriptions();
-        clientSubscriptionsConsumer.assignOrSubscribe();
 
-        List<TbProtoQueueMsg<ClientSubscriptionsProto>> messages;
-        boolean encounteredDummyClient = false;
         Map<String, Set<TopicSubscription>> allSubscriptions = new HashMap<>();
-        do {
-            try {
-                messages = clientSubscriptionsConsumer.poll(pollDuration);
-                int packSize = messages.size();
-                log.debug("Read {} subscription messages from single poll", packSize);
-                totalMessageCount += packSize;
-                for (TbProtoQueueMsg<ClientSubscriptionsProto> msg : messages) {
-                    String clientId = msg.getKey();
-                    Set<TopicSubscription> clientSubscriptions = ProtoConverter.convertProtoToClientSubscriptions(msg.getValue());
-                    if (dummyClientId.equals(clientId)) {
-                        encounteredDummyClient = true;
-                    } else if (clientSubscriptions.isEmpty()) {
-                        // this means Kafka log compaction service haven't cleared empty message yet
-                        log.trace("[{}] Encountered empty ClientSubscriptions.", clientId);
-                        allSubscriptions.remove(clientId);
-                    } else {
-                        allSubscriptions.put(clientId, clientSubscriptions);
-                    }
-                }
-                clientSubscriptionsConsumer.commitSync();
-            } catch (Exception e) {
-                log.error("Failed to load client sessions.", e);
-                throw e;
-            }
-        } while (!stopped && !encounteredDummyClient);
+        Map<Integer, Long> startOffsets = restoreFromSnapshot(allSubscriptions);
+        try {
+            Map<Integer, Long> loadedOffsets = initLoader.load("client-subscriptions", pollDuration, clientSubscriptionsConsumer, this::createPartitionConsumer,
+                    startOffsets, this::handleInitLoadMsg, allSubscriptions);
+            processedOffsets.putAll(loadedOffsets);
+        } catch (Exception e) {
+            log.error("Failed to load client subscriptions.", e);
+            throw e;
+        }
 
         clearDummyClientSubscriptions(dummyClientId);
 
         initializing = false;
 
-        if (log.isDebugEnabled()) {
-            long endTime = System.nanoTime();
-            log.debug("Finished subscriptions initLoad for {} messages within time: {} nanos", totalMessageCount, endTime - startTime);
-        }
-
         return allSubscriptions;
     }
 
@@ -165,6 +154,7 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
                         }
                     }
                     stats.log(acceptedSubscriptions, ignoredSubscriptions);
+                    updateProcessedOffsets(messages);
                     clientSubscriptionsConsumer.commitSync();
                 } catch (Exception e) {
                     if (!stopped) {
@@ -182,6 +172,55 @@ public class ClientSubscriptionConsumerImpl implements ClientSubscriptionConsume
         });
     }
 
+    @Override
+    public Map<Integer, Long> getProcessedOffsets() {
+        return new HashMap<>(processedOffsets);
+    }
+
+    private Map<Integer, Long> restoreFromSnapshot(Map<String, Set<TopicSubscription>> allSubscriptions) {
+        Optional<BrokerSnapshot> snapshot = snapshotStorage.read(BrokerSnapshotType.CLIENT_SUBSCRIPTIONS);
+        if (snapshot.isEmpty() || !snapshotStorage.validateOffsets(snapshot.get(), clientSubscriptionsConsumer)) {
+            return Collections.emptyMap();
+        }
+        try {
+            for (BrokerSnapshotEntry entry : snapshot.get().getEntries()) {
+                ClientSubscriptionsProto clientSubscriptionsProto = ClientSubscriptionsProto.parseFrom(entry.getValue());
+                allSubscriptions.put(entry.getKey(), ProtoConverter.convertProtoToClientSubscriptions(clientSubscriptionsProto));
+            }
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Failed to decode client subscriptions snapshot.", e);
+            allSubscriptions.clear();
+            return Collections.emptyMap();
+        }
+        log.info("Restored {} client subscriptions from snapshot.", allSubscriptions.size());
+        return snapshot.get().getOffsets();
+    }
+
+    private void handleInitLoadMsg(TbProtoQueueMsg<ClientSubscriptionsProto> msg, Map<String, Set<TopicSubscription>> changes) {
+        String clientId = msg.getKey();
+        if (clientId.startsWith(BrokerConstants.SYSTEM_DUMMY_CLIENT_ID_PREFIX)) {
+            return;
+        }
+        Set<TopicSubscription> clientSubscriptions = ProtoConverter.convertProtoToClientSubscriptions(msg.getValue());
+        if (clientSubscriptions.isEmpty()) {
+            // this means Kafka log compaction service haven't cleared empty message yet
+            log.trace("[{}] Encountered empty ClientSubscriptions.", clientId);
+            changes.put(clientId, null);
+        } else {
+            changes.put(clientId, clientSubscriptions);
+        }
+    }
+
+    private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<ClientSubscriptionsProto>> createPartitionConsumer(int partition) {
+        return clientSubscriptionsQueueFactory.createConsumer(serviceInfoProvider.getServiceId() + "-init-load-" + partition, consumerGroupId);
+    }
+
+    private void updateProcessedOffsets(List<TbProtoQueueMsg<ClientSubscriptionsProto>> messages) {
+        for (TbProtoQueueMsg<ClientSubscriptionsProto> msg : messages) {
+            processedOffsets.put(msg.getPartition(), msg.getOffset() + 1);
+        }
+    }
+
     private String persistDummyClientSubscriptions() throws QueuePersistenceException {
         String dummyClientId = BrokerConstants.SYSTEM_DUMMY_CLIENT_ID_PREFIX + UUID.randomUUID();
         persistenceService.persistClientSubscriptionsSync(dummyClientId, Collections.singleton(new ClientTopicSubscription(BrokerConstants.SYSTEM_DUMMY_TOPIC_FILTER, 0)));
@@ -17,12 +17,10 @@ package org.thingsboard.mqtt.broker.service.subscription;
 
 import com.google.common.collect.Sets;
 import lombok.AllArgsConstructor;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.ArrayList;
@@ -34,26 +32,27 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+/**
+ * Empty nodes are removed without blocking subscribers.
+ * <p>
+ * Every writer pins the node it modifies. A node is retired only if it is empty and not pinned, by switching its state
+ * to a tombstone with CAS, and is then unlinked from the parent with a conditional remove. A writer that meets a
+ * retired node restarts from the root, so no value is ever added to a node that is no longer in the trie.
+ */
 @Slf4j
 @Service
+@ConditionalOnProperty(prefix = "mqtt.subscription-trie", value = "type", havingValue = "CONCURRENT_MAP", matchIfMissing = true)
 public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
 
     private final AtomicInteger size;
     private final AtomicLong nodesCount;
     private final Node<T> root = new Node<>();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-
-    @Setter
-    @Value("${mqtt.subscription-trie.wait-for-clear-lock-ms}")
-    private int waitForClearLockMs;
 
     public ConcurrentMapSubscriptionTrie(StatsManager statsManager) {
         this.size = statsManager.createSubscriptionSizeCounter();
@@ -127,24 +126,51 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         if (topicFilter == null || val == null) {
             throw new IllegalArgumentException("Topic filter or value cannot be null");
         }
-        lock.readLock().lock();
+        while (!tryPut(topicFilter, val)) {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] Node was retired during put, retrying", topicFilter);
+            }
+        }
+    }
+
+    private boolean tryPut(String key, T val) {
+        Node<T> x = root;
+        int segmentStartIndex = 0;
+        while (segmentStartIndex <= key.length()) {
+            String segment = getSegment(key, segmentStartIndex);
+            Node<T> nextNode;
+            if (!pin(x)) {
+                return false;
+            }
+            try {
+                nextNode = x.children.computeIfAbsent(segment, s -> {
+                    nodesCount.incrementAndGet();
+                    return new Node<>();
+                });
+            } finally {
+                unpin(x);
+            }
+            x = nextNode;
+            segmentStartIndex = getNextSegmentStartIndex(segmentStartIndex, segment);
+        }
+        if (!pin(x)) {
+            return false;
+        }
         try {
-            put(root, topicFilter, val, 0);
+            addOrReplace(x.values, val);
         } finally {
-            lock.readLock().unlock();
+            unpin(x);
         }
+        return true;
     }
 
-    private void put(Node<T> x, String key, T val, int segmentStartIndex) {
-        if (segmentStartIndex > key.length()) {
-            addOrReplace(x.values, val);
-        } else {
-            String segment = getSegment(key, segmentStartIndex);
-            Node<T> nextNode = x.children.computeIfAbsent(segment, s -> {
-                nodesCount.incrementAndGet();
-                return new Node<>();
-            });
-            put(nextNode, key, val, getNextSegmentStartIndex(segmentStartIndex, segment));
+    private boolean pin(Node<T> x) {
+        return x == root || x.pin();
+    }
+
+    private void unpin(Node<T> x) {
+        if (x != root) {
+            x.unpin();
         }
     }
 
@@ -184,11 +210,10 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
     }
 
     @Override
-    public void clearEmptyNodes() throws SubscriptionTrieClearException {
+    public void clearEmptyNodes() {
         if (log.isTraceEnabled()) {
             log.trace("Executing clearEmptyNodes");
         }
-        acquireClearTrieLock();
         long nodesBefore = nodesCount.get();
         long clearStartTime = System.currentTimeMillis();
         try {
@@ -202,38 +227,17 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
         } catch (Exception e) {
             long nodesAfter = nodesCount.get();
             log.error("Failed on clearing empty nodes. Managed to clear {} nodes.", nodesBefore - nodesAfter, e);
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-
-    private void acquireClearTrieLock() throws SubscriptionTrieClearException {
-        boolean successfullyAcquiredLock = false;
-        try {
-            successfullyAcquiredLock = lock.writeLock().tryLock(waitForClearLockMs, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            log.warn("Acquiring lock was interrupted.");
-        }
-        if (!successfullyAcquiredLock) {
-            throw new SubscriptionTrieClearException("Couldn't acquire lock for clearing trie. " +
-                    "There are a lot of clients subscribing right now.");
         }
     }
 
     private boolean clearEmptyChildren(Node<T> node) {
-        boolean isNodeEmpty = node.values.isEmpty();
         for (Map.Entry<String, Node<T>> entry : node.children.entrySet()) {
-            Node<T> value = entry.getValue();
-            boolean isChildEmpty = clearEmptyChildren(value);
-            if (isChildEmpty) {
-                node.children.remove(entry.getKey());
+            Node<T> child = entry.getValue();
+            if (clearEmptyChildren(child) && child.tryRetire() && node.children.remove(entry.getKey(), child)) {
                 nodesCount.decrementAndGet();
-            } else {
-                isNodeEmpty = false;
             }
         }
-
-        return isNodeEmpty;
+        return node.isEmpty();
     }
 
     private Node<T> getDeleteNode(Node<T> x, String key, int segmentStartIndex) {
@@ -267,12 +271,53 @@ public class ConcurrentMapSubscriptionTrie<T> implements SubscriptionTrie<T> {
     }
 
     private static class Node<T> {
+        private static final int RETIRED = -1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> STATE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+
         private final ConcurrentMap<String, Node<T>> children = new ConcurrentHashMap<>();
         private final Set<T> values = Sets.newConcurrentHashSet();
+        // number of writers currently modifying the node or RETIRED if the node was unlinked from the trie
+        private volatile int state;
 
         public Node() {
         }
 
+        private boolean pin() {
+            while (true) {
+                int current = state;
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (STATE.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void unpin() {
+            STATE.decrementAndGet(this);
+        }
+
+        private boolean isEmpty() {
+            return values.isEmpty() && children.isEmpty();
+        }
+
+        /**
+         * Content can't be added while the node is in RETIRED state, so the emptiness is re-checked after the CAS
+         * and the node is restored if a writer managed to add something between the first check and the CAS.
+         */
+        private boolean tryRetire() {
+            if (!isEmpty() || !STATE.compareAndSet(this, 0, RETIRED)) {
+                return false;
+            }
+            if (isEmpty()) {
+                return true;
+            }
+            state = 0;
+            return false;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
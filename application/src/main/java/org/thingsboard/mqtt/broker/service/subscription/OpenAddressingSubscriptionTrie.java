@@ -0,0 +1,509 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Subscription trie optimized for the PUBLISH hot path.
+ * <p>
+ * Every node keeps a single reference to its full topic filter and pre-built {@link ValueWithTopicFilter} wrappers,
+ * so matching does not concatenate strings or wrap values. Children are kept in an open-addressing table that is probed by hashing the
+ * topic segment in place, so the published topic is never split with {@code substring}. Traversal state is kept in
+ * a per-thread reusable stack.
+ * <p>
+ * Readers are lock-free; writers of the same node are serialized on that node. Empty nodes are removed the same way
+ * as in {@link ConcurrentMapSubscriptionTrie}: every writer pins the node it modifies, a node is retired only if it is
+ * empty and not pinned, and a writer that meets a retired node restarts from the root.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "mqtt.subscription-trie", value = "type", havingValue = "OPEN_ADDRESSING")
+public class OpenAddressingSubscriptionTrie<T> implements SubscriptionTrie<T> {
+
+    private static final VarHandle CHILDREN_ARRAY = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final Node<?> TOMBSTONE = new Node<>(null, 0, null);
+    private static final int INITIAL_CHILDREN_CAPACITY = 4;
+
+    private final AtomicInteger size;
+    private final AtomicLong nodesCount;
+    private final Node<T> root = new Node<>(null, 0, BrokerConstants.NULL_CHAR_STR);
+    private final ThreadLocal<MatchState<T>> matchState = ThreadLocal.withInitial(MatchState::new);
+
+    public OpenAddressingSubscriptionTrie(StatsManager statsManager) {
+        this.size = statsManager.createSubscriptionSizeCounter();
+        this.nodesCount = statsManager.createSubscriptionTrieNodesCounter();
+    }
+
+    @Override
+    public List<ValueWithTopicFilter<T>> get(String topic) {
+        if (topic == null) {
+            throw new IllegalArgumentException("Topic cannot be null");
+        }
+        List<ValueWithTopicFilter<T>> result = new ArrayList<>();
+        MatchState<T> state = matchState.get();
+        state.push(root, 0);
+        try {
+            while (state.depth > 0) {
+                Node<T> node = state.pop();
+                int segmentStartIndex = state.positions[state.depth];
+
+                if (segmentStartIndex > topic.length()) {
+                    addValues(result, node);
+                    addValues(result, node.multiLevelWildcard);
+                    continue;
+                }
+                int segmentEndIndex = getSegmentEndIndex(topic, segmentStartIndex);
+                int nextSegmentStartIndex = segmentEndIndex + 1;
+
+                if (segmentStartIndex != 0 || topic.isEmpty() || topic.charAt(0) != '$') {
+                    addValues(result, node.multiLevelWildcard);
+                    Node<T> singleLevelWildcardSubs = node.singleLevelWildcard;
+                    if (singleLevelWildcardSubs != null) {
+                        state.push(singleLevelWildcardSubs, nextSegmentStartIndex);
+                    }
+                }
+
+                Node<T> segmentNode = node.getChild(topic, segmentStartIndex, segmentEndIndex);
+                if (segmentNode != null) {
+                    state.push(segmentNode, nextSegmentStartIndex);
+                }
+            }
+        } finally {
+            state.clear();
+        }
+        return result;
+    }
+
+    private void addValues(List<ValueWithTopicFilter<T>> result, Node<T> node) {
+        if (node != null && !node.values.isEmpty()) {
+            for (ValueWithTopicFilter<T> value : node.values.values()) {
+                result.add(value);
+            }
+        }
+    }
+
+    @Override
+    public void put(String topicFilter, T val) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing put [{}] [{}]", topicFilter, val);
+        }
+        if (topicFilter == null || val == null) {
+            throw new IllegalArgumentException("Topic filter or value cannot be null");
+        }
+        while (!tryPut(topicFilter, val)) {
+            if (log.isTraceEnabled()) {
+                log.trace("[{}] Node was retired during put, retrying", topicFilter);
+            }
+        }
+    }
+
+    private boolean tryPut(String topicFilter, T val) {
+        Node<T> node = root;
+        int segmentStartIndex = 0;
+        while (segmentStartIndex <= topicFilter.length()) {
+            int segmentEndIndex = getSegmentEndIndex(topicFilter, segmentStartIndex);
+            Node<T> nextNode;
+            if (!pin(node)) {
+                return false;
+            }
+            try {
+                nextNode = node.getOrCreateChild(topicFilter, segmentStartIndex, segmentEndIndex, nodesCount);
+            } finally {
+                unpin(node);
+            }
+            node = nextNode;
+            segmentStartIndex = segmentEndIndex + 1;
+        }
+        if (!pin(node)) {
+            return false;
+        }
+        try {
+            if (node.values.put(val, new ValueWithTopicFilter<>(val, node.topicFilter)) == null) {
+                size.getAndIncrement();
+            }
+        } finally {
+            unpin(node);
+        }
+        return true;
+    }
+
+    private boolean pin(Node<T> node) {
+        return node == root || node.pin();
+    }
+
+    private void unpin(Node<T> node) {
+        if (node != root) {
+            node.unpin();
+        }
+    }
+
+    @Override
+    public boolean delete(String topicFilter, Predicate<T> deletionFilter) {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing delete [{}]", topicFilter);
+        }
+        if (topicFilter == null || deletionFilter == null) {
+            throw new IllegalArgumentException("Topic filter or deletionFilter cannot be null");
+        }
+        Node<T> node = root;
+        int segmentStartIndex = 0;
+        while (node != null && segmentStartIndex <= topicFilter.length()) {
+            int segmentEndIndex = getSegmentEndIndex(topicFilter, segmentStartIndex);
+            node = node.getChild(topicFilter, segmentStartIndex, segmentEndIndex);
+            segmentStartIndex = segmentEndIndex + 1;
+        }
+        if (node == null) {
+            return false;
+        }
+        int deletedCount = 0;
+        for (ValueWithTopicFilter<T> value : node.values.values()) {
+            if (deletionFilter.test(value.getValue()) && node.values.remove(value.getValue()) != null) {
+                deletedCount++;
+            }
+        }
+        if (deletedCount == 0) {
+            return false;
+        }
+        if (deletedCount > 1) {
+            log.error("There are more than one value to delete!");
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    @Override
+    public void clearEmptyNodes() {
+        if (log.isTraceEnabled()) {
+            log.trace("Executing clearEmptyNodes");
+        }
+        long nodesBefore = nodesCount.get();
+        long clearStartTime = System.currentTimeMillis();
+        try {
+            clearEmptyChildren(root);
+            long nodesAfter = nodesCount.get();
+            long clearEndTime = System.currentTimeMillis();
+            if (log.isDebugEnabled()) {
+                log.debug("Clearing trie took {} ms, cleared {} nodes.",
+                        clearEndTime - clearStartTime, nodesBefore - nodesAfter);
+            }
+        } catch (Exception e) {
+            long nodesAfter = nodesCount.get();
+            log.error("Failed on clearing empty nodes. Managed to clear {} nodes.", nodesBefore - nodesAfter, e);
+        }
+    }
+
+    /**
+     * The node monitor is taken only to unlink a retired child, so writers creating children of the node wait
+     * for a single unlink rather than for the sweep of the whole subtree.
+     */
+    private boolean clearEmptyChildren(Node<T> node) {
+        Node<T> multiLevelWildcard = node.multiLevelWildcard;
+        if (multiLevelWildcard != null && clearEmptyChildren(multiLevelWildcard) && multiLevelWildcard.tryRetire()) {
+            synchronized (node) {
+                node.multiLevelWildcard = null;
+            }
+            nodesCount.decrementAndGet();
+        }
+        Node<T> singleLevelWildcard = node.singleLevelWildcard;
+        if (singleLevelWildcard != null && clearEmptyChildren(singleLevelWildcard) && singleLevelWildcard.tryRetire()) {
+            synchronized (node) {
+                node.singleLevelWildcard = null;
+            }
+            nodesCount.decrementAndGet();
+        }
+        Node<T>[] children = node.children;
+        for (int i = 0; i < children.length; i++) {
+            Node<T> child = Node.getSlot(children, i);
+            if (child == null || child == TOMBSTONE) {
+                continue;
+            }
+            if (clearEmptyChildren(child) && child.tryRetire()) {
+                synchronized (node) {
+                    node.removeChild(child);
+                }
+                nodesCount.decrementAndGet();
+            }
+        }
+        synchronized (node) {
+            node.compactChildren();
+            return node.isEmpty();
+        }
+    }
+
+    private static int getSegmentEndIndex(String key, int segmentStartIndex) {
+        int nextDelimiterIndex = key.indexOf(BrokerConstants.TOPIC_DELIMITER, segmentStartIndex);
+        return nextDelimiterIndex == -1 ? key.length() : nextDelimiterIndex;
+    }
+
+    /**
+     * Same function as {@link String#hashCode()} evaluated over {@code key[from, to)}, spread to reduce clustering.
+     */
+    private static int segmentHash(String key, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isSingleChar(String key, int from, int to, char c) {
+        return to - from == 1 && key.charAt(from) == c;
+    }
+
+    private static final class Node<T> {
+        private static final int RETIRED = -1;
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> STATE = AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+
+        private final String segment;
+        private final int hash;
+        private final String topicFilter;
+        private final ConcurrentMap<T, ValueWithTopicFilter<T>> values = new ConcurrentHashMap<>();
+
+        private volatile Node<T> multiLevelWildcard;
+        private volatile Node<T> singleLevelWildcard;
+        private volatile Node<T>[] children = emptyChildren();
+        // number of occupied slots including tombstones, guarded by the node monitor
+        private int usedSlots;
+        private int liveChildren;
+        // number of writers currently modifying the node or RETIRED if the node was unlinked from the trie
+        private volatile int state;
+
+        private Node(String segment, int hash, String topicFilter) {
+            this.segment = segment;
+            this.hash = hash;
+            this.topicFilter = topicFilter;
+        }
+
+        private Node<T> getChild(String key, int from, int to) {
+            if (isSingleChar(key, from, to, '#')) {
+                return multiLevelWildcard;
+            }
+            if (isSingleChar(key, from, to, '+')) {
+                return singleLevelWildcard;
+            }
+            Node<T>[] table = children;
+            if (table.length == 0) {
+                return null;
+            }
+            int length = to - from;
+            int mask = table.length - 1;
+            int hash = segmentHash(key, from, to);
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                Node<T> child = getSlot(table, i);
+                if (child == null) {
+                    return null;
+                }
+                if (child != TOMBSTONE && child.hash == hash && child.segment.length() == length
+                        && key.regionMatches(from, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+        }
+
+        private Node<T> getOrCreateChild(String key, int from, int to, AtomicLong nodesCount) {
+            Node<T> child = getChild(key, from, to);
+            if (child != null) {
+                return child;
+            }
+            synchronized (this) {
+                child = getChild(key, from, to);
+                if (child != null) {
+                    return child;
+                }
+                String childSegment = key.substring(from, to);
+                String childTopicFilter = topicFilter == null || topicFilter.equals(BrokerConstants.NULL_CHAR_STR) ?
+                        key.substring(0, to) : topicFilter + BrokerConstants.TOPIC_DELIMITER + childSegment;
+                child = new Node<>(childSegment, segmentHash(key, from, to), childTopicFilter);
+                if (isSingleChar(key, from, to, '#')) {
+                    multiLevelWildcard = child;
+                } else if (isSingleChar(key, from, to, '+')) {
+                    singleLevelWildcard = child;
+                } else {
+                    insertChild(child);
+                }
+                nodesCount.incrementAndGet();
+                return child;
+            }
+        }
+
+        // must be called holding the node monitor
+        private void insertChild(Node<T> child) {
+            Node<T>[] table = children;
+            if ((usedSlots + 1) * 2 > table.length) {
+                table = rehash(Math.max(INITIAL_CHILDREN_CAPACITY, Integer.highestOneBit(liveChildren + 1) << 2));
+            }
+            int mask = table.length - 1;
+            int i = child.hash & mask;
+            while (true) {
+                Node<T> slot = table[i];
+                if (slot == null || slot == TOMBSTONE) {
+                    if (slot == null) {
+                        usedSlots++;
+                    }
+                    CHILDREN_ARRAY.setRelease(table, i, child);
+                    liveChildren++;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        // must be called holding the node monitor
+        @SuppressWarnings("unchecked")
+        private void removeChild(Node<T> child) {
+            Node<T>[] table = children;
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] == child) {
+                    CHILDREN_ARRAY.setRelease(table, i, (Node<T>) TOMBSTONE);
+                    liveChildren--;
+                    return;
+                }
+            }
+        }
+
+        private boolean pin() {
+            while (true) {
+                int current = state;
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (STATE.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void unpin() {
+            STATE.decrementAndGet(this);
+        }
+
+        // must be called holding the node monitor
+        private boolean isEmpty() {
+            return values.isEmpty() && liveChildren == 0 && multiLevelWildcard == null && singleLevelWildcard == null;
+        }
+
+        /**
+         * Content can't be added while the node is in RETIRED state, so the emptiness is re-checked after the CAS
+         * and the node is restored if a writer managed to add something between the first check and the CAS.
+         */
+        private boolean tryRetire() {
+            synchronized (this) {
+                if (!isEmpty() || !STATE.compareAndSet(this, 0, RETIRED)) {
+                    return false;
+                }
+                if (isEmpty()) {
+                    return true;
+                }
+                state = 0;
+                return false;
+            }
+        }
+
+        // must be called holding the node monitor
+        private void compactChildren() {
+            if (liveChildren == 0) {
+                children = emptyChildren();
+                usedSlots = 0;
+            } else if (usedSlots > liveChildren * 2) {
+                rehash(Math.max(INITIAL_CHILDREN_CAPACITY, Integer.highestOneBit(liveChildren) << 2));
+            }
+        }
+
+        // must be called holding the node monitor
+        @SuppressWarnings("unchecked")
+        private Node<T>[] rehash(int capacity) {
+            Node<T>[] newTable = (Node<T>[]) new Node[capacity];
+            int mask = capacity - 1;
+            for (Node<T> child : children) {
+                if (child == null || child == TOMBSTONE) {
+                    continue;
+                }
+                int i = child.hash & mask;
+                while (newTable[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                newTable[i] = child;
+            }
+            usedSlots = liveChildren;
+            children = newTable;
+            return newTable;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T> getSlot(Node<T>[] table, int index) {
+            return (Node<T>) CHILDREN_ARRAY.getAcquire(table, index);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] emptyChildren() {
+            return (Node<T>[]) EMPTY_CHILDREN;
+        }
+
+        private static final Node<?>[] EMPTY_CHILDREN = new Node<?>[0];
+    }
+
+    private static final class MatchState<T> {
+        private Node<T>[] nodes = newNodes(16);
+        private int[] positions = new int[16];
+        private int depth;
+
+        private void push(Node<T> node, int segmentStartIndex) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                positions = Arrays.copyOf(positions, depth * 2);
+            }
+            nodes[depth] = node;
+            positions[depth] = segmentStartIndex;
+            depth++;
+        }
+
+        private Node<T> pop() {
+            depth--;
+            Node<T> node = nodes[depth];
+            nodes[depth] = null;
+            return node;
+        }
+
+        private void clear() {
+            Arrays.fill(nodes, 0, depth, null);
+            depth = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newNodes(int capacity) {
+            return (Node<T>[]) new Node[capacity];
+        }
+    }
+
+}
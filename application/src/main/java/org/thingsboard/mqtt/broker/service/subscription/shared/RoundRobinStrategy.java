@@ -26,7 +26,7 @@ public class RoundRobinStrategy implements SharedSubscriptionProcessingStrategy
     private final SharedSubscriptionProcessor sharedSubscriptionProcessor;
 
     @Override
-    public Subscription analyze(SharedSubscription sharedSubscription) {
+    public Subscription analyze(SharedSubscription sharedSubscription, String publisherClientId) {
         return sharedSubscriptionProcessor.processRoundRobin(sharedSubscription);
     }
 
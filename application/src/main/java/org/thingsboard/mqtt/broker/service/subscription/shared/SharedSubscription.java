@@ -15,13 +15,19 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription.shared;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @RequiredArgsConstructor
@@ -32,4 +38,22 @@ public class SharedSubscription {
     private final TopicSharedSubscription topicSharedSubscription;
     private final List<Subscription> subscriptions;
 
+    // built lazily on the dispatching thread, the instance is never shared between publishes
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, Subscription> subscriptionsByClientId;
+
+    public Subscription getSubscription(String clientId) {
+        if (subscriptionsByClientId == null) {
+            Map<String, Subscription> map = new HashMap<>(subscriptions.size() * 2);
+            for (Subscription subscription : subscriptions) {
+                map.put(subscription.getClientId(), subscription);
+            }
+            subscriptionsByClientId = map;
+        }
+        return subscriptionsByClientId.get(clientId);
+    }
+
 }
@@ -48,6 +48,7 @@ import java.util.stream.Collectors;
 public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCacheService {
 
     private final ClientSessionCache clientSessionCache;
+    private final SharedSubscriptionGroupIndex sharedSubscriptionGroupIndex;
     @Getter
     private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptions> sharedSubscriptionsMap = new ConcurrentHashMap<>();
 
@@ -75,7 +76,8 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
         for (TopicSubscription topicSubscription : sharedTopicSubscriptions) {
             Subscription subscription = newSubscription(clientId, topicSubscription);
 
-            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(getKey(topicSubscription), tss -> SharedSubscriptions.newInstance());
+            TopicSharedSubscription key = getKey(topicSubscription);
+            SharedSubscriptions sharedSubscriptions = sharedSubscriptionsMap.computeIfAbsent(key, tss -> SharedSubscriptions.newInstance());
 
             Set<Subscription> subscriptions = getSubscriptionsByClientType(clientSessionInfo, sharedSubscriptions);
             updateSharedSubscriptions(subscriptions, clientId, subscription);
@@ -83,6 +85,12 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
             // to handle client type change (Device -> Application or vice versa)
             Set<Subscription> subscriptionsByClientTypeInverted = getSubscriptionsByClientTypeInverted(clientSessionInfo, sharedSubscriptions);
             removeSubscription(subscriptionsByClientTypeInverted, clientId, subscription.getTopicFilter());
+
+            if (clientSessionInfo.isAppClient()) {
+                sharedSubscriptionGroupIndex.removeMember(key, clientId);
+            } else {
+                sharedSubscriptionGroupIndex.addMember(key, clientId);
+            }
         }
         if (log.isTraceEnabled()) {
             log.trace("Shared subscriptions updated!");
@@ -124,11 +132,13 @@ public class SharedSubscriptionCacheServiceImpl implements SharedSubscriptionCac
             Set<Subscription> subscriptions = getSubscriptionsByClientType(clientSessionInfo, sharedSubscriptions);
             removeSubscription(subscriptions, clientId, topicFilter);
         }
+        sharedSubscriptionGroupIndex.removeMember(key, clientId);
         if (log.isTraceEnabled()) {
             log.trace("Shared subscription removed from set!");
         }
         if (sharedSubscriptions.isEmpty()) {
             sharedSubscriptionsMap.remove(key);
+            sharedSubscriptionGroupIndex.removeGroup(key);
             if (log.isTraceEnabled()) {
                 log.trace("[{}] Shared subscriptions removed completely!", key);
             }
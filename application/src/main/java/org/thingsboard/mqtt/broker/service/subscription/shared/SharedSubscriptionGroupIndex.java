@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription.shared;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the ordered device members of every shared subscription group together with a round-robin cursor.
+ * Membership is maintained on SUBSCRIBE/UNSUBSCRIBE, so PUBLISH processing only reads a stable member array
+ * instead of rebuilding iteration state per message.
+ */
+@Slf4j
+@Component
+public class SharedSubscriptionGroupIndex {
+
+    private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptionGroup> groups = new ConcurrentHashMap<>();
+
+    public void addMember(TopicSharedSubscription key, String clientId) {
+        groups.compute(key, (k, group) -> {
+            if (group == null) {
+                group = new SharedSubscriptionGroup();
+            }
+            group.add(clientId);
+            return group;
+        });
+    }
+
+    public void removeMember(TopicSharedSubscription key, String clientId) {
+        groups.computeIfPresent(key, (k, group) -> {
+            group.remove(clientId);
+            return group.isEmpty() ? null : group;
+        });
+    }
+
+    public void removeGroup(TopicSharedSubscription key) {
+        groups.remove(key);
+    }
+
+    public SharedSubscriptionGroup getGroup(TopicSharedSubscription key) {
+        return groups.get(key);
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    public static class SharedSubscriptionGroup {
+
+        private static final String[] EMPTY = new String[0];
+
+        private final AtomicInteger cursor = new AtomicInteger();
+        // copy-on-write, mutated only inside ConcurrentMap.compute of the owning key
+        private volatile String[] members = EMPTY;
+
+        public String[] getMembers() {
+            return members;
+        }
+
+        public boolean isEmpty() {
+            return members.length == 0;
+        }
+
+        /**
+         * @return start position for the next selection, already reduced to the current member count
+         */
+        public int nextIndex(int size) {
+            return Math.floorMod(cursor.getAndIncrement(), size);
+        }
+
+        void add(String clientId) {
+            String[] current = members;
+            for (String member : current) {
+                if (member.equals(clientId)) {
+                    return;
+                }
+            }
+            String[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = clientId;
+            members = updated;
+        }
+
+        void remove(String clientId) {
+            String[] current = members;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(clientId)) {
+                    String[] updated = new String[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    members = updated;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -19,6 +19,6 @@ import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
 public interface SharedSubscriptionProcessingStrategy {
 
-    Subscription analyze(SharedSubscription sharedSubscription);
+    Subscription analyze(SharedSubscription sharedSubscription, String publisherClientId);
 
 }
@@ -30,11 +30,27 @@ public class SharedSubscriptionProcessingStrategyFactory {
 
     private final SharedSubscriptionProcessor sharedSubscriptionProcessor;
 
+    private volatile SharedSubscriptionProcessingStrategy strategy;
+
     public SharedSubscriptionProcessingStrategy newInstance() {
-        if (SharedSubscriptionProcessingType.ROUND_ROBIN == type) {
-            return new RoundRobinStrategy(sharedSubscriptionProcessor);
+        SharedSubscriptionProcessingStrategy current = strategy;
+        if (current == null) {
+            current = createStrategy();
+            strategy = current;
+        }
+        return current;
+    }
+
+    private SharedSubscriptionProcessingStrategy createStrategy() {
+        if (type == null) {
+            throw new RuntimeException("SharedSubscriptionProcessingType " + type + " is not supported!");
         }
-        throw new RuntimeException("SharedSubscriptionProcessingType " + type + " is not supported!");
+        return switch (type) {
+            case ROUND_ROBIN -> new RoundRobinStrategy(sharedSubscriptionProcessor);
+            case LEAST_IN_FLIGHT -> new LeastInFlightStrategy(sharedSubscriptionProcessor);
+            case STICKY_BY_PUBLISHER -> new StickyByPublisherStrategy(sharedSubscriptionProcessor);
+            case PREFER_LOCAL_NODE -> new PreferLocalNodeStrategy(sharedSubscriptionProcessor);
+        };
     }
 
 }
@@ -21,6 +21,10 @@ public interface SharedSubscriptionProcessor {
 
     Subscription processRoundRobin(SharedSubscription sharedSubscription);
 
-    void unsubscribe(TopicSharedSubscription topicSharedSubscription);
+    Subscription processLeastInFlight(SharedSubscription sharedSubscription);
+
+    Subscription processStickyByPublisher(SharedSubscription sharedSubscription, String publisherClientId);
+
+    Subscription processPreferLocalNode(SharedSubscription sharedSubscription);
 
 }
@@ -15,73 +15,128 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription.shared;
 
-import com.google.common.collect.Iterables;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
+import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionGroupIndex.SharedSubscriptionGroup;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class SharedSubscriptionProcessorImpl implements SharedSubscriptionProcessor {
 
-    private final ConcurrentMap<TopicSharedSubscription, SharedSubscriptionIterator> sharedSubscriptionIteratorsMap = new ConcurrentHashMap<>();
+    private final SharedSubscriptionGroupIndex sharedSubscriptionGroupIndex;
+    private final ServiceInfoProvider serviceInfoProvider;
+    private final ClientSessionCtxService clientSessionCtxService;
 
     @Override
     public Subscription processRoundRobin(SharedSubscription sharedSubscription) {
-        TopicSharedSubscription key = sharedSubscription.getTopicSharedSubscription();
-        Iterator<Subscription> iterator = getIterator(key, sharedSubscription);
-        return getOneSubscription(iterator);
+        return selectFromCursor(sharedSubscription, subscription -> true);
     }
 
     @Override
-    public void unsubscribe(TopicSharedSubscription topicSharedSubscription) {
-        sharedSubscriptionIteratorsMap.remove(topicSharedSubscription);
+    public Subscription processLeastInFlight(SharedSubscription sharedSubscription) {
+        SharedSubscriptionGroup group = sharedSubscriptionGroupIndex.getGroup(sharedSubscription.getTopicSharedSubscription());
+        if (group == null || group.isEmpty()) {
+            return processRoundRobin(sharedSubscription);
+        }
+        String[] members = group.getMembers();
+        int size = members.length;
+        int start = group.nextIndex(size);
+
+        Subscription leastLoaded = null;
+        int leastInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Subscription subscription = getConnected(sharedSubscription, members[(start + i) % size]);
+            if (subscription == null || !isLocal(subscription)) {
+                continue;
+            }
+            int inFlight = getInFlightMsgCount(subscription.getClientId());
+            if (inFlight < leastInFlight) {
+                leastInFlight = inFlight;
+                leastLoaded = subscription;
+                if (inFlight == 0) {
+                    break;
+                }
+            }
+        }
+        // in-flight windows of clients connected to other nodes are not known here
+        return leastLoaded != null ? leastLoaded : processRoundRobin(sharedSubscription);
     }
 
-    private Iterator<Subscription> getIterator(TopicSharedSubscription key, SharedSubscription sharedSubscription) {
-        if (sharedSubscriptionIteratorsMap.containsKey(key)) {
-            SharedSubscriptionIterator subscriptionIterator = sharedSubscriptionIteratorsMap.get(key);
-            if (subscriptionIterator.getSharedSubscription().equals(sharedSubscription)) {
-                return subscriptionIterator.getIterator();
-            } else {
-                return createIteratorAndPutToMap(key, sharedSubscription);
+    @Override
+    public Subscription processStickyByPublisher(SharedSubscription sharedSubscription, String publisherClientId) {
+        SharedSubscriptionGroup group = sharedSubscriptionGroupIndex.getGroup(sharedSubscription.getTopicSharedSubscription());
+        if (publisherClientId == null || group == null || group.isEmpty()) {
+            return processRoundRobin(sharedSubscription);
+        }
+        String[] members = group.getMembers();
+        int size = members.length;
+        int start = Math.floorMod(publisherClientId.hashCode(), size);
+        for (int i = 0; i < size; i++) {
+            Subscription subscription = getConnected(sharedSubscription, members[(start + i) % size]);
+            if (subscription != null) {
+                return subscription;
             }
-        } else {
-            return createIteratorAndPutToMap(key, sharedSubscription);
         }
+        return findFirstConnected(sharedSubscription.getSubscriptions(), subscription -> true);
     }
 
-    private Iterator<Subscription> createIteratorAndPutToMap(TopicSharedSubscription key, SharedSubscription sharedSubscription) {
-        Iterator<Subscription> iterator = createIterator(sharedSubscription.getSubscriptions());
-        sharedSubscriptionIteratorsMap.put(key, new SharedSubscriptionIterator(sharedSubscription, iterator));
-        return iterator;
+    @Override
+    public Subscription processPreferLocalNode(SharedSubscription sharedSubscription) {
+        Subscription local = selectFromCursor(sharedSubscription, this::isLocal);
+        return local != null ? local : processRoundRobin(sharedSubscription);
     }
 
-    Iterator<Subscription> createIterator(List<Subscription> subscriptions) {
-        return Iterables.cycle(subscriptions).iterator();
+    private Subscription selectFromCursor(SharedSubscription sharedSubscription, Predicate<Subscription> filter) {
+        SharedSubscriptionGroup group = sharedSubscriptionGroupIndex.getGroup(sharedSubscription.getTopicSharedSubscription());
+        if (group != null && !group.isEmpty()) {
+            String[] members = group.getMembers();
+            int size = members.length;
+            int start = group.nextIndex(size);
+            for (int i = 0; i < size; i++) {
+                Subscription subscription = getConnected(sharedSubscription, members[(start + i) % size]);
+                if (subscription != null && filter.test(subscription)) {
+                    return subscription;
+                }
+            }
+        }
+        // the group can lag behind a concurrent SUBSCRIBE, so fall back to the resolved subscriptions
+        return findFirstConnected(sharedSubscription.getSubscriptions(), filter);
+    }
+
+    private Subscription getConnected(SharedSubscription sharedSubscription, String clientId) {
+        Subscription subscription = sharedSubscription.getSubscription(clientId);
+        return subscription != null && subscription.getClientSessionInfo().isConnected() ? subscription : null;
     }
 
-    Subscription getOneSubscription(Iterator<Subscription> iterator) {
-        while (true) {
-            Subscription next = iterator.next();
-            if (next.getClientSessionInfo().isConnected()) {
-                return next;
+    Subscription findFirstConnected(List<Subscription> subscriptions, Predicate<Subscription> filter) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getClientSessionInfo().isConnected() && filter.test(subscription)) {
+                return subscription;
             }
         }
+        return null;
     }
 
-    @Data
-    @RequiredArgsConstructor
-    static class SharedSubscriptionIterator {
-        private final SharedSubscription sharedSubscription;
-        private final Iterator<Subscription> iterator;
+    private boolean isLocal(Subscription subscription) {
+        return serviceInfoProvider.getServiceId().equals(subscription.getClientSessionInfo().getServiceId());
+    }
+
+    private int getInFlightMsgCount(String clientId) {
+        ClientSessionCtx clientSessionCtx = clientSessionCtxService.getClientSessionCtx(clientId);
+        if (clientSessionCtx == null) {
+            return Integer.MAX_VALUE;
+        }
+        PublishedInFlightCtx publishedInFlightCtx = clientSessionCtx.getPublishedInFlightCtx();
+        return publishedInFlightCtx == null ? 0 : publishedInFlightCtx.getInFlightMsgCount();
     }
 }
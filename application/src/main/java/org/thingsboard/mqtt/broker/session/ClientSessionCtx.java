@@ -20,12 +20,14 @@ import io.netty.handler.codec.mqtt.MqttConnectMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttVersion;
 import io.netty.handler.ssl.SslHandler;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.client.state.PubResponseProcessingCtx;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtxImpl;
+import org.thingsboard.mqtt.broker.actors.client.state.RetainedMsgStream;
 import org.thingsboard.mqtt.broker.common.data.ClientType;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
@@ -33,6 +35,7 @@ import org.thingsboard.mqtt.broker.server.MqttHandlerCtx;
 import org.thingsboard.mqtt.broker.service.auth.enhanced.ScramServerWithCallbackHandler;
 import org.thingsboard.mqtt.broker.service.mqtt.flow.control.FlowControlService;
 import org.thingsboard.mqtt.broker.service.mqtt.retransmission.MqttPendingPublish;
+import org.thingsboard.mqtt.broker.service.mqtt.retransmission.PendingPublishes;
 import org.thingsboard.mqtt.broker.service.security.authorization.AuthRulePatterns;
 
 import java.net.InetSocketAddress;
@@ -50,9 +53,11 @@ public class ClientSessionCtx implements SessionContext {
     private final SslHandler sslHandler;
     private final String initializerName;
     private final PubResponseProcessingCtx pubResponseProcessingCtx;
-    private final ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes;
+    private final PendingPublishes pendingPublishes;
     private final MsgIdSequence msgIdSeq = new MsgIdSequence();
     private final AwaitingPubRelPacketsCtx awaitingPubRelPacketsCtx = new AwaitingPubRelPacketsCtx();
+    @Getter(AccessLevel.NONE)
+    private final ConcurrentMap<String, RetainedMsgStream> retainedMsgStreams = new ConcurrentHashMap<>();
 
     @Setter
     private volatile SessionInfo sessionInfo;
@@ -99,11 +104,11 @@ public class ClientSessionCtx implements SessionContext {
         return mqttHandlerCtx == null ? BrokerConstants.MAX_IN_FLIGHT_MESSAGES : mqttHandlerCtx.getMaxInFlightMsgs();
     }
 
-    private ConcurrentMap<Integer, MqttPendingPublish> initPendingPublishes(MqttHandlerCtx mqttHandlerCtx) {
+    private PendingPublishes initPendingPublishes(MqttHandlerCtx mqttHandlerCtx) {
         if (mqttHandlerCtx == null) {
             return null;
         }
-        return mqttHandlerCtx.isRetransmissionEnabled() ? new ConcurrentHashMap<>() : null;
+        return mqttHandlerCtx.isRetransmissionEnabled() ? new PendingPublishes() : null;
     }
 
     public String getClientId() {
@@ -128,15 +133,43 @@ public class ClientSessionCtx implements SessionContext {
         }
     }
 
+    public void addRetainedMsgStream(RetainedMsgStream stream) {
+        RetainedMsgStream prevStream = retainedMsgStreams.put(stream.getTopicFilter(), stream);
+        if (prevStream != null) {
+            prevStream.cancel();
+        }
+    }
+
+    public void removeRetainedMsgStream(RetainedMsgStream stream) {
+        retainedMsgStreams.remove(stream.getTopicFilter(), stream);
+    }
+
+    public void cancelRetainedMsgStream(String topicFilter) {
+        RetainedMsgStream stream = retainedMsgStreams.remove(topicFilter);
+        if (stream != null) {
+            stream.cancel();
+        }
+    }
+
+    public void cancelRetainedMsgStreams() {
+        retainedMsgStreams.values().forEach(RetainedMsgStream::cancel);
+        retainedMsgStreams.clear();
+    }
+
     public void closeChannel() {
         if (log.isDebugEnabled()) {
             log.debug("[{}] Closing channel...", getClientId());
         }
+        cancelRetainedMsgStreams();
         this.channel.flush();
         this.channel.close();
         if (this.pendingPublishes != null) {
-            this.pendingPublishes.forEach((id, mqttPendingPublish) -> mqttPendingPublish.onChannelClosed());
+            this.pendingPublishes.forEach(MqttPendingPublish::onChannelClosed);
             this.pendingPublishes.clear();
+            this.pendingPublishes.releaseResends();
+        }
+        if (this.publishedInFlightCtx != null) {
+            this.publishedInFlightCtx.close();
         }
     }
 
@@ -21,24 +21,13 @@ public class MsgIdSequence {
 
     private final AtomicInteger msgIdSeq = new AtomicInteger(1);
 
+    // lock-free, so that callers running on virtual threads are never pinned to their carrier thread
     public int nextMsgId() {
-        synchronized (this.msgIdSeq) {
-            boolean reachedLimit = this.msgIdSeq.compareAndSet(0xffff, 1);
-            if (reachedLimit) {
-                return 0xffff;
-            }
-            return this.msgIdSeq.getAndIncrement();
-        }
+        return this.msgIdSeq.getAndUpdate(msgId -> msgId >= 0xffff ? 1 : msgId + 1);
     }
 
     public void updateMsgIdSequence(int lastMsgId) {
-        synchronized (this.msgIdSeq) {
-            if (lastMsgId >= 0xffff) {
-                this.msgIdSeq.set(1);
-            } else {
-                this.msgIdSeq.set(lastMsgId + 1);
-            }
-        }
+        this.msgIdSeq.set(lastMsgId >= 0xffff ? 1 : lastMsgId + 1);
     }
 
     public int getCurrentSeq() {
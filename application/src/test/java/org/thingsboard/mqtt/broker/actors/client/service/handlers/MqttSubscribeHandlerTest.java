@@ -15,9 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.actors.client.service.handlers;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttReasonCodes;
 import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.concurrent.EventExecutor;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +31,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.thingsboard.mqtt.broker.actors.client.messages.mqtt.MqttSubscribeMsg;
 import org.thingsboard.mqtt.broker.actors.client.service.subscription.ClientSubscriptionService;
+import org.thingsboard.mqtt.broker.actors.client.state.RetainedMsgStream;
 import org.thingsboard.mqtt.broker.common.data.ApplicationSharedSubscription;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
 import org.thingsboard.mqtt.broker.common.data.ClientInfo;
@@ -57,10 +61,13 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -69,6 +76,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -108,6 +116,7 @@ public class MqttSubscribeHandlerTest {
     public void setUp() {
         ctx = mock(ClientSessionCtx.class);
         when(ctx.getAuthRulePatterns()).thenReturn(List.of(AuthRulePatterns.newInstance(Collections.emptyList())));
+        mqttSubscribeHandler.setRetainedMsgDeliveryChunkSize(100);
     }
 
     @After
@@ -334,53 +343,115 @@ public class MqttSubscribeHandlerTest {
     }
 
     @Test
-    public void givenTopicSubscription_whenGetRetainedMessagesForTopicSubscription_thenReturnEmptyResult() {
-        when(retainedMsgService.getRetainedMessages("tf")).thenReturn(List.of());
-        List<RetainedMsg> messages = mqttSubscribeHandler.getRetainedMessagesForTopicSubscription(new ClientTopicSubscription("tf", 1));
-        assertTrue(messages.isEmpty());
-    }
-
-    @Test
-    public void givenTopicSubscription_whenGetRetainedMessagesForTopicSubscription_thenReturnExpectedResult() {
+    public void givenTopicSubscription_whenPrepareRetainedMsg_thenReturnExpectedResult() {
         MqttProperties properties = new MqttProperties();
 
-        when(retainedMsgService.getRetainedMessages("tf")).thenReturn(List.of(new RetainedMsg("tf", null, 1, properties)));
-        List<RetainedMsg> messages = mqttSubscribeHandler.getRetainedMessagesForTopicSubscription(new ClientTopicSubscription("tf", 0));
-        assertEquals(1, messages.size());
-        assertEquals(0, messages.get(0).getQos());
+        RetainedMsg retainedMsg = mqttSubscribeHandler.prepareRetainedMsg(new ClientTopicSubscription("tf", 0),
+                new RetainedMsg("tf", null, 1, properties), System.currentTimeMillis());
+        assertNotNull(retainedMsg);
+        assertEquals(0, retainedMsg.getQos());
     }
 
     @Test
-    public void givenTopicSubscriptionWithSubId_whenGetRetainedMessagesForTopicSubscription_thenReturnExpectedResult() {
+    public void givenTopicSubscriptionWithSubId_whenPrepareRetainedMsg_thenReturnExpectedResult() {
         MqttProperties properties = new MqttProperties();
 
-        when(retainedMsgService.getRetainedMessages("tf")).thenReturn(List.of(new RetainedMsg("tf", null, 1, properties)));
-        List<RetainedMsg> messages = mqttSubscribeHandler.getRetainedMessagesForTopicSubscription(new ClientTopicSubscription("tf", 0, null, SubscriptionOptions.newInstance(), 1));
-        assertEquals(1, messages.size());
-        assertEquals(0, messages.get(0).getQos());
-        MqttProperties resultProps = messages.get(0).getProperties();
+        RetainedMsg retainedMsg = mqttSubscribeHandler.prepareRetainedMsg(new ClientTopicSubscription("tf", 0, null, SubscriptionOptions.newInstance(), 1),
+                new RetainedMsg("tf", null, 1, properties), System.currentTimeMillis());
+        assertNotNull(retainedMsg);
+        assertEquals(0, retainedMsg.getQos());
+        MqttProperties resultProps = retainedMsg.getProperties();
         assertFalse(resultProps.listAll().isEmpty());
         assertEquals(1, resultProps.getProperty(BrokerConstants.SUBSCRIPTION_IDENTIFIER_PROP_ID).value());
     }
 
     @Test
-    public void givenTopicSubscription_whenGetExpiredRetainedMessagesForTopicSubscription_thenReturnEmptyResult() {
+    public void givenTopicSubscription_whenPrepareExpiredRetainedMsg_thenReturnNull() {
         MqttProperties properties = new MqttProperties();
         properties.add(new MqttProperties.IntegerProperty(BrokerConstants.PUB_EXPIRY_INTERVAL_PROP_ID, -10));
 
-        when(retainedMsgService.getRetainedMessages("tf")).thenReturn(List.of(new RetainedMsg("tf", null, 1, properties)));
-        List<RetainedMsg> messages = mqttSubscribeHandler.getRetainedMessagesForTopicSubscription(new ClientTopicSubscription("tf", 0));
-        assertTrue(messages.isEmpty());
+        RetainedMsg retainedMsg = mqttSubscribeHandler.prepareRetainedMsg(new ClientTopicSubscription("tf", 0),
+                new RetainedMsg("tf", null, 1, properties), System.currentTimeMillis());
+        assertNull(retainedMsg);
     }
 
     @Test
-    public void givenTopicSubscription_whenGetNotExpiredRetainedMessagesForTopicSubscription_thenReturnExpectedResult() {
+    public void givenTopicSubscription_whenPrepareNotExpiredRetainedMsg_thenReturnExpectedResult() {
         MqttProperties properties = new MqttProperties();
         properties.add(new MqttProperties.IntegerProperty(BrokerConstants.PUB_EXPIRY_INTERVAL_PROP_ID, 30));
 
-        when(retainedMsgService.getRetainedMessages("tf")).thenReturn(List.of(new RetainedMsg("tf", null, 1, properties)));
-        List<RetainedMsg> messages = mqttSubscribeHandler.getRetainedMessagesForTopicSubscription(new ClientTopicSubscription("tf", 0));
-        assertEquals(1, messages.size());
+        RetainedMsg retainedMsg = mqttSubscribeHandler.prepareRetainedMsg(new ClientTopicSubscription("tf", 0),
+                new RetainedMsg("tf", null, 1, properties), System.currentTimeMillis());
+        assertNotNull(retainedMsg);
+    }
+
+    @Test
+    public void givenRetainedMsgStream_whenGetNextRetainedMsgsChunk_thenSkipExpiredMsgsAndLimitChunkSize() {
+        mqttSubscribeHandler.setRetainedMsgDeliveryChunkSize(2);
+        MqttProperties expiredProps = new MqttProperties();
+        expiredProps.add(new MqttProperties.IntegerProperty(BrokerConstants.PUB_EXPIRY_INTERVAL_PROP_ID, -10));
+        RetainedMsgStream stream = new RetainedMsgStream(new ClientTopicSubscription("#", 1), List.of(
+                new RetainedMsg("tf1", null, 1, expiredProps),
+                newRetainedMsg("payload2", 1),
+                newRetainedMsg("payload3", 1),
+                newRetainedMsg("payload4", 1)
+        ).iterator());
+
+        assertEquals(2, mqttSubscribeHandler.getNextRetainedMsgsChunk(stream).size());
+        assertEquals(1, mqttSubscribeHandler.getNextRetainedMsgsChunk(stream).size());
+        assertTrue(mqttSubscribeHandler.getNextRetainedMsgsChunk(stream).isEmpty());
+    }
+
+    @Test
+    public void givenWritableChannel_whenDeliverRetainedMsgs_thenSendChunkAndScheduleNextOne() {
+        mqttSubscribeHandler.setRetainedMsgDeliveryChunkSize(2);
+        EventExecutor executor = mockChannel(true);
+        RetainedMsgStream stream = new RetainedMsgStream(new ClientTopicSubscription("#", 1), List.of(
+                newRetainedMsg("payload1", 1), newRetainedMsg("payload2", 1), newRetainedMsg("payload3", 1)
+        ).iterator());
+
+        mqttSubscribeHandler.deliverRetainedMsgs(ctx, stream);
+
+        verify(publishMsgDeliveryService, times(2)).sendPublishRetainedMsgToClient(eq(ctx), any());
+        verify(executor).execute(any());
+        verify(ctx, never()).removeRetainedMsgStream(stream);
+    }
+
+    @Test
+    public void givenNotWritableChannel_whenDeliverRetainedMsgs_thenPauseDelivery() {
+        EventExecutor executor = mockChannel(false);
+        RetainedMsgStream stream = new RetainedMsgStream(new ClientTopicSubscription("#", 1), List.of(
+                newRetainedMsg("payload1", 1)
+        ).iterator());
+
+        mqttSubscribeHandler.deliverRetainedMsgs(ctx, stream);
+
+        verify(publishMsgDeliveryService, never()).sendPublishRetainedMsgToClient(any(), any());
+        verify(executor).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void givenCancelledStream_whenDeliverRetainedMsgs_thenNothingIsSent() {
+        RetainedMsgStream stream = new RetainedMsgStream(new ClientTopicSubscription("#", 1), List.of(
+                newRetainedMsg("payload1", 1)
+        ).iterator());
+        stream.cancel();
+
+        mqttSubscribeHandler.deliverRetainedMsgs(ctx, stream);
+
+        verify(publishMsgDeliveryService, never()).sendPublishRetainedMsgToClient(any(), any());
+    }
+
+    private EventExecutor mockChannel(boolean writable) {
+        ChannelHandlerContext channelCtx = mock(ChannelHandlerContext.class);
+        Channel channel = mock(Channel.class);
+        EventExecutor executor = mock(EventExecutor.class);
+        when(ctx.getChannel()).thenReturn(channelCtx);
+        when(channelCtx.channel()).thenReturn(channel);
+        when(channelCtx.executor()).thenReturn(executor);
+        when(channel.isActive()).thenReturn(true);
+        when(channel.isWritable()).thenReturn(writable);
+        return executor;
     }
 
     @Test
@@ -485,25 +556,8 @@ public class MqttSubscribeHandlerTest {
     }
 
     @Test
-    public void givenNewAndCurrentSubscriptions_whenGetRetainedMessagesForTopicSubscriptions_thenReturnExpectedResult() {
-        long ts = System.currentTimeMillis();
-        when(retainedMsgService.getRetainedMessages(eq("one"))).thenReturn(List.of(
-                newRetainedMsg("payload1", 1, ts), newRetainedMsg("payload2", 1, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("two"))).thenReturn(List.of(
-                newRetainedMsg("payload3", 0, ts), newRetainedMsg("payload4", 0, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("three"))).thenReturn(List.of(
-                newRetainedMsg("payload5", 2, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("four"))).thenReturn(List.of(
-                newRetainedMsg("payload6", 1, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("five"))).thenReturn(List.of(
-                newRetainedMsg("payload7", 2, ts)
-        ));
-
-        List<RetainedMsg> retainedMsgSet = mqttSubscribeHandler.getRetainedMessagesForTopicSubscriptions(
+    public void givenNewAndCurrentSubscriptions_whenGetSubscriptionsToSendRetainedMsgs_thenReturnExpectedResult() {
+        List<TopicSubscription> result = mqttSubscribeHandler.getSubscriptionsToSendRetainedMsgs(
                 List.of(
                         getTopicSubscription("one", 1),
                         getTopicSubscription("two", 2),
@@ -512,29 +566,12 @@ public class MqttSubscribeHandlerTest {
                         getTopicSubscription("five", 0)
                 ), Collections.emptySet()
         );
-        assertEquals(7, retainedMsgSet.size());
+        assertEquals(5, result.size());
     }
 
     @Test
-    public void givenNewAndCurrentSubscriptions_whenGetRetainedMessagesForTopicSubscriptionsWithOptions_thenReturnExpectedResult() {
-        long ts = System.currentTimeMillis();
-        when(retainedMsgService.getRetainedMessages(eq("one"))).thenReturn(List.of(
-                newRetainedMsg("payload1", 1, ts), newRetainedMsg("payload2", 1, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("two"))).thenReturn(List.of(
-                newRetainedMsg("payload3", 0, ts), newRetainedMsg("payload4", 0, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("three"))).thenReturn(List.of(
-                newRetainedMsg("payload5", 2, ts), newRetainedMsg("payload5", 2, ts) // these retained messages are not equal
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("four"))).thenReturn(List.of(
-                newRetainedMsg("payload6", 1, ts), newRetainedMsg("payload1", 1, ts)
-        ));
-        when(retainedMsgService.getRetainedMessages(eq("five"))).thenReturn(List.of(
-                newRetainedMsg("payload6", 2, ts), newRetainedMsg("payload4", 1, ts)
-        ));
-
-        List<RetainedMsg> retainedMsgSet = mqttSubscribeHandler.getRetainedMessagesForTopicSubscriptions(
+    public void givenNewAndCurrentSubscriptions_whenGetSubscriptionsToSendRetainedMsgsWithOptions_thenReturnExpectedResult() {
+        List<TopicSubscription> result = mqttSubscribeHandler.getSubscriptionsToSendRetainedMsgs(
                 List.of(
                         getTopicSubscription("one", 1, getOptions(SubscriptionOptions.RetainHandlingPolicy.SEND_AT_SUBSCRIBE)),
                         getTopicSubscription("two", 2, getOptions(SubscriptionOptions.RetainHandlingPolicy.SEND_AT_SUBSCRIBE_IF_NOT_YET_EXISTS)),
@@ -544,7 +581,7 @@ public class MqttSubscribeHandlerTest {
                 ),
                 Set.of(getTopicSubscription("two", 1))
         );
-        assertEquals(4, retainedMsgSet.size());
+        assertEquals(List.of("one", "three"), result.stream().map(TopicSubscription::getTopicFilter).toList());
     }
 
     private static SubscriptionOptions getOptions(SubscriptionOptions.RetainHandlingPolicy retainHandlingPolicy) {
@@ -649,10 +686,6 @@ public class MqttSubscribeHandlerTest {
         return new ClientTopicSubscription(topic, qos, options);
     }
 
-    private RetainedMsg newRetainedMsg(String payload, int qos, long ts) {
-        return new RetainedMsg("#", payload.getBytes(StandardCharsets.UTF_8), qos, MqttProperties.NO_PROPERTIES, ts);
-    }
-
     private RetainedMsg newRetainedMsg(String payload, int qos) {
         return new RetainedMsg("#", payload.getBytes(StandardCharsets.UTF_8), qos, MqttProperties.NO_PROPERTIES, System.currentTimeMillis());
     }
@@ -26,7 +26,6 @@ import org.thingsboard.mqtt.broker.common.data.subscription.TopicSubscription;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.subscription.SubscriptionPersistenceService;
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionCacheService;
-import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptionProcessor;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 
 import java.util.Collections;
@@ -49,7 +48,6 @@ public class ClientSubscriptionServiceImplTest {
 
     SubscriptionPersistenceService subscriptionPersistenceService;
     SubscriptionService subscriptionService;
-    SharedSubscriptionProcessor sharedSubscriptionProcessor;
     SharedSubscriptionCacheService sharedSubscriptionCacheService;
     StatsManager statsManager;
     ClientSubscriptionServiceImpl clientSubscriptionService;
@@ -58,13 +56,11 @@ public class ClientSubscriptionServiceImplTest {
     public void setUp() {
         subscriptionPersistenceService = mock(SubscriptionPersistenceService.class);
         subscriptionService = mock(SubscriptionService.class);
-        sharedSubscriptionProcessor = mock(SharedSubscriptionProcessor.class);
         sharedSubscriptionCacheService = mock(SharedSubscriptionCacheService.class);
         statsManager = mock(StatsManager.class);
         clientSubscriptionService = spy(new ClientSubscriptionServiceImpl(
                 subscriptionPersistenceService,
                 subscriptionService,
-                sharedSubscriptionProcessor,
                 sharedSubscriptionCacheService,
                 statsManager));
 
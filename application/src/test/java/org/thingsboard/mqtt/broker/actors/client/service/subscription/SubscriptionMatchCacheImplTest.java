@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.service.subscription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.SubscriptionCacheStats;
+import org.thingsboard.mqtt.broker.service.subscription.ClientSubscription;
+import org.thingsboard.mqtt.broker.service.subscription.EntitySubscription;
+import org.thingsboard.mqtt.broker.service.subscription.ValueWithTopicFilter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionMatchCacheImplTest {
+
+    SubscriptionCacheStats stats;
+    SubscriptionMatchCacheImpl subscriptionMatchCache;
+    AtomicInteger matcherCalls;
+    Function<String, List<ValueWithTopicFilter<EntitySubscription>>> matcher;
+
+    @Before
+    public void setUp() {
+        StatsManager statsManager = mock(StatsManager.class);
+        stats = mock(SubscriptionCacheStats.class);
+        when(statsManager.getSubscriptionCacheStats()).thenReturn(stats);
+
+        subscriptionMatchCache = new SubscriptionMatchCacheImpl(statsManager);
+        subscriptionMatchCache.setEnabled(true);
+        subscriptionMatchCache.setMaxSize(2);
+        subscriptionMatchCache.setTtlMs(60000);
+        subscriptionMatchCache.init();
+
+        matcherCalls = new AtomicInteger();
+        matcher = topic -> {
+            matcherCalls.incrementAndGet();
+            return List.of(new ValueWithTopicFilter<>(new ClientSubscription("client", 1, null, null), topic));
+        };
+    }
+
+    @Test
+    public void givenSameTopic_whenGet_thenMatchedOnce() {
+        var first = subscriptionMatchCache.get("a/b", matcher);
+        var second = subscriptionMatchCache.get("a/b", matcher);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, matcherCalls.get());
+        verify(stats, times(1)).logMiss();
+        verify(stats, times(1)).logHit();
+    }
+
+    @Test
+    public void givenExactTopicFilterChanged_whenGet_thenOnlyThatTopicInvalidated() {
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("a/c", matcher);
+
+        subscriptionMatchCache.onSubscriptionsChanged("a/b");
+
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("a/c", matcher);
+        Assert.assertEquals(3, matcherCalls.get());
+    }
+
+    @Test
+    public void givenWildcardTopicFilterChanged_whenGet_thenFirstLevelInvalidated() {
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("x/y", matcher);
+
+        subscriptionMatchCache.onSubscriptionsChanged("a/+");
+
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("x/y", matcher);
+        Assert.assertEquals(3, matcherCalls.get());
+    }
+
+    @Test
+    public void givenLeadingWildcardTopicFilterChanged_whenGet_thenAllInvalidated() {
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("x/y", matcher);
+
+        subscriptionMatchCache.onSubscriptionsChanged("#");
+
+        subscriptionMatchCache.get("a/b", matcher);
+        subscriptionMatchCache.get("x/y", matcher);
+        Assert.assertEquals(4, matcherCalls.get());
+    }
+
+    @Test
+    public void givenMoreTopicsThanMaxSize_whenGet_thenEvicted() {
+        subscriptionMatchCache.get("a", matcher);
+        subscriptionMatchCache.get("b", matcher);
+        subscriptionMatchCache.get("c", matcher);
+
+        verify(stats, times(1)).logEviction();
+    }
+
+    @Test
+    public void givenCacheDisabled_whenGet_thenAlwaysMatched() {
+        StatsManager statsManager = mock(StatsManager.class);
+        SubscriptionMatchCacheImpl disabledCache = new SubscriptionMatchCacheImpl(statsManager);
+        disabledCache.init();
+
+        disabledCache.get("a/b", matcher);
+        disabledCache.get("a/b", matcher);
+        Assert.assertEquals(2, matcherCalls.get());
+    }
+}
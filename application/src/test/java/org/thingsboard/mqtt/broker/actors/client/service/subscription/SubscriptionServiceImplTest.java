@@ -21,7 +21,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.common.data.subscription.ClientTopicSubscription;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 import org.thingsboard.mqtt.broker.service.subscription.EntitySubscription;
 import org.thingsboard.mqtt.broker.service.subscription.SubscriptionTrie;
@@ -49,6 +48,7 @@ public class SubscriptionServiceImplTest {
         statsManager = mock(StatsManager.class);
         subscriptionService = spy(new SubscriptionServiceImpl(
                 subscriptionTrie,
+                mock(SubscriptionMatchCache.class),
                 statsManager));
     }
 
@@ -68,14 +68,8 @@ public class SubscriptionServiceImplTest {
     }
 
     @Test
-    public void givenClientTopics_whenClearEmptyTopicNodes_thenOk() throws SubscriptionTrieClearException {
+    public void givenClientTopics_whenClearEmptyTopicNodes_thenOk() {
         subscriptionService.clearEmptyTopicNodes();
         verify(subscriptionTrie, times(1)).clearEmptyNodes();
     }
-
-    @Test(expected = SubscriptionTrieClearException.class)
-    public void givenClientTopics_whenClearEmptyTopicNodes_thenThrowException() throws SubscriptionTrieClearException {
-        doThrow(SubscriptionTrieClearException.class).when(subscriptionTrie).clearEmptyNodes();
-        subscriptionService.clearEmptyTopicNodes();
-    }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PacketIdBitSetTest {
+
+    @Test
+    public void givenPacketIds_whenAddAndRemove_thenSizeIsTracked() {
+        PacketIdBitSet set = new PacketIdBitSet();
+
+        assertTrue(set.add(1));
+        assertTrue(set.add(BrokerConstants.MAX_PACKET_ID));
+        assertFalse(set.add(1));
+        assertEquals(2, set.size());
+
+        assertTrue(set.contains(BrokerConstants.MAX_PACKET_ID));
+        assertFalse(set.contains(2));
+
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertFalse(set.remove(4097));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void givenPacketIdsInDifferentPages_whenClear_thenSetIsEmpty() {
+        PacketIdBitSet set = new PacketIdBitSet();
+        set.add(63);
+        set.add(64);
+        set.add(4096);
+        set.add(60000);
+
+        set.clear();
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(63));
+        assertFalse(set.contains(64));
+        assertFalse(set.contains(4096));
+        assertFalse(set.contains(60000));
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors.client.state;
+
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PacketIdRingBufferTest {
+
+    @Test
+    public void givenEmptyBuffer_whenPeekAndPoll_thenReturnEmpty() {
+        PacketIdRingBuffer buffer = new PacketIdRingBuffer();
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(PacketIdRingBuffer.EMPTY, buffer.peek());
+        assertEquals(PacketIdRingBuffer.EMPTY, buffer.poll());
+    }
+
+    @Test
+    public void givenWrappedBuffer_whenGrow_thenOrderIsPreserved() {
+        PacketIdRingBuffer buffer = new PacketIdRingBuffer(4);
+        for (int i = 1; i <= 3; i++) {
+            buffer.add(i);
+        }
+        assertEquals(1, buffer.poll());
+        assertEquals(2, buffer.poll());
+
+        for (int i = 4; i <= 10; i++) {
+            buffer.add(i);
+        }
+
+        assertEquals(8, buffer.size());
+        for (int i = 3; i <= 10; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void givenReceiveMaximumMessages_whenAddAndPoll_thenAllPacketIdsReturnedInOrder() {
+        PacketIdRingBuffer buffer = new PacketIdRingBuffer();
+        for (int i = 1; i <= BrokerConstants.MAX_PACKET_ID; i++) {
+            buffer.add(i);
+        }
+
+        assertEquals(BrokerConstants.MAX_PACKET_ID, buffer.size());
+        for (int i = 1; i <= BrokerConstants.MAX_PACKET_ID; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+}
@@ -25,6 +25,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.common.data.mqtt.MqttPubMsgWithCreatedTime;
 import org.thingsboard.mqtt.broker.service.mqtt.DefaultMqttMessageCreator;
 import org.thingsboard.mqtt.broker.service.mqtt.flow.control.FlowControlService;
+import org.thingsboard.mqtt.broker.service.stats.StubFlowControlStats;
 import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 
 import static org.junit.Assert.assertEquals;
@@ -32,6 +33,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -122,12 +124,12 @@ public class PublishedInFlightCtxImplTest {
     }
 
     @Test
-    public void givenInFlightQueueNotEmpty_whenWrongAckInFlightMsgReceived_thenReceivedAckMsgInWrongOrderQueueIsIncremented() {
+    public void givenInFlightQueueNotEmpty_whenWrongAckInFlightMsgReceived_thenReceivedAckMsgInWrongOrderSetIsIncremented() {
         publishedInFlightCtx.getPublishedInFlightMsgQueue().add(1);
 
         publishedInFlightCtx.ackInFlightMsg(2);
 
-        assertEquals(1, publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().size());
+        assertEquals(1, publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().size());
     }
 
     @Test
@@ -144,22 +146,22 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.getPublishedInFlightMsgCounter().set(10);
         publishedInFlightCtx.getDelayedMsgCounter().set(10);
 
-        boolean result = publishedInFlightCtx.processMsg(1);
+        int result = publishedInFlightCtx.processDelayedMsgs(1, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
 
         assertEquals(10, publishedInFlightCtx.getDelayedMsgCounter().get());
 
-        assertFalse(result);
+        assertEquals(0, result);
     }
 
     @Test
     public void givenNoDelayedMessages_whenProcessDelayedMsg_thenRemoveClientFromDelayedProcessing() {
         publishedInFlightCtx.getPublishedInFlightMsgCounter().set(5);
 
-        boolean result = publishedInFlightCtx.processMsg(1);
+        int result = publishedInFlightCtx.processDelayedMsgs(1, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
 
         verify(flowControlService, times(1)).removeFromMap("test");
 
-        assertFalse(result);
+        assertEquals(0, result);
     }
 
     @Test
@@ -169,11 +171,11 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(null, System.currentTimeMillis() - 5000));
         publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
 
-        boolean result = publishedInFlightCtx.processMsg(1000);
+        int result = publishedInFlightCtx.processDelayedMsgs(1000, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
 
         verify(flowControlService, times(1)).removeFromMap("test");
         assertEquals(0, publishedInFlightCtx.getDelayedMsgCounter().get());
-        assertFalse(result);
+        assertEquals(0, result);
     }
 
     @Test
@@ -186,12 +188,40 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(newAtLeastOnceMqttPubMsg(1), System.currentTimeMillis() - 5000));
         publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
 
-        boolean result = publishedInFlightCtx.processMsg(10000);
+        int result = publishedInFlightCtx.processDelayedMsgs(10000, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
 
         verify(clientSessionCtx, times(1)).getChannel();
         assertEquals(6, publishedInFlightCtx.getPublishedInFlightMsgCounter().get());
         assertEquals(0, publishedInFlightCtx.getDelayedMsgCounter().get());
-        assertTrue(result);
+        assertEquals(1, result);
+    }
+
+    @Test
+    public void givenInFlightLimitReachedAndExpiredDelayedMsg_whenProcessDelayedMsg_thenExpiredMsgIsDropped() {
+        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(10);
+
+        publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(null, System.currentTimeMillis() - 5000));
+        publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(null, System.currentTimeMillis()));
+        publishedInFlightCtx.getDelayedMsgCounter().set(2);
+
+        int result = publishedInFlightCtx.processDelayedMsgs(1000, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
+
+        assertEquals(1, publishedInFlightCtx.getDelayedMsgCounter().get());
+        verify(flowControlService, never()).removeFromMap("test");
+        assertEquals(0, result);
+    }
+
+    @Test
+    public void givenDelayedMsgs_whenAckFreesInFlightWindow_thenDelayedMsgsProcessingSubmitted() {
+        for (int i = 1; i <= 10; i++) {
+            publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(i));
+        }
+        publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(11));
+        verify(flowControlService, never()).submitDelayedMsgsProcessing("test");
+
+        publishedInFlightCtx.ackInFlightMsg(1);
+
+        verify(flowControlService, times(1)).submitDelayedMsgsProcessing("test");
     }
 
     @Test
@@ -209,7 +239,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(5);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -227,7 +257,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(3);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -253,7 +283,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(8);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -270,7 +300,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(3);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -289,7 +319,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(1);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -310,7 +340,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(5);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -343,7 +373,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(1);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -376,7 +406,7 @@ public class PublishedInFlightCtxImplTest {
         publishedInFlightCtx.ackInFlightMsg(2);
 
         assertTrue(publishedInFlightCtx.getPublishedInFlightMsgQueue().isEmpty());
-        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().isEmpty());
+        assertTrue(publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().isEmpty());
     }
 
     @Test
@@ -410,7 +440,50 @@ public class PublishedInFlightCtxImplTest {
 //        publishedInFlightCtx.ackInFlightMsg(2);
 
         assertEquals(8, publishedInFlightCtx.getPublishedInFlightMsgQueue().size());
-        assertEquals(7, publishedInFlightCtx.getReceivedAckMsgInWrongOrderQueue().size());
+        assertEquals(7, publishedInFlightCtx.getReceivedAckMsgInWrongOrderSet().size());
+    }
+
+    @Test
+    public void givenDelayQueueLimitReached_whenAddInFlightMsg_thenSkippedMsgIsReleased() {
+        publishedInFlightCtx.getDelayedMsgCounter().set(10);
+        MqttPublishMessage mqttPubMsg = newAtLeastOnceMqttPubMsg(1);
+
+        publishedInFlightCtx.addInFlightMsg(mqttPubMsg);
+
+        assertEquals(0, mqttPubMsg.refCnt());
+    }
+
+    @Test
+    public void givenExpiredDelayedMsg_whenProcessDelayedMsg_thenExpiredMsgIsReleased() {
+        publishedInFlightCtx.getPublishedInFlightMsgCounter().set(10);
+        MqttPublishMessage mqttPubMsg = newAtLeastOnceMqttPubMsg(1);
+        publishedInFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(mqttPubMsg, System.currentTimeMillis() - 5000));
+        publishedInFlightCtx.getDelayedMsgCounter().incrementAndGet();
+
+        publishedInFlightCtx.processDelayedMsgs(1000, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
+
+        assertEquals(0, mqttPubMsg.refCnt());
+    }
+
+    @Test
+    public void givenDelayedMsgs_whenClose_thenDelayedMsgsAreReleasedAndNewMsgsAreNotQueued() {
+        for (int i = 1; i <= 10; i++) {
+            publishedInFlightCtx.addInFlightMsg(newAtLeastOnceMqttPubMsg(i));
+        }
+        MqttPublishMessage delayedMsg = newAtLeastOnceMqttPubMsg(11);
+        publishedInFlightCtx.addInFlightMsg(delayedMsg);
+
+        publishedInFlightCtx.close();
+
+        assertEquals(0, delayedMsg.refCnt());
+        assertEquals(0, publishedInFlightCtx.getDelayedMsgCount());
+        assertEquals(0, publishedInFlightCtx.getInFlightMsgCount());
+        verify(flowControlService, times(1)).removeFromMap("test");
+
+        MqttPublishMessage msgAfterClose = newAtLeastOnceMqttPubMsg(12);
+        assertFalse(publishedInFlightCtx.addInFlightMsg(msgAfterClose));
+        assertEquals(0, msgAfterClose.refCnt());
+        assertEquals(0, publishedInFlightCtx.getDelayedMsgCount());
     }
 
     private MqttPublishMessage newAtLeastOnceMqttPubMsg(int packetId) {
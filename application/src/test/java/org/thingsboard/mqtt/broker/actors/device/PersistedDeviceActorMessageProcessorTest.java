@@ -20,19 +20,23 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.actors.ActorSystemContext;
 import org.thingsboard.mqtt.broker.actors.TbActorCtx;
 import org.thingsboard.mqtt.broker.actors.device.messages.DeviceConnectedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.IncomingPublishMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.LoadPersistedMessagesPageCommandMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketAcknowledgedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketCompletedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.PacketReceivedEventMsg;
+import org.thingsboard.mqtt.broker.actors.device.messages.PersistedMessagesPageLoadedEventMsg;
 import org.thingsboard.mqtt.broker.actors.device.messages.SharedSubscriptionEventMsg;
 import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
+import org.thingsboard.mqtt.broker.dao.messages.DevicePublishMsgPage;
 import org.thingsboard.mqtt.broker.dto.SharedSubscriptionPublishPacket;
 import org.thingsboard.mqtt.broker.service.analysis.ClientLogger;
 import org.thingsboard.mqtt.broker.service.mqtt.PublishMsgDeliveryService;
@@ -44,6 +48,7 @@ import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 
@@ -54,11 +59,13 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -103,18 +110,93 @@ public class PersistedDeviceActorMessageProcessorTest {
     public void tearDown() {
     }
 
+    private DevicePublishMsg newPersistedPublishMsg(int packetId) {
+        return DevicePublishMsg
+                .builder()
+                .packetId(packetId)
+                .packetType(PersistedPacketType.PUBLISH)
+                .time(System.currentTimeMillis())
+                .qos(1)
+                .properties(new MqttProperties())
+                .build();
+    }
+
     @Test
     public void givenDeviceConnectedEventMsg_whenProcessDeviceConnect_thenSuccess() {
         ClientSessionCtx ctx = mock(ClientSessionCtx.class);
         var devicePublishMsgList = CompletableFuture.completedStage(List.of(DevicePublishMsg.builder().build()));
         when(deviceMsgService.findPersistedMessages(anyString())).thenReturn(devicePublishMsgList);
 
-        persistedDeviceActorMessageProcessor.processDeviceConnect(new DeviceConnectedEventMsg(ctx));
+        persistedDeviceActorMessageProcessor.processDeviceConnect(mock(TbActorCtx.class), new DeviceConnectedEventMsg(ctx));
 
         verify(deviceMsgService).findPersistedMessages(eq(CLIENT_ID));
         assertEquals(persistedDeviceActorMessageProcessor.getSessionCtx(), ctx);
     }
 
+    @Test
+    public void givenReplayPageSize_whenProcessDeviceConnect_thenFirstPageIsLoadedAndSentToActor() {
+        when(deviceActorConfig.getReplayPageSize()).thenReturn(2);
+        ClientSessionCtx ctx = mock(ClientSessionCtx.class);
+        UUID sessionId = UUID.randomUUID();
+        when(ctx.getSessionId()).thenReturn(sessionId);
+        TbActorCtx actorCtx = mock(TbActorCtx.class);
+        var page = new DevicePublishMsgPage(List.of(newPersistedPublishMsg(1)), 1, false);
+        when(deviceMsgService.findPersistedMessagesPage(CLIENT_ID, 0L, 2)).thenReturn(CompletableFuture.completedStage(page));
+
+        persistedDeviceActorMessageProcessor.processDeviceConnect(actorCtx, new DeviceConnectedEventMsg(ctx));
+
+        verify(deviceMsgService, never()).findPersistedMessages(anyString());
+        ArgumentCaptor<PersistedMessagesPageLoadedEventMsg> msgCaptor = ArgumentCaptor.forClass(PersistedMessagesPageLoadedEventMsg.class);
+        verify(actorCtx).tell(msgCaptor.capture());
+        assertEquals(sessionId, msgCaptor.getValue().getSessionId());
+        assertEquals(page, msgCaptor.getValue().getPage());
+    }
+
+    @Test
+    public void givenLoadedPages_whenInFlightWindowDrains_thenNextPageIsLoaded() {
+        when(deviceActorConfig.getReplayPageSize()).thenReturn(2);
+        ClientSessionCtx ctx = mock(ClientSessionCtx.class);
+        UUID sessionId = UUID.randomUUID();
+        when(ctx.getSessionId()).thenReturn(sessionId);
+        TbActorCtx actorCtx = mock(TbActorCtx.class);
+        when(deviceMsgService.findPersistedMessagesPage(eq(CLIENT_ID), anyLong(), eq(2))).thenReturn(new CompletableFuture<>());
+        when(deviceMsgService.removePersistedMessage(anyString(), anyInt())).thenReturn(CompletableFuture.completedStage("OK"));
+
+        persistedDeviceActorMessageProcessor.processDeviceConnect(actorCtx, new DeviceConnectedEventMsg(ctx));
+        var firstPage = new DevicePublishMsgPage(List.of(newPersistedPublishMsg(1), newPersistedPublishMsg(2)), 2, true);
+        persistedDeviceActorMessageProcessor.processPersistedMessagesPage(new PersistedMessagesPageLoadedEventMsg(sessionId, firstPage));
+
+        verify(publishMsgDeliveryService, times(2)).sendPublishMsgToClient(eq(ctx), any(), eq(false));
+        verify(deviceMsgService, never()).findPersistedMessagesPage(CLIENT_ID, 2L, 2);
+
+        persistedDeviceActorMessageProcessor.processPacketAcknowledge(new PacketAcknowledgedEventMsg(1));
+        verify(actorCtx).tell(any(LoadPersistedMessagesPageCommandMsg.class));
+
+        persistedDeviceActorMessageProcessor.processLoadPersistedMessagesPage();
+        verify(deviceMsgService).findPersistedMessagesPage(CLIENT_ID, 2L, 2);
+    }
+
+    @Test
+    public void givenIncomingPublishMsgDuringReplay_whenLastPageIsLoaded_thenOneMorePageIsLoaded() {
+        when(deviceActorConfig.getReplayPageSize()).thenReturn(2);
+        ClientSessionCtx ctx = mock(ClientSessionCtx.class);
+        UUID sessionId = UUID.randomUUID();
+        when(ctx.getSessionId()).thenReturn(sessionId);
+        when(deviceMsgService.findPersistedMessagesPage(eq(CLIENT_ID), anyLong(), eq(2))).thenReturn(new CompletableFuture<>());
+
+        persistedDeviceActorMessageProcessor.processDeviceConnect(mock(TbActorCtx.class), new DeviceConnectedEventMsg(ctx));
+        persistedDeviceActorMessageProcessor.process(new IncomingPublishMsg(newPersistedPublishMsg(2)));
+        verify(publishMsgDeliveryService, never()).sendPublishMsgToClient(any(), any(), anyBoolean());
+
+        var lastPage = new DevicePublishMsgPage(List.of(newPersistedPublishMsg(1)), 1, false);
+        persistedDeviceActorMessageProcessor.processPersistedMessagesPage(new PersistedMessagesPageLoadedEventMsg(sessionId, lastPage));
+        verify(deviceMsgService).findPersistedMessagesPage(CLIENT_ID, 1L, 2);
+
+        var emptyPage = new DevicePublishMsgPage(List.of(), 1, false);
+        persistedDeviceActorMessageProcessor.processPersistedMessagesPage(new PersistedMessagesPageLoadedEventMsg(sessionId, emptyPage));
+        assertNull(persistedDeviceActorMessageProcessor.getReplaySessionId());
+    }
+
     @Test
     public void givenSharedSubscriptionEventMsgAndAlreadyConnectedClient_whenProcessingSharedSubscriptions_thenDoNothing() {
         TopicSharedSubscription sharedSubscription = new TopicSharedSubscription("tf", "g1", 2);
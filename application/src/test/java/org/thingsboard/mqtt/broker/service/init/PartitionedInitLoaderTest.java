@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.init;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.gen.queue.RetainedMsgProto;
+import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
+import org.thingsboard.mqtt.broker.queue.constants.QueueConstants;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PartitionedInitLoaderTest {
+
+    private static final String TOPIC = "test-topic";
+
+    @Mock
+    TbQueueControlledOffsetConsumer<TbProtoQueueMsg<RetainedMsgProto>> consumer;
+    @Mock
+    TbQueueControlledOffsetConsumer<TbProtoQueueMsg<RetainedMsgProto>> partition0Consumer;
+    @Mock
+    TbQueueControlledOffsetConsumer<TbProtoQueueMsg<RetainedMsgProto>> partition1Consumer;
+
+    PartitionedInitLoader initLoader;
+
+    @Before
+    public void setUp() {
+        initLoader = new PartitionedInitLoader();
+    }
+
+    @Test
+    public void givenTwoPartitions_whenLoad_thenChangesMergedAndConsumerPositionedAtEndOffsets() {
+        when(consumer.getEndOffset(TOPIC, 0)).thenReturn(2L);
+        when(consumer.getEndOffset(TOPIC, 1)).thenReturn(3L);
+        when(partition0Consumer.poll(anyLong())).thenReturn(List.of(msg("a", "1", 0, 0), msg("b", "2", 0, 1)));
+        when(partition1Consumer.poll(anyLong())).thenReturn(
+                List.of(msg("c", "3", 1, 0)),
+                List.of(msg("c", "", 1, 1), msg("d", "4", 1, 2), msg("e", "5", 1, 3)));
+
+        Map<String, String> target = new HashMap<>(Map.of("c", "old", "x", "restored"));
+        Map<Integer, Long> offsets = load(Map.of(), target);
+
+        Assert.assertEquals(Map.of("a", "1", "b", "2", "d", "4", "x", "restored"), target);
+        Assert.assertEquals(Map.of(0, 2L, 1, 3L), offsets);
+
+        verify(partition0Consumer).assignPartition(0);
+        verify(partition1Consumer).assignPartition(1);
+        verify(partition0Consumer, never()).seek(anyInt(), anyLong());
+        verify(partition0Consumer).unsubscribeAndClose();
+        verify(partition1Consumer).unsubscribeAndClose();
+        verify(consumer).assignAllPartitions();
+        verify(consumer).seek(0, 2L);
+        verify(consumer).seek(1, 3L);
+    }
+
+    @Test
+    public void givenStartOffsets_whenLoad_thenOnlyTailIsRead() {
+        when(consumer.getEndOffset(TOPIC, 0)).thenReturn(2L);
+        when(consumer.getEndOffset(TOPIC, 1)).thenReturn(3L);
+        when(partition1Consumer.poll(anyLong())).thenReturn(List.of(msg("d", "4", 1, 1), msg("e", "5", 1, 2)));
+
+        Map<String, String> target = new HashMap<>(Map.of("a", "1"));
+        Map<Integer, Long> offsets = load(Map.of(0, 2L, 1, 1L), target);
+
+        Assert.assertEquals(Map.of("a", "1", "d", "4", "e", "5"), target);
+        Assert.assertEquals(Map.of(0, 2L, 1, 3L), offsets);
+
+        verify(partition1Consumer).seek(1, 1L);
+        verify(partition0Consumer, never()).assignPartition(anyInt());
+        verify(consumer).seek(0, 2L);
+        verify(consumer).seek(1, 3L);
+    }
+
+    @Test
+    public void givenPollReturnsMsgsPastEndOffset_whenLoadPartition_thenOnlyMsgsBelowEndOffsetAreCounted() {
+        when(partition1Consumer.poll(anyLong())).thenReturn(
+                List.of(msg("c", "3", 1, 0)),
+                List.of(msg("d", "4", 1, 1), msg("e", "5", 1, 2), msg("f", "6", 1, 3), msg("g", "7", 1, 4)));
+        InitLoadProgress progress = new InitLoadProgress("test", 3);
+
+        Map<String, String> changes = initLoader.loadPartition(1, null, 3, 1, partition -> partition1Consumer, this::handle, progress);
+
+        Assert.assertEquals(Map.of("c", "3", "d", "4", "e", "5"), changes);
+        Assert.assertEquals(3, progress.getLoaded());
+    }
+
+    private Map<Integer, Long> load(Map<Integer, Long> startOffsets, Map<String, String> target) {
+        when(consumer.getTopic()).thenReturn(TOPIC);
+        when(consumer.getTopicConfigs()).thenReturn(Map.of(QueueConstants.PARTITIONS, "2"));
+        return initLoader.load("test", 1, consumer, partition -> partition == 0 ? partition0Consumer : partition1Consumer, startOffsets,
+                this::handle, target);
+    }
+
+    private void handle(TbProtoQueueMsg<RetainedMsgProto> msg, Map<String, String> changes) {
+        String payload = msg.getValue().getPayload().toStringUtf8();
+        changes.put(msg.getKey(), payload.isEmpty() ? null : payload);
+    }
+
+    private TbProtoQueueMsg<RetainedMsgProto> msg(String key, String payload, int partition, long offset) {
+        RetainedMsgProto proto = RetainedMsgProto.newBuilder().setTopic(key).setPayload(ByteString.copyFromUtf8(payload)).build();
+        return new TbProtoQueueMsg<>(key, proto, new DefaultTbQueueMsgHeaders(), partition, offset);
+    }
+
+}
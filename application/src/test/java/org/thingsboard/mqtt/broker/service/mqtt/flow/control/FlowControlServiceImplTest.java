@@ -22,13 +22,20 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtxImpl;
 import org.thingsboard.mqtt.broker.common.util.ThingsBoardExecutors;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.StubFlowControlStats;
 
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FlowControlServiceImplTest {
@@ -38,11 +45,12 @@ public class FlowControlServiceImplTest {
 
     @Before
     public void setUp() throws Exception {
-        flowControlService = spy(new FlowControlServiceImpl());
+        flowControlService = spy(new FlowControlServiceImpl(mock(StatsManager.class)));
         flowControlService.setFlowControlEnabled(true);
         flowControlService.setTimeout(1000);
         flowControlService.setClientsWithDelayedMsgMap(new ConcurrentHashMap<>());
         flowControlService.setService(ThingsBoardExecutors.initExecutorService(1, "flow-control-executor"));
+        flowControlService.setFlowControlStats(StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
 
         publishedInFlightCtx = mock(PublishedInFlightCtxImpl.class);
     }
@@ -81,4 +89,20 @@ public class FlowControlServiceImplTest {
         assertTrue(flowControlService.getClientsWithDelayedMsgMap().isEmpty());
     }
 
+    @Test
+    public void givenClientWithDelayedMsgs_whenSubmitDelayedMsgsProcessing_thenDelayedMsgsProcessed() {
+        flowControlService.addToMap("test", publishedInFlightCtx);
+
+        flowControlService.submitDelayedMsgsProcessing("test");
+
+        verify(publishedInFlightCtx, timeout(1000)).processDelayedMsgs(anyLong(), any());
+    }
+
+    @Test
+    public void givenClientWithoutDelayedMsgs_whenSubmitDelayedMsgsProcessing_thenNothingProcessed() {
+        flowControlService.submitDelayedMsgsProcessing("test");
+
+        verify(flowControlService, never()).processDelayedMsgs(any());
+    }
+
 }
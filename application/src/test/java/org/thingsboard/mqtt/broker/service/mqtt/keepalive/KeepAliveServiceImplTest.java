@@ -29,6 +29,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -86,5 +87,53 @@ public class KeepAliveServiceImplTest {
         assertEquals(3, keepAliveService.getKeepAliveInfoSize());
     }
 
-}
+    @Test
+    public void testInactiveSessionDisconnectedOnlyAfterDeadline() {
+        long now = System.currentTimeMillis();
+        keepAliveService.registerSession("clientId1", UUID.randomUUID(), 10);
+        keepAliveService.registerSession("clientId2", UUID.randomUUID(), 0);
+
+        keepAliveService.processKeepAlive(now + 14000);
+        verify(clientMqttActorManager, never()).disconnect(any(), any());
+
+        keepAliveService.processKeepAlive(now + 17000);
+        verify(clientMqttActorManager, times(1)).disconnect(eq("clientId1"), any());
+        assertEquals(1, keepAliveService.getKeepAliveInfoSize());
 
+        keepAliveService.processKeepAlive(now + 60000);
+        verify(clientMqttActorManager, times(1)).disconnect(any(), any());
+    }
+
+    @Test
+    public void testActiveSessionRescheduled() throws InterruptedException {
+        keepAliveService.setTickMs(10);
+        UUID sessionId = UUID.randomUUID();
+        long registrationTime = System.currentTimeMillis();
+        keepAliveService.registerSession("clientId1", sessionId, 1);
+        keepAliveService.processKeepAlive(registrationTime);
+
+        Thread.sleep(200);
+        long ackTime = System.currentTimeMillis();
+        keepAliveService.acknowledgeControlPacket(sessionId);
+
+        // the initial deadline has passed, but the session was active since then
+        keepAliveService.processKeepAlive(registrationTime + 1600);
+        verify(clientMqttActorManager, never()).disconnect(any(), any());
+
+        keepAliveService.processKeepAlive(ackTime + 1600);
+        verify(clientMqttActorManager, times(1)).disconnect(eq("clientId1"), any());
+    }
+
+    @Test
+    public void testUnregisteredSessionNotDisconnected() {
+        long now = System.currentTimeMillis();
+        UUID sessionId = UUID.randomUUID();
+        keepAliveService.registerSession("clientId1", sessionId, 10);
+        keepAliveService.processKeepAlive(now);
+        keepAliveService.unregisterSession(sessionId);
+
+        keepAliveService.processKeepAlive(now + 60000);
+        verify(clientMqttActorManager, never()).disconnect(any(), any());
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.persistence.application.processing;
+
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.service.mqtt.PublishMsg;
+import org.thingsboard.mqtt.broker.service.stats.ApplicationProcessorStats;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ApplicationPackProcessingCtxTest {
+
+    static final String CLIENT_ID = "clientId";
+
+    ApplicationSubmitStrategy submitStrategy;
+    ApplicationProcessorStats stats;
+
+    @Before
+    public void setUp() {
+        submitStrategy = mock(ApplicationSubmitStrategy.class);
+        stats = mock(ApplicationProcessorStats.class);
+        when(submitStrategy.getClientId()).thenReturn(CLIENT_ID);
+    }
+
+    @Test
+    public void givenPendingMessages_whenAllAcknowledged_thenOnProcessedCallbackExecutedOnce() {
+        when(submitStrategy.getOrderedMessages()).thenReturn(List.of(
+                newPersistedPublishMsg(1, 0),
+                newPersistedPublishMsg(2, 1),
+                new PersistedPubRelMsg(3, 2)
+        ));
+        ApplicationPackProcessingCtx ctx = newCtx();
+
+        AtomicInteger callbackCounter = new AtomicInteger();
+        ctx.onProcessed(callbackCounter::incrementAndGet);
+
+        Assert.assertTrue(ctx.onPubAck(1));
+        Assert.assertTrue(ctx.onPubRec(2, true));
+        Assert.assertEquals(0, callbackCounter.get());
+
+        Assert.assertTrue(ctx.onPubComp(3));
+        Assert.assertEquals(1, callbackCounter.get());
+
+        Assert.assertFalse(ctx.onPubAck(1));
+        Assert.assertEquals(1, callbackCounter.get());
+    }
+
+    @Test
+    public void givenNoPendingMessages_whenOnProcessedRegistered_thenCallbackExecutedImmediately() {
+        when(submitStrategy.getOrderedMessages()).thenReturn(List.of());
+        ApplicationPackProcessingCtx ctx = newCtx();
+
+        AtomicInteger callbackCounter = new AtomicInteger();
+        ctx.onProcessed(callbackCounter::incrementAndGet);
+
+        Assert.assertEquals(1, callbackCounter.get());
+    }
+
+    @Test
+    public void givenMessagesAcknowledgedBeforeRegistration_whenOnProcessedRegistered_thenCallbackExecutedImmediately() {
+        when(submitStrategy.getOrderedMessages()).thenReturn(List.of(newPersistedPublishMsg(1, 0)));
+        ApplicationPackProcessingCtx ctx = newCtx();
+        Assert.assertTrue(ctx.onPubAck(1));
+
+        AtomicInteger callbackCounter = new AtomicInteger();
+        ctx.onProcessed(callbackCounter::incrementAndGet);
+
+        Assert.assertEquals(1, callbackCounter.get());
+    }
+
+    private ApplicationPackProcessingCtx newCtx() {
+        return new ApplicationPackProcessingCtx(submitStrategy, new ApplicationPubRelMsgCtx(Sets.newConcurrentHashSet()), stats);
+    }
+
+    private PersistedPublishMsg newPersistedPublishMsg(int packetId, long offset) {
+        PublishMsg publishMsg = PublishMsg.builder().packetId(packetId).qos(1).topicName("test").build();
+        return new PersistedPublishMsg(publishMsg, offset, false);
+    }
+
+}
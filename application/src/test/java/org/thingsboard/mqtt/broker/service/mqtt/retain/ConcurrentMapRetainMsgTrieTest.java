@@ -22,13 +22,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -134,6 +136,22 @@ public class ConcurrentMapRetainMsgTrieTest {
                 new HashSet<>(result));
     }
 
+    @Test
+    public void testIterator() {
+        retainMsgTrie.put("1/11/3", "test1");
+        retainMsgTrie.put("1/22/3", "test2");
+        retainMsgTrie.put("1/22", "test3");
+        retainMsgTrie.put("2/22/3", "test4");
+        Iterator<String> iterator = retainMsgTrie.iterator("1/#");
+        Set<String> result = new HashSet<>();
+        while (iterator.hasNext()) {
+            Assert.assertTrue(result.add(iterator.next()));
+        }
+        Assert.assertEquals(Set.of("test1", "test2", "test3"), result);
+        Assert.assertThrows(NoSuchElementException.class, iterator::next);
+        Assert.assertFalse(retainMsgTrie.iterator("3/+").hasNext());
+    }
+
     @Test
     public void testGetWith$() {
         retainMsgTrie.put("$SYS/monitor/Clients", "test1");
@@ -195,7 +213,7 @@ public class ConcurrentMapRetainMsgTrieTest {
     }
 
     @Test
-    public void testClearTrie_Basic() throws RetainMsgTrieClearException {
+    public void testClearTrie_Basic() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 retainMsgTrie.put(i + "/" + j, "val");
@@ -207,14 +225,13 @@ public class ConcurrentMapRetainMsgTrieTest {
         retainMsgTrie.delete("0/2");
         retainMsgTrie.delete("1/0");
 
-        retainMsgTrie.setWaitForClearLockMs(100);
         retainMsgTrie.clearEmptyNodes();
         // should clear 0/0, 0/1, 0/2, 0 and 1/0 nodes
         Assert.assertEquals(40 - 5, nodesCounter.get());
     }
 
     @Test
-    public void testClearTrie_ClearAll() throws RetainMsgTrieClearException {
+    public void testClearTrie_ClearAll() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 retainMsgTrie.put(i + "/" + j, "val");
@@ -223,12 +240,40 @@ public class ConcurrentMapRetainMsgTrieTest {
         }
         Assert.assertEquals(40, nodesCounter.get());
 
-        retainMsgTrie.setWaitForClearLockMs(100);
         retainMsgTrie.clearEmptyNodes();
 
         Assert.assertEquals(0, nodesCounter.get());
     }
 
+    @Test
+    public void testClearTrie_ConcurrentPut() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        Thread clearThread = new Thread(() -> {
+            while (!stopped.get()) {
+                retainMsgTrie.clearEmptyNodes();
+            }
+        });
+        clearThread.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                retainMsgTrie.put("a/" + i % 10 + "/b/" + i, "val" + i);
+                retainMsgTrie.delete("a/" + i % 10 + "/b/" + i);
+                retainMsgTrie.put("a/" + i % 10 + "/b/" + i, "val" + i);
+            }
+        } finally {
+            stopped.set(true);
+            clearThread.join();
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(List.of("val" + i), retainMsgTrie.get("a/" + i % 10 + "/b/" + i));
+        }
+        Assert.assertEquals(1000, retainedMsgCounter.get());
+
+        retainMsgTrie.clearEmptyNodes();
+        // a + 10 second level + 10 third level + 1000 leaves
+        Assert.assertEquals(1 + 10 + 10 + 1000, nodesCounter.get());
+    }
+
     @Test
     public void testRetainMsgWithLeadingSlash() {
         retainMsgTrie.put("/sport/tennis", "msg1");
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetainedMsgExpiryIndexTest {
+
+    private static final long TS = 1_000_000L;
+
+    private RetainedMsgExpiryIndex expiryIndex;
+
+    @Before
+    public void setUp() {
+        expiryIndex = new RetainedMsgExpiryIndex();
+    }
+
+    @Test
+    public void givenRetainedMsgWithoutExpiryInterval_whenAdd_thenItIsNotIndexed() {
+        expiryIndex.add("tf", new RetainedMsg("tf", "p".getBytes(StandardCharsets.UTF_8), 1, MqttProperties.NO_PROPERTIES, TS));
+        expiryIndex.add("tf", newRetainedMsg("tf", 0, TS));
+
+        assertEquals(0, expiryIndex.size());
+    }
+
+    @Test
+    public void givenIndexedRetainedMessages_whenPollExpired_thenOnlyExpiredAreReturnedInExpiryOrder() {
+        Map<String, RetainedMsg> retainedMessagesMap = new HashMap<>();
+        add(retainedMessagesMap, newRetainedMsg("tf3", 30, TS));
+        add(retainedMessagesMap, newRetainedMsg("tf1", 10, TS));
+        add(retainedMessagesMap, newRetainedMsg("tf2", 20, TS));
+
+        List<String> expiredTopics = new ArrayList<>();
+        expiryIndex.pollExpired(TS + 25_000, retainedMessagesMap, expiredTopics::add);
+
+        assertEquals(List.of("tf1", "tf2"), expiredTopics);
+        assertEquals(1, expiryIndex.size());
+
+        expiredTopics.clear();
+        expiryIndex.pollExpired(TS + 30_000, retainedMessagesMap, expiredTopics::add);
+        assertTrue(expiredTopics.isEmpty());
+    }
+
+    @Test
+    public void givenReplacedAndClearedRetainedMessages_whenPollExpired_thenOnlyCurrentMessagesAreReturned() {
+        Map<String, RetainedMsg> retainedMessagesMap = new HashMap<>();
+        add(retainedMessagesMap, newRetainedMsg("replaced", 10, TS));
+        add(retainedMessagesMap, newRetainedMsg("replaced", 10, TS + 1));
+        add(retainedMessagesMap, newRetainedMsg("replacedSameTs", 10, TS));
+        add(retainedMessagesMap, newRetainedMsg("replacedSameTs", 30, TS));
+        add(retainedMessagesMap, newRetainedMsg("cleared", 10, TS));
+        retainedMessagesMap.remove("cleared");
+
+        List<String> expiredTopics = new ArrayList<>();
+        expiryIndex.pollExpired(TS + 10_001, retainedMessagesMap, expiredTopics::add);
+        assertTrue(expiredTopics.isEmpty());
+
+        expiryIndex.pollExpired(TS + 10_002, retainedMessagesMap, expiredTopics::add);
+        assertEquals(List.of("replaced"), expiredTopics);
+    }
+
+    @Test
+    public void givenRetainedMsgRestoredWithOldCreatedTime_whenAddedAfterNewerOne_thenBothArePolledInExpiryOrder() {
+        Map<String, RetainedMsg> retainedMessagesMap = new HashMap<>();
+        add(retainedMessagesMap, newRetainedMsg("new", 10, TS));
+        add(retainedMessagesMap, newRetainedMsg("restored", 10, TS - 60_000));
+
+        List<String> expiredTopics = new ArrayList<>();
+        expiryIndex.pollExpired(TS + 20_000, retainedMessagesMap, expiredTopics::add);
+
+        assertEquals(List.of("restored", "new"), expiredTopics);
+        assertEquals(0, expiryIndex.size());
+    }
+
+    @Test
+    public void givenReplacedRetainedMessages_whenRebuild_thenOnlyCurrentMessagesAreKept() {
+        Map<String, RetainedMsg> retainedMessagesMap = new HashMap<>();
+        add(retainedMessagesMap, newRetainedMsg("tf", 10, TS));
+        add(retainedMessagesMap, newRetainedMsg("tf", 10, TS + 1));
+        add(retainedMessagesMap, newRetainedMsg("tf", 10, TS + 2));
+
+        expiryIndex.rebuild(retainedMessagesMap);
+
+        assertEquals(1, expiryIndex.size());
+        List<String> expiredTopics = new ArrayList<>();
+        expiryIndex.pollExpired(TS + 20_000, retainedMessagesMap, expiredTopics::add);
+        assertEquals(List.of("tf"), expiredTopics);
+    }
+
+    private void add(Map<String, RetainedMsg> retainedMessagesMap, RetainedMsg retainedMsg) {
+        retainedMessagesMap.put(retainedMsg.getTopic(), retainedMsg);
+        expiryIndex.add(retainedMsg.getTopic(), retainedMsg);
+    }
+
+    private RetainedMsg newRetainedMsg(String topic, int expiryIntervalSec, long createdTime) {
+        MqttProperties properties = new MqttProperties();
+        properties.add(new MqttProperties.IntegerProperty(BrokerConstants.PUB_EXPIRY_INTERVAL_PROP_ID, expiryIntervalSec));
+        return new RetainedMsg(topic, "p".getBytes(StandardCharsets.UTF_8), 1, properties, createdTime);
+    }
+}
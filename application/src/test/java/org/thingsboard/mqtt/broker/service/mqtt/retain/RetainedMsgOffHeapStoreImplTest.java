@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retain;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtxImpl;
+import org.thingsboard.mqtt.broker.common.data.mqtt.MqttPubMsgWithCreatedTime;
+import org.thingsboard.mqtt.broker.service.mqtt.DefaultMqttMessageCreator;
+import org.thingsboard.mqtt.broker.service.mqtt.flow.control.FlowControlService;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+import org.thingsboard.mqtt.broker.service.stats.StubFlowControlStats;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetainedMsgOffHeapStoreImplTest {
+
+    private static final byte[] PAYLOAD = "payload".getBytes(StandardCharsets.UTF_8);
+
+    private static ResourceLeakDetector.Level leakDetectorLevel;
+
+    private final DefaultMqttMessageCreator mqttMessageCreator = new DefaultMqttMessageCreator();
+
+    private RetainedMsgOffHeapStoreImpl offHeapStore;
+
+    @BeforeClass
+    public static void beforeClass() {
+        leakDetectorLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        ResourceLeakDetector.setLevel(leakDetectorLevel);
+    }
+
+    @Before
+    public void setUp() {
+        offHeapStore = new RetainedMsgOffHeapStoreImpl(mock(StatsManager.class));
+        offHeapStore.setEnabled(true);
+        offHeapStore.setMaxSizeMb(1);
+        offHeapStore.init();
+    }
+
+    @Test
+    public void givenRetainedMsg_whenOffload_thenPayloadIsMovedOffHeap() {
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+
+        assertTrue(retainedMsg.isOffHeap());
+        assertEquals(PAYLOAD.length, retainedMsg.getPayloadSize());
+        assertArrayEquals(PAYLOAD, retainedMsg.getPayload());
+        assertEquals(PAYLOAD.length, offHeapStore.getPayloadBytes());
+        assertTrue(offHeapStore.getAllocatedBytes() >= PAYLOAD.length);
+
+        ByteBuf slice = retainedMsg.getRetainedPayloadSlice();
+        assertEquals("payload", slice.toString(StandardCharsets.UTF_8));
+        slice.release();
+        assertEquals(1, retainedMsg.getOffHeapPayload().refCnt());
+
+        offHeapStore.release(retainedMsg);
+        assertEquals(0, offHeapStore.getPinnedBytes());
+    }
+
+    @Test
+    public void givenOffHeapStoreIsFull_whenOffload_thenPayloadIsKeptOnHeap() {
+        offHeapStore.setMaxSizeMb(0);
+        RetainedMsg retainedMsg = new RetainedMsg("tf", PAYLOAD, 1);
+
+        assertSame(retainedMsg, offHeapStore.offload(retainedMsg));
+        assertEquals(0, offHeapStore.getPayloadBytes());
+    }
+
+    @Test
+    public void givenSliceTakenBeforeRelease_whenRelease_thenPayloadIsFreedByLastHolder() {
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+        ByteBuf slice = retainedMsg.getRetainedPayloadSlice();
+
+        offHeapStore.release(retainedMsg);
+
+        assertEquals(0, offHeapStore.getPayloadBytes());
+        assertEquals("payload", slice.toString(StandardCharsets.UTF_8));
+        assertTrue(offHeapStore.getPinnedBytes() > 0);
+        assertTrue(slice.release());
+        assertEquals(0, offHeapStore.getPinnedBytes());
+    }
+
+    @Test
+    public void givenReplacedRetainedMsg_whenRead_thenPayloadIsNotAccessed() {
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+        RetainedMsg sameMsg = retainedMsg.withQosAndProps(1, retainedMsg.getProperties());
+
+        offHeapStore.release(retainedMsg);
+
+        assertNull(retainedMsg.getRetainedPayloadSlice());
+        assertNull(mqttMessageCreator.createPubRetainMsg(1, retainedMsg));
+        assertEquals(0, retainedMsg.getPayload().length);
+        assertNotNull(retainedMsg.toString());
+        assertEquals(retainedMsg, sameMsg);
+        assertEquals(retainedMsg.hashCode(), sameMsg.hashCode());
+    }
+
+    @Test
+    public void givenDisabledStore_whenOffload_thenRetainedMsgIsNotChanged() {
+        offHeapStore.setEnabled(false);
+        RetainedMsg retainedMsg = new RetainedMsg("tf", PAYLOAD, 1);
+
+        RetainedMsg result = offHeapStore.offload(retainedMsg);
+
+        assertSame(retainedMsg, result);
+        assertFalse(result.isOffHeap());
+    }
+
+    @Test
+    public void givenRetainedPubMsgSkippedByFullDelayQueue_whenStoreReleasesMsg_thenPayloadIsFreed() {
+        PublishedInFlightCtxImpl inFlightCtx = newPublishedInFlightCtx(1, 1);
+        inFlightCtx.getPublishedInFlightMsgCounter().set(1);
+        inFlightCtx.getDelayedMsgCounter().set(1);
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+
+        assertFalse(inFlightCtx.addInFlightMsg(mqttMessageCreator.createPubRetainMsg(1, retainedMsg)));
+        offHeapStore.release(retainedMsg);
+
+        assertEquals(0, offHeapStore.getPinnedBytes());
+    }
+
+    @Test
+    public void givenExpiredDelayedRetainedPubMsg_whenStoreReleasesMsg_thenPayloadIsFreed() {
+        PublishedInFlightCtxImpl inFlightCtx = newPublishedInFlightCtx(1, 10);
+        inFlightCtx.getPublishedInFlightMsgCounter().set(1);
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+        MqttPublishMessage mqttPubMsg = mqttMessageCreator.createPubRetainMsg(1, retainedMsg);
+        inFlightCtx.getDelayedMsgQueue().add(new MqttPubMsgWithCreatedTime(mqttPubMsg, System.currentTimeMillis() - 5000));
+        inFlightCtx.getDelayedMsgCounter().incrementAndGet();
+
+        inFlightCtx.processDelayedMsgs(1000, StubFlowControlStats.STUB_FLOW_CONTROL_STATS);
+        offHeapStore.release(retainedMsg);
+
+        assertEquals(0, offHeapStore.getPinnedBytes());
+    }
+
+    @Test
+    public void givenDelayedRetainedPubMsg_whenSessionClosedAndStoreReleasesMsg_thenPayloadIsFreed() {
+        PublishedInFlightCtxImpl inFlightCtx = newPublishedInFlightCtx(1, 10);
+        inFlightCtx.getPublishedInFlightMsgCounter().set(1);
+        RetainedMsg retainedMsg = offHeapStore.offload(new RetainedMsg("tf", PAYLOAD, 1));
+
+        assertFalse(inFlightCtx.addInFlightMsg(mqttMessageCreator.createPubRetainMsg(1, retainedMsg)));
+        assertEquals(1, inFlightCtx.getDelayedMsgCount());
+        inFlightCtx.close();
+        offHeapStore.release(retainedMsg);
+
+        assertEquals(0, offHeapStore.getPinnedBytes());
+    }
+
+    private PublishedInFlightCtxImpl newPublishedInFlightCtx(int receiveMax, int delayedQueueMaxSize) {
+        return new PublishedInFlightCtxImpl(mock(FlowControlService.class), mock(ClientSessionCtx.class), receiveMax, delayedQueueMaxSize);
+    }
+}
@@ -23,7 +23,6 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.thingsboard.mqtt.broker.exception.RetainMsgTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.concurrent.TimeUnit;
@@ -50,7 +49,7 @@ public class RetainedMsgServiceImplTest {
     RetainedMsgServiceImpl retainedMsgService;
 
     @Test
-    public void whenWaitThreeSeconds_thenScheduledIsCalledAtLeastOneTime() throws RetainMsgTrieClearException {
+    public void whenWaitThreeSeconds_thenScheduledIsCalledAtLeastOneTime() {
         await()
                 .atMost(3, TimeUnit.SECONDS)
                 .untilAsserted(() -> verify(retainedMsgService, atLeast(1)).scheduleEmptyNodeClear());
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HashedWheelRetransmissionSchedulerTest {
+
+    private static final long TICK_DURATION_MS = 10;
+
+    private HashedWheelRetransmissionScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new HashedWheelRetransmissionScheduler(TICK_DURATION_MS, 64);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void givenScheduledTask_whenDelayPassed_thenTaskIsRunOnce() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        long scheduledAt = System.nanoTime();
+
+        scheduler.schedule(() -> {
+            runs.incrementAndGet();
+            latch.countDown();
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt);
+        assertTrue("Task run after " + elapsedMs + " ms", elapsedMs >= 200 - TICK_DURATION_MS);
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void givenScheduledTask_whenCancelledBeforeDelayPassed_thenTaskIsNotRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch otherTaskLatch = new CountDownLatch(1);
+
+        RetransmissionTimer timer = scheduler.schedule(runs::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        scheduler.schedule(otherTaskLatch::countDown, 300, TimeUnit.MILLISECONDS);
+        timer.cancel();
+
+        assertTrue(otherTaskLatch.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void givenPendingPublish_whenPubAckReceived_thenRetransmissionIsCancelled() throws InterruptedException {
+        ClientSessionCtx sessionCtx = mock(ClientSessionCtx.class);
+        PendingPublishes pendingPublishes = new PendingPublishes();
+        when(sessionCtx.getPendingPublishes()).thenReturn(pendingPublishes);
+        ByteBuf payload = Unpooled.copiedBuffer("payload", StandardCharsets.UTF_8);
+        MqttPublishMessage mqttPubMsg = new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("test/topic", 1), payload);
+        MqttPendingPublish pendingPublish = new MqttPendingPublish(sessionCtx, 1, payload, MqttQoS.AT_LEAST_ONCE, mqttPubMsg, 1, 1);
+        pendingPublishes.put(pendingPublish);
+        AtomicInteger resends = new AtomicInteger();
+        CountDownLatch otherTaskLatch = new CountDownLatch(1);
+
+        pendingPublish.startPublishRetransmissionTimer(scheduler, (ctx, msg) -> resends.incrementAndGet());
+        scheduler.schedule(otherTaskLatch::countDown, 1500, TimeUnit.MILLISECONDS);
+        pendingPublish.onPubAckReceived();
+
+        assertTrue(otherTaskLatch.await(3, TimeUnit.SECONDS));
+        assertEquals(0, resends.get());
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.mqtt.retransmission;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RetransmissionServiceImplTest {
+
+    @Mock
+    private ClientSessionCtx sessionCtx;
+    @Mock
+    private ChannelHandlerContext channel;
+    @Mock
+    private EventExecutor executor;
+
+    private final RetransmissionServiceImpl retransmissionService = new RetransmissionServiceImpl();
+    private final PendingPublishes pendingPublishes = new PendingPublishes();
+
+    @Before
+    public void setUp() {
+        when(sessionCtx.getPendingPublishes()).thenReturn(pendingPublishes);
+        when(sessionCtx.getChannel()).thenReturn(channel);
+        when(channel.executor()).thenReturn(executor);
+    }
+
+    @Test
+    public void givenResendsOfSameChannel_whenDueAtOnce_thenWrittenByOneTaskAndFlushedOnce() {
+        MqttPublishMessage first = newPublishMsg(1);
+        MqttPublishMessage second = newPublishMsg(2);
+        MqttPublishMessage third = newPublishMsg(3);
+
+        resend(first);
+        resend(second);
+        resend(third);
+
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(1)).execute(taskCaptor.capture());
+        verify(channel, never()).write(any());
+
+        taskCaptor.getValue().run();
+
+        var inOrder = inOrder(channel);
+        inOrder.verify(channel).write(first);
+        inOrder.verify(channel).write(second);
+        inOrder.verify(channel).write(third);
+        inOrder.verify(channel).flush();
+
+        resend(newPublishMsg(4));
+        verify(executor, times(2)).execute(any());
+    }
+
+    @Test
+    public void givenEventLoopRejectsTask_whenResend_thenResendsAreReleasedAndNextResendIsScheduled() {
+        doThrow(new RejectedExecutionException()).when(executor).execute(any());
+        MqttPublishMessage mqttPubMsg = newPublishMsg(1);
+
+        resend(mqttPubMsg);
+
+        assertEquals(0, mqttPubMsg.refCnt());
+        assertTrue(pendingPublishes.addResend(newPublishMsg(2)));
+    }
+
+    @Test
+    public void givenScheduledResends_whenChannelClosed_thenResendsAreReleased() {
+        MqttPublishMessage mqttPubMsg = newPublishMsg(1);
+
+        resend(mqttPubMsg);
+        pendingPublishes.releaseResends();
+
+        assertEquals(0, mqttPubMsg.refCnt());
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(taskCaptor.capture());
+        taskCaptor.getValue().run();
+        verify(channel, never()).write(any());
+    }
+
+    private void resend(MqttMessage mqttMsg) {
+        ReflectionTestUtils.invokeMethod(retransmissionService, "resend", sessionCtx, mqttMsg);
+    }
+
+    private MqttPublishMessage newPublishMsg(int packetId) {
+        return new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, true, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("test/topic", packetId),
+                Unpooled.copiedBuffer("payload", StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightPackQueueTest {
+
+    private static final long NO_TIMEOUT = Long.MAX_VALUE / 2;
+
+    @Test
+    public void givenPacksCompletedOutOfOrder_whenPollCompleted_thenOffsetsReleasedInPollOrder() {
+        InFlightPackQueue queue = new InFlightPackQueue(3);
+        UUID msgId1 = UUID.randomUUID();
+        UUID msgId2 = UUID.randomUUID();
+        PackProcessingContext ctx1 = newCtx(msgId1);
+        PackProcessingContext ctx2 = newCtx(msgId2);
+        queue.add(new InFlightPack(ctx1, Map.of(0, 10L, 1, 5L), 1, 0, NO_TIMEOUT));
+        queue.add(new InFlightPack(ctx2, Map.of(0, 20L), 1, 0, NO_TIMEOUT));
+        assertFalse(queue.isFull());
+
+        ctx2.onSuccess(msgId2);
+        assertTrue(queue.pollCompleted(0, pack -> {}).isEmpty());
+        assertEquals(2, queue.size());
+
+        ctx1.onFailure(msgId1);
+        List<InFlightPack> completed = new ArrayList<>();
+        Map<Integer, Long> offsets = queue.pollCompleted(0, completed::add);
+
+        assertEquals(Map.of(0, 20L, 1, 5L), offsets);
+        assertEquals(2, completed.size());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void givenPackTimedOut_whenPollCompleted_thenPackReleased() {
+        InFlightPackQueue queue = new InFlightPackQueue(1);
+        queue.add(new InFlightPack(newCtx(UUID.randomUUID()), Map.of(0, 10L), 1, 0, 100));
+        assertTrue(queue.isFull());
+
+        assertTrue(queue.pollCompleted(99, pack -> {}).isEmpty());
+        assertEquals(Map.of(0, 10L), queue.pollCompleted(100, pack -> {}));
+        assertFalse(queue.isFull());
+    }
+
+    @Test
+    public void givenEmptyPack_whenPollCompleted_thenPackReleasedImmediately() {
+        InFlightPackQueue queue = new InFlightPackQueue(2);
+        queue.add(new InFlightPack(new PackProcessingContext(new ConcurrentHashMap<>()), Map.of(3, 7L), 0, 0, NO_TIMEOUT));
+
+        assertEquals(Map.of(3, 7L), queue.pollCompleted(0, pack -> {}));
+    }
+
+    private PackProcessingContext newCtx(UUID msgId) {
+        ConcurrentHashMap<UUID, PublishMsgWithId> pendingMap = new ConcurrentHashMap<>();
+        pendingMap.put(msgId, new PublishMsgWithId(msgId, PublishMsgProto.getDefaultInstance(), null));
+        return new PackProcessingContext(pendingMap);
+    }
+}
@@ -16,9 +16,12 @@
 package org.thingsboard.mqtt.broker.service.processing;
 
 import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.context.ContextConfiguration;
@@ -46,6 +49,7 @@ import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptio
 import org.thingsboard.mqtt.broker.service.subscription.shared.SharedSubscriptions;
 import org.thingsboard.mqtt.broker.service.subscription.shared.TopicSharedSubscription;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
@@ -54,12 +58,17 @@ import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -292,7 +301,7 @@ public class MsgDispatcherServiceImplTest {
                 .build();
 
         when(sharedSubscriptionCacheService.sharedSubscriptionsInitialized()).thenReturn(true);
-        when(deviceSharedSubscriptionProcessor.getTargetSubscriptions(anySet(), anyInt())).thenCallRealMethod();
+        when(deviceSharedSubscriptionProcessor.getTargetSubscriptions(anySet(), anyInt(), any())).thenCallRealMethod();
         when(sharedSubscriptionCacheService.getSubscriptions(anyList())).thenCallRealMethod();
 
         when(sharedSubscriptionCacheService.get(
@@ -408,6 +417,35 @@ public class MsgDispatcherServiceImplTest {
         assertTrue(appClientIds.containsAll(List.of("clientId1", "clientId2")));
     }
 
+    @Test
+    public void testProcessBasicSubscriptionsWithSharedPayload() {
+        ClientSessionInfo clientSessionInfo1 = mock(ClientSessionInfo.class);
+        ClientSessionInfo clientSessionInfo2 = mock(ClientSessionInfo.class);
+
+        Subscription subscription1 = new Subscription("test/#", 1, clientSessionInfo1);
+        Subscription subscription2 = new Subscription("test/+", 1, clientSessionInfo2);
+        MsgSubscriptions msgSubscriptions = new MsgSubscriptions(List.of(subscription1, subscription2));
+        PublishMsgProto publishMsgProto = PublishMsgProto
+                .newBuilder()
+                .setTopicName("test/topic")
+                .setQos(1)
+                .setPayload(ByteString.copyFromUtf8("payload"))
+                .build();
+
+        doAnswer(invocation -> {
+            ByteBuf sharedPayload = invocation.getArgument(2);
+            assertEquals("payload", sharedPayload.toString(StandardCharsets.UTF_8));
+            return null;
+        }).when(downLinkProxy).sendBasicMsg(any(), eq(publishMsgProto), any());
+
+        msgDispatcherService.processBasicAndCollectPersistentSubscriptions(msgSubscriptions, publishMsgProto);
+
+        ArgumentCaptor<ByteBuf> payloadCaptor = ArgumentCaptor.forClass(ByteBuf.class);
+        verify(downLinkProxy, times(2)).sendBasicMsg(any(), eq(publishMsgProto), payloadCaptor.capture());
+        assertSame(payloadCaptor.getAllValues().get(0), payloadCaptor.getAllValues().get(1));
+        assertEquals(0, payloadCaptor.getValue().refCnt());
+    }
+
     private List<String> getClientIds(Stream<Subscription> msgSubscriptions) {
         return msgSubscriptions
                 .map(subscription -> subscription.getClientSessionInfo().getClientId())
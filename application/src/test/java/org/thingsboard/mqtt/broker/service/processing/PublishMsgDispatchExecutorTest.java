@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.processing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublishMsgDispatchExecutorTest {
+
+    PublishMsgDispatchExecutor dispatchExecutor;
+
+    @Before
+    public void setUp() {
+        dispatchExecutor = new PublishMsgDispatchExecutor();
+        dispatchExecutor.setDispatchThreads(4);
+        dispatchExecutor.init();
+    }
+
+    @After
+    public void tearDown() {
+        dispatchExecutor.destroy();
+    }
+
+    @Test
+    public void givenNoDispatchThreads_whenInit_thenDisabled() {
+        PublishMsgDispatchExecutor disabledExecutor = new PublishMsgDispatchExecutor();
+        disabledExecutor.init();
+
+        assertFalse(disabledExecutor.isEnabled());
+        assertTrue(dispatchExecutor.isEnabled());
+    }
+
+    @Test
+    public void givenMsgsFromSeveralClients_whenDispatch_thenAllDispatchedInPublisherOrder() throws InterruptedException {
+        List<PublishMsgWithId> msgs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            msgs.add(newMsg("client" + (i % 10), i));
+        }
+        Map<String, List<Integer>> dispatchedByClient = new ConcurrentHashMap<>();
+
+        dispatchExecutor.dispatch(msgs, msg -> dispatchedByClient
+                .computeIfAbsent(msg.getPublishMsgProto().getClientId(), clientId -> new CopyOnWriteArrayList<>())
+                .add(msg.getPublishMsgProto().getPacketId()));
+
+        assertEquals(10, dispatchedByClient.size());
+        dispatchedByClient.forEach((clientId, packetIds) -> {
+            assertEquals(100, packetIds.size());
+            for (int i = 1; i < packetIds.size(); i++) {
+                assertTrue(packetIds.get(i - 1) < packetIds.get(i));
+            }
+        });
+    }
+
+    @Test(timeout = 10_000)
+    public void givenShardsShutDown_whenDispatch_thenReturnsWithoutDispatchingRejectedMsgs() throws InterruptedException {
+        List<PublishMsgWithId> msgs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            msgs.add(newMsg("client" + (i % 10), i));
+        }
+        dispatchExecutor.destroy();
+        AtomicInteger dispatched = new AtomicInteger();
+
+        dispatchExecutor.dispatch(msgs, msg -> dispatched.incrementAndGet());
+
+        assertEquals(0, dispatched.get());
+    }
+
+    private PublishMsgWithId newMsg(String clientId, int packetId) {
+        PublishMsgProto proto = PublishMsgProto.newBuilder().setClientId(clientId).setPacketId(packetId).build();
+        return new PublishMsgWithId(UUID.randomUUID(), proto, null);
+    }
+}
@@ -29,6 +29,7 @@ import org.thingsboard.mqtt.broker.service.processing.downlink.persistent.Persis
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
 
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -93,9 +94,9 @@ public class DownLinkProxyImplTest {
         PublishMsgProto publishMsgProto = PublishMsgProto.newBuilder().build();
 
         when(serviceInfoProvider.getServiceId()).thenReturn(serviceId);
-        downLinkProxy.sendBasicMsg(subscription, publishMsgProto);
+        downLinkProxy.sendBasicMsg(subscription, publishMsgProto, null);
 
-        verify(basicDownLinkProcessor, times(1)).process(eq(subscription), eq(publishMsgProto));
+        verify(basicDownLinkProcessor, times(1)).process(eq(subscription), eq(publishMsgProto), isNull());
     }
 
     @Test
@@ -108,7 +109,7 @@ public class DownLinkProxyImplTest {
         PublishMsgProto publishMsgProto = PublishMsgProto.newBuilder().build();
 
         when(serviceInfoProvider.getServiceId()).thenReturn("broker-1");
-        downLinkProxy.sendBasicMsg(subscription, publishMsgProto);
+        downLinkProxy.sendBasicMsg(subscription, publishMsgProto, null);
 
         verify(queuePublisher, times(1)).publishBasicMsg(eq(serviceId), eq(clientId), eq(publishMsgProto));
     }
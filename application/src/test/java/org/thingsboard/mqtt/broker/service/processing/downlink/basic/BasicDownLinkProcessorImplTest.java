@@ -109,9 +109,9 @@ public class BasicDownLinkProcessorImplTest {
 
         when(clientSessionCtxService.getClientSessionCtx(clientId)).thenReturn(null);
 
-        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto);
+        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto, null);
 
-        verify(publishMsgDeliveryService, never()).sendPublishMsgProtoToClient(any(), any(), any());
+        verify(publishMsgDeliveryService, never()).sendPublishMsgProtoToClient(any(), any(), any(), any());
         verify(clientMqttActorManager, never()).disconnect(any(), any());
     }
 
@@ -123,9 +123,9 @@ public class BasicDownLinkProcessorImplTest {
         when(clientSessionCtxService.getClientSessionCtx(clientId)).thenReturn(new ClientSessionCtx());
         when(rateLimitService.checkOutgoingLimits(clientId, publishMsgProto)).thenReturn(true);
 
-        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto);
+        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto, null);
 
-        verify(publishMsgDeliveryService, times(1)).sendPublishMsgProtoToClient(any(), any(), any());
+        verify(publishMsgDeliveryService, times(1)).sendPublishMsgProtoToClient(any(), any(), any(), any());
         verify(clientMqttActorManager, never()).disconnect(any(), any());
     }
 
@@ -137,9 +137,9 @@ public class BasicDownLinkProcessorImplTest {
         when(clientSessionCtxService.getClientSessionCtx(clientId)).thenReturn(new ClientSessionCtx());
         when(rateLimitService.checkOutgoingLimits(clientId, publishMsgProto)).thenReturn(false);
 
-        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto);
+        basicDownLinkProcessor.process(getSubscription(clientId), publishMsgProto, null);
 
-        verify(publishMsgDeliveryService, never()).sendPublishMsgProtoToClient(any(), any(), any());
+        verify(publishMsgDeliveryService, never()).sendPublishMsgProtoToClient(any(), any(), any(), any());
         verify(clientMqttActorManager, times(1)).disconnect(any(), any());
     }
 
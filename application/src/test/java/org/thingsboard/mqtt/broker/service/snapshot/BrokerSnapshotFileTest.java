@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.snapshot;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class BrokerSnapshotFileTest {
+
+    private Path dir;
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot-test");
+        path = dir.resolve(BrokerSnapshotType.RETAINED_MSGS.getFileName());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void givenSnapshot_whenWriteAndRead_thenSameSnapshotReturned() throws IOException {
+        BrokerSnapshot snapshot = new BrokerSnapshot(123L, Map.of(0, 10L, 1, 25L), List.of(
+                new BrokerSnapshotEntry("topic/1", Map.of("expiry", new byte[]{0, 0, 0, 5}), bytes("payload1")),
+                new BrokerSnapshotEntry("topic/2", Map.of(), bytes(""))
+        ));
+
+        BrokerSnapshotFile.write(path, snapshot);
+        BrokerSnapshot result = BrokerSnapshotFile.read(path);
+
+        Assert.assertEquals(123L, result.getCreatedTime());
+        Assert.assertEquals(Map.of(0, 10L, 1, 25L), result.getOffsets());
+        Assert.assertEquals(2, result.getEntries().size());
+
+        BrokerSnapshotEntry first = result.getEntries().get(0);
+        Assert.assertEquals("topic/1", first.getKey());
+        Assert.assertArrayEquals(new byte[]{0, 0, 0, 5}, first.getHeaders().get("expiry"));
+        Assert.assertArrayEquals(bytes("payload1"), first.getValue());
+
+        BrokerSnapshotEntry second = result.getEntries().get(1);
+        Assert.assertEquals("topic/2", second.getKey());
+        Assert.assertTrue(second.getHeaders().isEmpty());
+        Assert.assertEquals(0, second.getValue().length);
+
+        Assert.assertFalse(Files.exists(dir.resolve(path.getFileName() + ".tmp")));
+    }
+
+    @Test
+    public void givenExistingSnapshot_whenWrite_thenSnapshotReplaced() throws IOException {
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(1L, Map.of(0, 1L), List.of()));
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(2L, Map.of(0, 2L), List.of()));
+
+        BrokerSnapshot result = BrokerSnapshotFile.read(path);
+
+        Assert.assertEquals(2L, result.getCreatedTime());
+        Assert.assertEquals(Map.of(0, 2L), result.getOffsets());
+    }
+
+    @Test(expected = IOException.class)
+    public void givenCorruptedSnapshot_whenRead_thenChecksumMismatch() throws IOException {
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(1L, Map.of(0, 1L),
+                List.of(new BrokerSnapshotEntry("topic", Map.of(), bytes("payload")))));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 12);
+            file.write(0xFF);
+        }
+
+        BrokerSnapshotFile.read(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void givenTruncatedSnapshot_whenRead_thenExceptionThrown() throws IOException {
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(1L, Map.of(0, 1L), List.of()));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        BrokerSnapshotFile.read(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void givenCorruptedLength_whenRead_thenExceptionThrownWithoutAllocatingIt() throws IOException {
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(1L, Map.of(0, 1L),
+                List.of(new BrokerSnapshotEntry("topic", Map.of(), bytes("payload")))));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // header, one partition offset and the entries count precede the length of the first key
+            file.seek(Integer.BYTES * 2 + Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        BrokerSnapshotFile.read(path);
+    }
+
+    @Test
+    public void givenManyEntries_whenWriteAndRead_thenAllEntriesReturned() throws IOException {
+        List<BrokerSnapshotEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.add(new BrokerSnapshotEntry("topic/" + i, Map.of(), bytes("payload" + i)));
+        }
+        BrokerSnapshotFile.write(path, new BrokerSnapshot(1L, Map.of(0, 1L), entries));
+
+        BrokerSnapshot result = BrokerSnapshotFile.read(path);
+
+        Assert.assertEquals(10_000, result.getEntries().size());
+        Assert.assertEquals("topic/9999", result.getEntries().get(9999).getKey());
+        Assert.assertArrayEquals(bytes("payload9999"), result.getEntries().get(9999).getValue());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -22,13 +22,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.thingsboard.mqtt.broker.exception.SubscriptionTrieClearException;
 import org.thingsboard.mqtt.broker.service.stats.StatsManager;
 
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -36,9 +36,9 @@ import java.util.concurrent.atomic.AtomicLong;
 @RunWith(MockitoJUnitRunner.class)
 public class ConcurrentMapSubscriptionTrieTest {
 
-    private ConcurrentMapSubscriptionTrie<String> subscriptionTrie;
-    private AtomicInteger subscriptionCounter;
-    private AtomicLong nodesCounter;
+    protected SubscriptionTrie<String> subscriptionTrie;
+    protected AtomicInteger subscriptionCounter;
+    protected AtomicLong nodesCounter;
 
     @Before
     public void before() {
@@ -47,7 +47,11 @@ public class ConcurrentMapSubscriptionTrieTest {
         StatsManager statsManagerMock = Mockito.mock(StatsManager.class);
         Mockito.when(statsManagerMock.createSubscriptionSizeCounter()).thenReturn(subscriptionCounter);
         Mockito.when(statsManagerMock.createSubscriptionTrieNodesCounter()).thenReturn(nodesCounter);
-        this.subscriptionTrie = new ConcurrentMapSubscriptionTrie<>(statsManagerMock);
+        this.subscriptionTrie = createSubscriptionTrie(statsManagerMock);
+    }
+
+    protected SubscriptionTrie<String> createSubscriptionTrie(StatsManager statsManager) {
+        return new ConcurrentMapSubscriptionTrie<>(statsManager);
     }
 
     @Test
@@ -213,7 +217,7 @@ public class ConcurrentMapSubscriptionTrieTest {
     }
 
     @Test
-    public void testClearTrie_Basic() throws SubscriptionTrieClearException {
+    public void testClearTrie_Basic() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 subscriptionTrie.put(i + "/" + j, "val");
@@ -225,14 +229,13 @@ public class ConcurrentMapSubscriptionTrieTest {
         subscriptionTrie.delete("0/2", s -> true);
         subscriptionTrie.delete("1/0", s -> true);
 
-        subscriptionTrie.setWaitForClearLockMs(100);
         subscriptionTrie.clearEmptyNodes();
         // should clear 0/0, 0/1, 0/2, 0 and 1/0 nodes
         Assert.assertEquals(40 - 5, nodesCounter.get());
     }
 
     @Test
-    public void testClearTrie_ClearAll() throws SubscriptionTrieClearException {
+    public void testClearTrie_ClearAll() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 3; j++) {
                 subscriptionTrie.put(i + "/" + j, "val");
@@ -241,12 +244,41 @@ public class ConcurrentMapSubscriptionTrieTest {
         }
         Assert.assertEquals(40, nodesCounter.get());
 
-        subscriptionTrie.setWaitForClearLockMs(100);
         subscriptionTrie.clearEmptyNodes();
 
         Assert.assertEquals(0, nodesCounter.get());
     }
 
+    @Test
+    public void testClearTrie_ConcurrentPut() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        Thread clearThread = new Thread(() -> {
+            while (!stopped.get()) {
+                subscriptionTrie.clearEmptyNodes();
+            }
+        });
+        clearThread.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                subscriptionTrie.put("a/" + i % 10 + "/b/" + i, "val" + i);
+                subscriptionTrie.delete("a/" + i % 10 + "/b/" + i, s -> true);
+                subscriptionTrie.put("a/" + i % 10 + "/b/" + i, "val" + i);
+            }
+        } finally {
+            stopped.set(true);
+            clearThread.join();
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(List.of(new ValueWithTopicFilter<>("val" + i, "a/" + i % 10 + "/b/" + i)),
+                    subscriptionTrie.get("a/" + i % 10 + "/b/" + i));
+        }
+        Assert.assertEquals(1000, subscriptionCounter.get());
+
+        subscriptionTrie.clearEmptyNodes();
+        // a + 10 second level + 10 third level + 1000 leaves
+        Assert.assertEquals(1 + 10 + 10 + 1000, nodesCounter.get());
+    }
+
     @Test
     public void testSingleLevelWildcardSubscription() {
         subscriptionTrie.put("home/+/temperature", "sensor1");
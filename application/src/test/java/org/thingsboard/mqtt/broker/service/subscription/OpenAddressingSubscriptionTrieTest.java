@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.subscription;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.service.stats.StatsManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OpenAddressingSubscriptionTrieTest extends ConcurrentMapSubscriptionTrieTest {
+
+    @Override
+    protected SubscriptionTrie<String> createSubscriptionTrie(StatsManager statsManager) {
+        return new OpenAddressingSubscriptionTrie<>(statsManager);
+    }
+
+    @Test
+    public void testTopicFilterIsSharedBetweenMatches() {
+        subscriptionTrie.put("home/+/temperature", "sensor1");
+        ValueWithTopicFilter<String> first = subscriptionTrie.get("home/livingroom/temperature").get(0);
+        ValueWithTopicFilter<String> second = subscriptionTrie.get("home/kitchen/temperature").get(0);
+        Assert.assertSame(first.getTopicFilter(), second.getTopicFilter());
+    }
+
+    @Test
+    public void testReplaceValue() {
+        subscriptionTrie.put("1/2", "test");
+        subscriptionTrie.put("1/2", "test");
+        Assert.assertEquals(1, subscriptionCounter.get());
+        Assert.assertEquals(List.of(new ValueWithTopicFilter<>("test", "1/2")), subscriptionTrie.get("1/2"));
+    }
+
+    @Test
+    public void testManyChildren() {
+        for (int i = 0; i < 1000; i++) {
+            subscriptionTrie.put("devices/" + i + "/telemetry", "client" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(List.of(new ValueWithTopicFilter<>("client" + i, "devices/" + i + "/telemetry")),
+                    subscriptionTrie.get("devices/" + i + "/telemetry"));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            subscriptionTrie.delete("devices/" + i + "/telemetry", s -> true);
+        }
+        subscriptionTrie.clearEmptyNodes();
+        Assert.assertEquals(1 + 500 * 2, nodesCounter.get());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i % 2 == 0 ? 0 : 1, subscriptionTrie.get("devices/" + i + "/telemetry").size());
+        }
+        subscriptionTrie.put("devices/0/telemetry", "client0");
+        Assert.assertEquals(1, subscriptionTrie.get("devices/0/telemetry").size());
+    }
+
+    @Test
+    public void testDeepTopic() {
+        String topicFilter = "a/".repeat(100) + "#";
+        subscriptionTrie.put(topicFilter, "deep");
+        subscriptionTrie.put("+/".repeat(100) + "+", "wildcards");
+        List<ValueWithTopicFilter<String>> result = subscriptionTrie.get("a/".repeat(100) + "b");
+        Assert.assertEquals(Set.of(
+                        new ValueWithTopicFilter<>("deep", topicFilter),
+                        new ValueWithTopicFilter<>("wildcards", "+/".repeat(100) + "+")
+                ),
+                new HashSet<>(result));
+    }
+
+    @Test
+    public void testTopicWith$AndSameNameSegment() {
+        subscriptionTrie.put("$SYS", "test1");
+        subscriptionTrie.put("+", "test2");
+        subscriptionTrie.put("a/$SYS", "test3");
+        subscriptionTrie.put("a/+", "test4");
+        Assert.assertEquals(List.of(new ValueWithTopicFilter<>("test1", "$SYS")), subscriptionTrie.get("$SYS"));
+        Assert.assertEquals(Set.of(
+                        new ValueWithTopicFilter<>("test3", "a/$SYS"),
+                        new ValueWithTopicFilter<>("test4", "a/+")
+                ),
+                new HashSet<>(subscriptionTrie.get("a/$SYS")));
+    }
+
+}
@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -48,6 +49,7 @@ public class SharedSubscriptionCacheServiceImplTest {
     private static final String CLIENT_ID_3 = "clientId3";
 
     ClientSessionCache clientSessionCache;
+    SharedSubscriptionGroupIndex sharedSubscriptionGroupIndex;
     SharedSubscriptionCacheServiceImpl sharedSubscriptionCache;
 
     ClientSessionInfo clientSessionInfo1;
@@ -56,7 +58,8 @@ public class SharedSubscriptionCacheServiceImplTest {
     @Before
     public void setUp() {
         clientSessionCache = mock(ClientSessionCache.class);
-        sharedSubscriptionCache = spy(new SharedSubscriptionCacheServiceImpl(clientSessionCache));
+        sharedSubscriptionGroupIndex = new SharedSubscriptionGroupIndex();
+        sharedSubscriptionCache = spy(new SharedSubscriptionCacheServiceImpl(clientSessionCache, sharedSubscriptionGroupIndex));
 
         clientSessionInfo1 = mock(ClientSessionInfo.class);
         clientSessionInfo2 = mock(ClientSessionInfo.class);
@@ -79,6 +82,25 @@ public class SharedSubscriptionCacheServiceImplTest {
         sharedSubscriptionCache.getSharedSubscriptionsMap().clear();
     }
 
+    @Test
+    public void givenDeviceClient_whenPutAndRemoveSharedSubscription_thenGroupIndexUpdated() {
+        when(clientSessionInfo1.isAppClient()).thenReturn(false);
+        when(clientSessionInfo2.isAppClient()).thenReturn(false);
+        TopicSharedSubscription key = new TopicSharedSubscription("/test/topic/1", "g1");
+
+        sharedSubscriptionCache.put(CLIENT_ID_1, List.of(new ClientTopicSubscription("/test/topic/1", 1, "g1")));
+        sharedSubscriptionCache.put(CLIENT_ID_2, List.of(new ClientTopicSubscription("/test/topic/1", 2, "g1")));
+        sharedSubscriptionCache.put(CLIENT_ID_1, List.of(new ClientTopicSubscription("/test/topic/1", 0, "g1")));
+
+        assertArrayEquals(new String[]{CLIENT_ID_1, CLIENT_ID_2}, sharedSubscriptionGroupIndex.getGroup(key).getMembers());
+
+        sharedSubscriptionCache.remove(CLIENT_ID_1, new ClientTopicSubscription("/test/topic/1", 0, "g1"));
+        assertArrayEquals(new String[]{CLIENT_ID_2}, sharedSubscriptionGroupIndex.getGroup(key).getMembers());
+
+        sharedSubscriptionCache.remove(CLIENT_ID_2, new ClientTopicSubscription("/test/topic/1", 2, "g1"));
+        assertNull(sharedSubscriptionGroupIndex.getGroup(key));
+    }
+
     @Test
     public void givenNonSharedSubscriptions_whenPutSubscriptions_thenNothingAdded() {
         sharedSubscriptionCache.put(CLIENT_ID_1, List.of(
@@ -15,34 +15,47 @@
  */
 package org.thingsboard.mqtt.broker.service.subscription.shared;
 
-import com.google.common.collect.Iterables;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.mqtt.broker.actors.client.state.PublishedInFlightCtx;
 import org.thingsboard.mqtt.broker.common.data.ClientSession;
+import org.thingsboard.mqtt.broker.common.data.ClientSessionInfo;
 import org.thingsboard.mqtt.broker.common.data.SessionInfo;
+import org.thingsboard.mqtt.broker.queue.cluster.ServiceInfoProvider;
+import org.thingsboard.mqtt.broker.service.mqtt.client.session.ClientSessionCtxService;
 import org.thingsboard.mqtt.broker.service.subscription.Subscription;
+import org.thingsboard.mqtt.broker.session.ClientSessionCtx;
 import org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory;
 
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory.getClientInfo;
 import static org.thingsboard.mqtt.broker.util.ClientSessionInfoFactory.getConnectionInfo;
 
 @RunWith(MockitoJUnitRunner.class)
 public class SharedSubscriptionProcessorImplTest {
 
+    private static final String SERVICE_ID = "SERVICE_ID";
+
+    SharedSubscriptionGroupIndex groupIndex;
+    ServiceInfoProvider serviceInfoProvider;
+    ClientSessionCtxService clientSessionCtxService;
     SharedSubscriptionProcessorImpl subscriptionProcessor;
 
     @Before
     public void setUp() {
-        subscriptionProcessor = new SharedSubscriptionProcessorImpl();
+        groupIndex = new SharedSubscriptionGroupIndex();
+        serviceInfoProvider = mock(ServiceInfoProvider.class);
+        clientSessionCtxService = mock(ClientSessionCtxService.class);
+        subscriptionProcessor = new SharedSubscriptionProcessorImpl(groupIndex, serviceInfoProvider, clientSessionCtxService);
     }
 
     @Test
@@ -55,6 +68,7 @@ public class SharedSubscriptionProcessorImplTest {
         List<Subscription> subscriptions = getSubscriptions(expectedSessionInfo1, expectedSessionInfo2);
 
         SharedSubscription sharedSubscription = getSharedSubscription(subscriptions);
+        addMembers("clientId1", "clientId2");
 
         Subscription subscription1 = subscriptionProcessor.processRoundRobin(sharedSubscription);
         Subscription subscription2 = subscriptionProcessor.processRoundRobin(sharedSubscription);
@@ -68,6 +82,79 @@ public class SharedSubscriptionProcessorImplTest {
         Assert.assertEquals(subscription2, subscription4);
     }
 
+    @Test
+    public void testProcessRoundRobinSkipsDisconnectedAndNotResolvedMembers() {
+        SharedSubscription sharedSubscription = getSharedSubscription(List.of(
+                newSubscription("clientId1", true, SERVICE_ID),
+                newSubscription("clientId2", false, SERVICE_ID),
+                newSubscription("clientId3", true, SERVICE_ID)
+        ));
+        addMembers("clientId1", "clientId2", "clientId3", "clientId4");
+
+        for (int i = 0; i < 8; i++) {
+            String clientId = subscriptionProcessor.processRoundRobin(sharedSubscription).getClientId();
+            Assert.assertTrue(Set.of("clientId1", "clientId3").contains(clientId));
+        }
+    }
+
+    @Test
+    public void testProcessRoundRobinWithoutGroup() {
+        SharedSubscription sharedSubscription = getSharedSubscription(List.of(
+                newSubscription("clientId1", false, SERVICE_ID),
+                newSubscription("clientId2", true, SERVICE_ID)
+        ));
+
+        Assert.assertEquals("clientId2", subscriptionProcessor.processRoundRobin(sharedSubscription).getClientId());
+    }
+
+    @Test
+    public void testProcessStickyByPublisher() {
+        SharedSubscription sharedSubscription = getSharedSubscription(List.of(
+                newSubscription("clientId1", true, SERVICE_ID),
+                newSubscription("clientId2", true, SERVICE_ID),
+                newSubscription("clientId3", true, SERVICE_ID)
+        ));
+        addMembers("clientId1", "clientId2", "clientId3");
+
+        Subscription first = subscriptionProcessor.processStickyByPublisher(sharedSubscription, "publisher");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(first, subscriptionProcessor.processStickyByPublisher(sharedSubscription, "publisher"));
+        }
+    }
+
+    @Test
+    public void testProcessPreferLocalNode() {
+        when(serviceInfoProvider.getServiceId()).thenReturn(SERVICE_ID);
+        SharedSubscription sharedSubscription = getSharedSubscription(List.of(
+                newSubscription("clientId1", true, "OTHER_SERVICE_ID"),
+                newSubscription("clientId2", true, SERVICE_ID),
+                newSubscription("clientId3", true, "OTHER_SERVICE_ID")
+        ));
+        addMembers("clientId1", "clientId2", "clientId3");
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals("clientId2", subscriptionProcessor.processPreferLocalNode(sharedSubscription).getClientId());
+        }
+    }
+
+    @Test
+    public void testProcessLeastInFlight() {
+        when(serviceInfoProvider.getServiceId()).thenReturn(SERVICE_ID);
+        mockInFlightMsgCount("clientId1", 5);
+        mockInFlightMsgCount("clientId2", 1);
+        mockInFlightMsgCount("clientId3", 3);
+        SharedSubscription sharedSubscription = getSharedSubscription(List.of(
+                newSubscription("clientId1", true, SERVICE_ID),
+                newSubscription("clientId2", true, SERVICE_ID),
+                newSubscription("clientId3", true, SERVICE_ID)
+        ));
+        addMembers("clientId1", "clientId2", "clientId3");
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("clientId2", subscriptionProcessor.processLeastInFlight(sharedSubscription).getClientId());
+        }
+    }
+
     @Test
     public void testObjectsEquals() {
         Assert.assertEquals(newTopicAndGroup(), newTopicAndGroup());
@@ -88,7 +175,7 @@ public class SharedSubscriptionProcessorImplTest {
     }
 
     @Test
-    public void testGetOneSubscription() {
+    public void testFindFirstConnected() {
         UUID sessionId1 = UUID.randomUUID();
         UUID sessionId2 = UUID.randomUUID();
         UUID sessionId3 = UUID.randomUUID();
@@ -103,11 +190,28 @@ public class SharedSubscriptionProcessorImplTest {
 
         List<Subscription> subscriptions = getSubscriptions(clientSession1, clientSession2, clientSession3);
 
-        Iterator<Subscription> iterator = Iterables.cycle(subscriptions).iterator();
-        Subscription subscription = subscriptionProcessor.getOneSubscription(iterator);
+        Subscription subscription = subscriptionProcessor.findFirstConnected(subscriptions, s -> true);
         Assert.assertEquals(sessionId3, subscription.getClientSessionInfo().getSessionId());
     }
 
+    private void addMembers(String... clientIds) {
+        for (String clientId : clientIds) {
+            groupIndex.addMember(newTopicAndGroup(), clientId);
+        }
+    }
+
+    private void mockInFlightMsgCount(String clientId, int count) {
+        ClientSessionCtx clientSessionCtx = mock(ClientSessionCtx.class);
+        PublishedInFlightCtx publishedInFlightCtx = mock(PublishedInFlightCtx.class);
+        when(clientSessionCtxService.getClientSessionCtx(clientId)).thenReturn(clientSessionCtx);
+        when(clientSessionCtx.getPublishedInFlightCtx()).thenReturn(publishedInFlightCtx);
+        when(publishedInFlightCtx.getInFlightMsgCount()).thenReturn(count);
+    }
+
+    private Subscription newSubscription(String clientId, boolean connected, String serviceId) {
+        return new Subscription("topic", 1, ClientSessionInfo.builder().clientId(clientId).connected(connected).serviceId(serviceId).build());
+    }
+
     private List<Subscription> getSubscriptions(ClientSession clientSession1, ClientSession clientSession2, ClientSession clientSession3) {
         return List.of(
                 Subscription.newInstance("topic1", 1, clientSession1),
@@ -127,7 +231,7 @@ public class SharedSubscriptionProcessorImplTest {
         return ClientSessionInfoFactory.getSessionInfo(
                 sessionId,
                 true,
-                "SERVICE_ID",
+                SERVICE_ID,
                 getClientInfo(clientId),
                 getConnectionInfo(1000, 1000),
                 0);
@@ -140,4 +244,4 @@ public class SharedSubscriptionProcessorImplTest {
     private SharedSubscription getSharedSubscription(List<Subscription> subscriptions) {
         return new SharedSubscription(new TopicSharedSubscription("topic", "group"), subscriptions);
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,14 @@ package org.thingsboard.mqtt.broker.session;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MsgIdSequenceTest {
 
@@ -83,4 +90,20 @@ public class MsgIdSequenceTest {
         int msgId = msgIdSequence.nextMsgId();
         assertEquals(1, msgId);
     }
+
+    @Test
+    public void testConcurrentNextMsgIdIsUnique() throws InterruptedException {
+        Set<Integer> msgIds = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 0xffff / 4; j++) {
+                    msgIds.add(msgIdSequence.nextMsgId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(4 * (0xffff / 4), msgIds.size());
+    }
 }
@@ -19,4 +19,6 @@ import java.util.Map;
 
 public interface ActorStatsManager {
     void registerActorsStats(Map<?, ?> actorsMap);
+
+    DispatcherStats createDispatcherStats(String dispatcherId);
 }
@@ -47,18 +47,32 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final TbActorSystemSettings settings;
     @Getter
     private final ScheduledExecutorService scheduler;
+    private final ActorStatsManager statsManager;
 
     public DefaultTbActorSystem(TbActorSystemSettings settings, ActorStatsManager statsManager) {
         this.settings = settings;
+        this.statsManager = statsManager;
         this.scheduler = Executors.newScheduledThreadPool(settings.getSchedulerPoolSize(), ThingsBoardThreadFactory.forName("actor-system-scheduler"));
         statsManager.registerActorsStats(actors);
     }
 
     @Override
     public void createDispatcher(String dispatcherId, ExecutorService executor) {
-        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor));
+        registerDispatcher(new Dispatcher(dispatcherId, executor, statsManager.createDispatcherStats(dispatcherId)));
+    }
+
+    @Override
+    public void createPinnedDispatcher(String dispatcherId, List<ExecutorService> executors) {
+        if (executors.isEmpty()) {
+            throw new IllegalArgumentException("Pinned dispatcher [" + dispatcherId + "] requires at least one executor!");
+        }
+        registerDispatcher(new Dispatcher(dispatcherId, executors, statsManager.createDispatcherStats(dispatcherId)));
+    }
+
+    private void registerDispatcher(Dispatcher dispatcher) {
+        Dispatcher current = dispatchers.putIfAbsent(dispatcher.getDispatcherId(), dispatcher);
         if (current != null) {
-            throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
+            throw new RuntimeException("Dispatcher with id [" + dispatcher.getDispatcherId() + "] is already registered!");
         }
     }
 
@@ -66,12 +80,16 @@ public class DefaultTbActorSystem implements TbActorSystem {
     public void destroyDispatcher(String dispatcherId) {
         Dispatcher dispatcher = dispatchers.remove(dispatcherId);
         if (dispatcher != null) {
-            ThingsBoardExecutors.shutdownAndAwaitTermination(dispatcher.getExecutor(), dispatcherId);
+            shutdownDispatcher(dispatcher);
         } else {
             throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is not registered!");
         }
     }
 
+    private void shutdownDispatcher(Dispatcher dispatcher) {
+        dispatcher.getAllExecutors().forEach(executor -> ThingsBoardExecutors.shutdownAndAwaitTermination(executor, dispatcher.getDispatcherId()));
+    }
+
     @Override
     public TbActorRef getActor(TbActorId actorId) {
         return actors.get(actorId);
@@ -213,7 +231,7 @@ public class DefaultTbActorSystem implements TbActorSystem {
     @Override
     public void destroy() {
         log.info("Stopping actor system dispatchers...");
-        dispatchers.values().forEach(d -> ThingsBoardExecutors.shutdownAndAwaitTermination(d.getExecutor(), d.getDispatcherId()));
+        dispatchers.values().forEach(this::shutdownDispatcher);
         if (scheduler != null) {
             log.info("Stopping actor system scheduler...");
             ThingsBoardExecutors.shutdownAndAwaitTermination(scheduler, "Actor system scheduler");
@@ -15,14 +15,47 @@
  */
 package org.thingsboard.mqtt.broker.actors;
 
-import lombok.Data;
+import lombok.Getter;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
-@Data
+@Getter
 class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    /**
+     * Single-threaded executors an actor is bound to by the hash of its id, null for shared dispatchers.
+     * Keeps all messages of one actor on the same thread instead of letting them migrate across the pool.
+     */
+    private final ExecutorService[] pinnedExecutors;
+    private final DispatcherStats stats;
+
+    Dispatcher(String dispatcherId, ExecutorService executor, DispatcherStats stats) {
+        this.dispatcherId = dispatcherId;
+        this.executor = executor;
+        this.pinnedExecutors = null;
+        this.stats = stats;
+    }
+
+    Dispatcher(String dispatcherId, List<ExecutorService> pinnedExecutors, DispatcherStats stats) {
+        this.dispatcherId = dispatcherId;
+        this.pinnedExecutors = pinnedExecutors.toArray(new ExecutorService[0]);
+        this.executor = this.pinnedExecutors[0];
+        this.stats = stats;
+    }
+
+    ExecutorService getExecutor(TbActorId actorId) {
+        if (pinnedExecutors == null) {
+            return executor;
+        }
+        return pinnedExecutors[Math.floorMod(actorId.hashCode(), pinnedExecutors.length)];
+    }
+
+    List<ExecutorService> getAllExecutors() {
+        return pinnedExecutors == null ? List.of(executor) : Arrays.asList(pinnedExecutors);
+    }
 
 }
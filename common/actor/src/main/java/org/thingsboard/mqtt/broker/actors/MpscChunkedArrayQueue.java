@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unbounded multi-producer single-consumer queue backed by linked fixed-size array chunks.
+ * Producers claim a slot with a single getAndIncrement and write into it, so there is no per-message node allocation
+ * and no CAS retry loop under contention. Only one thread at a time may call {@link #poll()}.
+ */
+final class MpscChunkedArrayQueue<E> {
+
+    private static final int CHUNK_SHIFT = 7;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+    // hint for producers, may lag behind or run ahead of a particular producer's chunk
+    private volatile Chunk<E> producerChunk;
+    // the chunk holding consumerIndex; never ahead of a claimed but not yet consumed slot
+    private volatile Chunk<E> consumerChunk;
+    private volatile long consumerIndex;
+
+    MpscChunkedArrayQueue() {
+        Chunk<E> first = new Chunk<>(0);
+        this.producerChunk = first;
+        this.consumerChunk = first;
+    }
+
+    void offer(E e) {
+        Objects.requireNonNull(e);
+        long index = producerIndex.getAndIncrement();
+        long chunkIndex = index >>> CHUNK_SHIFT;
+
+        Chunk<E> chunk = producerChunk;
+        if (chunk.index > chunkIndex) {
+            // the consumer can not pass a slot that is claimed but not written yet
+            chunk = consumerChunk;
+        }
+        while (chunk.index < chunkIndex) {
+            chunk = chunk.nextOrCreate();
+        }
+        if (producerChunk.index < chunk.index) {
+            producerChunk = chunk;
+        }
+        chunk.slots.set((int) (index & CHUNK_MASK), e);
+    }
+
+    E poll() {
+        long index = consumerIndex;
+        Chunk<E> chunk = consumerChunk;
+        int offset = (int) (index & CHUNK_MASK);
+        E e = chunk.slots.get(offset);
+        if (e == null) {
+            return null;
+        }
+        chunk.slots.lazySet(offset, null);
+        if (offset == CHUNK_MASK) {
+            consumerChunk = chunk.nextOrCreate();
+        }
+        consumerIndex = index + 1;
+        return e;
+    }
+
+    /**
+     * Slots claimed by producers but not polled yet, including ones whose write is still in progress.
+     */
+    int size() {
+        long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    boolean isEmpty() {
+        return consumerIndex >= producerIndex.get();
+    }
+
+    private static final class Chunk<E> {
+
+        private final long index;
+        private final AtomicReferenceArray<E> slots = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicReference<Chunk<E>> next = new AtomicReference<>();
+
+        private Chunk(long index) {
+            this.index = index;
+        }
+
+        private Chunk<E> nextOrCreate() {
+            Chunk<E> current = next.get();
+            if (current != null) {
+                return current;
+            }
+            Chunk<E> created = new Chunk<>(index + 1);
+            return next.compareAndSet(null, created) ? created : next.get();
+        }
+    }
+}
@@ -15,12 +15,15 @@
  */
 package org.thingsboard.mqtt.broker.actors;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -45,17 +48,25 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final MpscChunkedArrayQueue<TbActorMsg> highPriorityMsgs = new MpscChunkedArrayQueue<>();
+    private final MpscChunkedArrayQueue<TbActorMsg> normalPriorityMsgs = new MpscChunkedArrayQueue<>();
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
 
+    // both are accessed only by the thread owning the 'busy' flag or right before handing it over to the executor
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int throughput;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long scheduledAtNanos;
+
     private final boolean isTraceEnabled = log.isTraceEnabled();
     private final boolean isDebugEnabled = log.isDebugEnabled();
 
     public void initActor() {
-        dispatcher.getExecutor().execute(() -> tryInit(1));
+        executor().execute(() -> tryInit(1));
     }
 
     private void tryInit(int attempt) {
@@ -84,13 +95,13 @@ public final class TbActorMailbox implements TbActorCtx {
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Error", selfId, t);
                 }
-                system.getScheduler().schedule(() -> dispatcher.getExecutor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
+                system.getScheduler().schedule(() -> executor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
             } else {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry immediately", selfId, attempt);
                 if (log.isDebugEnabled()) {
                     log.debug("[{}] Error", selfId, t);
                 }
-                dispatcher.getExecutor().execute(() -> tryInit(attemptIdx));
+                executor().execute(() -> tryInit(attemptIdx));
             }
         }
     }
@@ -101,10 +112,11 @@ public final class TbActorMailbox implements TbActorCtx {
             return;
         }
         if (highPriority) {
-            highPriorityMsgs.add(msg);
+            highPriorityMsgs.offer(msg);
         } else {
-            normalPriorityMsgs.add(msg);
+            normalPriorityMsgs.offer(msg);
         }
+        dispatcher.getStats().onMsgEnqueued();
         tryProcessQueue(true);
     }
 
@@ -112,7 +124,7 @@ public final class TbActorMailbox implements TbActorCtx {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    scheduleProcessing();
                 } else {
                     if (isTraceEnabled) {
                         log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
@@ -130,13 +142,17 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    private void scheduleProcessing() {
+        scheduledAtNanos = System.nanoTime();
+        executor().execute(this::processMailbox);
+    }
+
     private void processMailbox() {
+        dispatcher.getStats().logSchedulingLatency(System.nanoTime() - scheduledAtNanos);
+        int limit = settings.isAdaptiveThroughput() ? getAdaptiveThroughput() : settings.getActorThroughput();
         boolean noMoreElements = false;
-        for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
-            }
+        for (int i = 0; i < limit; i++) {
+            TbActorMsg msg = pollMsg();
             if (msg != null) {
                 try {
                     if (isDebugEnabled) {
@@ -157,12 +173,60 @@ public final class TbActorMailbox implements TbActorCtx {
                 break;
             }
         }
-        if (noMoreElements) {
+        if (settings.isAdaptiveThroughput()) {
+            adaptThroughput(noMoreElements);
+        }
+        if (destroyInProgress.get()) {
+            // keep the mailbox busy, so it is not scheduled anymore
+            notifyMsgsStopped();
+        } else if (noMoreElements) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            // re-check inline instead of one more executor hop, messages added while busy were not scheduled by producers
+            tryProcessQueue(false);
         } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+            scheduleProcessing();
+        }
+    }
+
+    private TbActorMsg pollMsg() {
+        TbActorMsg msg = highPriorityMsgs.poll();
+        if (msg == null) {
+            msg = normalPriorityMsgs.poll();
+        }
+        if (msg != null) {
+            dispatcher.getStats().onMsgDequeued();
+        }
+        return msg;
+    }
+
+    private int getAdaptiveThroughput() {
+        if (throughput == 0) {
+            throughput = settings.getActorThroughput();
         }
+        return throughput;
+    }
+
+    /**
+     * Doubles the batch while the mailbox keeps a backlog, so chatty actors are not re-scheduled every few messages,
+     * and halves it back once the mailbox gets drained.
+     */
+    private void adaptThroughput(boolean drained) {
+        if (drained) {
+            throughput = Math.max(settings.getActorThroughput(), throughput >> 1);
+        } else {
+            throughput = Math.max(settings.getActorThroughput(), Math.min(settings.getMaxActorThroughput(), throughput << 1));
+        }
+    }
+
+    private void notifyMsgsStopped() {
+        TbActorMsg msg;
+        while ((msg = pollMsg()) != null) {
+            msg.onTbActorStopped(selfId);
+        }
+    }
+
+    private ExecutorService executor() {
+        return dispatcher.getExecutor(selfId);
     }
 
     @Override
@@ -207,12 +271,14 @@ public final class TbActorMailbox implements TbActorCtx {
 
     public void destroy() {
         destroyInProgress.set(true);
-        dispatcher.getExecutor().execute(() -> {
+        executor().execute(() -> {
             try {
                 ready.set(NOT_READY);
                 actor.destroy();
-                highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(selfId));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(selfId));
+                // otherwise the running processMailbox notifies the pending messages itself
+                if (busy.compareAndSet(FREE, BUSY)) {
+                    notifyMsgsStopped();
+                }
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor", selfId, t);
             }
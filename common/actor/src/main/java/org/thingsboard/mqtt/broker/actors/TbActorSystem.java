@@ -29,6 +29,8 @@ public interface TbActorSystem {
 
     void createDispatcher(String dispatcherId, ExecutorService executor);
 
+    void createPinnedDispatcher(String dispatcherId, List<ExecutorService> executors);
+
     void destroyDispatcher(String dispatcherId);
 
     TbActorRef getActor(TbActorId actorId);
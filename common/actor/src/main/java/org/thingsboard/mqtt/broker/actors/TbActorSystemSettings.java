@@ -23,5 +23,7 @@ public class TbActorSystemSettings {
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final boolean adaptiveThroughput;
+    private final int maxActorThroughput;
 
 }
@@ -26,6 +26,8 @@ public enum MsgType {
     PACKET_RECEIVED_NO_DELIVERY_EVENT_MSG,
     PACKET_COMPLETED_EVENT_MSG,
     INCOMING_PUBLISH_MSG,
+    PERSISTED_MESSAGES_PAGE_LOADED_EVENT_MSG,
+    LOAD_PERSISTED_MESSAGES_PAGE_COMMAND_MSG,
     STOP_DEVICE_ACTOR_COMMAND_MSG,
 
     // Client Session MQTT Msg Types
@@ -0,0 +1,147 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.mqtt.broker.actors.msg.MsgType;
+import org.thingsboard.mqtt.broker.actors.msg.TbActorMsg;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DefaultTbActorSystemPinnedDispatcherTest {
+
+    private static final String DISPATCHER_ID = "pinned-test-dispatcher";
+    private static final int POOL_SIZE = 4;
+
+    private DefaultTbActorSystem actorSystem;
+
+    @BeforeEach
+    void setUp() {
+        ActorStatsManager statsManager = new ActorStatsManager() {
+            @Override
+            public void registerActorsStats(Map<?, ?> actorsMap) {
+            }
+
+            @Override
+            public DispatcherStats createDispatcherStats(String dispatcherId) {
+                return new DispatcherStats() {
+                    @Override
+                    public void onMsgEnqueued() {
+                    }
+
+                    @Override
+                    public void onMsgDequeued() {
+                    }
+
+                    @Override
+                    public void logSchedulingLatency(long nanos) {
+                    }
+                };
+            }
+        };
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(1, 1, 1, false, 1), statsManager);
+        List<ExecutorService> executors = new ArrayList<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            executors.add(Executors.newSingleThreadExecutor());
+        }
+        actorSystem.createPinnedDispatcher(DISPATCHER_ID, executors);
+    }
+
+    @AfterEach
+    void tearDown() {
+        actorSystem.destroy();
+    }
+
+    @Test
+    void givenPinnedDispatcher_whenActorsProcessMsgs_thenEachActorStaysOnOneThreadAndActorsSpreadAcrossPool() throws InterruptedException {
+        int actorsCount = 64;
+        int msgsPerActor = 100;
+        CountDownLatch processed = new CountDownLatch(actorsCount * msgsPerActor);
+        Map<TbActorId, Set<Thread>> actorThreads = new ConcurrentHashMap<>();
+
+        List<TbActorRef> actors = new ArrayList<>(actorsCount);
+        for (int i = 0; i < actorsCount; i++) {
+            TbActorId actorId = new TbStringActorId("client-" + i);
+            actors.add(actorSystem.createRootActor(DISPATCHER_ID, new ThreadRecordingActorCreator(actorId, actorThreads, processed)));
+        }
+        for (int m = 0; m < msgsPerActor; m++) {
+            for (TbActorRef actor : actors) {
+                actor.tell(new TestMsg());
+            }
+        }
+
+        assertThat(processed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(actorThreads).hasSize(actorsCount);
+        Set<Thread> usedThreads = new HashSet<>();
+        actorThreads.values().forEach(threads -> {
+            assertThat(threads).hasSize(1);
+            usedThreads.addAll(threads);
+        });
+        assertThat(usedThreads).hasSize(POOL_SIZE);
+    }
+
+    private static class TestMsg implements TbActorMsg {
+
+        @Override
+        public MsgType getMsgType() {
+            return MsgType.DEVICE_CONNECTED_EVENT_MSG;
+        }
+    }
+
+    private static class ThreadRecordingActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+        private final Map<TbActorId, Set<Thread>> actorThreads;
+        private final CountDownLatch processed;
+
+        ThreadRecordingActorCreator(TbActorId actorId, Map<TbActorId, Set<Thread>> actorThreads, CountDownLatch processed) {
+            this.actorId = actorId;
+            this.actorThreads = actorThreads;
+            this.processed = processed;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new AbstractTbActor() {
+                @Override
+                public boolean process(TbActorMsg msg) {
+                    actorThreads.computeIfAbsent(actorId, id -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+                    processed.countDown();
+                    return true;
+                }
+            };
+        }
+    }
+
+}
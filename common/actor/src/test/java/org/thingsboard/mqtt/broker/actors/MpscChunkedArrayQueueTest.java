@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.actors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscChunkedArrayQueueTest {
+
+    @Test
+    void givenMsgsAcrossSeveralChunks_whenPolled_thenFifoOrderIsKept() {
+        MpscChunkedArrayQueue<Integer> queue = new MpscChunkedArrayQueue<>();
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.poll()).isNull();
+
+        for (int i = 0; i < 1000; i++) {
+            queue.offer(i);
+        }
+        assertThat(queue.size()).isEqualTo(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void givenInterleavedOfferAndPoll_whenQueueDrainedRepeatedly_thenNoMsgIsLost() {
+        MpscChunkedArrayQueue<Integer> queue = new MpscChunkedArrayQueue<>();
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 37; i++) {
+                queue.offer(next++);
+            }
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                assertThat(value).isEqualTo(expected++);
+            }
+        }
+        assertThat(expected).isEqualTo(next);
+    }
+
+    @Test
+    void givenConcurrentProducers_whenConsumedBySingleThread_thenEveryProducerOrderIsKept() throws InterruptedException {
+        int producers = 4;
+        int msgsPerProducer = 50_000;
+        MpscChunkedArrayQueue<long[]> queue = new MpscChunkedArrayQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producerId = p;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < msgsPerProducer; i++) {
+                        queue.offer(new long[]{producerId, i});
+                    }
+                });
+            }
+            start.countDown();
+
+            List<Long> lastSeen = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                lastSeen.add(-1L);
+            }
+            int received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received < producers * msgsPerProducer && System.nanoTime() < deadline) {
+                long[] msg = queue.poll();
+                if (msg == null) {
+                    continue;
+                }
+                int producerId = (int) msg[0];
+                assertThat(msg[1]).isEqualTo(lastSeen.get(producerId) + 1);
+                lastSeen.set(producerId, msg[1]);
+                received++;
+            }
+            assertThat(received).isEqualTo(producers * msgsPerProducer);
+            assertThat(queue.isEmpty()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -113,6 +113,11 @@ public class ClusterAwareLettuceConnectionManager extends AbstractLettuceConnect
         return setFuture;
     }
 
+    @Override
+    public void flush() {
+        forceFlush();
+    }
+
     @Override
     protected void flushCommands() {
         connection.flushCommands();
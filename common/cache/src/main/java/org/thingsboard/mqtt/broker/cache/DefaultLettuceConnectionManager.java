@@ -113,6 +113,11 @@ public class DefaultLettuceConnectionManager extends AbstractLettuceConnectionMa
         return setFuture;
     }
 
+    @Override
+    public void flush() {
+        forceFlush();
+    }
+
     @Override
     protected void flushCommands() {
         connection.flushCommands();
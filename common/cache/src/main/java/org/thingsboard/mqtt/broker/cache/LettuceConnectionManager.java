@@ -39,4 +39,9 @@ public interface LettuceConnectionManager {
 
     RedisFuture<String> setAsync(byte[] key, byte[] value);
 
+    /**
+     * Writes the buffered commands to the connection. No-op when auto flush is enabled.
+     */
+    void flush();
+
 }
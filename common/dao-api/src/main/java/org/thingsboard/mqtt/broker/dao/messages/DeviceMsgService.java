@@ -19,6 +19,7 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionStage;
 
 public interface DeviceMsgService {
@@ -26,8 +27,24 @@ public interface DeviceMsgService {
     // TODO: failOnConflict, kafka rebalancing issue. Need to be tested.
     CompletionStage<Integer> saveAndReturnPreviousPacketId(String clientId, List<DevicePublishMsg> devicePublishMessages, boolean failOnConflict);
 
+    /**
+     * Saves messages of multiple clients at once. Clients whose keys belong to the same Redis slot are persisted
+     * with a single script call and all the calls are pipelined.
+     *
+     * @return previous packet id future for each clientId
+     */
+    Map<String, CompletionStage<Integer>> saveAndReturnPreviousPacketIds(Map<String, List<DevicePublishMsg>> clientIdToMessagesMap);
+
     CompletionStage<List<DevicePublishMsg>> findPersistedMessages(String clientId);
 
+    /**
+     * Finds the page of persisted messages stored after the cursor.
+     *
+     * @param cursor cursor returned with the previous page or 0 to start from the oldest message
+     * @param limit  maximum number of messages in the page
+     */
+    CompletionStage<DevicePublishMsgPage> findPersistedMessagesPage(String clientId, long cursor, int limit);
+
     CompletionStage<String> removePersistedMessages(String clientId);
 
     CompletionStage<String> removePersistedMessage(String clientId, int packetId);
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+
+import java.util.List;
+
+/**
+ * Page of persisted DEVICE messages.
+ *
+ * @param messages   messages of the page ordered by the persistence order
+ * @param nextCursor cursor to request the next page with
+ * @param hasNext    whether more messages may be stored after this page
+ */
+public record DevicePublishMsgPage(List<DevicePublishMsg> messages, long nextCursor, boolean hasNext) {
+}
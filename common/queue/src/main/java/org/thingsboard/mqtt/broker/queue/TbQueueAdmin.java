@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.queue;
 
 import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.common.TopicPartition;
 import org.thingsboard.mqtt.broker.common.data.BasicCallback;
 import org.thingsboard.mqtt.broker.common.data.page.PageData;
 import org.thingsboard.mqtt.broker.common.data.page.PageLink;
@@ -26,6 +27,7 @@ import org.thingsboard.mqtt.broker.common.data.queue.KafkaTopic;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface TbQueueAdmin {
 
@@ -52,4 +54,12 @@ public interface TbQueueAdmin {
     void deleteOldConsumerGroups(String consumerGroupPrefix, String serviceId, long currentCgSuffix);
 
     ListConsumerGroupOffsetsResult listConsumerGroupOffsets(String groupId);
+
+    /**
+     * Looks up the committed offsets of the partitions of several consumer groups with a single request.
+     * Partitions without a committed offset are missing from the result of their group.
+     */
+    Map<String, CompletableFuture<Map<TopicPartition, Long>>> getCommittedOffsetsAsync(Map<String, List<TopicPartition>> partitionsByGroup, long timeoutMs);
+
+    void commitOffsetAsync(String groupId, String topic, int partition, long offset);
 }
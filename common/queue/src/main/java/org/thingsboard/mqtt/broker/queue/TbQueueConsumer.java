@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.queue;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TbQueueConsumer<T extends TbQueueMsg> {
 
@@ -29,6 +30,8 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commitSync();
 
+    void commit(Map<Integer, Long> partitionOffsets);
+
     String getConsumerGroupId();
 
 }
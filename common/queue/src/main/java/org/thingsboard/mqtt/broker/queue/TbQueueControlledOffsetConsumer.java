@@ -30,6 +30,8 @@ public interface TbQueueControlledOffsetConsumer<T extends TbQueueMsg> extends T
 
     void seekToTheBeginning();
 
+    void seek(int partition, long offset);
+
     long getEndOffset(String topic, int partition);
 
     Optional<Long> getCommittedOffset(String topic, int partition);
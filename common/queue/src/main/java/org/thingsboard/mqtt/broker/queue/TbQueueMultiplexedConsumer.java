@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer that is manually assigned to partitions of many topics at once, each of them committed to its own consumer group.
+ * Assignment changes are applied by the polling thread before the next poll, so they are safe to call from any thread and do not block it.
+ * An assigned partition is polled once the committed offset of its consumer group is looked up. The lookup is asynchronous,
+ * batched for all the partitions waiting for it and retried on failure, so it does not block the polling of the other partitions.
+ * {@link #poll(long)} and {@link #unsubscribeAndClose()} must be called from the polling thread only.
+ */
+public interface TbQueueMultiplexedConsumer<T extends TbQueueMsg> {
+
+    void assign(String topic, int partition, String consumerGroupId);
+
+    void unassign(String topic, int partition);
+
+    void pause(String topic, int partition);
+
+    void resume(String topic, int partition);
+
+    Map<String, List<T>> poll(long durationInMillis);
+
+    void commit(String consumerGroupId, String topic, int partition, long offset);
+
+    int getAssignedPartitionsCount();
+
+    void unsubscribeAndClose();
+
+}
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -180,6 +181,19 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void commit(Map<Integer, Long> partitionOffsets) {
+        if (partitionOffsets.isEmpty()) {
+            return;
+        }
+        consumerLock.lock();
+        try {
+            doCommit(topic, partitionOffsets);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public void seekToTheBeginning() {
         consumerLock.lock();
@@ -190,6 +204,16 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public void seek(int partition, long offset) {
+        consumerLock.lock();
+        try {
+            doSeek(topic, partition, offset);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
     @Override
     public long getEndOffset(String topic, int partition) {
         consumerLock.lock();
@@ -224,10 +248,14 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit(String topic, int partition, long offset);
 
+    abstract protected void doCommit(String topic, Map<Integer, Long> partitionOffsets);
+
     abstract protected void doUnsubscribeAndClose();
 
     abstract protected void doSeekToTheBeginning();
 
+    abstract protected void doSeek(String topic, int partition, long offset);
+
     abstract protected long doGetEndOffset(String topic, int partition);
 
     abstract protected Optional<Long> doGetCommittedOffset(String topic, int partition);
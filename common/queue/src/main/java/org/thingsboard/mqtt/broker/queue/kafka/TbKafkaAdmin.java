@@ -24,7 +24,9 @@ import org.apache.kafka.clients.admin.DeleteTopicsResult;
 import org.apache.kafka.clients.admin.DescribeClusterResult;
 import org.apache.kafka.clients.admin.DescribeConsumerGroupsResult;
 import org.apache.kafka.clients.admin.DescribeLogDirsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsOptions;
 import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsSpec;
 import org.apache.kafka.clients.admin.ListConsumerGroupsOptions;
 import org.apache.kafka.clients.admin.LogDirDescription;
 import org.apache.kafka.clients.admin.NewTopic;
@@ -64,7 +66,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -82,6 +86,7 @@ public class TbKafkaAdmin implements TbQueueAdmin {
 
     private final Admin client;
     private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<GroupTopicPartition, OffsetCommitState> offsetCommits = new ConcurrentHashMap<>();
     private final Consumer<String, byte[]> consumer;
     private final Duration timeoutDuration;
 
@@ -462,6 +467,75 @@ public class TbKafkaAdmin implements TbQueueAdmin {
         return client.listConsumerGroupOffsets(groupId);
     }
 
+    @Override
+    public Map<String, CompletableFuture<Map<TopicPartition, Long>>> getCommittedOffsetsAsync(Map<String, List<TopicPartition>> partitionsByGroup,
+                                                                                              long timeoutMs) {
+        Map<String, ListConsumerGroupOffsetsSpec> groupSpecs = new HashMap<>(partitionsByGroup.size());
+        partitionsByGroup.forEach((groupId, partitions) -> groupSpecs.put(groupId, new ListConsumerGroupOffsetsSpec().topicPartitions(partitions)));
+        ListConsumerGroupOffsetsResult result = client.listConsumerGroupOffsets(groupSpecs,
+                new ListConsumerGroupOffsetsOptions().timeoutMs((int) timeoutMs));
+
+        Map<String, CompletableFuture<Map<TopicPartition, Long>>> futures = new HashMap<>(partitionsByGroup.size());
+        for (String groupId : partitionsByGroup.keySet()) {
+            futures.put(groupId, result.partitionsToOffsetAndMetadata(groupId).toCompletionStage().toCompletableFuture().thenApply(offsets -> {
+                Map<TopicPartition, Long> committedOffsets = new HashMap<>(offsets.size());
+                offsets.forEach((topicPartition, offsetAndMetadata) -> {
+                    if (offsetAndMetadata != null) {
+                        committedOffsets.put(topicPartition, offsetAndMetadata.offset());
+                    }
+                });
+                return committedOffsets;
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Keeps at most one request in flight per partition of a consumer group, otherwise the requests may complete out of order
+     * and overwrite a newer offset with a stale one. Offsets committed in the meantime replace each other and only the latest
+     * one is sent once the request in flight completes.
+     */
+    @Override
+    public void commitOffsetAsync(String groupId, String topic, int partition, long offset) {
+        GroupTopicPartition groupTopicPartition = new GroupTopicPartition(groupId, new TopicPartition(topic, partition));
+        while (true) {
+            OffsetCommitState state = offsetCommits.computeIfAbsent(groupTopicPartition, key -> new OffsetCommitState());
+            synchronized (state) {
+                if (state.removed) {
+                    continue;
+                }
+                if (state.inFlight) {
+                    state.pendingOffset = offset;
+                    return;
+                }
+                state.inFlight = true;
+            }
+            sendOffsetCommit(groupTopicPartition, state, offset);
+            return;
+        }
+    }
+
+    private void sendOffsetCommit(GroupTopicPartition groupTopicPartition, OffsetCommitState state, long offset) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = Map.of(groupTopicPartition.topicPartition(), new OffsetAndMetadata(offset));
+        client.alterConsumerGroupOffsets(groupTopicPartition.groupId(), offsets).all().whenComplete((unused, throwable) -> {
+            if (throwable != null) {
+                log.warn("[{}][{}] Failed to commit offset {}", groupTopicPartition.groupId(), groupTopicPartition.topicPartition(), offset, throwable);
+            }
+            Long nextOffset;
+            synchronized (state) {
+                nextOffset = state.pendingOffset;
+                state.pendingOffset = null;
+                if (nextOffset == null) {
+                    state.removed = true;
+                    offsetCommits.remove(groupTopicPartition, state);
+                }
+            }
+            if (nextOffset != null) {
+                sendOffsetCommit(groupTopicPartition, state, nextOffset);
+            }
+        });
+    }
+
     private boolean isConsumerGroupToDelete(String consumerGroupPrefix, String serviceId, long currentCgSuffix, String consumerGroupId) {
         String prefix = getPrefix(consumerGroupPrefix);
         String cgSuffix = Long.toString(currentCgSuffix);
@@ -472,6 +546,15 @@ public class TbKafkaAdmin implements TbQueueAdmin {
         return kafkaPrefix != null ? kafkaPrefix + consumerGroupPrefix : consumerGroupPrefix;
     }
 
+    private record GroupTopicPartition(String groupId, TopicPartition topicPartition) {
+    }
+
+    private static class OffsetCommitState {
+        private boolean inFlight;
+        private boolean removed;
+        private Long pendingOffset;
+    }
+
     @PreDestroy
     public void destroy() {
         if (client != null) {
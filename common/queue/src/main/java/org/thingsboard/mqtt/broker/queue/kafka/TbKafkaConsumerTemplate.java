@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -170,6 +171,20 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         });
     }
 
+    @Override
+    protected void doCommit(String topic, Map<Integer, Long> partitionOffsets) {
+        Map<TopicPartition, OffsetAndMetadata> offsetMap = new HashMap<>(partitionOffsets.size());
+        partitionOffsets.forEach((partition, offset) -> offsetMap.put(newTopicPartition(topic, partition), new OffsetAndMetadata(offset)));
+        consumer.commitAsync(offsetMap, (offsets, exception) -> {
+            if (exception != null) {
+                log.warn("[{}] Failed to commit offsets {}.", topic, partitionOffsets);
+                if (log.isTraceEnabled()) {
+                    log.trace("Detailed error stack trace:", exception);
+                }
+            }
+        });
+    }
+
     @Override
     protected void doUnsubscribeAndClose() {
         if (consumer != null) {
@@ -209,4 +224,9 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
     public void doSeekToTheBeginning() {
         consumer.seekToBeginning(Collections.emptyList());
     }
+
+    @Override
+    public void doSeek(String topic, int partition, long offset) {
+        consumer.seek(newTopicPartition(topic, partition), offset);
+    }
 }
@@ -0,0 +1,295 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@Slf4j
+public class TbKafkaMultiplexedConsumerTemplate<T extends TbQueueMsg> implements TbQueueMultiplexedConsumer<T> {
+
+    private static final long DEFAULT_CLOSE_TIMEOUT = 3000;
+    private static final long DEFAULT_OFFSET_LOOKUP_TIMEOUT = 10000;
+    private static final long OFFSET_LOOKUP_RETRY_DELAY_MS = 1000;
+
+    private final KafkaConsumer<String, byte[]> consumer;
+    private final TbKafkaDecoder<T> decoder;
+    private final TbQueueAdmin admin;
+    private final long closeTimeoutMs;
+    private final long offsetLookupTimeoutMs;
+
+    private final Queue<Runnable> pendingOperations = new ConcurrentLinkedQueue<>();
+    private final Set<TopicPartition> assignedPartitions = new HashSet<>();
+    private final Map<TopicPartition, PendingAssignment> awaitingOffsets = new HashMap<>();
+    private volatile int assignedPartitionsCount;
+    private volatile boolean stopped = false;
+
+    @Builder
+    private TbKafkaMultiplexedConsumerTemplate(Properties properties, TbKafkaDecoder<T> decoder, String clientId,
+                                               long closeTimeoutMs, long offsetLookupTimeoutMs, TbQueueAdmin admin) {
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+
+        this.closeTimeoutMs = closeTimeoutMs > 0 ? closeTimeoutMs : DEFAULT_CLOSE_TIMEOUT;
+        this.offsetLookupTimeoutMs = offsetLookupTimeoutMs > 0 ? offsetLookupTimeoutMs : DEFAULT_OFFSET_LOOKUP_TIMEOUT;
+        this.admin = admin;
+        this.decoder = decoder;
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        this.consumer = new KafkaConsumer<>(properties);
+    }
+
+    @Override
+    public void assign(String topic, int partition, String consumerGroupId) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        // The partition is assigned once its committed offset is looked up, see lookUpCommittedOffsets()
+        pendingOperations.add(() -> {
+            if (assignedPartitions.remove(topicPartition)) {
+                consumer.assign(assignedPartitions);
+            }
+            awaitingOffsets.put(topicPartition, new PendingAssignment(consumerGroupId));
+        });
+    }
+
+    @Override
+    public void unassign(String topic, int partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        pendingOperations.add(() -> {
+            awaitingOffsets.remove(topicPartition);
+            if (assignedPartitions.remove(topicPartition)) {
+                consumer.assign(assignedPartitions);
+            }
+        });
+    }
+
+    @Override
+    public void pause(String topic, int partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        pendingOperations.add(() -> {
+            PendingAssignment pendingAssignment = awaitingOffsets.get(topicPartition);
+            if (pendingAssignment != null) {
+                pendingAssignment.paused = true;
+            } else if (assignedPartitions.contains(topicPartition)) {
+                consumer.pause(Collections.singletonList(topicPartition));
+            }
+        });
+    }
+
+    @Override
+    public void resume(String topic, int partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        pendingOperations.add(() -> {
+            PendingAssignment pendingAssignment = awaitingOffsets.get(topicPartition);
+            if (pendingAssignment != null) {
+                pendingAssignment.paused = false;
+            } else if (assignedPartitions.contains(topicPartition)) {
+                consumer.resume(Collections.singletonList(topicPartition));
+            }
+        });
+    }
+
+    @Override
+    public Map<String, List<T>> poll(long durationInMillis) {
+        if (stopped) {
+            log.error("Poll invoked but multiplexed consumer is stopped.");
+            return Collections.emptyMap();
+        }
+        applyPendingOperations();
+        lookUpCommittedOffsets();
+        if (assignedPartitions.isEmpty()) {
+            sleep(durationInMillis);
+            return Collections.emptyMap();
+        }
+        ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(durationInMillis));
+        if (records.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<T>> result = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            result.computeIfAbsent(record.topic(), topic -> new ArrayList<>()).add(decode(record));
+        }
+        return result;
+    }
+
+    private void applyPendingOperations() {
+        Runnable operation;
+        while ((operation = pendingOperations.poll()) != null) {
+            try {
+                operation.run();
+            } catch (Exception e) {
+                log.warn("Failed to apply assignment change to multiplexed consumer.", e);
+            }
+        }
+        assignedPartitionsCount = assignedPartitions.size() + awaitingOffsets.size();
+    }
+
+    /**
+     * Requests the committed offsets of all the partitions waiting for them with a single admin request, so the poll thread
+     * never blocks on it. The result is applied by the poll thread as a pending operation. Lookups that failed or timed out
+     * are retried after a delay, the partitions stay waiting until then.
+     */
+    private void lookUpCommittedOffsets() {
+        long now = System.currentTimeMillis();
+        Map<TopicPartition, PendingAssignment> requested = new HashMap<>();
+        Map<String, List<TopicPartition>> partitionsByGroup = new HashMap<>();
+        awaitingOffsets.forEach((topicPartition, pendingAssignment) -> {
+            if (!pendingAssignment.lookupInFlight && pendingAssignment.nextLookupTs <= now) {
+                pendingAssignment.lookupInFlight = true;
+                requested.put(topicPartition, pendingAssignment);
+                partitionsByGroup.computeIfAbsent(pendingAssignment.consumerGroupId, groupId -> new ArrayList<>()).add(topicPartition);
+            }
+        });
+        if (requested.isEmpty()) {
+            return;
+        }
+        Map<String, CompletableFuture<Map<TopicPartition, Long>>> futures;
+        try {
+            futures = admin.getCommittedOffsetsAsync(partitionsByGroup, offsetLookupTimeoutMs);
+        } catch (Exception e) {
+            log.warn("Failed to request committed offsets of {} consumer groups, retrying in {} ms.",
+                    partitionsByGroup.size(), OFFSET_LOOKUP_RETRY_DELAY_MS, e);
+            requested.forEach(this::retryLookupLater);
+            return;
+        }
+        futures.forEach((groupId, future) -> future.whenComplete((offsets, throwable) -> pendingOperations.add(() -> {
+            List<TopicPartition> partitions = partitionsByGroup.get(groupId);
+            if (throwable != null) {
+                log.warn("[{}] Failed to get committed offsets of partitions {}, retrying in {} ms.",
+                        groupId, partitions, OFFSET_LOOKUP_RETRY_DELAY_MS, throwable);
+                partitions.forEach(topicPartition -> retryLookupLater(topicPartition, requested.get(topicPartition)));
+            } else {
+                assignPartitions(groupId, partitions, requested, offsets);
+            }
+        })));
+    }
+
+    private void assignPartitions(String consumerGroupId, List<TopicPartition> partitions,
+                                  Map<TopicPartition, PendingAssignment> requested, Map<TopicPartition, Long> offsets) {
+        List<TopicPartition> newPartitions = new ArrayList<>(partitions.size());
+        List<TopicPartition> pausedPartitions = new ArrayList<>();
+        for (TopicPartition topicPartition : partitions) {
+            PendingAssignment pendingAssignment = requested.get(topicPartition);
+            // partitions unassigned or assigned again while the lookup was in flight are skipped
+            if (awaitingOffsets.remove(topicPartition, pendingAssignment)) {
+                assignedPartitions.add(topicPartition);
+                newPartitions.add(topicPartition);
+                if (pendingAssignment.paused) {
+                    pausedPartitions.add(topicPartition);
+                }
+            }
+        }
+        if (newPartitions.isEmpty()) {
+            return;
+        }
+        consumer.assign(assignedPartitions);
+        for (TopicPartition topicPartition : newPartitions) {
+            Long committedOffset = offsets.get(topicPartition);
+            if (committedOffset != null) {
+                consumer.seek(topicPartition, committedOffset);
+            } else {
+                consumer.seekToEnd(Collections.singletonList(topicPartition));
+                admin.commitOffsetAsync(consumerGroupId, topicPartition.topic(), topicPartition.partition(), consumer.position(topicPartition));
+            }
+        }
+        if (!pausedPartitions.isEmpty()) {
+            consumer.pause(pausedPartitions);
+        }
+    }
+
+    private void retryLookupLater(TopicPartition topicPartition, PendingAssignment pendingAssignment) {
+        if (awaitingOffsets.get(topicPartition) == pendingAssignment) {
+            pendingAssignment.lookupInFlight = false;
+            pendingAssignment.nextLookupTs = System.currentTimeMillis() + OFFSET_LOOKUP_RETRY_DELAY_MS;
+        }
+    }
+
+    private T decode(ConsumerRecord<String, byte[]> record) {
+        try {
+            return decoder.decode(new KafkaTbQueueMsg(record));
+        } catch (IOException e) {
+            log.error("Failed decode record: [{}]", record);
+            throw new RuntimeException("Failed to decode record: ", e);
+        }
+    }
+
+    private void sleep(long durationInMillis) {
+        try {
+            Thread.sleep(durationInMillis);
+        } catch (InterruptedException e) {
+            if (!stopped) {
+                log.error("Failed to wait");
+            }
+        }
+    }
+
+    @Override
+    public void commit(String consumerGroupId, String topic, int partition, long offset) {
+        admin.commitOffsetAsync(consumerGroupId, topic, partition, offset);
+    }
+
+    @Override
+    public int getAssignedPartitionsCount() {
+        return assignedPartitionsCount;
+    }
+
+    @Override
+    public void unsubscribeAndClose() {
+        stopped = true;
+        pendingOperations.clear();
+        awaitingOffsets.clear();
+        assignedPartitions.clear();
+        consumer.unsubscribe();
+        consumer.close(Duration.ofMillis(closeTimeoutMs));
+    }
+
+    private static class PendingAssignment {
+
+        private final String consumerGroupId;
+        private boolean paused;
+        private boolean lookupInFlight;
+        private long nextLookupTs;
+
+        private PendingAssignment(String consumerGroupId) {
+            this.consumerGroupId = consumerGroupId;
+        }
+    }
+
+}
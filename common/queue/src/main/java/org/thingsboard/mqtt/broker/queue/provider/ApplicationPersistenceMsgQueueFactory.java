@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.queue.provider;
 
 import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 
@@ -32,6 +33,8 @@ public interface ApplicationPersistenceMsgQueueFactory {
 
     TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> createConsumerForSharedTopic(String topic, String consumerGroupId, String consumerId);
 
+    TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> createMultiplexedConsumer(String consumerId);
+
     Map<String, String> getTopicConfigs();
 
     Map<String, String> getSharedTopicConfigs();
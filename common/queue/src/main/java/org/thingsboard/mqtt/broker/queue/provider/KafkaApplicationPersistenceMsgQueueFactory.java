@@ -21,9 +21,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.thingsboard.mqtt.broker.gen.queue.PublishMsgProto;
 import org.thingsboard.mqtt.broker.queue.TbQueueControlledOffsetConsumer;
+import org.thingsboard.mqtt.broker.queue.TbQueueMultiplexedConsumer;
 import org.thingsboard.mqtt.broker.queue.TbQueueProducer;
 import org.thingsboard.mqtt.broker.queue.common.TbProtoQueueMsg;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaConsumerTemplate;
+import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaMultiplexedConsumerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.TbKafkaProducerTemplate;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationPersistenceMsgKafkaSettings;
 import org.thingsboard.mqtt.broker.queue.kafka.settings.ApplicationSharedTopicMsgKafkaSettings;
@@ -92,6 +94,23 @@ public class KafkaApplicationPersistenceMsgQueueFactory extends AbstractQueueFac
         return createConsumer(topic, consumerGroupId, clientId, props);
     }
 
+    @Override
+    public TbQueueMultiplexedConsumer<TbProtoQueueMsg<PublishMsgProto>> createMultiplexedConsumer(String consumerId) {
+        String clientId = "application-persisted-msg-multiplexed-consumer-" + consumerId;
+
+        Properties props = consumerSettings.toProps(null, applicationPersistenceMsgSettings.getAdditionalConsumerConfig());
+        QueueUtil.overrideProperties("ApplicationMsgQueue-" + consumerId, props, requiredConsumerProperties);
+
+        TbKafkaMultiplexedConsumerTemplate.TbKafkaMultiplexedConsumerTemplateBuilder<TbProtoQueueMsg<PublishMsgProto>> consumerBuilder =
+                TbKafkaMultiplexedConsumerTemplate.builder();
+        consumerBuilder.properties(props);
+        consumerBuilder.clientId(kafkaPrefix + clientId);
+        consumerBuilder.decoder(msg -> new TbProtoQueueMsg<>(msg.getKey(), PublishMsgProto.parseFrom(msg.getData()), msg.getHeaders(),
+                msg.getPartition(), msg.getOffset()));
+        consumerBuilder.admin(queueAdmin);
+        return consumerBuilder.build();
+    }
+
     private TbQueueControlledOffsetConsumer<TbProtoQueueMsg<PublishMsgProto>> createConsumer(
             String topic, String consumerGroupId, String clientId, Properties props) {
 
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.queue.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.mqtt.broker.queue.TbQueueAdmin;
+import org.thingsboard.mqtt.broker.queue.TbQueueMsg;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TbKafkaMultiplexedConsumerTemplateTest {
+
+    private static final String TOPIC_1 = "client_1";
+    private static final String TOPIC_2 = "client_2";
+
+    private TbQueueAdmin admin;
+    private TbKafkaMultiplexedConsumerTemplate<TbQueueMsg> consumer;
+
+    @BeforeEach
+    void setUp() {
+        admin = mock(TbQueueAdmin.class);
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        consumer = TbKafkaMultiplexedConsumerTemplate.builder()
+                .properties(properties)
+                .clientId("test-multiplexed-consumer")
+                .closeTimeoutMs(1)
+                .admin(admin)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.unsubscribeAndClose();
+    }
+
+    @Test
+    void givenSeveralAssignments_whenPolled_thenCommittedOffsetsLookedUpWithSingleRequest() {
+        when(admin.getCommittedOffsetsAsync(anyMap(), anyLong())).thenReturn(Map.of(
+                "group_1", CompletableFuture.completedFuture(Map.of(new TopicPartition(TOPIC_1, 0), 5L)),
+                "group_2", CompletableFuture.completedFuture(Map.of(new TopicPartition(TOPIC_2, 0), 7L))));
+
+        consumer.assign(TOPIC_1, 0, "group_1");
+        consumer.assign(TOPIC_2, 0, "group_2");
+        consumer.poll(1);
+        consumer.poll(1);
+
+        verify(admin).getCommittedOffsetsAsync(Map.of(
+                "group_1", List.of(new TopicPartition(TOPIC_1, 0)),
+                "group_2", List.of(new TopicPartition(TOPIC_2, 0))), 10000L);
+        assertThat(consumer.getAssignedPartitionsCount()).isEqualTo(2);
+    }
+
+    @Test
+    void givenFailedLookup_whenPolled_thenAssignmentIsKeptAndLookupRetried() {
+        TopicPartition topicPartition = new TopicPartition(TOPIC_1, 0);
+        when(admin.getCommittedOffsetsAsync(anyMap(), anyLong()))
+                .thenReturn(Map.of("group_1", CompletableFuture.failedFuture(new RuntimeException("timeout"))))
+                .thenReturn(Map.of("group_1", CompletableFuture.completedFuture(Map.of(topicPartition, 5L))));
+
+        consumer.assign(TOPIC_1, 0, "group_1");
+        consumer.poll(1);
+        consumer.poll(1);
+        // the failed lookup is not retried right away
+        consumer.poll(1);
+        verify(admin, times(1)).getCommittedOffsetsAsync(anyMap(), anyLong());
+        assertThat(consumer.getAssignedPartitionsCount()).isEqualTo(1);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            consumer.poll(10);
+            verify(admin, times(2)).getCommittedOffsetsAsync(anyMap(), anyLong());
+        });
+        consumer.poll(1);
+        assertThat(consumer.getAssignedPartitionsCount()).isEqualTo(1);
+    }
+
+    @Test
+    void givenUnassignDuringLookup_whenLookupCompletes_thenPartitionIsNotAssigned() {
+        CompletableFuture<Map<TopicPartition, Long>> lookup = new CompletableFuture<>();
+        when(admin.getCommittedOffsetsAsync(anyMap(), anyLong())).thenReturn(Map.of("group_1", lookup));
+
+        consumer.assign(TOPIC_1, 0, "group_1");
+        consumer.poll(1);
+        consumer.unassign(TOPIC_1, 0);
+        consumer.poll(1);
+        lookup.complete(Map.of(new TopicPartition(TOPIC_1, 0), 5L));
+        consumer.poll(1);
+
+        assertThat(consumer.getAssignedPartitionsCount()).isZero();
+    }
+
+}
@@ -48,6 +48,14 @@ public class StatsConstantNames {
     public static final String NEW_RETAINED_MSGS = "newRetainedMsgs";
     public static final String CLEARED_RETAINED_MSGS = "clearedRetainedMsgs";
 
+    public static final String CACHE_HITS = "hits";
+    public static final String CACHE_MISSES = "misses";
+    public static final String CACHE_EVICTIONS = "evictions";
+
+    public static final String PAYLOAD_ALLOCATIONS = "payloadAllocations";
+    public static final String PAYLOAD_COPIED_BYTES = "payloadCopiedBytes";
+    public static final String SHARED_PAYLOAD_DUPLICATES = "sharedPayloadDuplicates";
+
     public static final String STATS_NAME_TAG = "statsName";
     public static final String QUEUE_SIZE = "queueSize";
 }
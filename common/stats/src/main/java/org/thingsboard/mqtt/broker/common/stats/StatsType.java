@@ -33,17 +33,23 @@ public enum StatsType {
     ALL_CLIENT_SESSIONS("allClientSessions"),
     CLIENT_SUBSCRIPTIONS("clientSubscriptions"),
     RETAINED_MESSAGES("retainedMessages"),
+    RETAINED_MSG_OFF_HEAP("retainedMsgOffHeap"),
     SUBSCRIPTION_TRIE_NODES("subscriptionTrieNodes"),
     RETAIN_MSG_TRIE_NODES("retainMsgTrieNodes"),
     ACTIVE_APP_PROCESSORS("activeAppProcessors"),
     ACTIVE_SHARED_APP_PROCESSORS("activeSharedAppProcessors"),
+    PLATFORM_THREADS("platformThreads"),
+    PROCESS_RSS("processRss"),
     APP_PROCESSOR("appProcessor"),
     DEVICE_PROCESSOR("deviceProcessor"),
     RUNNING_ACTORS("runningActors"),
+    ACTOR_DISPATCHER("actorDispatcher"),
+    FLOW_CONTROL("flowControl"),
     SQL_QUEUE("sqlQueue"),
     CLIENT_SUBSCRIPTIONS_CONSUMER("clientSubscriptionsConsumer"),
     RETAINED_MSG_CONSUMER("retainedMsgConsumer"),
     CLIENT_ACTOR("clientActor"),
+    SUBSCRIPTION_CACHE("subscriptionCache"),
 
     SUBSCRIPTION_LOOKUP("subscriptionLookup"),
     RETAINED_MSG_LOOKUP("retainedMsgLookup"),
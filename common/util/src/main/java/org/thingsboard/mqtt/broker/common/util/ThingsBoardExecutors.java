@@ -18,11 +18,13 @@ package org.thingsboard.mqtt.broker.common.util;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
 import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 @Slf4j
 public class ThingsBoardExecutors {
@@ -70,6 +72,24 @@ public class ThingsBoardExecutors {
         return Executors.newCachedThreadPool(ThingsBoardThreadFactory.forName(serviceName));
     }
 
+    /**
+     * Creates an executor that starts a new virtual thread for each task. The project is compiled for Java 17,
+     * so the JDK 21 API is looked up reflectively; on older runtimes a cached thread pool is returned instead.
+     */
+    public static ExecutorService initVirtualThreadPerTaskExecutor(String serviceName) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, serviceName + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            log.warn("[{}] Virtual threads are not supported by the current Java runtime, falling back to cached thread pool", serviceName);
+            return initCachedExecutorService(serviceName);
+        }
+    }
+
     public static ScheduledExecutorService initScheduledExecutorService(int threadsCount, String serviceName) {
         if (threadsCount <= 1) {
             return Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName(serviceName));
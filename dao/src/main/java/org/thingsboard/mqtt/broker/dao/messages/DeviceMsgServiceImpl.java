@@ -15,9 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.dao.messages;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisNoScriptException;
 import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.cluster.SlotHash;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.DecoderException;
@@ -29,6 +32,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.cache.LettuceConnectionManager;
 import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.common.util.DevicePublishMsgUtil;
 import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
 
@@ -38,8 +42,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -53,21 +59,27 @@ import java.util.function.Consumer;
 public class DeviceMsgServiceImpl implements DeviceMsgService {
 
     private static final int IMPORT_TO_REDIS_BATCH_SIZE = 1000;
+    private static final byte[] EMPTY_BYTES = new byte[0];
 
     private static final CSVFormat IMPORT_CSV_FORMAT = CSVFormat.Builder.create()
             .setHeader().setSkipHeaderRecord(true).build();
 
-    private static final String ADD_MESSAGES_SCRIPT_SHA = "b871298e156d1e8490eef02fdc96cc28d4442e36";
-    private static final String GET_MESSAGES_SCRIPT_SHA = "e083e5645a5f268448aca2ec1d3150ee6de510ef";
-    private static final String REMOVE_MESSAGES_SCRIPT_SHA = "efd7dd0e8b3ba4862b53691798fd5ff1f8f6e629";
+    private static final String ADD_MESSAGES_SCRIPT_SHA = "77eddab887469704a663c5bbda93a7c24a504fcf";
+    private static final String GET_MESSAGES_SCRIPT_SHA = "628cc20b773320e2300e8ed428587afe7334282d";
+    private static final String REMOVE_MESSAGES_SCRIPT_SHA = "7a347600fb6dad4c02de9b87c17ac0a0df3815cd";
     private static final String REMOVE_MESSAGE_SCRIPT_SHA = "af40a579a941a140cace4e5243fc0921a4c7b4b0";
-    private static final String UPDATE_PACKET_TYPE_SCRIPT_SHA = "86164ab58880b91c4aee396bb5701fd6af1b0258";
+    private static final String UPDATE_PACKET_TYPE_SCRIPT_SHA = "2d3037bf5d68db130e7c954e232dda88a7c3219e";
+    private static final String ADD_PROTO_MESSAGES_SCRIPT_SHA = "2fd013563af7c8da3a87b0de855b02949bdb19f8";
+    private static final String MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT_SHA = "232ece883527e21b84624a41d66bebaaac1528c3";
+    private static final String ADD_MESSAGES_BATCH_SCRIPT_SHA = "38eba5b4eb04eb8dd20f3b2ae318a5654aec92df";
+    private static final String ADD_PROTO_MESSAGES_BATCH_SCRIPT_SHA = "bcdca3deb585dd8ab2831bf360e917d0acb195bf";
+    private static final String GET_MESSAGES_PAGE_SCRIPT_SHA = "0e7acc43804f065645967294c3b737d5bb21805e";
     private static final String MIGRATE_FROM_POSTGRES_TO_REDIS_SCRIPT_SHA = "76ea84e42d6ab98e646ef8f88b99efd568721926";
 
-    // TODO: consider why we set score = lastPacketId if set is empty instead of set it to 0.
     private static final String ADD_MESSAGES_SCRIPT = """
             local messagesKey = KEYS[1]
             local lastPacketIdKey = KEYS[2]
+            local lastScoreKey = messagesKey .. "_last_score"
             local maxMessagesSize = tonumber(ARGV[1])
             local messages = cjson.decode(ARGV[2])
             local defaultTtl = tonumber(ARGV[3])
@@ -82,7 +94,8 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             if #maxScoreElement > 0 then
                score = tonumber(maxScoreElement[2])
             else
-               score = lastPacketId
+               -- Continue after the last given score, so the scores keep growing once the packetId wraps around
+               score = math.max(tonumber(redis.call('GET', lastScoreKey)) or 0, lastPacketId)
             end
             
             -- Track the first packet ID
@@ -104,8 +117,9 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
                 -- Add the key to the sorted set using packetId as the score
                 redis.call('ZADD', messagesKey, score, msgKey)
             end
-            -- Update the last packetId in the key-value store
+            -- Update the last packetId and the last score in the key-value store
             redis.call('SET', lastPacketIdKey, lastPacketId)
+            redis.call('SET', lastScoreKey, score)
             -- Get the elements to be trimmed
             local numElementsToRemove = redis.call('ZCARD', messagesKey) - maxMessagesSize
             if numElementsToRemove > 0 then
@@ -124,8 +138,11 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             local elements = redis.call('ZRANGE', messagesKey, 0, -1)
             local messages = {}
             for _, key in ipairs(elements) do
-                -- Check if the key still exists
-                if redis.call('EXISTS', key) == 1 then
+                -- Check if the key still exists and how the message is stored
+                local keyType = redis.call('TYPE', key)['ok']
+                if keyType == 'hash' then
+                    table.insert(messages, redis.call('HMGET', key, 'p', 'i', 't'))
+                elseif keyType == 'string' then
                     local msgJson = redis.call('GET', key)
                     table.insert(messages, msgJson)
                 else
@@ -135,6 +152,42 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             end
             return messages
             """;
+    private static final String GET_MESSAGES_PAGE_SCRIPT = """
+            local messagesKey = KEYS[1]
+            local cursor = ARGV[1]
+            local limit = tonumber(ARGV[2])
+            local mgetChunkSize = 100
+            -- Get the elements with the score greater than the cursor
+            local elements = redis.call('ZRANGE', messagesKey, '(' .. cursor, '+inf', 'BYSCORE', 'LIMIT', 0, limit, 'WITHSCORES')
+            local elementsCount = #elements / 2
+            -- The reply starts with the next cursor and the number of scanned elements followed by the messages
+            local result = {cursor, elementsCount}
+            if elementsCount == 0 then
+                return result
+            end
+            result[1] = elements[#elements]
+            local keys = {}
+            for i = 1, #elements, 2 do
+                table.insert(keys, elements[i])
+            end
+            for chunkStart = 1, #keys, mgetChunkSize do
+                local chunkEnd = math.min(chunkStart + mgetChunkSize - 1, #keys)
+                local values = redis.call('MGET', unpack(keys, chunkStart, chunkEnd))
+                for i = chunkStart, chunkEnd do
+                    local key = keys[i]
+                    local msgJson = values[i - chunkStart + 1]
+                    if msgJson then
+                        table.insert(result, msgJson)
+                    elseif redis.call('TYPE', key)['ok'] == 'hash' then
+                        table.insert(result, redis.call('HMGET', key, 'p', 'i', 't'))
+                    else
+                        -- If the key does not exist, remove it from the sorted set
+                        redis.call('ZREM', messagesKey, key)
+                    end
+                end
+            end
+            return result
+            """;
     private static final String REMOVE_MESSAGES_SCRIPT = """
             local messagesKey = KEYS[1]
             local lastPacketIdKey = KEYS[2]
@@ -146,8 +199,9 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             end
             -- Delete the sorted set
             redis.call('DEL', messagesKey)
-            -- Delete the last packet id key
+            -- Delete the last packet id and the last score keys
             redis.call('DEL', lastPacketIdKey)
+            redis.call('DEL', messagesKey .. "_last_score")
             return "OK"
             """;
     private static final String REMOVE_MESSAGE_SCRIPT = """
@@ -166,6 +220,12 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             local packetId = ARGV[1]
             -- Construct the message key
             local msgKey = messagesKey .. "_" .. packetId
+            if redis.call('TYPE', msgKey)['ok'] == 'hash' then
+                -- Only the packet type field is updated, TTL is dropped the same way as for JSON messages
+                redis.call('HSET', msgKey, 't', 'PUBREL')
+                redis.call('PERSIST', msgKey)
+                return "OK"
+            end
             -- Fetch the message from the key-value store
             local msgJson = redis.call('GET', msgKey)
             if not msgJson then
@@ -181,6 +241,192 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
             redis.call('SET', msgKey, updatedMsgJson)
             return "OK"
             """;
+    private static final String ADD_PROTO_MESSAGES_SCRIPT = """
+            local messagesKey = KEYS[1]
+            local lastPacketIdKey = KEYS[2]
+            local lastScoreKey = messagesKey .. "_last_score"
+            local maxMessagesSize = tonumber(ARGV[1])
+            local defaultTtl = tonumber(ARGV[2])
+            -- Fetch the last packetId from the key-value store
+            local lastPacketId = tonumber(redis.call('GET', lastPacketIdKey)) or 0
+            
+            -- Get the current maximum score in the sorted set
+            local maxScoreElement = redis.call('ZRANGE', messagesKey, 0, 0, 'REV', 'WITHSCORES')
+            
+            -- Check if the maxScoreElement is non-empty
+            local score
+            if #maxScoreElement > 0 then
+               score = tonumber(maxScoreElement[2])
+            else
+               -- Continue after the last given score, so the scores keep growing once the packetId wraps around
+               score = math.max(tonumber(redis.call('GET', lastScoreKey)) or 0, lastPacketId)
+            end
+            
+            -- Track the first packet ID
+            local previousPacketId = lastPacketId
+            
+            -- Messages are passed as (encoded message, expiry interval, packet type) triplets
+            for i = 3, #ARGV, 3 do
+                lastPacketId = lastPacketId + 1
+                if lastPacketId > 0xffff then
+                    lastPacketId = 1
+                end
+                score = score + 1
+                local msgKey = messagesKey .. "_" .. lastPacketId
+                local msgExpiryInterval = tonumber(ARGV[i + 1]) or defaultTtl
+                -- Remove the previous message with the same packetId that may be stored in another format
+                redis.call('DEL', msgKey)
+                -- Store the message as a separate hash with TTL
+                redis.call('HSET', msgKey, 'p', ARGV[i], 'i', lastPacketId, 't', ARGV[i + 2])
+                redis.call('EXPIRE', msgKey, msgExpiryInterval)
+                -- Add the key to the sorted set using packetId as the score
+                redis.call('ZADD', messagesKey, score, msgKey)
+            end
+            -- Update the last packetId and the last score in the key-value store
+            redis.call('SET', lastPacketIdKey, lastPacketId)
+            redis.call('SET', lastScoreKey, score)
+            -- Get the elements to be trimmed
+            local numElementsToRemove = redis.call('ZCARD', messagesKey) - maxMessagesSize
+            if numElementsToRemove > 0 then
+                local trimmedElements = redis.call('ZRANGE', messagesKey, 0, numElementsToRemove - 1)
+                for _, key in ipairs(trimmedElements) do
+                    redis.call('DEL', key)
+                    redis.call('ZREM', messagesKey, key)
+                end
+            end
+            return previousPacketId
+            """;
+    private static final String ADD_MESSAGES_BATCH_SCRIPT = """
+            local maxMessagesSize = tonumber(ARGV[1])
+            local defaultTtl = tonumber(ARGV[2])
+            
+            local function nextScore(messagesKey, lastPacketId)
+                -- Get the current maximum score in the sorted set
+                local maxScoreElement = redis.call('ZRANGE', messagesKey, 0, 0, 'REV', 'WITHSCORES')
+                if #maxScoreElement > 0 then
+                   return tonumber(maxScoreElement[2])
+                end
+                -- Continue after the last given score, so the scores keep growing once the packetId wraps around
+                return math.max(tonumber(redis.call('GET', messagesKey .. "_last_score")) or 0, lastPacketId)
+            end
+            
+            local function trim(messagesKey)
+                -- Get the elements to be trimmed
+                local numElementsToRemove = redis.call('ZCARD', messagesKey) - maxMessagesSize
+                if numElementsToRemove > 0 then
+                    local trimmedElements = redis.call('ZRANGE', messagesKey, 0, numElementsToRemove - 1)
+                    for _, key in ipairs(trimmedElements) do
+                        redis.call('DEL', key)
+                        redis.call('ZREM', messagesKey, key)
+                    end
+                end
+            end
+            
+            local previousPacketIds = {}
+            -- Keys are passed as (messages key, last packetId key) pairs with one JSON messages argument for each client
+            for k = 1, #KEYS / 2 do
+                local messagesKey = KEYS[2 * k - 1]
+                local lastPacketIdKey = KEYS[2 * k]
+                local messages = cjson.decode(ARGV[k + 2])
+                local lastPacketId = tonumber(redis.call('GET', lastPacketIdKey)) or 0
+                local score = nextScore(messagesKey, lastPacketId)
+                table.insert(previousPacketIds, lastPacketId)
+                for _, msg in ipairs(messages) do
+                    lastPacketId = lastPacketId + 1
+                    if lastPacketId > 0xffff then
+                        lastPacketId = 1
+                    end
+                    msg.packetId = lastPacketId
+                    score = score + 1
+                    local msgKey = messagesKey .. "_" .. lastPacketId
+                    local msgExpiryInterval = msg.msgExpiryInterval or defaultTtl
+                    redis.call('SET', msgKey, cjson.encode(msg), 'EX', msgExpiryInterval)
+                    redis.call('ZADD', messagesKey, score, msgKey)
+                end
+                redis.call('SET', lastPacketIdKey, lastPacketId)
+                redis.call('SET', messagesKey .. "_last_score", score)
+                trim(messagesKey)
+            end
+            return previousPacketIds
+            """;
+    private static final String ADD_PROTO_MESSAGES_BATCH_SCRIPT = """
+            local maxMessagesSize = tonumber(ARGV[1])
+            local defaultTtl = tonumber(ARGV[2])
+            
+            local function nextScore(messagesKey, lastPacketId)
+                -- Get the current maximum score in the sorted set
+                local maxScoreElement = redis.call('ZRANGE', messagesKey, 0, 0, 'REV', 'WITHSCORES')
+                if #maxScoreElement > 0 then
+                   return tonumber(maxScoreElement[2])
+                end
+                -- Continue after the last given score, so the scores keep growing once the packetId wraps around
+                return math.max(tonumber(redis.call('GET', messagesKey .. "_last_score")) or 0, lastPacketId)
+            end
+            
+            local function trim(messagesKey)
+                -- Get the elements to be trimmed
+                local numElementsToRemove = redis.call('ZCARD', messagesKey) - maxMessagesSize
+                if numElementsToRemove > 0 then
+                    local trimmedElements = redis.call('ZRANGE', messagesKey, 0, numElementsToRemove - 1)
+                    for _, key in ipairs(trimmedElements) do
+                        redis.call('DEL', key)
+                        redis.call('ZREM', messagesKey, key)
+                    end
+                end
+            end
+            
+            local previousPacketIds = {}
+            -- Keys are passed as (messages key, last packetId key) pairs. Arguments of each client are the messages
+            -- count followed by (encoded message, expiry interval, packet type) triplets
+            local argIdx = 3
+            for k = 1, #KEYS / 2 do
+                local messagesKey = KEYS[2 * k - 1]
+                local lastPacketIdKey = KEYS[2 * k]
+                local messagesCount = tonumber(ARGV[argIdx])
+                argIdx = argIdx + 1
+                local lastPacketId = tonumber(redis.call('GET', lastPacketIdKey)) or 0
+                local score = nextScore(messagesKey, lastPacketId)
+                table.insert(previousPacketIds, lastPacketId)
+                for _ = 1, messagesCount do
+                    lastPacketId = lastPacketId + 1
+                    if lastPacketId > 0xffff then
+                        lastPacketId = 1
+                    end
+                    score = score + 1
+                    local msgKey = messagesKey .. "_" .. lastPacketId
+                    local msgExpiryInterval = tonumber(ARGV[argIdx + 1]) or defaultTtl
+                    redis.call('DEL', msgKey)
+                    redis.call('HSET', msgKey, 'p', ARGV[argIdx], 'i', lastPacketId, 't', ARGV[argIdx + 2])
+                    redis.call('EXPIRE', msgKey, msgExpiryInterval)
+                    redis.call('ZADD', messagesKey, score, msgKey)
+                    argIdx = argIdx + 3
+                end
+                redis.call('SET', lastPacketIdKey, lastPacketId)
+                redis.call('SET', messagesKey .. "_last_score", score)
+                trim(messagesKey)
+            end
+            return previousPacketIds
+            """;
+    private static final String MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT = """
+            local messagesKey = KEYS[1]
+            -- Messages are passed as (packetId, encoded message) pairs
+            for i = 1, #ARGV, 2 do
+                local packetId = ARGV[i]
+                local msgKey = messagesKey .. "_" .. packetId
+                -- Skip messages that were removed or already rewritten since they were read
+                if redis.call('TYPE', msgKey)['ok'] == 'string' then
+                    -- Packet type could be updated since the message was read, so take it from the stored value
+                    local msg = cjson.decode(redis.call('GET', msgKey))
+                    local ttl = redis.call('PTTL', msgKey)
+                    redis.call('DEL', msgKey)
+                    redis.call('HSET', msgKey, 'p', ARGV[i + 1], 'i', packetId, 't', msg.packetType or 'PUBLISH')
+                    if ttl > 0 then
+                        redis.call('PEXPIRE', msgKey, ttl)
+                    end
+                end
+            end
+            return "OK"
+            """;
     private static final String MIGRATE_FROM_POSTGRES_TO_REDIS_SCRIPT = """
             local messagesKey = KEYS[1]
             local lastPacketIdKey = KEYS[2]
@@ -224,6 +470,15 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
     @Value("${mqtt.persistent-session.device.persisted-messages.limit}")
     private int messagesLimit;
 
+    @Value("${mqtt.persistent-session.device.persisted-messages.storage-format:JSON}")
+    private PersistedMsgStorageFormat storageFormat;
+
+    @Value("${mqtt.persistent-session.device.persisted-messages.batch-max-clients-per-script:100}")
+    private int batchMaxClientsPerScript;
+
+    @Value("${redis.connection.type:standalone}")
+    private String redisConnectionType;
+
     @Value("${cache.cache-prefix:}")
     private String cachePrefix;
 
@@ -245,15 +500,27 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         if (messagesLimit > 0xffff) {
             throw new IllegalArgumentException("Persisted messages limit can't be greater than 65535!");
         }
+        if (batchMaxClientsPerScript < 1) {
+            throw new IllegalArgumentException("Persisted messages batch max clients per script should be positive!");
+        }
         try {
             defaultTtlBytes = intToBytes(defaultTtl);
             messagesLimitBytes = intToBytes(messagesLimit);
 
             loadScript(ADD_MESSAGES_SCRIPT_SHA, ADD_MESSAGES_SCRIPT);
             loadScript(GET_MESSAGES_SCRIPT_SHA, GET_MESSAGES_SCRIPT);
+            loadScript(GET_MESSAGES_PAGE_SCRIPT_SHA, GET_MESSAGES_PAGE_SCRIPT);
             loadScript(REMOVE_MESSAGES_SCRIPT_SHA, REMOVE_MESSAGES_SCRIPT);
             loadScript(REMOVE_MESSAGE_SCRIPT_SHA, REMOVE_MESSAGE_SCRIPT);
             loadScript(UPDATE_PACKET_TYPE_SCRIPT_SHA, UPDATE_PACKET_TYPE_SCRIPT);
+            if (PersistedMsgStorageFormat.JSON == storageFormat) {
+                loadScript(ADD_MESSAGES_BATCH_SCRIPT_SHA, ADD_MESSAGES_BATCH_SCRIPT);
+            }
+            if (PersistedMsgStorageFormat.PROTO == storageFormat) {
+                loadScript(ADD_PROTO_MESSAGES_SCRIPT_SHA, ADD_PROTO_MESSAGES_SCRIPT);
+                loadScript(ADD_PROTO_MESSAGES_BATCH_SCRIPT_SHA, ADD_PROTO_MESSAGES_BATCH_SCRIPT);
+                loadScript(MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT_SHA, MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT);
+            }
             if (!installProfileActive) {
                 return;
             }
@@ -270,6 +537,9 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         }
         byte[] messagesCacheKeyBytes = ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix);
         byte[] lastPacketIdKeyBytes = ClientIdLastPacketIdCacheKey.toBytesKey(clientId, cachePrefix);
+        if (PersistedMsgStorageFormat.PROTO == storageFormat) {
+            return saveProtoAndReturnPreviousPacketId(messagesCacheKeyBytes, lastPacketIdKeyBytes, devicePublishMessages);
+        }
         byte[] messagesBytes = JacksonUtil.writeValueAsBytes(devicePublishMessages);
         RedisFuture<Long> prevPacketIdFuture = connectionManager.evalShaAsync(ADD_MESSAGES_SCRIPT_SHA, ScriptOutputType.INTEGER,
                 new byte[][]{messagesCacheKeyBytes, lastPacketIdKeyBytes}, messagesLimitBytes, messagesBytes, defaultTtlBytes);
@@ -289,18 +559,126 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
         }).thenApply(prevPacketId -> prevPacketId != null ? prevPacketId.intValue() : 0);
     }
 
+    private CompletionStage<Integer> saveProtoAndReturnPreviousPacketId(byte[] messagesCacheKeyBytes, byte[] lastPacketIdKeyBytes,
+                                                                       List<DevicePublishMsg> devicePublishMessages) {
+        List<byte[]> argsList = new ArrayList<>(2 + devicePublishMessages.size() * 3);
+        argsList.add(messagesLimitBytes);
+        argsList.add(defaultTtlBytes);
+        addProtoMessagesArgs(argsList, devicePublishMessages);
+        byte[][] args = argsList.toArray(new byte[0][]);
+        byte[][] keys = new byte[][]{messagesCacheKeyBytes, lastPacketIdKeyBytes};
+        RedisFuture<Long> prevPacketIdFuture = connectionManager.evalShaAsync(ADD_PROTO_MESSAGES_SCRIPT_SHA, ScriptOutputType.INTEGER, keys, args);
+        return prevPacketIdFuture.exceptionallyCompose(throwable -> {
+            if (throwable instanceof RedisNoScriptException) {
+                CompletableFuture<Void> loadScriptFuture = processLoadScriptAsync(throwable, ADD_PROTO_MESSAGES_SCRIPT_SHA, ADD_PROTO_MESSAGES_SCRIPT);
+                CompletableFuture<Long> retryFuture = loadScriptFuture.thenCompose(__ ->
+                        connectionManager.evalShaAsync(ADD_PROTO_MESSAGES_SCRIPT_SHA, ScriptOutputType.INTEGER, keys, args));
+                return retryFuture.exceptionallyCompose(retryThrowable -> {
+                    log.debug("Falling back to eval due to exception on retry sha evaluation of saveProtoAndReturnPreviousPacketId: ", retryThrowable);
+                    return connectionManager.evalAsync(ADD_PROTO_MESSAGES_SCRIPT, ScriptOutputType.INTEGER, keys, args);
+                });
+            }
+            throw new CompletionException(throwable);
+        }).thenApply(prevPacketId -> prevPacketId != null ? prevPacketId.intValue() : 0);
+    }
+
+    @Override
+    public Map<String, CompletionStage<Integer>> saveAndReturnPreviousPacketIds(Map<String, List<DevicePublishMsg>> clientIdToMessagesMap) {
+        if (log.isTraceEnabled()) {
+            log.trace("Save persisted messages, clientIds size - {}", clientIdToMessagesMap.size());
+        }
+        Map<String, CompletionStage<Integer>> result = Maps.newHashMapWithExpectedSize(clientIdToMessagesMap.size());
+        for (List<String> clientIds : groupClientIdsBySlot(clientIdToMessagesMap.keySet())) {
+            for (List<String> batch : Lists.partition(clientIds, batchMaxClientsPerScript)) {
+                if (batch.size() == 1) {
+                    String clientId = batch.get(0);
+                    result.put(clientId, saveAndReturnPreviousPacketId(clientId, clientIdToMessagesMap.get(clientId), false));
+                    continue;
+                }
+                CompletionStage<List<Long>> batchFuture = saveBatchAndReturnPreviousPacketIds(batch, clientIdToMessagesMap);
+                for (int i = 0; i < batch.size(); i++) {
+                    int idx = i;
+                    result.put(batch.get(i), batchFuture.thenApply(prevPacketIds -> {
+                        Long prevPacketId = prevPacketIds.get(idx);
+                        return prevPacketId != null ? prevPacketId.intValue() : 0;
+                    }));
+                }
+            }
+        }
+        connectionManager.flush();
+        return result;
+    }
+
+    private Collection<List<String>> groupClientIdsBySlot(Collection<String> clientIds) {
+        if (!"cluster".equals(redisConnectionType)) {
+            return List.of(new ArrayList<>(clientIds));
+        }
+        Map<Integer, List<String>> slotToClientIdsMap = new HashMap<>();
+        for (String clientId : clientIds) {
+            int slot = SlotHash.getSlot(ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix));
+            slotToClientIdsMap.computeIfAbsent(slot, k -> new ArrayList<>()).add(clientId);
+        }
+        return slotToClientIdsMap.values();
+    }
+
+    private CompletionStage<List<Long>> saveBatchAndReturnPreviousPacketIds(List<String> clientIds, Map<String, List<DevicePublishMsg>> clientIdToMessagesMap) {
+        byte[][] keys = new byte[clientIds.size() * 2][];
+        List<byte[]> argsList = new ArrayList<>();
+        argsList.add(messagesLimitBytes);
+        argsList.add(defaultTtlBytes);
+        boolean proto = PersistedMsgStorageFormat.PROTO == storageFormat;
+        int i = 0;
+        for (String clientId : clientIds) {
+            keys[i++] = ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix);
+            keys[i++] = ClientIdLastPacketIdCacheKey.toBytesKey(clientId, cachePrefix);
+            List<DevicePublishMsg> devicePublishMessages = clientIdToMessagesMap.get(clientId);
+            if (proto) {
+                argsList.add(intToBytes(devicePublishMessages.size()));
+                addProtoMessagesArgs(argsList, devicePublishMessages);
+            } else {
+                argsList.add(JacksonUtil.writeValueAsBytes(devicePublishMessages));
+            }
+        }
+        byte[][] args = argsList.toArray(new byte[0][]);
+        String scriptSha = proto ? ADD_PROTO_MESSAGES_BATCH_SCRIPT_SHA : ADD_MESSAGES_BATCH_SCRIPT_SHA;
+        String script = proto ? ADD_PROTO_MESSAGES_BATCH_SCRIPT : ADD_MESSAGES_BATCH_SCRIPT;
+        RedisFuture<List<Long>> prevPacketIdsFuture = connectionManager.evalShaAsync(scriptSha, ScriptOutputType.MULTI, keys, args);
+        return prevPacketIdsFuture.exceptionallyCompose(throwable -> {
+            if (throwable instanceof RedisNoScriptException) {
+                CompletableFuture<Void> loadScriptFuture = processLoadScriptAsync(throwable, scriptSha, script);
+                CompletableFuture<List<Long>> retryFuture = loadScriptFuture.thenCompose(__ ->
+                        connectionManager.evalShaAsync(scriptSha, ScriptOutputType.MULTI, keys, args));
+                return retryFuture.exceptionallyCompose(retryThrowable -> {
+                    log.debug("Falling back to eval due to exception on retry sha evaluation of saveBatchAndReturnPreviousPacketIds: ", retryThrowable);
+                    return connectionManager.evalAsync(script, ScriptOutputType.MULTI, keys, args);
+                });
+            }
+            throw new CompletionException(throwable);
+        });
+    }
+
+    private void addProtoMessagesArgs(List<byte[]> argsList, List<DevicePublishMsg> devicePublishMessages) {
+        for (DevicePublishMsg devicePublishMsg : devicePublishMessages) {
+            Integer msgExpiryInterval = devicePublishMsg.getMsgExpiryInterval();
+            PersistedPacketType packetType = devicePublishMsg.getPacketType() != null ? devicePublishMsg.getPacketType() : PersistedPacketType.PUBLISH;
+            argsList.add(DevicePublishMsgProtoCodec.encode(devicePublishMsg));
+            argsList.add(msgExpiryInterval != null ? intToBytes(msgExpiryInterval) : EMPTY_BYTES);
+            argsList.add(packetType.name().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
     @Override
     public CompletionStage<List<DevicePublishMsg>> findPersistedMessages(String clientId) {
         if (log.isTraceEnabled()) {
             log.trace("Find persisted messages, clientId - {}", clientId);
         }
         byte[] messagesCacheKeyBytes = ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix);
-        RedisFuture<List<byte[]>> messagesFuture = connectionManager.evalShaAsync(GET_MESSAGES_SCRIPT_SHA, ScriptOutputType.MULTI,
+        RedisFuture<List<Object>> messagesFuture = connectionManager.evalShaAsync(GET_MESSAGES_SCRIPT_SHA, ScriptOutputType.MULTI,
                 new byte[][]{messagesCacheKeyBytes}, messagesLimitBytes);
         return messagesFuture.exceptionallyCompose(throwable -> {
             if (throwable instanceof RedisNoScriptException) {
                 CompletableFuture<Void> loadScriptFuture = processLoadScriptAsync(throwable, GET_MESSAGES_SCRIPT_SHA, GET_MESSAGES_SCRIPT);
-                CompletableFuture<List<byte[]>> retryFuture = loadScriptFuture.thenCompose(__ ->
+                CompletableFuture<List<Object>> retryFuture = loadScriptFuture.thenCompose(__ ->
                         connectionManager.evalShaAsync(GET_MESSAGES_SCRIPT_SHA, ScriptOutputType.MULTI,
                                 new byte[][]{messagesCacheKeyBytes}, messagesLimitBytes));
                 return retryFuture.exceptionallyCompose(retryThrowable -> {
@@ -310,10 +688,97 @@ public class DeviceMsgServiceImpl implements DeviceMsgService {
                 });
             }
             throw new CompletionException(throwable);
-        }).thenApply(messages ->
-                messages.stream()
-                        .map(messageInBytes -> JacksonUtil.fromBytes(messageInBytes, DevicePublishMsg.class))
-                        .toList());
+        }).thenApply(messages -> toDevicePublishMessages(clientId, messages));
+    }
+
+    @Override
+    public CompletionStage<DevicePublishMsgPage> findPersistedMessagesPage(String clientId, long cursor, int limit) {
+        if (log.isTraceEnabled()) {
+            log.trace("Find persisted messages page, clientId - {}, cursor - {}, limit - {}", clientId, cursor, limit);
+        }
+        byte[] messagesCacheKeyBytes = ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix);
+        byte[][] keys = new byte[][]{messagesCacheKeyBytes};
+        byte[] cursorBytes = String.valueOf(cursor).getBytes(StandardCharsets.UTF_8);
+        byte[] limitBytes = intToBytes(limit);
+        RedisFuture<List<Object>> pageFuture = connectionManager.evalShaAsync(GET_MESSAGES_PAGE_SCRIPT_SHA, ScriptOutputType.MULTI,
+                keys, cursorBytes, limitBytes);
+        return pageFuture.exceptionallyCompose(throwable -> {
+            if (throwable instanceof RedisNoScriptException) {
+                CompletableFuture<Void> loadScriptFuture = processLoadScriptAsync(throwable, GET_MESSAGES_PAGE_SCRIPT_SHA, GET_MESSAGES_PAGE_SCRIPT);
+                CompletableFuture<List<Object>> retryFuture = loadScriptFuture.thenCompose(__ ->
+                        connectionManager.evalShaAsync(GET_MESSAGES_PAGE_SCRIPT_SHA, ScriptOutputType.MULTI, keys, cursorBytes, limitBytes));
+                return retryFuture.exceptionallyCompose(retryThrowable -> {
+                    log.debug("Falling back to eval due to exception on retry sha evaluation of findPersistedMessagesPage: ", retryThrowable);
+                    return connectionManager.evalAsync(GET_MESSAGES_PAGE_SCRIPT, ScriptOutputType.MULTI, keys, cursorBytes, limitBytes);
+                });
+            }
+            throw new CompletionException(throwable);
+        }).thenApply(reply -> {
+            long nextCursor = (long) Double.parseDouble(new String((byte[]) reply.get(0), StandardCharsets.UTF_8));
+            long scannedCount = (Long) reply.get(1);
+            List<DevicePublishMsg> messages = toDevicePublishMessages(clientId, reply.subList(2, reply.size()));
+            return new DevicePublishMsgPage(messages, nextCursor, scannedCount >= limit);
+        });
+    }
+
+    private List<DevicePublishMsg> toDevicePublishMessages(String clientId, List<Object> messages) {
+        List<DevicePublishMsg> devicePublishMessages = new ArrayList<>(messages.size());
+        List<DevicePublishMsg> jsonMessages = null;
+        for (Object message : messages) {
+            if (message instanceof List<?> fields) {
+                byte[] msgBytes = (byte[]) fields.get(0);
+                if (msgBytes == null) {
+                    continue;
+                }
+                int packetId = bytesToInt((byte[]) fields.get(1));
+                PersistedPacketType packetType = PersistedPacketType.valueOf(new String((byte[]) fields.get(2), StandardCharsets.UTF_8));
+                devicePublishMessages.add(DevicePublishMsgProtoCodec.decode(msgBytes, packetId, packetType));
+            } else {
+                DevicePublishMsg devicePublishMsg = JacksonUtil.fromBytes((byte[]) message, DevicePublishMsg.class);
+                devicePublishMessages.add(devicePublishMsg);
+                if (PersistedMsgStorageFormat.PROTO == storageFormat) {
+                    if (jsonMessages == null) {
+                        jsonMessages = new ArrayList<>();
+                    }
+                    jsonMessages.add(devicePublishMsg);
+                }
+            }
+        }
+        if (jsonMessages != null) {
+            migrateJsonMessagesToProto(clientId, jsonMessages);
+        }
+        return devicePublishMessages;
+    }
+
+    private void migrateJsonMessagesToProto(String clientId, List<DevicePublishMsg> jsonMessages) {
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Migrating {} persisted messages from JSON to proto format", clientId, jsonMessages.size());
+        }
+        byte[] messagesCacheKeyBytes = ClientIdMessagesCacheKey.toBytesKey(clientId, cachePrefix);
+        byte[][] args = new byte[jsonMessages.size() * 2][];
+        int i = 0;
+        for (DevicePublishMsg devicePublishMsg : jsonMessages) {
+            args[i++] = intToBytes(devicePublishMsg.getPacketId());
+            args[i++] = DevicePublishMsgProtoCodec.encode(devicePublishMsg);
+        }
+        byte[][] keys = new byte[][]{messagesCacheKeyBytes};
+        RedisFuture<String> migrateFuture = connectionManager.evalShaAsync(MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT_SHA, ScriptOutputType.STATUS, keys, args);
+        migrateFuture.exceptionallyCompose(throwable -> {
+            if (throwable instanceof RedisNoScriptException) {
+                CompletableFuture<Void> loadScriptFuture = processLoadScriptAsync(throwable, MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT_SHA, MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT);
+                CompletableFuture<String> retryFuture = loadScriptFuture.thenCompose(__ ->
+                        connectionManager.evalShaAsync(MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT_SHA, ScriptOutputType.STATUS, keys, args));
+                return retryFuture.exceptionallyCompose(retryThrowable -> {
+                    log.debug("Falling back to eval due to exception on retry sha evaluation of migrateJsonMessagesToProto: ", retryThrowable);
+                    return connectionManager.evalAsync(MIGRATE_JSON_MESSAGES_TO_PROTO_SCRIPT, ScriptOutputType.STATUS, keys, args);
+                });
+            }
+            throw new CompletionException(throwable);
+        }).whenComplete((status, throwable) -> {
+            if (throwable != null) {
+                log.warn("[{}] Failed to migrate persisted messages from JSON to proto format", clientId, throwable);
+            }
+        });
     }
 
     @Override
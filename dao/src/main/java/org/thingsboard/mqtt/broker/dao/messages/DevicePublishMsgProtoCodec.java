@@ -0,0 +1,143 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.springframework.util.CollectionUtils;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.common.data.props.UserProperties;
+import org.thingsboard.mqtt.broker.gen.dao.PersistedDevicePublishMsgProto;
+import org.thingsboard.mqtt.broker.gen.dao.PersistedMqttPropertiesProto;
+import org.thingsboard.mqtt.broker.gen.dao.PersistedUserPropertyProto;
+
+import java.util.List;
+
+public final class DevicePublishMsgProtoCodec {
+
+    private DevicePublishMsgProtoCodec() {
+    }
+
+    public static byte[] encode(DevicePublishMsg devicePublishMsg) {
+        PersistedDevicePublishMsgProto.Builder builder = PersistedDevicePublishMsgProto.newBuilder()
+                .setPayload(devicePublishMsg.getPayload() != null ? ByteString.copyFrom(devicePublishMsg.getPayload()) : ByteString.EMPTY)
+                .setRetain(devicePublishMsg.isRetained());
+        if (devicePublishMsg.getTime() != null) {
+            builder.setTime(devicePublishMsg.getTime());
+        }
+        if (devicePublishMsg.getQos() != null) {
+            builder.setQos(devicePublishMsg.getQos());
+        }
+        if (devicePublishMsg.getTopicName() != null) {
+            builder.setTopicName(devicePublishMsg.getTopicName());
+        }
+        if (devicePublishMsg.getClientId() != null) {
+            builder.setClientId(devicePublishMsg.getClientId());
+        }
+        UserProperties userProperties = devicePublishMsg.getUserProperties();
+        if (userProperties != null) {
+            userProperties.getValues().forEach(pair ->
+                    builder.addUserProperties(PersistedUserPropertyProto.newBuilder().setKey(pair.getKey()).setValue(pair.getValue())));
+        }
+        PersistedMqttPropertiesProto.Builder mqttPropsProtoBuilder = getMqttPropsProtoBuilder(devicePublishMsg);
+        if (mqttPropsProtoBuilder != null) {
+            builder.setMqttProperties(mqttPropsProtoBuilder);
+        }
+        Integer msgExpiryInterval = devicePublishMsg.getMsgExpiryInterval();
+        if (msgExpiryInterval != null) {
+            builder.setMsgExpiryInterval(msgExpiryInterval);
+        }
+        return builder.build().toByteArray();
+    }
+
+    public static DevicePublishMsg decode(byte[] bytes, int packetId, PersistedPacketType packetType) {
+        PersistedDevicePublishMsgProto proto;
+        try {
+            proto = PersistedDevicePublishMsgProto.parseFrom(bytes);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException("Failed to decode persisted device publish message!", e);
+        }
+        DevicePublishMsg devicePublishMsg = DevicePublishMsg.builder()
+                .clientId(proto.getClientId())
+                .topicName(proto.getTopicName())
+                .time(proto.getTime())
+                .qos(proto.getQos())
+                .packetId(packetId)
+                .packetType(packetType)
+                .payload(proto.getPayload().toByteArray())
+                .properties(new MqttProperties())
+                .isRetained(proto.getRetain())
+                .build();
+        if (proto.getUserPropertiesCount() > 0) {
+            List<UserProperties.StringPair> pairs = proto.getUserPropertiesList().stream()
+                    .map(userPropertyProto -> new UserProperties.StringPair(userPropertyProto.getKey(), userPropertyProto.getValue()))
+                    .toList();
+            devicePublishMsg.setUserProperties(new UserProperties(pairs));
+        }
+        if (proto.hasMqttProperties()) {
+            PersistedMqttPropertiesProto mqttPropertiesProto = proto.getMqttProperties();
+            if (mqttPropertiesProto.hasPayloadFormatIndicator()) {
+                devicePublishMsg.setPayloadFormatIndicator(mqttPropertiesProto.getPayloadFormatIndicator());
+            }
+            if (mqttPropertiesProto.hasContentType()) {
+                devicePublishMsg.setContentType(mqttPropertiesProto.getContentType());
+            }
+            if (mqttPropertiesProto.hasResponseTopic()) {
+                devicePublishMsg.setResponseTopic(mqttPropertiesProto.getResponseTopic());
+            }
+            if (mqttPropertiesProto.hasCorrelationData()) {
+                devicePublishMsg.setCorrelationData(mqttPropertiesProto.getCorrelationData().toByteArray());
+            }
+            devicePublishMsg.setSubscriptionIds(mqttPropertiesProto.getSubscriptionIdsList());
+        }
+        if (proto.hasMsgExpiryInterval()) {
+            devicePublishMsg.setMsgExpiryInterval(proto.getMsgExpiryInterval());
+        }
+        return devicePublishMsg;
+    }
+
+    private static PersistedMqttPropertiesProto.Builder getMqttPropsProtoBuilder(DevicePublishMsg devicePublishMsg) {
+        Integer payloadFormatIndicator = devicePublishMsg.getPayloadFormatIndicator();
+        String contentType = devicePublishMsg.getContentType();
+        String responseTopic = devicePublishMsg.getResponseTopic();
+        byte[] correlationData = devicePublishMsg.getCorrelationData();
+        List<Integer> subscriptionIds = devicePublishMsg.getSubscriptionIds();
+        if (payloadFormatIndicator == null && contentType == null && responseTopic == null
+                && correlationData == null && CollectionUtils.isEmpty(subscriptionIds)) {
+            return null;
+        }
+        PersistedMqttPropertiesProto.Builder mqttPropertiesBuilder = PersistedMqttPropertiesProto.newBuilder();
+        if (payloadFormatIndicator != null) {
+            mqttPropertiesBuilder.setPayloadFormatIndicator(payloadFormatIndicator);
+        }
+        if (contentType != null) {
+            mqttPropertiesBuilder.setContentType(contentType);
+        }
+        if (responseTopic != null) {
+            mqttPropertiesBuilder.setResponseTopic(responseTopic);
+        }
+        if (correlationData != null) {
+            mqttPropertiesBuilder.setCorrelationData(ByteString.copyFrom(correlationData));
+        }
+        if (!CollectionUtils.isEmpty(subscriptionIds)) {
+            mqttPropertiesBuilder.addAllSubscriptionIds(subscriptionIds);
+        }
+        return mqttPropertiesBuilder;
+    }
+
+}
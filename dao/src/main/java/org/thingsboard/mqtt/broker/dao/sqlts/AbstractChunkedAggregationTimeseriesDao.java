@@ -17,6 +17,7 @@ package org.thingsboard.mqtt.broker.dao.sqlts;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import jakarta.annotation.Nullable;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -25,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort.Direction;
+import org.thingsboard.mqtt.broker.common.data.BrokerConstants;
 import org.thingsboard.mqtt.broker.common.data.kv.Aggregation;
 import org.thingsboard.mqtt.broker.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.mqtt.broker.common.data.kv.TsKvEntry;
@@ -37,10 +39,14 @@ import org.thingsboard.mqtt.broker.dao.sql.SqlQueueStatsManager;
 import org.thingsboard.mqtt.broker.dao.sql.TbSqlBlockingQueuePool;
 import org.thingsboard.mqtt.broker.dao.sql.TbSqlQueueParams;
 import org.thingsboard.mqtt.broker.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsKvRollupRange;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsKvRollupRepository;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsRollupLevel;
 import org.thingsboard.mqtt.broker.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.mqtt.broker.dao.timeseries.TimeseriesDao;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -63,16 +69,25 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends BaseAbstra
     @Value("${sql.batch_sort:true}")
     protected boolean batchSortEnabled;
 
+    @Value("${sql.ts.single_query_aggregation:true}")
+    protected boolean singleQueryAggregation;
+
+    @Value("${sql.ts.rollup.enabled:true}")
+    protected boolean rollupEnabled;
+
     @Autowired
     protected TsKvRepository tsKvRepository;
     @Autowired
     protected InsertTsRepository<TsKvEntity> insertRepository;
+    @Autowired
+    protected TsKvRollupRepository tsKvRollupRepository;
     @Autowired(required = false)
     private SqlQueueStatsManager statsManager;
     @Autowired
     private KeyDictionaryDao keyDictionaryDao;
 
     protected TbSqlBlockingQueuePool<TsKvEntity> tsQueue;
+    protected TbSqlBlockingQueuePool<TsKvRollupRange> tsRollupQueue;
 
     @PostConstruct
     protected void init() {
@@ -97,6 +112,31 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends BaseAbstra
                 .batchUpdateComparator(tsKvEntityComparator)
                 .build();
         tsQueue.init();
+
+        if (rollupEnabled) {
+            TbSqlQueueParams tsRollupParams = TbSqlQueueParams.builder()
+                    .queueName("TimeseriesRollupQueue")
+                    .batchSize(tsBatchSize)
+                    .maxDelay(tsMaxDelay)
+                    .batchSortEnabled(batchSortEnabled)
+                    .build();
+
+            Comparator<TsKvRollupRange> tsKvRollupComparator = Comparator.comparing(TsKvRollupRange::getEntityId)
+                    .thenComparingInt(TsKvRollupRange::getKey)
+                    .thenComparing(TsKvRollupRange::getLevel)
+                    .thenComparingLong(TsKvRollupRange::getStartTs);
+
+            // ranges of one entity always land on the same queue, so the rebuilds of a bucket never run concurrently
+            tsRollupQueue = TbSqlBlockingQueuePool.<TsKvRollupRange>builder()
+                    .params(tsRollupParams)
+                    .maxThreads(tsBatchThreads)
+                    .queueIndexHashFunction(range -> range.getEntityId().hashCode())
+                    .processingFunction(v -> tsKvRollupRepository.recompute(v))
+                    .statsManager(statsManager)
+                    .batchUpdateComparator(tsKvRollupComparator)
+                    .build();
+            tsRollupQueue.init();
+        }
     }
 
     @PreDestroy
@@ -104,6 +144,9 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends BaseAbstra
         if (tsQueue != null) {
             tsQueue.destroy("Time series queue ");
         }
+        if (tsRollupQueue != null) {
+            tsRollupQueue.destroy("Time series rollup queue ");
+        }
     }
 
     @Override
@@ -113,20 +156,29 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends BaseAbstra
 
     @Override
     public ListenableFuture<Void> remove(String entityId, TsKvQuery query) {
-        return service.submit(() -> {
+        ListenableFuture<Integer> removeFuture = service.submit(() -> {
+            Integer keyId = keyDictionaryDao.getOrSaveKeyId(query.getKey());
             tsKvRepository.delete(
                     entityId,
-                    keyDictionaryDao.getOrSaveKeyId(query.getKey()),
+                    keyId,
                     query.getStartTs(),
                     query.getEndTs());
-            return null;
+            return keyId;
         });
+        return Futures.transformAsync(removeFuture, keyId -> recomputeRollups(entityId, keyId, query.getStartTs(), query.getEndTs()),
+                MoreExecutors.directExecutor());
     }
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllAsync(String entityId, ReadTsKvQuery query) {
         if (query.getAggregation() == Aggregation.NONE) {
             return Futures.immediateFuture(findAllAsyncWithLimit(entityId, query));
+        }
+        Optional<TsRollupLevel> rollupLevel = findRollupLevel(query);
+        if (rollupLevel.isPresent()) {
+            return service.submit(() -> findAndAggregateByInterval(entityId, query, rollupLevel.get()));
+        } else if (singleQueryAggregation && query.getInterval() > 0) {
+            return service.submit(() -> findAndAggregateByInterval(entityId, query, null));
         } else {
             List<ListenableFuture<Optional<TsKvEntity>>> futures = new ArrayList<>();
             long startPeriod = query.getStartTs();
@@ -173,6 +225,104 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends BaseAbstra
         return DaoUtil.convertDataList(tsKvEntities);
     }
 
+    /**
+     * Schedules the rebuild of the buckets overlapping the range on every rollup level. Must be called after the change
+     * of the range is committed to ts_kv. The rebuild goes through the rollup queue, so it is ordered with the other
+     * pending rebuilds of the entity instead of racing with them.
+     */
+    protected ListenableFuture<Void> recomputeRollups(String entityId, int keyId, long startTs, long endTs) {
+        if (!rollupEnabled) {
+            return Futures.immediateFuture(null);
+        }
+        List<ListenableFuture<Void>> futures = new ArrayList<>(TsRollupLevel.values().length);
+        for (TsRollupLevel level : TsRollupLevel.values()) {
+            futures.add(tsRollupQueue.add(TsKvRollupRange.of(entityId, keyId, level, startTs, endTs)));
+        }
+        return Futures.transform(Futures.allAsList(futures), v -> null, MoreExecutors.directExecutor());
+    }
+
+    private Optional<TsRollupLevel> findRollupLevel(ReadTsKvQuery query) {
+        if (!rollupEnabled || query.getInterval() <= 0) {
+            return Optional.empty();
+        }
+        return TsRollupLevel.findCoarsest(query.getStartTs(), Math.max(query.getStartTs() + 1, query.getEndTs()), query.getInterval());
+    }
+
+    private List<TsKvEntry> findAndAggregateByInterval(String entityId, ReadTsKvQuery query, TsRollupLevel rollupLevel) {
+        long startPeriod = query.getStartTs();
+        long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
+        long step = query.getInterval();
+        var keyId = keyDictionaryDao.getOrSaveKeyId(query.getKey());
+        List<Object[]> rows = rollupLevel != null ?
+                findRollupsAggregatedByInterval(entityId, keyId, rollupLevel, startPeriod, endPeriod, step) :
+                tsKvRepository.findAggregatedByInterval(entityId, keyId, startPeriod, endPeriod, step);
+        List<TsKvEntity> entities = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            TsKvEntity entity = toAggregatedEntity(row, query.getAggregation());
+            if (entity.isNotEmpty()) {
+                long startTs = startPeriod + toLong(row[0]) * step;
+                long endTs = Math.min(startTs + step, endPeriod);
+                entity.setEntityId(entityId);
+                entity.setStrKey(query.getKey());
+                entity.setTs(startTs + (endTs - startTs) / 2);
+                entities.add(entity);
+            }
+        }
+        if (BrokerConstants.DESC_ORDER.equals(query.getOrder())) {
+            Collections.reverse(entities);
+        }
+        return DaoUtil.convertDataList(entities);
+    }
+
+    /**
+     * Reads the complete buckets of the level from the rollup table and aggregates the incomplete trailing bucket
+     * from the raw time series, merging it into the row of the query interval it belongs to.
+     */
+    private List<Object[]> findRollupsAggregatedByInterval(String entityId, int keyId, TsRollupLevel level, long startPeriod, long endPeriod, long step) {
+        long rollupEndTs = level.getBucketStartTs(endPeriod);
+        List<Object[]> rows = new ArrayList<>(tsKvRollupRepository.findAggregatedByInterval(entityId, keyId, level, startPeriod, rollupEndTs, step));
+        if (rollupEndTs < endPeriod) {
+            List<Object[]> tailRows = tsKvRepository.findAggregatedByInterval(entityId, keyId, rollupEndTs, endPeriod, endPeriod - rollupEndTs);
+            if (!tailRows.isEmpty()) {
+                Object[] tail = tailRows.get(0).clone();
+                tail[0] = (rollupEndTs - startPeriod) / step;
+                int lastIdx = rows.size() - 1;
+                if (lastIdx >= 0 && toLong(rows.get(lastIdx)[0]).equals(tail[0])) {
+                    rows.set(lastIdx, mergeAggregatedRows(rows.get(lastIdx), tail));
+                } else {
+                    rows.add(tail);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Object[] mergeAggregatedRows(Object[] row, Object[] other) {
+        return new Object[]{
+                toLong(row[0]),
+                toLong(row[1]) + toLong(other[1]),
+                toLong(row[2]) + toLong(other[2]),
+                Math.min(toLong(row[3]), toLong(other[3])),
+                Math.max(toLong(row[4]), toLong(other[4]))
+        };
+    }
+
+    private TsKvEntity toAggregatedEntity(Object[] row, Aggregation aggregation) {
+        Long sum = toLong(row[1]);
+        Long count = toLong(row[2]);
+        return switch (aggregation) {
+            case AVG, SUM -> new TsKvEntity(sum, count, aggregation.name());
+            case MIN -> new TsKvEntity(toLong(row[3]), count, aggregation.name());
+            case MAX -> new TsKvEntity(toLong(row[4]), count, aggregation.name());
+            case COUNT -> new TsKvEntity(count);
+            default -> throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        };
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
     ListenableFuture<Optional<TsKvEntity>> findAndAggregateAsync(String entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         return service.submit(() -> {
             TsKvEntity entity = switchAggregation(entityId, key, startTs, endTs, aggregation);
@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sqlts.rollup;
+
+import lombok.Data;
+
+/**
+ * Buckets of a rollup level to rebuild from the time series data, aligned to the bucket boundaries of the level.
+ */
+@Data
+public class TsKvRollupRange {
+
+    private final String entityId;
+    private final int key;
+    private final TsRollupLevel level;
+    private final long startTs;
+    private final long endTs;
+
+    /**
+     * Returns the range of the buckets of the level overlapping the time range, the end is exclusive.
+     */
+    public static TsKvRollupRange of(String entityId, int key, TsRollupLevel level, long startTs, long endTs) {
+        return new TsKvRollupRange(entityId, key, level, level.getBucketStartTs(startTs), level.getBucketEndTs(endTs));
+    }
+
+    boolean isSameSeries(TsKvRollupRange other) {
+        return entityId.equals(other.entityId) && key == other.key && level == other.level;
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sqlts.rollup;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.mqtt.broker.dao.sqlts.insert.AbstractInsertDeleteRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Repository
+@Transactional
+public class TsKvRollupRepository extends AbstractInsertDeleteRepository {
+
+    private static final Comparator<TsKvRollupRange> RANGE_COMPARATOR = Comparator.comparing(TsKvRollupRange::getEntityId)
+            .thenComparingInt(TsKvRollupRange::getKey)
+            .thenComparing(TsKvRollupRange::getLevel)
+            .thenComparingLong(TsKvRollupRange::getStartTs);
+
+    /*
+     * Returns the same columns as TsKvRepository.findAggregatedByInterval, so the rows of both tables can be processed alike
+     * */
+    private static final String FIND_AGGREGATED_BY_INTERVAL = "SELECT (ts - ?) / ? AS bucket, " +
+            "CAST(SUM(sum_v) AS bigint) AS sum_value, " +
+            "CAST(SUM(count_v) AS bigint) AS count_value, " +
+            "MIN(min_v) AS min_value, " +
+            "MAX(max_v) AS max_value " +
+            "FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND rollup_interval = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    private static final String DELETE = "DELETE FROM ts_kv_rollup WHERE entity_id = ? AND key = ? AND rollup_interval = ? AND ts >= ? AND ts < ?;";
+
+    /*
+     * Non-numeric values make up buckets with zero count and the same min and max placeholders as
+     * TsKvRepository.findAggregatedByInterval returns, so both tables are aggregated to the same entries
+     * */
+    private static final String INSERT_FROM_TS_KV = "INSERT INTO ts_kv_rollup (entity_id, key, rollup_interval, ts, min_v, max_v, sum_v, count_v) " +
+            "SELECT entity_id, key, ?, ts - ts % ? AS bucket_ts, " +
+            "MIN(COALESCE(long_v, 9223372036854775807)), " +
+            "MAX(COALESCE(long_v, -9223372036854775807)), " +
+            "CAST(SUM(COALESCE(long_v, 0)) AS bigint), " +
+            "COUNT(long_v) " +
+            "FROM ts_kv WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? " +
+            "GROUP BY entity_id, key, bucket_ts;";
+
+    private static final String CLEAN_UP = "DELETE FROM ts_kv_rollup WHERE rollup_interval = ? AND ts < ?;";
+
+    /**
+     * Rebuilds the buckets of the ranges from the time series data, so saving the same point again or removing points
+     * leaves the buckets equal to the aggregation of the raw data. Overlapping ranges of the same series are merged first,
+     * so every bucket is rebuilt once per batch. Must be called after the changes of ts_kv are committed.
+     */
+    public void recompute(List<TsKvRollupRange> ranges) {
+        List<TsKvRollupRange> merged = mergeOverlapping(ranges);
+        jdbcTemplate.batchUpdate(DELETE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsKvRollupRange range = merged.get(i);
+                ps.setString(1, range.getEntityId());
+                ps.setInt(2, range.getKey());
+                ps.setLong(3, range.getLevel().getInterval());
+                ps.setLong(4, range.getStartTs());
+                ps.setLong(5, range.getEndTs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return merged.size();
+            }
+        });
+        jdbcTemplate.batchUpdate(INSERT_FROM_TS_KV, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TsKvRollupRange range = merged.get(i);
+                ps.setLong(1, range.getLevel().getInterval());
+                ps.setLong(2, range.getLevel().getInterval());
+                ps.setString(3, range.getEntityId());
+                ps.setInt(4, range.getKey());
+                ps.setLong(5, range.getStartTs());
+                ps.setLong(6, range.getEndTs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return merged.size();
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public List<Object[]> findAggregatedByInterval(String entityId, int key, TsRollupLevel level, long startTs, long endTs, long interval) {
+        return jdbcTemplate.query(FIND_AGGREGATED_BY_INTERVAL, (rs, rowNum) -> new Object[]{
+                rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5)
+        }, startTs, interval, entityId, key, level.getInterval(), startTs, endTs);
+    }
+
+    /**
+     * Removes the buckets of the level that ended before the expiration time.
+     */
+    @Transactional(timeout = 3600) // 1h in sec
+    public long cleanUp(TsRollupLevel level, long expirationTime) {
+        return jdbcTemplate.update(CLEAN_UP, level.getInterval(), expirationTime - level.getInterval());
+    }
+
+    private static List<TsKvRollupRange> mergeOverlapping(List<TsKvRollupRange> ranges) {
+        List<TsKvRollupRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(RANGE_COMPARATOR);
+        List<TsKvRollupRange> merged = new ArrayList<>(sorted.size());
+        TsKvRollupRange current = null;
+        for (TsKvRollupRange range : sorted) {
+            if (current != null && current.isSameSeries(range) && range.getStartTs() <= current.getEndTs()) {
+                if (range.getEndTs() > current.getEndTs()) {
+                    current = new TsKvRollupRange(current.getEntityId(), current.getKey(), current.getLevel(), current.getStartTs(), range.getEndTs());
+                }
+            } else {
+                if (current != null) {
+                    merged.add(current);
+                }
+                current = range;
+            }
+        }
+        if (current != null) {
+            merged.add(current);
+        }
+        return merged;
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sqlts.rollup;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Granularity of the pre-aggregated time series buckets stored in the ts_kv_rollup table.
+ * Levels are declared from the finest to the coarsest one.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TsRollupLevel {
+
+    HOURLY(TimeUnit.HOURS.toMillis(1)),
+    DAILY(TimeUnit.DAYS.toMillis(1));
+
+    private final long interval;
+
+    public long getBucketStartTs(long ts) {
+        return ts - Math.floorMod(ts, interval);
+    }
+
+    /**
+     * Returns the end of the bucket holding the last timestamp before the exclusive end of a range.
+     */
+    public long getBucketEndTs(long endTs) {
+        long bucketStartTs = getBucketStartTs(endTs - 1);
+        return bucketStartTs > Long.MAX_VALUE - interval ? Long.MAX_VALUE : bucketStartTs + interval;
+    }
+
+    /**
+     * Returns the coarsest level whose buckets fit the query intervals entirely, i.e. the query interval is a multiple
+     * of the level interval and the query starts at a bucket boundary. The range must cover at least one complete bucket.
+     */
+    public static Optional<TsRollupLevel> findCoarsest(long startTs, long endTs, long queryInterval) {
+        TsRollupLevel[] levels = values();
+        for (int i = levels.length - 1; i >= 0; i--) {
+            TsRollupLevel level = levels[i];
+            if (queryInterval % level.interval == 0
+                    && level.getBucketStartTs(startTs) == startTs
+                    && level.getBucketStartTs(endTs) > startTs) {
+                return Optional.of(level);
+            }
+        }
+        return Optional.empty();
+    }
+
+}
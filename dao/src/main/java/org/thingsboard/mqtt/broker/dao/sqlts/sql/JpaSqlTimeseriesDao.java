@@ -31,6 +31,7 @@ import org.thingsboard.mqtt.broker.dao.dictionary.KeyDictionaryDao;
 import org.thingsboard.mqtt.broker.dao.model.sqlts.TsKvEntity;
 import org.thingsboard.mqtt.broker.dao.sqlts.AbstractChunkedAggregationTimeseriesDao;
 import org.thingsboard.mqtt.broker.dao.sqlts.insert.sql.SqlPartitioningRepository;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsRollupLevel;
 import org.thingsboard.mqtt.broker.dao.timeseries.SqlPartition;
 import org.thingsboard.mqtt.broker.dao.timeseries.SqlTsPartitionDate;
 
@@ -68,6 +69,12 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
     @Setter
     private String partitioning;
 
+    @Value("${sql.ttl.ts.ts_rollup_hourly_ttl:2592000}")
+    private long hourlyRollupTtl;
+
+    @Value("${sql.ttl.ts.ts_rollup_daily_ttl:31536000}")
+    private long dailyRollupTtl;
+
     @Override
     protected void init() {
         super.init();
@@ -93,16 +100,35 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
         if (log.isTraceEnabled()) {
             log.trace("Saving entity: {}", entity);
         }
-        return Futures.transform(tsQueue.add(entity), v -> null, MoreExecutors.directExecutor());
+        // the bucket is rebuilt from ts_kv once the point is stored, so saving the same point again is not counted twice
+        return Futures.transformAsync(tsQueue.add(entity), v -> recomputeRollups(entityId, keyId, entity.getTs(), entity.getTs() + 1),
+                MoreExecutors.directExecutor());
     }
 
     @Override
     public CleanUpResult cleanUp(long systemTtl) {
         int deletedPartitions = cleanUpPartitions(systemTtl);
         long deletedRows = cleanUpData(systemTtl);
+        if (rollupEnabled) {
+            cleanUpRollups(TsRollupLevel.HOURLY, hourlyRollupTtl);
+            cleanUpRollups(TsRollupLevel.DAILY, dailyRollupTtl);
+        }
         return new CleanUpResult(deletedPartitions, deletedRows);
     }
 
+    private void cleanUpRollups(TsRollupLevel level, long ttl) {
+        if (ttl <= 0) {
+            return;
+        }
+        log.info("Going to cleanup old {} timeseries rollups using ttl: {}s", level, ttl);
+        try {
+            long deleted = tsKvRollupRepository.cleanUp(level, getExpirationTime(ttl));
+            log.info("Total {} timeseries rollups removed by TTL {}!", level, deleted);
+        } catch (Exception e) {
+            log.error("Failed to execute {} timeseries rollups cleanup using ttl {}", level, ttl, e);
+        }
+    }
+
     public long cleanUpData(long systemTtl) {
         log.info("Going to cleanup old timeseries data using ttl: {}s", systemTtl);
         try {
@@ -140,6 +166,7 @@ public class JpaSqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao
                      "AND tablename != 'ts_kv_dictionary' " +
                      "AND tablename != 'ts_kv_latest' " +
                      "AND tablename != 'ts_kv_indefinite' " +
+                     "AND tablename != 'ts_kv_rollup' " +
                      "AND tablename != ?")) {
             stmt.setString(1, partitionByTtlDate);
             stmt.setQueryTimeout((int) TimeUnit.MINUTES.toSeconds(1));
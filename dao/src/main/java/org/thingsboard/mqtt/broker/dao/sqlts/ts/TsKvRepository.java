@@ -97,6 +97,23 @@ public interface TsKvRepository extends JpaRepository<TsKvEntity, TsKvCompositeK
                        @Param("startTs") long startTs,
                        @Param("endTs") long endTs);
 
+    /*
+     * Aggregates all the intervals of the query at once, returning a row per non-empty interval:
+     * interval index from the start ts, sum, count of numeric values, min and max.
+     * */
+    @Query(value = "SELECT (ts - :startTs) / :interval AS bucket, " +
+            "CAST(SUM(COALESCE(long_v, 0)) AS bigint) AS sum_value, " +
+            "SUM(CASE WHEN long_v IS NULL THEN 0 ELSE 1 END) AS count_value, " +
+            "MIN(COALESCE(long_v, 9223372036854775807)) AS min_value, " +
+            "MAX(COALESCE(long_v, -9223372036854775807)) AS max_value " +
+            "FROM ts_kv WHERE entity_id = :entityId AND key = :entityKey AND ts >= :startTs AND ts < :endTs " +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> findAggregatedByInterval(@Param("entityId") String entityId,
+                                            @Param("entityKey") int entityKey,
+                                            @Param("startTs") long startTs,
+                                            @Param("endTs") long endTs,
+                                            @Param("interval") long interval);
+
     @Transactional(timeout = 3600) // 1h in sec
     @Query(value = "WITH deleted AS (DELETE FROM ts_kv WHERE (ts < :expirationTime) IS TRUE RETURNING *) SELECT count(*) FROM deleted",
             nativeQuery = true)
@@ -110,6 +110,18 @@ CREATE TABLE IF NOT EXISTS ts_kv_latest (
     CONSTRAINT ts_kv_latest_pkey PRIMARY KEY (entity_id, key)
 );
 
+CREATE TABLE IF NOT EXISTS ts_kv_rollup (
+    entity_id varchar (255) NOT NULL,
+    key int NOT NULL,
+    rollup_interval bigint NOT NULL,
+    ts bigint NOT NULL,
+    min_v bigint NOT NULL,
+    max_v bigint NOT NULL,
+    sum_v bigint NOT NULL,
+    count_v bigint NOT NULL,
+    CONSTRAINT ts_kv_rollup_pkey PRIMARY KEY (entity_id, key, rollup_interval, ts)
+);
+
 CREATE TABLE IF NOT EXISTS ts_kv_dictionary (
     key varchar (255) NOT NULL,
     key_id serial UNIQUE,
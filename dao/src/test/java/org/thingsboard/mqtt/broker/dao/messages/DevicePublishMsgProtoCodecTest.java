@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.messages;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import org.junit.Test;
+import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
+import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
+import org.thingsboard.mqtt.broker.common.data.props.UserProperties;
+import org.thingsboard.mqtt.broker.common.util.JacksonUtil;
+import org.thingsboard.mqtt.broker.gen.dao.PersistedDevicePublishMsgProto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DevicePublishMsgProtoCodecTest {
+
+    @Test
+    public void testEncodeDecodeWithAllProperties() {
+        DevicePublishMsg devicePublishMsg = newDevicePublishMsg();
+        devicePublishMsg.setUserProperties(new UserProperties(List.of(new UserProperties.StringPair("k1", "v1"), new UserProperties.StringPair("k2", "v2"))));
+        devicePublishMsg.setMsgExpiryInterval(60);
+        devicePublishMsg.setPayloadFormatIndicator(1);
+        devicePublishMsg.setContentType("application/json");
+        devicePublishMsg.setResponseTopic("response/topic");
+        devicePublishMsg.setCorrelationData("correlation".getBytes(StandardCharsets.UTF_8));
+        devicePublishMsg.setSubscriptionIds(List.of(1, 2));
+
+        DevicePublishMsg decoded = DevicePublishMsgProtoCodec.decode(DevicePublishMsgProtoCodec.encode(devicePublishMsg), 7, PersistedPacketType.PUBREL);
+
+        assertThat(decoded.getPacketId()).isEqualTo(7);
+        assertThat(decoded.getPacketType()).isEqualTo(PersistedPacketType.PUBREL);
+        assertThat(decoded.getClientId()).isEqualTo(devicePublishMsg.getClientId());
+        assertThat(decoded.getTopicName()).isEqualTo(devicePublishMsg.getTopicName());
+        assertThat(decoded.getTime()).isEqualTo(devicePublishMsg.getTime());
+        assertThat(decoded.getQos()).isEqualTo(devicePublishMsg.getQos());
+        assertThat(decoded.getPayload()).isEqualTo(devicePublishMsg.getPayload());
+        assertThat(decoded.isRetained()).isTrue();
+        assertThat(decoded.getUserProperties()).isEqualTo(devicePublishMsg.getUserProperties());
+        assertThat(decoded.getMsgExpiryInterval()).isEqualTo(60);
+        assertThat(decoded.getPayloadFormatIndicator()).isEqualTo(1);
+        assertThat(decoded.getContentType()).isEqualTo("application/json");
+        assertThat(decoded.getResponseTopic()).isEqualTo("response/topic");
+        assertThat(decoded.getCorrelationData()).isEqualTo("correlation".getBytes(StandardCharsets.UTF_8));
+        assertThat(decoded.getSubscriptionIds()).containsExactly(1, 2);
+    }
+
+    @Test
+    public void testEncodeDecodeWithoutProperties() throws Exception {
+        DevicePublishMsg devicePublishMsg = newDevicePublishMsg();
+
+        byte[] encoded = DevicePublishMsgProtoCodec.encode(devicePublishMsg);
+        DevicePublishMsg decoded = DevicePublishMsgProtoCodec.decode(encoded, 1, PersistedPacketType.PUBLISH);
+
+        assertThat(PersistedDevicePublishMsgProto.parseFrom(encoded).hasMqttProperties()).isFalse();
+        assertThat(decoded.getUserProperties()).isNull();
+        assertThat(decoded.getMsgExpiryInterval()).isNull();
+        assertThat(decoded.getSubscriptionIds()).isNull();
+        assertThat(decoded).isEqualTo(devicePublishMsg.toBuilder().packetId(1).packetType(PersistedPacketType.PUBLISH).build());
+    }
+
+    @Test
+    public void testEncodedMsgIsSmallerThanJson() {
+        DevicePublishMsg devicePublishMsg = newDevicePublishMsg().toBuilder().payload(new byte[4096]).build();
+
+        assertThat(DevicePublishMsgProtoCodec.encode(devicePublishMsg).length)
+                .isLessThan(JacksonUtil.writeValueAsBytes(devicePublishMsg).length);
+    }
+
+    private DevicePublishMsg newDevicePublishMsg() {
+        return DevicePublishMsg.builder()
+                .clientId("clientId")
+                .topicName("test/topic")
+                .time(System.currentTimeMillis())
+                .qos(1)
+                .payload("payload".getBytes(StandardCharsets.UTF_8))
+                .properties(new MqttProperties())
+                .isRetained(true)
+                .build();
+    }
+
+}
@@ -24,8 +24,10 @@ import org.thingsboard.mqtt.broker.common.data.DevicePublishMsg;
 import org.thingsboard.mqtt.broker.common.data.PersistedPacketType;
 import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
 import org.thingsboard.mqtt.broker.dao.messages.DeviceMsgService;
+import org.thingsboard.mqtt.broker.dao.messages.DevicePublishMsgPage;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -144,6 +146,66 @@ public class DeviceMsgServiceTest extends AbstractServiceTest {
         assertThat(findLatch.await(2, TimeUnit.SECONDS)).isTrue();
     }
 
+    @Test
+    public void testSaveMessagesOfMultipleClients() throws Exception {
+        String otherClientId = "otherTestClientId";
+        try {
+            deviceMsgService.saveLastPacketId(otherClientId, 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+            var futures = deviceMsgService.saveAndReturnPreviousPacketIds(Map.of(
+                    TEST_CLIENT_ID, getDevicePublishMsgs(4),
+                    otherClientId, getDevicePublishMsgs(2)));
+
+            assertThat(futures).hasSize(2);
+            assertThat(futures.get(TEST_CLIENT_ID).toCompletableFuture().get(2, TimeUnit.SECONDS)).isEqualTo(0);
+            assertThat(futures.get(otherClientId).toCompletableFuture().get(2, TimeUnit.SECONDS)).isEqualTo(3);
+
+            List<DevicePublishMsg> persistedMsgs = deviceMsgService.findPersistedMessages(TEST_CLIENT_ID).toCompletableFuture().get(2, TimeUnit.SECONDS);
+            assertThat(persistedMsgs).extracting(DevicePublishMsg::getPacketId).containsExactly(1, 2, 3, 4);
+            List<DevicePublishMsg> otherPersistedMsgs = deviceMsgService.findPersistedMessages(otherClientId).toCompletableFuture().get(2, TimeUnit.SECONDS);
+            assertThat(otherPersistedMsgs).extracting(DevicePublishMsg::getPacketId).containsExactly(4, 5);
+            assertThat(deviceMsgService.getLastPacketId(otherClientId).toCompletableFuture().get(2, TimeUnit.SECONDS)).isEqualTo(5);
+        } finally {
+            deviceMsgService.removePersistedMessages(otherClientId);
+        }
+    }
+
+    @Test
+    public void testFindPersistedMessagesPage() throws Exception {
+        deviceMsgService.saveAndReturnPreviousPacketId(TEST_CLIENT_ID, getDevicePublishMsgs(5), false).toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        DevicePublishMsgPage firstPage = deviceMsgService.findPersistedMessagesPage(TEST_CLIENT_ID, 0, 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertThat(firstPage.messages()).extracting(DevicePublishMsg::getPacketId).containsExactly(1, 2, 3);
+        assertThat(firstPage.hasNext()).isTrue();
+
+        DevicePublishMsgPage secondPage = deviceMsgService.findPersistedMessagesPage(TEST_CLIENT_ID, firstPage.nextCursor(), 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertThat(secondPage.messages()).extracting(DevicePublishMsg::getPacketId).containsExactly(4, 5);
+        assertThat(secondPage.hasNext()).isFalse();
+
+        DevicePublishMsgPage emptyPage = deviceMsgService.findPersistedMessagesPage(TEST_CLIENT_ID, secondPage.nextCursor(), 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertThat(emptyPage.messages()).isEmpty();
+        assertThat(emptyPage.nextCursor()).isEqualTo(secondPage.nextCursor());
+        assertThat(emptyPage.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testFindPersistedMessagesPageAfterPacketIdWrapAround() throws Exception {
+        deviceMsgService.saveLastPacketId(TEST_CLIENT_ID, 0xfffe).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        deviceMsgService.saveAndReturnPreviousPacketId(TEST_CLIENT_ID, getDevicePublishMsgs(3), false).toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        DevicePublishMsgPage page = deviceMsgService.findPersistedMessagesPage(TEST_CLIENT_ID, 0, 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertThat(page.messages()).extracting(DevicePublishMsg::getPacketId).containsExactly(0xffff, 1, 2);
+
+        for (DevicePublishMsg msg : page.messages()) {
+            deviceMsgService.removePersistedMessage(TEST_CLIENT_ID, msg.getPacketId()).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        }
+        deviceMsgService.saveAndReturnPreviousPacketId(TEST_CLIENT_ID, getDevicePublishMsgs(1), false).toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        DevicePublishMsgPage nextPage = deviceMsgService.findPersistedMessagesPage(TEST_CLIENT_ID, page.nextCursor(), 3).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertThat(nextPage.messages()).extracting(DevicePublishMsg::getPacketId).containsExactly(3);
+        assertThat(nextPage.nextCursor()).isGreaterThan(page.nextCursor());
+    }
+
     @Test
     public void testUpdateAndRemoveMessage() throws InterruptedException {
         var msg = newDevicePublishMsgWithBlankPacketId();
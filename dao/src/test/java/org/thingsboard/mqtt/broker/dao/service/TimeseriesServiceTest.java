@@ -15,11 +15,15 @@
  */
 package org.thingsboard.mqtt.broker.dao.service;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.mqtt.broker.common.data.kv.Aggregation;
 import org.thingsboard.mqtt.broker.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.mqtt.broker.common.data.kv.BaseTsKvQuery;
@@ -29,6 +33,13 @@ import org.thingsboard.mqtt.broker.common.data.kv.LongDataEntry;
 import org.thingsboard.mqtt.broker.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.mqtt.broker.common.data.kv.TsKvEntry;
 import org.thingsboard.mqtt.broker.dao.DaoSqlTest;
+import org.thingsboard.mqtt.broker.dao.dictionary.KeyDictionaryDao;
+import org.thingsboard.mqtt.broker.dao.model.sqlts.TsKvEntity;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsKvRollupRange;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsKvRollupRepository;
+import org.thingsboard.mqtt.broker.dao.sqlts.rollup.TsRollupLevel;
+import org.thingsboard.mqtt.broker.dao.sqlts.sql.JpaSqlTimeseriesDao;
+import org.thingsboard.mqtt.broker.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.mqtt.broker.dao.timeseries.TimeseriesService;
 
 import java.util.ArrayList;
@@ -39,7 +50,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.thingsboard.mqtt.broker.common.data.BrokerConstants.ASC_ORDER;
@@ -55,10 +68,23 @@ public class TimeseriesServiceTest extends AbstractServiceTest {
 
     private final long TS = 42L;
 
+    private final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private final long DAY = TimeUnit.DAYS.toMillis(1);
+    private final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private final long START_OF_DAY = 1735689600000L; // 2025-01-01T00:00:00Z
+
     KvEntry longKvEntry = new LongDataEntry(LONG_KEY, Long.MAX_VALUE);
 
     @Autowired
     private TimeseriesService tsService;
+    @Autowired
+    private JpaSqlTimeseriesDao timeseriesDao;
+    @Autowired
+    private TsKvRollupRepository tsKvRollupRepository;
+    @Autowired
+    private KeyDictionaryDao keyDictionaryDao;
+    @Autowired
+    private TsKvRepository tsKvRepository;
 
     @Test
     public void testFindAllLatest() throws Exception {
@@ -461,6 +487,197 @@ public class TimeseriesServiceTest extends AbstractServiceTest {
         assertEquals(3, list.size());
     }
 
+    @Test
+    public void testHourAlignedAggregationIsSameWithAndWithoutRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        saveEveryTwentyMinutes(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY);
+
+        // the trailing bucket is incomplete and aggregated from the raw data
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 30 * HOUR + 25 * MINUTE, HOUR);
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY + 2 * HOUR, START_OF_DAY + 26 * HOUR, 6 * HOUR);
+    }
+
+    @Test
+    public void testDayAlignedAggregationIsSameWithAndWithoutRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        saveEveryTwentyMinutes(entityId, START_OF_DAY, START_OF_DAY + 3 * DAY);
+
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 3 * DAY, DAY);
+        // the trailing bucket is incomplete and aggregated from the raw data
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY + 5 * HOUR + 10 * MINUTE, DAY);
+    }
+
+    @Test
+    public void testRemoveRecomputesOverlappingRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        saveEveryTwentyMinutes(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY);
+
+        tsService.remove(entityId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY,
+                START_OF_DAY + HOUR + 30 * MINUTE, START_OF_DAY + DAY + 2 * HOUR + 10 * MINUTE))).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY, HOUR);
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY, DAY);
+    }
+
+    @Test
+    public void testSavingSameTsAgainIsSameWithAndWithoutRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        saveEveryTwentyMinutes(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY);
+
+        // the running totals of the historical stats are saved again at the same ts
+        save(entityId, START_OF_DAY + 7, 100);
+        save(entityId, START_OF_DAY + 7, 150);
+        save(entityId, START_OF_DAY + DAY + 5 * HOUR + 7, 1000);
+
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY, HOUR);
+        assertSameAggregationWithAndWithoutRollups(entityId, START_OF_DAY, START_OF_DAY + 2 * DAY, DAY);
+
+        int keyId = getKeyId();
+        assertRollupBucket(entityId, keyId, START_OF_DAY, 150 + 1 + 2, 3, 1, 150);
+    }
+
+    @Test
+    public void testIntervalsWithoutNumericValuesAreSameWithAndWithoutRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        save(entityId, START_OF_DAY + 2 * HOUR + MINUTE, 5);
+        for (long ts = START_OF_DAY; ts < START_OF_DAY + 2 * HOUR; ts += 20 * MINUTE) {
+            saveWithoutNumericValue(entityId, ts);
+        }
+        int keyId = getKeyId();
+        tsKvRollupRepository.recompute(List.of(
+                TsKvRollupRange.of(entityId, keyId, TsRollupLevel.HOURLY, START_OF_DAY, START_OF_DAY + 2 * HOUR),
+                TsKvRollupRange.of(entityId, keyId, TsRollupLevel.DAILY, START_OF_DAY, START_OF_DAY + 2 * HOUR)));
+
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            ReadTsKvQuery query = new BaseReadTsKvQuery(LONG_KEY, START_OF_DAY, START_OF_DAY + 3 * HOUR, HOUR, 1000, aggregation, ASC_ORDER);
+            assertEquals(aggregation.name(), findAll(entityId, query, false), findAll(entityId, query, true));
+        }
+        ReadTsKvQuery avgQuery = new BaseReadTsKvQuery(LONG_KEY, START_OF_DAY, START_OF_DAY + 3 * HOUR, HOUR, 1000, Aggregation.AVG, ASC_ORDER);
+        List<TsKvEntry> avg = findAll(entityId, avgQuery, true);
+        assertEquals(3, avg.size());
+        assertEquals(Optional.of(0.0), avg.get(0).getDoubleValue());
+        assertEquals(Optional.of(5.0), avg.get(2).getDoubleValue());
+    }
+
+    @Test
+    public void testRecomputeRebuildsBucketsFromRawData() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        save(entityId, START_OF_DAY + MINUTE, 5);
+        save(entityId, START_OF_DAY + 2 * MINUTE, 7);
+        int keyId = getKeyId();
+        assertRollupBucket(entityId, keyId, START_OF_DAY, 12, 2, 5, 7);
+
+        // overlapping ranges are merged, rebuilding the bucket several times does not change it
+        tsKvRollupRepository.recompute(List.of(
+                TsKvRollupRange.of(entityId, keyId, TsRollupLevel.HOURLY, START_OF_DAY, START_OF_DAY + MINUTE),
+                TsKvRollupRange.of(entityId, keyId, TsRollupLevel.HOURLY, START_OF_DAY + 30 * MINUTE, START_OF_DAY + 2 * HOUR),
+                TsKvRollupRange.of(entityId, keyId, TsRollupLevel.HOURLY, START_OF_DAY, START_OF_DAY + HOUR)));
+        tsKvRollupRepository.recompute(List.of(TsKvRollupRange.of(entityId, keyId, TsRollupLevel.HOURLY, START_OF_DAY, START_OF_DAY + 1)));
+        assertRollupBucket(entityId, keyId, START_OF_DAY, 12, 2, 5, 7);
+    }
+
+    @Test
+    public void testCleanUpRollups() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        long now = System.currentTimeMillis();
+        save(entityId, now - 3 * DAY, 1);
+        save(entityId, now, 2);
+
+        assertTrue(tsKvRollupRepository.cleanUp(TsRollupLevel.HOURLY, now - DAY) >= 1);
+
+        List<Object[]> rows = tsKvRollupRepository.findAggregatedByInterval(entityId, getKeyId(), TsRollupLevel.HOURLY, 0, now + DAY, now + DAY);
+        assertEquals(1, rows.size());
+        assertEquals(2L, rows.get(0)[1]);
+    }
+
+    @Test
+    public void testAggregationIsSameWithAndWithoutSingleQuery() throws Exception {
+        String entityId = RandomStringUtils.randomAlphabetic(20);
+        save(entityId, START_OF_DAY + MINUTE, 3);
+        save(entityId, START_OF_DAY + 2 * MINUTE, 8);
+        // [10m, 20m) and [40m, 50m) are empty, [20m, 30m) holds only rows without a numeric value
+        saveWithoutNumericValue(entityId, START_OF_DAY + 21 * MINUTE);
+        saveWithoutNumericValue(entityId, START_OF_DAY + 25 * MINUTE);
+        save(entityId, START_OF_DAY + 31 * MINUTE, -4);
+        saveWithoutNumericValue(entityId, START_OF_DAY + 33 * MINUTE);
+        // the trailing interval [50m, 55m) is shorter than the others
+        save(entityId, START_OF_DAY + 52 * MINUTE, 12);
+        save(entityId, START_OF_DAY + 57 * MINUTE, 100);
+
+        long endTs = START_OF_DAY + 55 * MINUTE;
+        for (String order : List.of(ASC_ORDER, DESC_ORDER)) {
+            for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+                ReadTsKvQuery query = new BaseReadTsKvQuery(LONG_KEY, START_OF_DAY, endTs, 10 * MINUTE, 1000, aggregation, order);
+                List<TsKvEntry> singleQuery = findAll(entityId, query, false, true);
+                List<TsKvEntry> queryPerInterval = findAll(entityId, query, false, false);
+                int expectedSize = aggregation == Aggregation.MIN || aggregation == Aggregation.MAX ? 3 : 4;
+                assertEquals(aggregation + " " + order, expectedSize, queryPerInterval.size());
+                assertEquals(aggregation + " " + order, queryPerInterval, singleQuery);
+            }
+        }
+
+        ReadTsKvQuery avgQuery = new BaseReadTsKvQuery(LONG_KEY, START_OF_DAY, endTs, 10 * MINUTE, 1000, Aggregation.AVG, ASC_ORDER);
+        List<TsKvEntry> avg = findAll(entityId, avgQuery, false, true);
+        assertEquals(Optional.of(5.5), avg.get(0).getDoubleValue());
+        assertEquals(Optional.of(0.0), avg.get(1).getDoubleValue());
+        assertEquals(START_OF_DAY + 52 * MINUTE + 30 * 1000, avg.get(3).getTs());
+        assertEquals(Optional.of(12.0), avg.get(3).getDoubleValue());
+    }
+
+    private void saveEveryTwentyMinutes(String entityId, long startTs, long endTs) throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        long value = 0;
+        for (long ts = startTs; ts < endTs; ts += 20 * MINUTE) {
+            futures.add(tsService.save(entityId, new BasicTsKvEntry(ts + 7, new LongDataEntry(LONG_KEY, value++ % 50))));
+        }
+        Futures.allAsList(futures).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private void assertSameAggregationWithAndWithoutRollups(String entityId, long startTs, long endTs, long interval) throws Exception {
+        for (Aggregation aggregation : List.of(Aggregation.AVG, Aggregation.SUM, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT)) {
+            ReadTsKvQuery query = new BaseReadTsKvQuery(LONG_KEY, startTs, endTs, interval, 1000, aggregation, ASC_ORDER);
+            List<TsKvEntry> withRollups = findAll(entityId, query, true);
+            List<TsKvEntry> withoutRollups = findAll(entityId, query, false);
+            assertFalse(withoutRollups.isEmpty());
+            assertEquals(aggregation.name(), withoutRollups, withRollups);
+        }
+    }
+
+    private List<TsKvEntry> findAll(String entityId, ReadTsKvQuery query, boolean rollupEnabled) throws Exception {
+        return findAll(entityId, query, rollupEnabled, true);
+    }
+
+    private List<TsKvEntry> findAll(String entityId, ReadTsKvQuery query, boolean rollupEnabled, boolean singleQueryAggregation) throws Exception {
+        Object timeseriesDaoTarget = AopTestUtils.getUltimateTargetObject(timeseriesDao);
+        ReflectionTestUtils.setField(timeseriesDaoTarget, "rollupEnabled", rollupEnabled);
+        ReflectionTestUtils.setField(timeseriesDaoTarget, "singleQueryAggregation", singleQueryAggregation);
+        try {
+            return tsService.findAll(entityId, Collections.singletonList(query)).get(MAX_TIMEOUT, TimeUnit.SECONDS);
+        } finally {
+            ReflectionTestUtils.setField(timeseriesDaoTarget, "rollupEnabled", true);
+            ReflectionTestUtils.setField(timeseriesDaoTarget, "singleQueryAggregation", true);
+        }
+    }
+
+    private int getKeyId() {
+        return keyDictionaryDao.getOrSaveKeyId(LONG_KEY);
+    }
+
+    private void assertRollupBucket(String entityId, int keyId, long bucketTs, long sum, long count, long min, long max) {
+        List<Object[]> rows = tsKvRollupRepository.findAggregatedByInterval(entityId, keyId, TsRollupLevel.HOURLY, bucketTs, bucketTs + HOUR, HOUR);
+        assertEquals(1, rows.size());
+        assertArrayEquals(new Object[]{0L, sum, count, min, max}, rows.get(0));
+    }
+
+    // ts_kv rows without a numeric value can not be saved through the dao
+    private void saveWithoutNumericValue(String entityId, long ts) {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId);
+        entity.setKey(getKeyId());
+        entity.setTs(ts);
+        tsKvRepository.save(entity);
+    }
+
     private void save(String entityId, long ts, long value) throws Exception {
         TsKvEntry entry = new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, value));
         tsService.save(entityId, entry).get(MAX_TIMEOUT, TimeUnit.SECONDS);
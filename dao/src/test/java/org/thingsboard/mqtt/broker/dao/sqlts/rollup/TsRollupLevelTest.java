@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2025 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.dao.sqlts.rollup;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsRollupLevelTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long START_OF_DAY = 1735689600000L; // 2025-01-01T00:00:00Z
+
+    @Test
+    public void testGetBucketStartTs() {
+        assertThat(TsRollupLevel.HOURLY.getBucketStartTs(START_OF_DAY + HOUR + 123)).isEqualTo(START_OF_DAY + HOUR);
+        assertThat(TsRollupLevel.DAILY.getBucketStartTs(START_OF_DAY + 5 * HOUR)).isEqualTo(START_OF_DAY);
+        assertThat(TsRollupLevel.DAILY.getBucketStartTs(START_OF_DAY)).isEqualTo(START_OF_DAY);
+    }
+
+    @Test
+    public void testGetBucketEndTs() {
+        assertThat(TsRollupLevel.HOURLY.getBucketEndTs(START_OF_DAY + HOUR + 123)).isEqualTo(START_OF_DAY + 2 * HOUR);
+        assertThat(TsRollupLevel.HOURLY.getBucketEndTs(START_OF_DAY + HOUR)).isEqualTo(START_OF_DAY + HOUR);
+        assertThat(TsRollupLevel.DAILY.getBucketEndTs(START_OF_DAY + 5 * HOUR)).isEqualTo(START_OF_DAY + DAY);
+        assertThat(TsRollupLevel.DAILY.getBucketEndTs(Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testFindCoarsestLevel() {
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY, START_OF_DAY + 7 * DAY, DAY)).contains(TsRollupLevel.DAILY);
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY, START_OF_DAY + 7 * DAY + 10, 2 * DAY)).contains(TsRollupLevel.DAILY);
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY, START_OF_DAY + DAY, 6 * HOUR)).contains(TsRollupLevel.HOURLY);
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY + HOUR, START_OF_DAY + 7 * DAY, DAY)).contains(TsRollupLevel.HOURLY);
+    }
+
+    @Test
+    public void testFindNoLevel() {
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY, START_OF_DAY + DAY, 30 * 60 * 1000)).isEqualTo(Optional.empty());
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY + 1, START_OF_DAY + DAY, HOUR)).isEqualTo(Optional.empty());
+        assertThat(TsRollupLevel.findCoarsest(START_OF_DAY, START_OF_DAY + HOUR - 1, HOUR)).isEqualTo(Optional.empty());
+    }
+
+}
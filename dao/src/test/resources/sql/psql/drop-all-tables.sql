@@ -7,6 +7,7 @@ DROP TABLE IF EXISTS generic_client_session_ctx;
 DROP TABLE IF EXISTS application_shared_subscription;
 DROP TABLE IF EXISTS ts_kv;
 DROP TABLE IF EXISTS ts_kv_latest;
+DROP TABLE IF EXISTS ts_kv_rollup;
 DROP TABLE IF EXISTS ts_kv_dictionary;
 DROP TABLE IF EXISTS websocket_connection;
 DROP TABLE IF EXISTS websocket_subscription;